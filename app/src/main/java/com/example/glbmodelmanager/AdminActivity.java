@@ -2,16 +2,18 @@ package com.example.glbmodelmanager;
 
 import android.Manifest;
 import android.app.Activity;
+import android.content.ClipData;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.provider.OpenableColumns;
+import android.text.InputType;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.EditText;
+import android.widget.LinearLayout;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
@@ -21,18 +23,40 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.core.content.FileProvider;
-import androidx.recyclerview.widget.LinearLayoutManager;
 
 import com.example.glbmodelmanager.adapter.GlbModelAdapter;
+import com.example.glbmodelmanager.backup.LibraryArchive;
+import com.example.glbmodelmanager.cache.AppCaches;
 import com.example.glbmodelmanager.data.AppDatabase;
 import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.data.ModelChangeFeed;
+import com.example.glbmodelmanager.data.ModelOptimization;
+import com.example.glbmodelmanager.data.ModelPart;
+import com.example.glbmodelmanager.data.ModelQuery;
 import com.example.glbmodelmanager.databinding.ActivityAdminBinding;
+import com.example.glbmodelmanager.diagnostics.Telemetry;
+import com.example.glbmodelmanager.glb.GlbSplitter;
+import com.example.glbmodelmanager.glb.RuntimeCost;
+import com.example.glbmodelmanager.glb.ThumbnailExtractor;
+import com.example.glbmodelmanager.glb.ValidationReport;
+import com.example.glbmodelmanager.similarity.SimilarityIndex;
+import com.example.glbmodelmanager.storage.ModelStorage;
+import com.example.glbmodelmanager.utils.DeviceBudgetSettings;
+import com.example.glbmodelmanager.utils.ImportSettings;
 import com.example.glbmodelmanager.utils.SessionManager;
+import com.example.glbmodelmanager.utils.StorageSettings;
+import com.example.glbmodelmanager.utils.SyncSettings;
+import com.example.glbmodelmanager.validation.ModelValidator;
+import com.example.glbmodelmanager.work.ModelWorkQueue;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Admin Activity - Dashboard for administrators
@@ -43,28 +67,102 @@ public class AdminActivity extends AppCompatActivity implements GlbModelAdapter.
     private ActivityAdminBinding binding;
     private AppDatabase database;
     private SessionManager sessionManager;
+    private ModelStorage modelStorage;
+    private ModelValidator modelValidator;
     private GlbModelAdapter adapter;
+    private ModelListControls listControls;
+    private CharSequence emptyStateText;
+
+    // Patches the list from database changes instead of re-running the full query
+    private final ModelChangeFeed.Listener modelListener = new ModelChangeFeed.Listener() {
+        @Override
+        public void onSnapshot(List<GlbModel> models) {
+            AppCaches.catalog().put(listControls.getQuery().cacheKey(), models);
+            showModels(models);
+        }
+
+        @Override
+        public void onChanges(List<ModelChangeFeed.Delta> deltas) {
+            adapter.applyChanges(deltas);
+            AppCaches.catalog().put(listControls.getQuery().cacheKey(), new ArrayList<>(adapter.getModels()));
+            updateEmptyState();
+        }
+    };
 
     // Storage permission code
     private static final int STORAGE_PERMISSION_CODE = 100;
+    private static final int NOTIFICATION_PERMISSION_CODE = 101;
+
+    // Issues listed in the validation report dialog; the summary has the full counts
+    private static final int MAX_REPORT_ISSUES = 20;
 
     /**
      * Activity Result Launcher for file picker
-     * Handles the result when user selects a GLB file
+     * Handles the result when user selects one or more model files
      */
     private final ActivityResultLauncher<Intent> filePickerLauncher =
             registerForActivityResult(
                     new ActivityResultContracts.StartActivityForResult(),
                     result -> {
                         if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null) {
-                            Uri uri = result.getData().getData();
-                            if (uri != null) {
-                                handleSelectedFile(uri);
+                            List<Uri> uris = new ArrayList<>();
+                            ClipData clipData = result.getData().getClipData();
+                            if (clipData != null) {
+                                for (int i = 0; i < clipData.getItemCount(); i++) {
+                                    uris.add(clipData.getItemAt(i).getUri());
+                                }
+                            } else if (result.getData().getData() != null) {
+                                uris.add(result.getData().getData());
+                            }
+                            if (!uris.isEmpty()) {
+                                handleSelectedFiles(uris);
                             }
                         }
                     }
             );
 
+    /**
+     * Activity Result Launcher for folder picker
+     * Used for .gltf models delivered as a folder of files
+     */
+    private final ActivityResultLauncher<Uri> folderPickerLauncher =
+            registerForActivityResult(
+                    new ActivityResultContracts.OpenDocumentTree(),
+                    treeUri -> {
+                        if (treeUri != null) {
+                            handleSelectedFolder(treeUri);
+                        }
+                    }
+            );
+
+    /**
+     * Activity Result Launchers for library backup and restore
+     */
+    private final ActivityResultLauncher<String> backupPickerLauncher =
+            registerForActivityResult(
+                    new ActivityResultContracts.CreateDocument(LibraryArchive.MIME_TYPE),
+                    uri -> {
+                        if (uri != null) {
+                            keepAccess(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION
+                                    | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+                            ModelWorkQueue.enqueueBackup(this, uri);
+                            Toast.makeText(this, "Backup queued", Toast.LENGTH_SHORT).show();
+                        }
+                    }
+            );
+
+    private final ActivityResultLauncher<String[]> restorePickerLauncher =
+            registerForActivityResult(
+                    new ActivityResultContracts.OpenDocument(),
+                    uri -> {
+                        if (uri != null) {
+                            keepReadAccess(uri);
+                            ModelWorkQueue.enqueueRestore(this, uri);
+                            Toast.makeText(this, "Restore queued", Toast.LENGTH_SHORT).show();
+                        }
+                    }
+            );
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -74,24 +172,39 @@ public class AdminActivity extends AppCompatActivity implements GlbModelAdapter.
         // Initialize database and session
         database = AppDatabase.getDatabase(this);
         sessionManager = new SessionManager(this);
+        modelStorage = new ModelStorage(this);
+        modelValidator = new ModelValidator(this);
 
         // Check storage permission
         checkStoragePermission();
+        checkNotificationPermission();
 
         // Set up toolbar
         setSupportActionBar(binding.toolbar);
 
-        // Display welcome message with username
-        binding.tvWelcome.setText("Welcome, " + sessionManager.getUsername());
+        // Display welcome message with username (after process restarts the
+        // dashboard can open before the session has been read)
+        sessionManager.whenLoaded(() -> binding.tvWelcome.setText("Welcome, " + sessionManager.getUsername()));
 
-        // Set up RecyclerView
+        // Set up RecyclerView, sorted and filtered as chosen in the toolbar menu
         setupRecyclerView();
+        listControls = new ModelListControls(this, this::onQueryChanged);
+        listControls.applyLayout(binding.rvModels, adapter);
+        emptyStateText = binding.tvEmptyState.getText();
 
         // Set up Add Model button
         binding.btnAddModel.setOnClickListener(v -> openFilePicker());
 
         // Observe database changes and update UI
         observeModels();
+
+        // Show background import progress
+        observeQueue();
+
+        // Fingerprint models added before the similarity index existed (no-op once done)
+        if (savedInstanceState == null) {
+            ModelWorkQueue.enqueueFingerprints(this);
+        }
     }
 
     /**
@@ -109,11 +222,25 @@ public class AdminActivity extends AppCompatActivity implements GlbModelAdapter.
     }
 
     /**
-     * Set up RecyclerView with adapter and layout manager
+     * Request notification permission so background imports can show progress
+     */
+    private void checkNotificationPermission() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            if (ContextCompat.checkSelfPermission(this,
+                    Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
+                ActivityCompat.requestPermissions(this,
+                        new String[]{Manifest.permission.POST_NOTIFICATIONS},
+                        NOTIFICATION_PERMISSION_CODE);
+            }
+        }
+    }
+
+    /**
+     * Set up RecyclerView with adapter (the layout manager follows the list settings)
      */
     private void setupRecyclerView() {
         adapter = new GlbModelAdapter(true, this); // true = isAdmin
-        binding.rvModels.setLayoutManager(new LinearLayoutManager(this));
+        adapter.setBudget(new DeviceBudgetSettings(this).getBudget());
         binding.rvModels.setAdapter(adapter);
     }
 
@@ -122,98 +249,267 @@ public class AdminActivity extends AppCompatActivity implements GlbModelAdapter.
      * Updates RecyclerView when data changes
      */
     private void observeModels() {
-        database.glbModelDao().getAllModels().observe(this, models -> {
-            if (models == null || models.isEmpty()) {
-                // Show empty state message
-                binding.rvModels.setVisibility(View.GONE);
-                binding.tvEmptyState.setVisibility(View.VISIBLE);
-            } else {
-                // Show list of models
-                binding.rvModels.setVisibility(View.VISIBLE);
-                binding.tvEmptyState.setVisibility(View.GONE);
-                adapter.submitList(models);
-            }
+        // Show the last known list right away; the feed's snapshot replaces it
+        ModelQuery query = listControls.getQuery();
+        adapter.setQuery(query);
+        List<GlbModel> cached = AppCaches.catalog().get(query.cacheKey());
+        if (cached != null) {
+            showModels(cached);
+        }
+
+        ModelChangeFeed.get(this).addListener(modelListener, query);
+    }
+
+    /**
+     * Re-query the list after the sort order or filters changed
+     */
+    private void onQueryChanged(ModelQuery query) {
+        adapter.setQuery(query);
+        List<GlbModel> cached = AppCaches.catalog().get(query.cacheKey());
+        if (cached != null) {
+            showModels(cached);
+        }
+        ModelChangeFeed.get(this).reload(modelListener, query);
+    }
+
+    @Override
+    protected void onDestroy() {
+        ModelChangeFeed.get(this).removeListener(modelListener);
+        adapter.release();
+        super.onDestroy();
+    }
+
+    /**
+     * Show the models, or the empty state if there are none
+     */
+    private void showModels(List<GlbModel> models) {
+        adapter.submitList(models != null ? models : new ArrayList<>());
+        updateEmptyState();
+    }
+
+    private void updateEmptyState() {
+        if (adapter.getItemCount() == 0) {
+            // Show empty state message
+            binding.tvEmptyState.setText(listControls.getQuery().hasFilters()
+                    ? "No models match the filters." : emptyStateText);
+            binding.rvModels.setVisibility(View.GONE);
+            binding.tvEmptyState.setVisibility(View.VISIBLE);
+        } else {
+            // Show list of models
+            binding.rvModels.setVisibility(View.VISIBLE);
+            binding.tvEmptyState.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * Observe the background queue and show its state above the list
+     */
+    private void observeQueue() {
+        ModelWorkQueue.observe(this).observe(this, infos -> {
+            String status = ModelWorkQueue.describe(infos);
+            binding.tvQueueStatus.setVisibility(status == null ? View.GONE : View.VISIBLE);
+            binding.tvQueueStatus.setText(status);
         });
     }
 
     /**
-     * Open file picker to select GLB file
+     * Open file picker to select GLB files, zip bundles, or a .gltf with its resources
+     * OPEN_DOCUMENT is used so read access can be kept until the queued import runs
      */
     private void openFilePicker() {
-        Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
         intent.setType("*/*"); // Accept all file types
         intent.addCategory(Intent.CATEGORY_OPENABLE);
-        String[] mimeTypes = {"model/gltf-binary", "application/octet-stream"};
+        intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+        String[] mimeTypes = {"model/gltf-binary", "model/gltf+json", "application/json",
+                "application/zip", "application/octet-stream", "image/*"};
         intent.putExtra(Intent.EXTRA_MIME_TYPES, mimeTypes);
 
-        filePickerLauncher.launch(Intent.createChooser(intent, "Select GLB File"));
+        filePickerLauncher.launch(Intent.createChooser(intent, "Select GLB or glTF Files"));
     }
 
     /**
-     * Handle selected GLB file
-     * Copies file to internal storage and saves to database
+     * Open folder picker to import every model inside a folder
      */
-    private void handleSelectedFile(Uri uri) {
-        AppDatabase.databaseWriteExecutor.execute(() -> {
-            try {
-                // Get file name from URI
-                String fileName = getFileName(uri);
-
-                // Validate file extension
-                if (!fileName.toLowerCase().endsWith(".glb")) {
-                    runOnUiThread(() ->
-                            Toast.makeText(this, "Please select a .glb file", Toast.LENGTH_SHORT).show()
-                    );
-                    return;
-                }
+    private void openFolderPicker() {
+        folderPickerLauncher.launch(null);
+    }
 
-                // Create unique file name to avoid conflicts
-                long timestamp = System.currentTimeMillis();
-                String uniqueFileName = timestamp + "_" + fileName;
+    /**
+     * Handle selected files
+     * Each .glb is imported as-is, each .gltf is packed together with the other
+     * selected files it references. The import runs in the background queue
+     */
+    private void handleSelectedFiles(List<Uri> uris) {
+        for (Uri uri : uris) {
+            keepReadAccess(uri);
+        }
+        ModelWorkQueue.enqueueImport(this, uris);
+        Toast.makeText(this, "Import queued", Toast.LENGTH_SHORT).show();
+    }
 
-                // Get internal storage directory
-                File internalDir = new File(getFilesDir(), "glb_models");
-                if (!internalDir.exists()) {
-                    internalDir.mkdirs(); // Create directory if doesn't exist
-                }
+    /**
+     * Handle selected folder
+     */
+    private void handleSelectedFolder(Uri treeUri) {
+        keepReadAccess(treeUri);
+        ModelWorkQueue.enqueueFolderImport(this, treeUri);
+        Toast.makeText(this, "Folder import queued", Toast.LENGTH_SHORT).show();
+    }
 
-                // Create file in internal storage
-                File destFile = new File(internalDir, uniqueFileName);
+    /**
+     * Keep read access to a picked document after this activity is gone
+     * The import worker releases the grant when it is done
+     */
+    private void keepReadAccess(Uri uri) {
+        keepAccess(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+    }
 
-                // Copy file from URI to internal storage
-                InputStream inputStream = getContentResolver().openInputStream(uri);
-                FileOutputStream outputStream = new FileOutputStream(destFile);
+    private void keepAccess(Uri uri, int flags) {
+        try {
+            getContentResolver().takePersistableUriPermission(uri, flags);
+        } catch (SecurityException e) {
+            // Provider does not support persistable grants, the job still works while the app is alive
+        }
+    }
 
-                byte[] buffer = new byte[1024];
-                int length;
-                while ((length = inputStream.read(buffer)) > 0) {
-                    outputStream.write(buffer, 0, length);
-                }
+    /**
+     * View GLB model using external app (from adapter callback)
+     */
+    @Override
+    public void onViewClick(GlbModel model) {
+        viewModel(model);
+    }
 
-                outputStream.close();
-                inputStream.close();
-
-                // Create database entry
-                String displayName = fileName.replace(".glb", "").replace(".GLB", "");
-                GlbModel model = new GlbModel(
-                        displayName,
-                        uniqueFileName,
-                        destFile.getAbsolutePath(),
-                        destFile.length(),
-                        timestamp
-                );
+    /**
+     * Delete GLB model (from adapter callback)
+     */
+    @Override
+    public void onDeleteClick(GlbModel model) {
+        confirmDelete(model);
+    }
 
-                // Save to database
-                database.glbModelDao().insert(model);
+    /**
+     * Model tools (from adapter long press)
+     */
+    @Override
+    public void onModelLongClick(GlbModel model) {
+        String[] options = {"Find Similar Models", "Validation Report", "Optimization Report",
+                "Split Into Parts"};
+        new AlertDialog.Builder(this)
+                .setTitle(model.getName())
+                .setItems(options, (dialog, which) -> {
+                    if (which == 0) {
+                        findSimilar(model);
+                    } else if (which == 1) {
+                        showValidationReport(model);
+                    } else if (which == 2) {
+                        showOptimizationReport(model);
+                    } else {
+                        chooseSplitMode(model);
+                    }
+                })
+                .show();
+    }
 
-                // Show success message on UI thread
+    /**
+     * Ask how a large model should be split
+     */
+    private void chooseSplitMode(GlbModel model) {
+        String[] modes = {"By scene node", "By area (" + GlbSplitter.DEFAULT_GRID_CELLS + "x"
+                + GlbSplitter.DEFAULT_GRID_CELLS + " grid)"};
+        new AlertDialog.Builder(this)
+                .setTitle("Split " + model.getName())
+                .setItems(modes, (dialog, which) -> splitModel(model, which == 0
+                        ? GlbSplitter.MODE_NODES : GlbSplitter.MODE_GRID))
+                .show();
+    }
+
+    /**
+     * Split a model into parts that can be opened on their own, in the background queue
+     */
+    private void splitModel(GlbModel model, int mode) {
+        ModelWorkQueue.enqueueSplit(this, model.getId(), mode);
+        Toast.makeText(this, "Splitting " + model.getName() + " in the background",
+                Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * List models with the same geometry
+     */
+    private void findSimilar(GlbModel model) {
+        AppDatabase.databaseWriteExecutor.execute(() -> {
+            try {
+                List<SimilarityIndex.Match> matches = new SimilarityIndex(this).findSimilar(model);
+                runOnUiThread(() -> showSimilarModels(model, matches));
+            } catch (Exception e) {
                 runOnUiThread(() ->
-                        Toast.makeText(this, "Model added successfully!", Toast.LENGTH_SHORT).show()
+                        Toast.makeText(this, "Error comparing model: " + e.getMessage(),
+                                Toast.LENGTH_SHORT).show()
                 );
+            }
+        });
+    }
 
+    /**
+     * Show the similar models; picking one opens it
+     */
+    private void showSimilarModels(GlbModel model, List<SimilarityIndex.Match> matches) {
+        AlertDialog.Builder dialog = new AlertDialog.Builder(this)
+                .setTitle("Similar to " + model.getName())
+                .setNegativeButton("Close", null);
+        if (matches == null) {
+            dialog.setMessage(ModelStorage.isCompressed(model)
+                    ? "Open this model once so its geometry can be indexed."
+                    : "This model has no geometry to compare.");
+        } else if (matches.isEmpty()) {
+            dialog.setMessage("No models with similar geometry.");
+        } else {
+            String[] labels = new String[matches.size()];
+            for (int i = 0; i < labels.length; i++) {
+                SimilarityIndex.Match match = matches.get(i);
+                labels[i] = String.format(Locale.getDefault(), "%s (%d%% same geometry)",
+                        match.model.getName(), Math.round(match.similarity * 100));
+            }
+            dialog.setItems(labels, (d, which) -> viewModel(matches.get(which).model));
+        }
+        dialog.show();
+    }
+
+    /**
+     * Show a model's validation report, validating it first if it has none yet
+     */
+    private void showValidationReport(GlbModel model) {
+        AppDatabase.databaseWriteExecutor.execute(() -> {
+            try {
+                ValidationReport stored = modelValidator.getStored(model.getId());
+                ValidationReport report = stored != null ? stored : modelValidator.validate(model);
+                runOnUiThread(() -> {
+                    String message;
+                    if (report == null) {
+                        message = "Open this model once so it can be validated.";
+                    } else {
+                        StringBuilder text = new StringBuilder(report.getSummary());
+                        List<ValidationReport.Issue> issues = report.getIssues();
+                        for (int i = 0; i < Math.min(issues.size(), MAX_REPORT_ISSUES); i++) {
+                            text.append("\n\n").append(issues.get(i));
+                        }
+                        int hidden = report.getErrorCount() + report.getWarningCount()
+                                - Math.min(issues.size(), MAX_REPORT_ISSUES);
+                        if (hidden > 0) {
+                            text.append("\n\n…and ").append(hidden).append(" more");
+                        }
+                        message = text.toString();
+                    }
+                    new AlertDialog.Builder(this)
+                            .setTitle("Validation of " + model.getName())
+                            .setMessage(message)
+                            .setPositiveButton("OK", null)
+                            .show();
+                });
             } catch (Exception e) {
                 runOnUiThread(() ->
-                        Toast.makeText(this, "Error adding model: " + e.getMessage(),
+                        Toast.makeText(this, "Error validating model: " + e.getMessage(),
                                 Toast.LENGTH_SHORT).show()
                 );
             }
@@ -221,67 +517,195 @@ public class AdminActivity extends AppCompatActivity implements GlbModelAdapter.
     }
 
     /**
-     * Get file name from URI
+     * Show what the optimization stages saved on a model
      */
-    private String getFileName(Uri uri) {
-        String fileName = "model.glb";
-        Cursor cursor = getContentResolver().query(uri, null, null, null, null);
-
-        if (cursor != null) {
+    private void showOptimizationReport(GlbModel model) {
+        AppDatabase.databaseWriteExecutor.execute(() -> {
             try {
-                if (cursor.moveToFirst()) {
-                    int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
-                    if (nameIndex >= 0) {
-                        fileName = cursor.getString(nameIndex);
+                List<ModelOptimization> results = database.glbModelDao().getOptimizations(model.getId());
+                runOnUiThread(() -> {
+                    StringBuilder text = new StringBuilder();
+                    for (ModelOptimization result : results) {
+                        if (text.length() > 0) {
+                            text.append("\n\n");
+                        }
+                        long before = result.getBytesBefore();
+                        long after = result.getBytesAfter();
+                        text.append(stageLabel(result.getStage())).append(": ").append(result.getSummary())
+                                .append(String.format(Locale.getDefault(), "\n%.1f MB → %.1f MB (%d%% smaller)",
+                                        before / (1024.0 * 1024.0), after / (1024.0 * 1024.0),
+                                        before > 0 ? Math.round(100.0 * (before - after) / before) : 0));
+                        if (result.getDrawCallsBefore() >= 0) {
+                            text.append("\nDraw calls: ").append(result.getDrawCallsBefore())
+                                    .append(" → ").append(result.getDrawCallsAfter());
+                        }
                     }
-                }
-            } finally {
-                cursor.close();
+                    new AlertDialog.Builder(this)
+                            .setTitle("Optimization of " + model.getName())
+                            .setMessage(text.length() > 0 ? text.toString()
+                                    : "No optimization stage has changed this model.")
+                            .setPositiveButton("OK", null)
+                            .show();
+                });
+            } catch (Exception e) {
+                runOnUiThread(() ->
+                        Toast.makeText(this, "Error loading report: " + e.getMessage(),
+                                Toast.LENGTH_SHORT).show()
+                );
             }
-        }
+        });
+    }
 
-        return fileName;
+    private static String stageLabel(String stage) {
+        if (ModelOptimization.STAGE_INSTANCING.equals(stage)) {
+            return "Mesh instancing";
+        }
+        if (ModelOptimization.STAGE_ANIMATION.equals(stage)) {
+            return "Animation compression";
+        }
+        return stage;
     }
 
     /**
-     * View GLB model using external app (from adapter callback)
+     * View GLB model - Offer the parts of a split model, then show options dialog
      */
-    @Override
-    public void onViewClick(GlbModel model) {
-        viewModel(model);
+    private void viewModel(GlbModel model) {
+        AppDatabase.databaseWriteExecutor.execute(() -> {
+            try {
+                List<ModelPart> parts = database.glbModelDao().getParts(model.getId());
+                runOnUiThread(() -> {
+                    if (parts.isEmpty()) {
+                        openModel(model);
+                    } else {
+                        chooseModelPart(model, parts);
+                    }
+                });
+            } catch (Exception e) {
+                runOnUiThread(() ->
+                        Toast.makeText(this, "Error opening model: " + e.getMessage(),
+                                Toast.LENGTH_SHORT).show()
+                );
+            }
+        });
     }
 
     /**
-     * Delete GLB model (from adapter callback)
+     * Let the user open a split model whole or just one of its parts
+     * A part opens straight from its own file, without preparing the whole model
      */
-    @Override
-    public void onDeleteClick(GlbModel model) {
-        confirmDelete(model);
+    private void chooseModelPart(GlbModel model, List<ModelPart> parts) {
+        String[] labels = new String[parts.size() + 1];
+        labels[0] = "Whole model";
+        for (int i = 0; i < parts.size(); i++) {
+            ModelPart part = parts.get(i);
+            labels[i + 1] = String.format(Locale.getDefault(), "%s (%.1f MB)", part.getName(),
+                    part.getFileSize() / (1024.0 * 1024.0));
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(model.getName())
+                .setItems(labels, (dialog, which) -> {
+                    if (which == 0) {
+                        openModel(model);
+                    } else {
+                        showPartOptions(model, parts.get(which - 1));
+                    }
+                })
+                .show();
     }
 
     /**
-     * View GLB model - Show options dialog
+     * Open the whole model file (decompressing it first if needed)
      */
-    private void viewModel(GlbModel model) {
-        File file = new File(model.getFilePath());
+    private void openModel(GlbModel model) {
+        boolean compressed = ModelStorage.isCompressed(model);
+        if (compressed) {
+            // Not opened for a while: decompress it in the background first
+            Toast.makeText(this, "Preparing " + model.getName() + "…", Toast.LENGTH_SHORT).show();
+        }
+        // The validation report is read on the way, so a broken file comes with a warning
+        AppDatabase.databaseWriteExecutor.execute(() -> {
+            try {
+                File file = modelStorage.open(model);
+                if (compressed) {
+                    ModelWorkQueue.enqueueStorageCheck(this);
+                }
+                ValidationReport report = modelValidator.getStored(model.getId());
+                runOnUiThread(() -> showOpenOptions(model, file, report));
+            } catch (Exception e) {
+                runOnUiThread(() ->
+                        Toast.makeText(this, "Error opening model: " + e.getMessage(),
+                                Toast.LENGTH_SHORT).show()
+                );
+            }
+        });
+    }
 
+    /**
+     * Show open options for a model file that is ready to read
+     */
+    private void showOpenOptions(GlbModel model, File file, ValidationReport report) {
         if (!file.exists()) {
             Toast.makeText(this, "Model file not found", Toast.LENGTH_SHORT).show();
             return;
         }
 
+        String message = "How would you like to open: " + model.getName() + "?";
+        if (report != null && !report.isValid()) {
+            message += "\n\nThis file has " + report.getSummary() + " and may not display correctly."
+                    + " Long-press it in the list for the validation report.";
+        }
+        RuntimeCost.Budget budget = new DeviceBudgetSettings(this).getBudget();
+        List<String> overruns = budget.overruns(model.getGpuBytes(), model.getDrawCalls(),
+                model.getMaterialCount());
+        if (!overruns.isEmpty()) {
+            message += "\n\nOver the " + budget.name + " device budget: " + String.join(", ", overruns) + ".";
+        }
+
         // Show dialog with options
         new AlertDialog.Builder(this)
                 .setTitle("Open 3D Model")
-                .setMessage("How would you like to open: " + model.getName() + "?")
+                .setMessage(message)
                 .setPositiveButton("GLB Viewer", (dialog, which) ->
                         openWithGlbViewer(file, model.getName()))
                 .setNegativeButton("Other Apps", (dialog, which) ->
                         openWithOtherApps(file))
-                .setNeutralButton("Cancel", null)
+                .setNeutralButton("Preview", (dialog, which) ->
+                        openPreview(file, model.getName()))
                 .show();
     }
 
+    /**
+     * Show open options for one part of a split model
+     */
+    private void showPartOptions(GlbModel model, ModelPart part) {
+        File file = new File(part.getFilePath());
+        if (!file.exists()) {
+            Toast.makeText(this, "Model part not found", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String name = model.getName() + " - " + part.getName();
+        new AlertDialog.Builder(this)
+                .setTitle("Open Model Part")
+                .setMessage("How would you like to open: " + name + "?")
+                .setPositiveButton("GLB Viewer", (dialog, which) ->
+                        openWithGlbViewer(file, name))
+                .setNegativeButton("Other Apps", (dialog, which) ->
+                        openWithOtherApps(file))
+                .setNeutralButton("Preview", (dialog, which) ->
+                        openPreview(file, name))
+                .show();
+    }
+
+    /**
+     * Open the built-in CPU-rendered preview
+     */
+    private void openPreview(File file, String modelName) {
+        Intent intent = new Intent(this, PreviewActivity.class);
+        intent.putExtra(PreviewActivity.EXTRA_PATH, file.getAbsolutePath());
+        intent.putExtra(PreviewActivity.EXTRA_NAME, modelName);
+        startActivity(intent);
+    }
+
     /**
      * Open with GLB Viewer app
      */
@@ -309,6 +733,8 @@ public class AdminActivity extends AppCompatActivity implements GlbModelAdapter.
         }
 
         // GLB Viewer is installed - copy file to Downloads folder
+        Telemetry.Operation operation = Telemetry.get().begin(Telemetry.KIND_EXPORT);
+        operation.setName(modelName);
         try {
             // Get Downloads directory
             File downloadsDir = android.os.Environment.getExternalStoragePublicDirectory(
@@ -326,9 +752,13 @@ public class AdminActivity extends AppCompatActivity implements GlbModelAdapter.
             File destFile = new File(glbDir, fileName);
 
             // Copy file
+            long copyStart = System.nanoTime();
             copyFile(sourceFile, destFile);
+            operation.add(Telemetry.STAGE_COPY, copyStart);
+            operation.addBytes(destFile.length());
 
             // Show instructions dialog
+            long notifyStart = System.nanoTime();
             String instructions = "File saved to:\nDownloads/GLBModels/" + fileName +
                     "\n\n1. GLB Viewer will open now\n2. Tap the menu (☰)\n3. Select 'Open File'\n4. Navigate to Downloads/GLBModels\n5. Select: " + fileName;
 
@@ -345,8 +775,11 @@ public class AdminActivity extends AppCompatActivity implements GlbModelAdapter.
                     .setNegativeButton("Cancel", null)
                     .setCancelable(false)
                     .show();
+            operation.add(Telemetry.STAGE_NOTIFY, notifyStart);
+            operation.finish(null);
 
         } catch (Exception e) {
+            operation.finish(e.getMessage());
             Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
         }
     }
@@ -412,11 +845,9 @@ public class AdminActivity extends AppCompatActivity implements GlbModelAdapter.
     private void deleteModel(GlbModel model) {
         AppDatabase.databaseWriteExecutor.execute(() -> {
             try {
-                // Delete file from storage
-                File file = new File(model.getFilePath());
-                if (file.exists()) {
-                    file.delete();
-                }
+                // Delete file from storage (plain or compressed)
+                ModelStorage.deleteFiles(model);
+                ThumbnailExtractor.getThumbnailFile(getFilesDir(), model.getId()).delete();
 
                 // Delete from database
                 database.glbModelDao().delete(model);
@@ -440,6 +871,7 @@ public class AdminActivity extends AppCompatActivity implements GlbModelAdapter.
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.admin_menu, menu);
+        menu.findItem(R.id.action_grid).setChecked(listControls.isGrid());
         return true;
     }
 
@@ -452,9 +884,214 @@ public class AdminActivity extends AppCompatActivity implements GlbModelAdapter.
             logout();
             return true;
         }
+        if (item.getItemId() == R.id.action_sort) {
+            listControls.showSortDialog();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_filter) {
+            listControls.showFilterDialog();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_grid) {
+            listControls.toggleLayout(binding.rvModels, adapter);
+            item.setChecked(listControls.isGrid());
+            return true;
+        }
+        if (item.getItemId() == R.id.action_import_folder) {
+            openFolderPicker();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_diagnostics) {
+            startActivity(new Intent(this, DiagnosticsActivity.class));
+            return true;
+        }
+        if (item.getItemId() == R.id.action_sync) {
+            editCatalogSync();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_backup) {
+            String date = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date());
+            backupPickerLauncher.launch("glb-library-" + date + LibraryArchive.EXTENSION);
+            return true;
+        }
+        if (item.getItemId() == R.id.action_restore) {
+            restorePickerLauncher.launch(new String[]{"*/*"});
+            return true;
+        }
+        if (item.getItemId() == R.id.action_storage_quota) {
+            editStorageQuota();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_device_budget) {
+            chooseDeviceBudget();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_import_optimizations) {
+            chooseImportOptimizations();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Let the admin change the library disk quota
+     * Shows current usage, which is read in the background first
+     */
+    private void editStorageQuota() {
+        StorageSettings settings = new StorageSettings(this);
+        AppDatabase.databaseWriteExecutor.execute(() -> {
+            long usedMb = database.glbModelDao().getStoredBytes() / (1024 * 1024);
+            runOnUiThread(() -> {
+                EditText input = new EditText(this);
+                input.setInputType(InputType.TYPE_CLASS_NUMBER);
+                input.setText(String.valueOf(settings.getQuotaMb()));
+
+                new AlertDialog.Builder(this)
+                        .setTitle("Storage Quota (MB)")
+                        .setMessage("Models use " + usedMb + " MB. Past the quota, models not opened"
+                                + " for a day or more are compressed. 0 turns this off.")
+                        .setView(input)
+                        .setPositiveButton("Save", (dialog, which) -> {
+                            try {
+                                settings.setQuotaMb(Integer.parseInt(input.getText().toString().trim()));
+                                ModelWorkQueue.enqueueStorageCheck(this);
+                            } catch (NumberFormatException e) {
+                                Toast.makeText(this, "Please enter a number", Toast.LENGTH_SHORT).show();
+                            }
+                        })
+                        .setNegativeButton("Cancel", null)
+                        .show();
+            });
+        });
+    }
+
+    /**
+     * Let the admin pick the device class models are checked against
+     */
+    private void chooseDeviceBudget() {
+        DeviceBudgetSettings settings = new DeviceBudgetSettings(this);
+        String[] labels = new String[DeviceBudgetSettings.CLASS_NAMES.length];
+        for (int i = 0; i < labels.length; i++) {
+            RuntimeCost.Budget budget = settings.getBudget(i);
+            labels[i] = String.format(Locale.getDefault(), "%s (%d MB, %d draw calls, %d materials)",
+                    budget.name, budget.memoryMb, budget.drawCalls, budget.materials);
+        }
+        int[] selected = {settings.getDeviceClass()};
+
+        new AlertDialog.Builder(this)
+                .setTitle("Device Budget")
+                .setSingleChoiceItems(labels, selected[0], (dialog, which) -> selected[0] = which)
+                .setPositiveButton("Use", (dialog, which) -> {
+                    settings.setDeviceClass(selected[0]);
+                    adapter.setBudget(settings.getBudget());
+                })
+                .setNeutralButton("Edit Limits", (dialog, which) -> editDeviceBudget(settings, selected[0]))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * Let the admin change the limits of one device class
+     */
+    private void editDeviceBudget(DeviceBudgetSettings settings, int deviceClass) {
+        RuntimeCost.Budget budget = settings.getBudget(deviceClass);
+        EditText memory = budgetField("GPU memory per model (MB)", budget.memoryMb);
+        EditText drawCalls = budgetField("Draw calls", budget.drawCalls);
+        EditText materials = budgetField("Materials", budget.materials);
+
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        int padding = (int) (16 * getResources().getDisplayMetrics().density);
+        layout.setPadding(padding, padding / 2, padding, 0);
+        layout.addView(memory);
+        layout.addView(drawCalls);
+        layout.addView(materials);
+
+        new AlertDialog.Builder(this)
+                .setTitle(budget.name + " Budget")
+                .setView(layout)
+                .setPositiveButton("Save", (dialog, which) -> {
+                    try {
+                        settings.setBudget(deviceClass,
+                                Integer.parseInt(memory.getText().toString().trim()),
+                                Integer.parseInt(drawCalls.getText().toString().trim()),
+                                Integer.parseInt(materials.getText().toString().trim()));
+                        adapter.setBudget(settings.getBudget());
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(this, "Please enter numbers", Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private EditText budgetField(String hint, int value) {
+        EditText field = new EditText(this);
+        field.setHint(hint);
+        field.setInputType(InputType.TYPE_CLASS_NUMBER);
+        field.setText(String.valueOf(value));
+        return field;
+    }
+
+    /**
+     * Let the admin turn the optional import stages on or off
+     * Applies to models optimized after the change; settings are read in the background
+     */
+    private void chooseImportOptimizations() {
+        AppDatabase.databaseWriteExecutor.execute(() -> {
+            ImportSettings settings = new ImportSettings(this);
+            String[] labels = {
+                    "Instance repeated meshes (needs EXT_mesh_gpu_instancing)",
+                    "Compress animations (within set tolerances)"
+            };
+            boolean[] checked = {
+                    settings.isMeshInstancingEnabled(),
+                    settings.isAnimationCompressionEnabled()
+            };
+            runOnUiThread(() -> new AlertDialog.Builder(this)
+                    .setTitle("Import Optimizations")
+                    .setMultiChoiceItems(labels, checked, (dialog, which, isChecked) -> checked[which] = isChecked)
+                    .setPositiveButton("Save", (dialog, which) -> {
+                        settings.setMeshInstancingEnabled(checked[0]);
+                        settings.setAnimationCompressionEnabled(checked[1]);
+                    })
+                    .setNegativeButton("Cancel", null)
+                    .show());
+        });
+    }
+
+    /**
+     * Ask for the catalog manifest URL and queue a sync with it
+     */
+    private void editCatalogSync() {
+        SyncSettings settings = new SyncSettings(this);
+        EditText input = new EditText(this);
+        input.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_URI);
+        input.setHint("https://example.com/catalog.json");
+        if (settings.getManifestUrl() != null) {
+            input.setText(settings.getManifestUrl());
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle("Sync Catalog")
+                .setMessage("Models in the catalog that are not on this device will be downloaded.")
+                .setView(input)
+                .setPositiveButton("Sync", (dialog, which) -> {
+                    String url = input.getText().toString().trim();
+                    if (!url.startsWith("https://") && !url.startsWith("http://")) {
+                        Toast.makeText(this, "Please enter a web address", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    if (!url.equals(settings.getManifestUrl())) {
+                        settings.setManifestUrl(url);
+                    }
+                    ModelWorkQueue.enqueueSync(this);
+                    Toast.makeText(this, "Sync queued", Toast.LENGTH_SHORT).show();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
     /**
      * Logout and return to login screen
      */
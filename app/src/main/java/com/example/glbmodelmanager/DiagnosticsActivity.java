@@ -0,0 +1,292 @@
+package com.example.glbmodelmanager;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.text.InputType;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.EditText;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.FileProvider;
+
+import com.example.glbmodelmanager.cache.AppCaches;
+import com.example.glbmodelmanager.cache.BitmapPool;
+import com.example.glbmodelmanager.cache.CacheRegistry;
+import com.example.glbmodelmanager.cache.ManagedCache;
+import com.example.glbmodelmanager.data.AppDatabase;
+import com.example.glbmodelmanager.databinding.ActivityDiagnosticsBinding;
+import com.example.glbmodelmanager.diagnostics.LatencyHistogram;
+import com.example.glbmodelmanager.diagnostics.QueryStats;
+import com.example.glbmodelmanager.diagnostics.Telemetry;
+import com.example.glbmodelmanager.utils.DiagnosticsSettings;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Diagnostics Activity - Performance numbers for administrators
+ * Shows import/export stage timings, cache counters and database query
+ * latencies, and exports them as JSON
+ */
+public class DiagnosticsActivity extends AppCompatActivity {
+
+    private static final String EXPORT_DIR = "diagnostics";
+
+    // Long SQL is shortened so the table stays readable
+    private static final int MAX_NAME_LENGTH = 60;
+
+    private ActivityDiagnosticsBinding binding;
+    private DiagnosticsSettings settings;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        binding = ActivityDiagnosticsBinding.inflate(getLayoutInflater());
+        setContentView(binding.getRoot());
+
+        settings = new DiagnosticsSettings(this);
+
+        // Set up toolbar with back navigation
+        setSupportActionBar(binding.toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showStats();
+    }
+
+    /**
+     * Render pipeline timings, query statistics and the slow query log
+     */
+    private void showStats() {
+        showOperations();
+        showCaches();
+
+        QueryStats stats = QueryStats.get();
+
+        StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.US, "%7s %9s %9s %9s%n", "count", "p50 ms", "p99 ms", "max ms"));
+        Map<String, LatencyHistogram.Snapshot> snapshot = stats.snapshot();
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : snapshot.entrySet()) {
+            LatencyHistogram.Snapshot query = entry.getValue();
+            table.append(shorten(entry.getKey())).append('\n');
+            table.append(String.format(Locale.US, "%7d %9.2f %9.2f %9.2f%n",
+                    query.count, query.p50 / 1000.0, query.p99 / 1000.0, query.max / 1000.0));
+        }
+        if (snapshot.isEmpty()) {
+            table.append("No queries recorded yet");
+        }
+        binding.tvQueryStats.setText(table.toString().trim());
+
+        binding.tvSlowQueriesTitle.setText("Slow Queries (over " + stats.getSlowQueryThresholdMs() + " ms)");
+        StringBuilder slow = new StringBuilder();
+        SimpleDateFormat time = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
+        List<QueryStats.SlowQuery> slowQueries = stats.getSlowQueries();
+        for (QueryStats.SlowQuery query : slowQueries) {
+            slow.append(time.format(new Date(query.timestamp)))
+                    .append("  ").append(query.durationMicros / 1000).append(" ms  ")
+                    .append(shorten(query.name)).append('\n');
+            if (query.sql != null && !query.sql.equals(query.name)) {
+                slow.append("  ").append(shorten(query.sql)).append('\n');
+            }
+            slow.append("  args ").append(query.args).append('\n');
+        }
+        if (slowQueries.isEmpty()) {
+            slow.append("None");
+        }
+        binding.tvSlowQueries.setText(slow.toString().trim());
+    }
+
+    /**
+     * Per-stage breakdown of the most recent imports and exports
+     */
+    private void showOperations() {
+        StringBuilder text = new StringBuilder();
+        SimpleDateFormat time = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
+        List<Telemetry.Operation> operations = Telemetry.get().getRecent();
+        for (Telemetry.Operation operation : operations) {
+            text.append(time.format(new Date(operation.startedAt)))
+                    .append("  ").append(operation.kind)
+                    .append("  ").append(shorten(String.valueOf(operation.name)))
+                    .append('\n');
+            text.append(String.format(Locale.US, "  %s  %.2f s",
+                    operation.isSuccess() ? "ok" : "failed", operation.totalNanos / 1e9));
+            if (operation.bytes > 0) {
+                text.append(String.format(Locale.US, "  %.1f MB at %.1f MB/s",
+                        operation.bytes / (1024.0 * 1024.0), operation.getCopyMegabytesPerSecond()));
+            }
+            text.append('\n');
+            for (int i = 0; i < Telemetry.STAGE_NAMES.length; i++) {
+                if (operation.stageNanos[i] > 0) {
+                    text.append(String.format(Locale.US, "  %-7s %9.1f ms%n",
+                            Telemetry.STAGE_NAMES[i], operation.stageNanos[i] / 1e6));
+                }
+            }
+            if (!operation.isSuccess()) {
+                text.append("  error: ").append(operation.error).append('\n');
+            }
+        }
+        if (operations.isEmpty()) {
+            text.append("No imports or exports since the app started");
+        }
+        binding.tvOperations.setText(text.toString().trim());
+    }
+
+    /**
+     * Size and hit/miss/eviction counters of every registered cache
+     */
+    private void showCaches() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.US, "%-11s %9s %6s %6s %6s%n", "cache", "KB / max", "hits", "miss", "evict"));
+        for (ManagedCache<?, ?> cache : CacheRegistry.get().getCaches()) {
+            text.append(String.format(Locale.US, "%-11s %4d/%-4d %6d %6d %6d%n", cache.getName(),
+                    cache.size() / 1024, cache.maxSize() / 1024,
+                    cache.hitCount(), cache.missCount(), cache.evictionCount()));
+        }
+        BitmapPool pool = AppCaches.bitmapPool();
+        text.append(String.format(Locale.US, "%-11s %4d/%-4d %6d %6d%n", "bitmap pool",
+                pool.getSize() / 1024, pool.getMaxSize() / 1024, pool.getHitCount(), pool.getMissCount()));
+        binding.tvCaches.setText(text.toString().trim());
+    }
+
+    /**
+     * Cache counters as JSON for export
+     */
+    private static JSONArray cachesToJson() throws JSONException {
+        JSONArray caches = new JSONArray();
+        for (ManagedCache<?, ?> cache : CacheRegistry.get().getCaches()) {
+            caches.put(new JSONObject()
+                    .put("name", cache.getName())
+                    .put("priority", cache.getPriority())
+                    .put("sizeBytes", cache.size())
+                    .put("maxBytes", cache.maxSize())
+                    .put("hits", cache.hitCount())
+                    .put("misses", cache.missCount())
+                    .put("evictions", cache.evictionCount()));
+        }
+        return caches;
+    }
+
+    private static String shorten(String name) {
+        return name.length() <= MAX_NAME_LENGTH ? name : name.substring(0, MAX_NAME_LENGTH - 1) + "…";
+    }
+
+    /**
+     * Write all statistics to a JSON file and offer to share it
+     */
+    private void exportJson() {
+        AppDatabase.databaseWriteExecutor.execute(() -> {
+            try {
+                JSONArray operations = new JSONArray();
+                for (Telemetry.Operation operation : Telemetry.get().getRecent()) {
+                    operations.put(operation.toJson());
+                }
+                JSONObject json = new JSONObject()
+                        .put("exportedAt", System.currentTimeMillis())
+                        .put("operations", operations)
+                        .put("caches", cachesToJson())
+                        .put("database", QueryStats.get().toJson());
+
+                File dir = new File(getCacheDir(), EXPORT_DIR);
+                if (!dir.exists()) {
+                    dir.mkdirs();
+                }
+                String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+                File file = new File(dir, "diagnostics-" + stamp + ".json");
+                try (FileOutputStream output = new FileOutputStream(file)) {
+                    output.write(json.toString(2).getBytes(StandardCharsets.UTF_8));
+                }
+
+                Uri uri = FileProvider.getUriForFile(this, getPackageName() + ".fileprovider", file);
+                Intent intent = new Intent(Intent.ACTION_SEND);
+                intent.setType("application/json");
+                intent.putExtra(Intent.EXTRA_STREAM, uri);
+                intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+                runOnUiThread(() -> startActivity(Intent.createChooser(intent, "Export diagnostics")));
+
+            } catch (Exception e) {
+                runOnUiThread(() ->
+                        Toast.makeText(this, "Export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show()
+                );
+            }
+        });
+    }
+
+    /**
+     * Let the admin change the slow query threshold
+     */
+    private void editSlowThreshold() {
+        EditText input = new EditText(this);
+        input.setInputType(InputType.TYPE_CLASS_NUMBER);
+        input.setText(String.valueOf(QueryStats.get().getSlowQueryThresholdMs()));
+
+        new AlertDialog.Builder(this)
+                .setTitle("Slow Query Threshold (ms)")
+                .setView(input)
+                .setPositiveButton("Save", (dialog, which) -> {
+                    try {
+                        long thresholdMs = Long.parseLong(input.getText().toString().trim());
+                        QueryStats.get().setSlowQueryThresholdMs(thresholdMs);
+                        settings.setSlowQueryThresholdMs(thresholdMs);
+                        showStats();
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(this, "Please enter a number", Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.diagnostics_menu, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+        if (id == android.R.id.home) {
+            finish();
+            return true;
+        }
+        if (id == R.id.action_refresh) {
+            showStats();
+            return true;
+        }
+        if (id == R.id.action_export) {
+            exportJson();
+            return true;
+        }
+        if (id == R.id.action_slow_threshold) {
+            editSlowThreshold();
+            return true;
+        }
+        if (id == R.id.action_reset) {
+            QueryStats.get().reset();
+            Telemetry.get().clear();
+            showStats();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.glbmodelmanager;
+
+import android.app.Application;
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+import androidx.work.Configuration;
+
+import com.example.glbmodelmanager.cache.AppCaches;
+import com.example.glbmodelmanager.cache.CacheRegistry;
+import com.example.glbmodelmanager.data.AppDatabase;
+import com.example.glbmodelmanager.diagnostics.QueryStats;
+import com.example.glbmodelmanager.diagnostics.Telemetry;
+import com.example.glbmodelmanager.utils.DiagnosticsSettings;
+import com.example.glbmodelmanager.utils.SessionManager;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Application class
+ * Starts slow initialization off the main thread and provides the WorkManager
+ * configuration for the background model queue
+ */
+public class GlbModelManagerApp extends Application implements Configuration.Provider {
+
+    // Model processing is I/O and memory heavy, so at most two workers run at once
+    private static final int MAX_PARALLEL_WORKERS = 2;
+
+    @Override
+    public void onCreate() {
+        Trace.beginSection("GlbModelManagerApp.onCreate");
+        try {
+            super.onCreate();
+
+            // Read the session and open the database before the first activity needs them
+            SessionManager.preload(this);
+            AppDatabase.warmUp(this);
+            Telemetry.get().init(this);
+
+            // Let caches shrink when the system is short on memory
+            registerComponentCallbacks(CacheRegistry.get());
+            registerComponentCallbacks(AppCaches.bitmapPool());
+            AppDatabase.databaseWriteExecutor.execute(() -> QueryStats.get().setSlowQueryThresholdMs(
+                    new DiagnosticsSettings(this).getSlowQueryThresholdMs()));
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    @NonNull
+    @Override
+    public Configuration getWorkManagerConfiguration() {
+        return new Configuration.Builder()
+                .setExecutor(Executors.newFixedThreadPool(MAX_PARALLEL_WORKERS))
+                .build();
+    }
+}
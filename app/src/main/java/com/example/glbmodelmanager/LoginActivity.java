@@ -2,6 +2,7 @@ package com.example.glbmodelmanager;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Trace;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
@@ -18,29 +19,53 @@ import com.example.glbmodelmanager.utils.SessionManager;
 public class LoginActivity extends AppCompatActivity {
 
     private ActivityLoginBinding binding;
-    private AppDatabase database;
     private SessionManager sessionManager;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-
-        // Initialize ViewBinding
-        binding = ActivityLoginBinding.inflate(getLayoutInflater());
-        setContentView(binding.getRoot());
+        Trace.beginSection("LoginActivity.onCreate");
+        try {
+            super.onCreate(savedInstanceState);
+
+            // Decide from the in-memory session; the database is not needed to redirect
+            sessionManager = new SessionManager(this);
+            sessionManager.whenLoaded(this::onSessionLoaded);
+        } finally {
+            Trace.endSection();
+        }
+    }
 
-        // Initialize database and session manager
-        database = AppDatabase.getDatabase(this);
-        sessionManager = new SessionManager(this);
+    /**
+     * Redirect logged-in users, otherwise show the login form
+     */
+    private void onSessionLoaded() {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
 
         // Check if user is already logged in
-        if (sessionManager.isLoggedIn()) {
-            redirectToDashboard(sessionManager.getUserRole());
+        if (sessionManager.isLoggedIn() && redirectToDashboard(sessionManager.getUserRole())) {
             return;
         }
+        showLoginForm();
+    }
 
-        // Set up login button click listener
-        binding.btnLogin.setOnClickListener(v -> handleLogin());
+    /**
+     * Inflate the login form (only needed when nobody is logged in)
+     */
+    private void showLoginForm() {
+        Trace.beginSection("LoginActivity.showLoginForm");
+        try {
+            // Initialize ViewBinding
+            binding = ActivityLoginBinding.inflate(getLayoutInflater());
+            setContentView(binding.getRoot());
+
+            // Set up login button click listener
+            binding.btnLogin.setOnClickListener(v -> handleLogin());
+        } finally {
+            Trace.endSection();
+        }
+        reportFullyDrawn();
     }
 
     /**
@@ -71,6 +96,7 @@ public class LoginActivity extends AppCompatActivity {
         AppDatabase.databaseWriteExecutor.execute(() -> {
             try {
                 // Check credentials in database
+                AppDatabase database = AppDatabase.getDatabase(getApplicationContext());
                 User user = database.userDao().login(username, password);
 
                 // Update UI on main thread
@@ -108,8 +134,9 @@ public class LoginActivity extends AppCompatActivity {
 
     /**
      * Redirect user to appropriate dashboard based on role
+     * Returns false if the role is not recognised
      */
-    private void redirectToDashboard(String role) {
+    private boolean redirectToDashboard(String role) {
         Intent intent;
 
         if ("Admin".equals(role)) {
@@ -118,12 +145,13 @@ public class LoginActivity extends AppCompatActivity {
             intent = new Intent(this, UserActivity.class);
         } else {
             Toast.makeText(this, "Invalid user role", Toast.LENGTH_SHORT).show();
-            return;
+            return false;
         }
 
         // Start dashboard activity and finish login activity
         startActivity(intent);
         finish(); // Prevent going back to login screen
+        return true;
     }
 }
 
@@ -0,0 +1,184 @@
+package com.example.glbmodelmanager;
+
+import android.content.Context;
+import android.text.InputType;
+import android.util.DisplayMetrics;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.glbmodelmanager.adapter.GlbModelAdapter;
+import com.example.glbmodelmanager.data.ModelQuery;
+import com.example.glbmodelmanager.utils.ListSettings;
+
+/**
+ * Sort, filter and layout controls shared by both dashboards
+ * Holds the current query; a change is handed to the dashboard, which re-queries
+ * the database for the new list
+ */
+class ModelListControls {
+
+    /**
+     * Receives the query after the user changed the sort order or filters
+     */
+    interface OnQueryChangedListener {
+        void onQueryChanged(ModelQuery query);
+    }
+
+    private static final long MB = 1024L * 1024L;
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    // Grid cells are about this wide, with at least two columns
+    private static final int GRID_CELL_DP = 160;
+    private static final int MIN_GRID_COLUMNS = 2;
+
+    // Card margin of item_glb_model_grid on each side
+    private static final int CARD_MARGIN_DP = 8;
+
+    private final Context context;
+    private final ListSettings settings;
+    private final OnQueryChangedListener listener;
+    private ModelQuery query;
+
+    ModelListControls(Context context, OnQueryChangedListener listener) {
+        this.context = context;
+        this.settings = new ListSettings(context);
+        this.listener = listener;
+        this.query = new ModelQuery(settings.getSort());
+    }
+
+    ModelQuery getQuery() {
+        return query;
+    }
+
+    boolean isGrid() {
+        return settings.isGrid();
+    }
+
+    /**
+     * Switch between rows and a grid of previews and remember the choice
+     */
+    void toggleLayout(RecyclerView list, GlbModelAdapter adapter) {
+        settings.setGrid(!settings.isGrid());
+        applyLayout(list, adapter);
+    }
+
+    /**
+     * Give the list the chosen layout manager and the adapter the matching item layout
+     */
+    void applyLayout(RecyclerView list, GlbModelAdapter adapter) {
+        if (!settings.isGrid()) {
+            list.setLayoutManager(new LinearLayoutManager(context));
+            adapter.setGridMode(false, 0);
+            return;
+        }
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int columns = Math.max(MIN_GRID_COLUMNS, (int) (metrics.widthPixels / (GRID_CELL_DP * metrics.density)));
+        int previewSize = metrics.widthPixels / columns - (int) (2 * CARD_MARGIN_DP * metrics.density);
+
+        GridLayoutManager layout = new GridLayoutManager(context, columns);
+        // Bind the next row in idle frame time, so its decode starts before it is on screen
+        layout.setItemPrefetchEnabled(true);
+        list.setLayoutManager(layout);
+        // Cells scrolled just off screen stay bound, so a small scroll back does not decode again
+        list.setItemViewCacheSize(columns * 2);
+        adapter.setGridMode(true, previewSize);
+    }
+
+    /**
+     * Let the user pick the sort order
+     */
+    void showSortDialog() {
+        new AlertDialog.Builder(context)
+                .setTitle("Sort Models")
+                .setSingleChoiceItems(ModelQuery.SORT_LABELS, query.getSort(), (dialog, which) -> {
+                    settings.setSort(which);
+                    update(query.withSort(which));
+                    dialog.dismiss();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * Let the user set size, name, date and vertex count filters
+     * Empty fields leave that side of the range open
+     */
+    void showFilterDialog() {
+        EditText minSize = numberField("Min size (MB)", query.getMinSize(), MB);
+        EditText maxSize = numberField("Max size (MB)", query.getMaxSize(), MB);
+        EditText prefix = new EditText(context);
+        prefix.setHint("Name starts with");
+        prefix.setInputType(InputType.TYPE_CLASS_TEXT);
+        prefix.setText(query.getNamePrefix());
+        EditText days = new EditText(context);
+        days.setHint("Added in the last (days)");
+        days.setInputType(InputType.TYPE_CLASS_NUMBER);
+        if (query.getMinDate() != ModelQuery.ANY) {
+            days.setText(String.valueOf(Math.max(1,
+                    (System.currentTimeMillis() - query.getMinDate() + DAY_MS - 1) / DAY_MS)));
+        }
+        EditText minVertices = numberField("Min vertices", query.getMinVertices(), 1);
+        EditText maxVertices = numberField("Max vertices", query.getMaxVertices(), 1);
+
+        LinearLayout layout = new LinearLayout(context);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        int padding = (int) (16 * context.getResources().getDisplayMetrics().density);
+        layout.setPadding(padding, padding / 2, padding, 0);
+        layout.addView(prefix);
+        layout.addView(minSize);
+        layout.addView(maxSize);
+        layout.addView(days);
+        layout.addView(minVertices);
+        layout.addView(maxVertices);
+
+        new AlertDialog.Builder(context)
+                .setTitle("Filter Models")
+                .setView(layout)
+                .setPositiveButton("Apply", (dialog, which) -> {
+                    try {
+                        ModelQuery filtered = query.withoutFilters();
+                        filtered.setNamePrefix(prefix.getText().toString().trim());
+                        filtered.setSizeRange(readNumber(minSize, MB), readNumber(maxSize, MB));
+                        long withinDays = readNumber(days, DAY_MS);
+                        filtered.setDateRange(withinDays == ModelQuery.ANY ? ModelQuery.ANY
+                                : System.currentTimeMillis() - withinDays, ModelQuery.ANY);
+                        filtered.setVertexRange(readNumber(minVertices, 1), readNumber(maxVertices, 1));
+                        update(filtered);
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(context, "Please enter numbers", Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNeutralButton("Clear", (dialog, which) -> update(query.withoutFilters()))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void update(ModelQuery newQuery) {
+        query = newQuery;
+        listener.onQueryChanged(newQuery);
+    }
+
+    private EditText numberField(String hint, long value, long unit) {
+        EditText field = new EditText(context);
+        field.setHint(hint);
+        field.setInputType(InputType.TYPE_CLASS_NUMBER);
+        if (value != ModelQuery.ANY) {
+            field.setText(String.valueOf(value / unit));
+        }
+        return field;
+    }
+
+    /**
+     * Field value times unit, or ANY if the field is empty
+     */
+    private static long readNumber(EditText field, long unit) {
+        String text = field.getText().toString().trim();
+        return text.isEmpty() ? ModelQuery.ANY : Long.parseLong(text) * unit;
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.glbmodelmanager;
+
+import android.annotation.SuppressLint;
+import android.graphics.Bitmap;
+import android.os.Bundle;
+import android.view.MenuItem;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.glbmodelmanager.databinding.ActivityPreviewBinding;
+import com.example.glbmodelmanager.preview.OrbitCamera;
+import com.example.glbmodelmanager.preview.PreviewLoader;
+import com.example.glbmodelmanager.preview.PreviewMesh;
+import com.example.glbmodelmanager.preview.SoftwareRasterizer;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Preview Activity - Built-in 3D preview of a model file
+ * Renders on the CPU with SoftwareRasterizer, so it works on any device.
+ * The model loads in stages (bounds box, coarse mesh, full mesh filling in) and
+ * each stage is shown as soon as it is ready. The full mesh is capped to what the
+ * heap can hold; if it still runs out of memory the last stage stays on screen.
+ * Drag to orbit, pinch to zoom
+ */
+public class PreviewActivity extends AppCompatActivity {
+
+    public static final String EXTRA_PATH = "path";
+    public static final String EXTRA_NAME = "name";
+
+    // Frames are rendered at 1/RENDER_SCALE of the view size and scaled up
+    private static final int RENDER_SCALE = 2;
+
+    // Triangle budget of the coarse stage
+    private static final int COARSE_TRIANGLES = 20000;
+
+    private ActivityPreviewBinding binding;
+    private final OrbitCamera camera = new OrbitCamera();
+    private SoftwareRasterizer rasterizer;
+    private PreviewLoader loader;
+    private ExecutorService loadExecutor;
+    private ExecutorService renderExecutor;
+
+    private volatile PreviewMesh mesh;
+    private volatile String stageText = "Loading…";
+    private boolean framed;
+
+    // Two bitmaps, so one can be filled while the other is on screen
+    private final Bitmap[] bitmaps = new Bitmap[2];
+    private int frameCount;
+
+    // Set while a render is queued; further requests until it starts are merged into it
+    private final AtomicBoolean renderQueued = new AtomicBoolean();
+
+    private ScaleGestureDetector scaleDetector;
+    private float lastX;
+    private float lastY;
+    private int lastPointerCount;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        binding = ActivityPreviewBinding.inflate(getLayoutInflater());
+        setContentView(binding.getRoot());
+
+        // Set up toolbar with back navigation
+        setSupportActionBar(binding.toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+            getSupportActionBar().setTitle(getIntent().getStringExtra(EXTRA_NAME));
+        }
+
+        rasterizer = new SoftwareRasterizer(Runtime.getRuntime().availableProcessors());
+        // Loading has its own thread: a large model must not hold up database writes
+        loadExecutor = Executors.newSingleThreadExecutor();
+        renderExecutor = Executors.newSingleThreadExecutor();
+        loader = new PreviewLoader(COARSE_TRIANGLES, PreviewLoader.maxTriangles(Runtime.getRuntime().maxMemory()));
+        setupGestures();
+        binding.tvPreviewStatus.setText(stageText);
+
+        loadModel(new File(getIntent().getStringExtra(EXTRA_PATH)));
+    }
+
+    /**
+     * Load the model in the background, rendering each stage as it arrives
+     */
+    private void loadModel(File file) {
+        loadExecutor.execute(() -> {
+            try {
+                loader.load(file, (stage, stageMesh) -> {
+                    synchronized (camera) {
+                        if (!framed) {
+                            camera.frame(stageMesh.getBounds());
+                            framed = true;
+                        }
+                    }
+                    if (stage == PreviewLoader.STAGE_BOUNDS) {
+                        stageText = "Loading geometry…";
+                    } else if (stage == PreviewLoader.STAGE_COARSE) {
+                        stageText = String.format(Locale.US, "Coarse: %,d triangles, loading the rest…",
+                                stageMesh.getTriangleCount());
+                    } else if (stage == PreviewLoader.STAGE_PARTIAL) {
+                        stageText = "Loading full detail…";
+                    } else if (loader.isReduced()) {
+                        stageText = String.format(Locale.US, "%,d of %,d triangles (reduced to fit memory)",
+                                stageMesh.getTriangleCount(), loader.getSourceTriangles());
+                    } else {
+                        stageText = String.format(Locale.US, "%,d triangles", stageMesh.getTriangleCount());
+                    }
+                    if (stage == PreviewLoader.STAGE_FULL && loader.getSkippedReason() != null) {
+                        stageText += " (some parts not shown: " + loader.getSkippedReason() + ")";
+                    }
+                    mesh = stageMesh;
+                    requestRender();
+                });
+            } catch (OutOfMemoryError e) {
+                // The half-built stage is garbage now; keep showing the last one that finished
+                if (mesh != null) {
+                    stageText = "Full mesh does not fit in memory";
+                    requestRender();
+                } else {
+                    runOnUiThread(() -> binding.tvPreviewStatus.setText("Model is too large to preview"));
+                }
+            } catch (Exception e) {
+                runOnUiThread(() -> {
+                    binding.tvPreviewStatus.setText("Preview failed");
+                    Toast.makeText(this, "Error loading preview: " + e.getMessage(),
+                            Toast.LENGTH_SHORT).show();
+                });
+            }
+        });
+    }
+
+    /**
+     * Drag with one finger to orbit, pinch to zoom
+     */
+    @SuppressLint("ClickableViewAccessibility")
+    private void setupGestures() {
+        scaleDetector = new ScaleGestureDetector(this, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                synchronized (camera) {
+                    camera.zoom(detector.getScaleFactor());
+                }
+                requestRender();
+                return true;
+            }
+        });
+
+        binding.ivPreview.setOnTouchListener((view, event) -> {
+            scaleDetector.onTouchEvent(event);
+            int pointers = event.getPointerCount();
+            if (event.getActionMasked() == MotionEvent.ACTION_MOVE && pointers == 1
+                    && lastPointerCount == 1 && !scaleDetector.isInProgress() && view.getWidth() > 0) {
+                // A drag across the whole view turns the model half way round
+                float radiansPerPixel = (float) Math.PI / view.getWidth();
+                synchronized (camera) {
+                    camera.orbit(-(event.getX() - lastX) * radiansPerPixel,
+                            (event.getY() - lastY) * radiansPerPixel);
+                }
+                requestRender();
+            }
+            lastX = event.getX();
+            lastY = event.getY();
+            lastPointerCount = event.getActionMasked() == MotionEvent.ACTION_UP ? 0 : pointers;
+            return true;
+        });
+    }
+
+    /**
+     * Queue a frame on the render thread unless one is already waiting
+     */
+    private void requestRender() {
+        if (renderQueued.compareAndSet(false, true)) {
+            try {
+                renderExecutor.execute(this::renderFrame);
+            } catch (RejectedExecutionException e) {
+                // Activity is closing
+            }
+        }
+    }
+
+    /**
+     * Render the current mesh and hand the bitmap to the UI thread (render thread only)
+     */
+    private void renderFrame() {
+        renderQueued.set(false);
+        PreviewMesh current = mesh;
+        int width = binding.ivPreview.getWidth() / RENDER_SCALE;
+        int height = binding.ivPreview.getHeight() / RENDER_SCALE;
+        if (current == null || isFinishing()) {
+            return;
+        }
+        if (width == 0 || height == 0) {
+            // Not laid out yet, try again once it is
+            binding.ivPreview.post(this::requestRender);
+            return;
+        }
+
+        float[] viewProjection;
+        float[] eye;
+        synchronized (camera) {
+            viewProjection = camera.viewProjection(width / (float) height);
+            eye = camera.getEye();
+        }
+
+        long start = System.nanoTime();
+        int[] pixels;
+        rasterizer.setSize(width, height);
+        try {
+            pixels = rasterizer.render(current, viewProjection, eye);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long frameMs = (System.nanoTime() - start) / 1_000_000;
+
+        int slot = frameCount++ % 2;
+        Bitmap bitmap = bitmaps[slot];
+        if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            bitmaps[slot] = bitmap;
+        }
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+
+        Bitmap frame = bitmap;
+        String status = stageText + String.format(Locale.US, "  |  %d ms/frame", frameMs);
+        runOnUiThread(() -> {
+            binding.ivPreview.setImageBitmap(frame);
+            binding.tvPreviewStatus.setText(status);
+        });
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        loader.cancel();
+        loadExecutor.shutdown();
+
+        // Let a frame in progress finish before the rasterizer threads go away
+        renderExecutor.execute(rasterizer::close);
+        renderExecutor.shutdown();
+    }
+}
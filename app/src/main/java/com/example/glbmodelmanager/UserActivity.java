@@ -16,17 +16,30 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.core.content.FileProvider;
-import androidx.recyclerview.widget.LinearLayoutManager;
 
 import com.example.glbmodelmanager.adapter.GlbModelAdapter;
+import com.example.glbmodelmanager.cache.AppCaches;
 import com.example.glbmodelmanager.data.AppDatabase;
 import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.data.ModelChangeFeed;
+import com.example.glbmodelmanager.data.ModelPart;
+import com.example.glbmodelmanager.data.ModelQuery;
 import com.example.glbmodelmanager.databinding.ActivityUserBinding;
+import com.example.glbmodelmanager.diagnostics.Telemetry;
+import com.example.glbmodelmanager.glb.RuntimeCost;
+import com.example.glbmodelmanager.glb.ValidationReport;
+import com.example.glbmodelmanager.storage.ModelStorage;
+import com.example.glbmodelmanager.utils.DeviceBudgetSettings;
 import com.example.glbmodelmanager.utils.SessionManager;
+import com.example.glbmodelmanager.validation.ModelValidator;
+import com.example.glbmodelmanager.work.ModelWorkQueue;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * User Activity - Dashboard for regular users
@@ -37,7 +50,27 @@ public class UserActivity extends AppCompatActivity implements GlbModelAdapter.O
     private ActivityUserBinding binding;
     private AppDatabase database;
     private SessionManager sessionManager;
+    private ModelStorage modelStorage;
+    private ModelValidator modelValidator;
     private GlbModelAdapter adapter;
+    private ModelListControls listControls;
+    private CharSequence emptyStateText;
+
+    // Patches the list from database changes instead of re-running the full query
+    private final ModelChangeFeed.Listener modelListener = new ModelChangeFeed.Listener() {
+        @Override
+        public void onSnapshot(List<GlbModel> models) {
+            AppCaches.catalog().put(listControls.getQuery().cacheKey(), models);
+            showModels(models);
+        }
+
+        @Override
+        public void onChanges(List<ModelChangeFeed.Delta> deltas) {
+            adapter.applyChanges(deltas);
+            AppCaches.catalog().put(listControls.getQuery().cacheKey(), new ArrayList<>(adapter.getModels()));
+            updateEmptyState();
+        }
+    };
 
     // Storage permission code
     private static final int STORAGE_PERMISSION_CODE = 100;
@@ -51,6 +84,8 @@ public class UserActivity extends AppCompatActivity implements GlbModelAdapter.O
         // Initialize database and session
         database = AppDatabase.getDatabase(this);
         sessionManager = new SessionManager(this);
+        modelStorage = new ModelStorage(this);
+        modelValidator = new ModelValidator(this);
 
         // Check storage permission
         checkStoragePermission();
@@ -58,14 +93,21 @@ public class UserActivity extends AppCompatActivity implements GlbModelAdapter.O
         // Set up toolbar
         setSupportActionBar(binding.toolbar);
 
-        // Display welcome message with username
-        binding.tvWelcome.setText("Welcome, " + sessionManager.getUsername());
+        // Display welcome message with username (after process restarts the
+        // dashboard can open before the session has been read)
+        sessionManager.whenLoaded(() -> binding.tvWelcome.setText("Welcome, " + sessionManager.getUsername()));
 
-        // Set up RecyclerView
+        // Set up RecyclerView, sorted and filtered as chosen in the toolbar menu
         setupRecyclerView();
+        listControls = new ModelListControls(this, this::onQueryChanged);
+        listControls.applyLayout(binding.rvModels, adapter);
+        emptyStateText = binding.tvEmptyState.getText();
 
         // Observe database changes
         observeModels();
+
+        // Show when new models are still being processed
+        observeQueue();
     }
 
     /**
@@ -83,11 +125,11 @@ public class UserActivity extends AppCompatActivity implements GlbModelAdapter.O
     }
 
     /**
-     * Set up RecyclerView with adapter
+     * Set up RecyclerView with adapter (the layout manager follows the list settings)
      */
     private void setupRecyclerView() {
         adapter = new GlbModelAdapter(false, this); // false = isAdmin (user mode)
-        binding.rvModels.setLayoutManager(new LinearLayoutManager(this));
+        adapter.setBudget(new DeviceBudgetSettings(this).getBudget());
         binding.rvModels.setAdapter(adapter);
     }
 
@@ -95,17 +137,66 @@ public class UserActivity extends AppCompatActivity implements GlbModelAdapter.O
      * Observe changes in GLB models from database
      */
     private void observeModels() {
-        database.glbModelDao().getAllModels().observe(this, models -> {
-            if (models == null || models.isEmpty()) {
-                // Show empty state
-                binding.rvModels.setVisibility(View.GONE);
-                binding.tvEmptyState.setVisibility(View.VISIBLE);
-            } else {
-                // Show models list
-                binding.rvModels.setVisibility(View.VISIBLE);
-                binding.tvEmptyState.setVisibility(View.GONE);
-                adapter.submitList(models);
-            }
+        // Show the last known list right away; the feed's snapshot replaces it
+        ModelQuery query = listControls.getQuery();
+        adapter.setQuery(query);
+        List<GlbModel> cached = AppCaches.catalog().get(query.cacheKey());
+        if (cached != null) {
+            showModels(cached);
+        }
+
+        ModelChangeFeed.get(this).addListener(modelListener, query);
+    }
+
+    /**
+     * Re-query the list after the sort order or filters changed
+     */
+    private void onQueryChanged(ModelQuery query) {
+        adapter.setQuery(query);
+        List<GlbModel> cached = AppCaches.catalog().get(query.cacheKey());
+        if (cached != null) {
+            showModels(cached);
+        }
+        ModelChangeFeed.get(this).reload(modelListener, query);
+    }
+
+    @Override
+    protected void onDestroy() {
+        ModelChangeFeed.get(this).removeListener(modelListener);
+        adapter.release();
+        super.onDestroy();
+    }
+
+    /**
+     * Show the models, or the empty state if there are none
+     */
+    private void showModels(List<GlbModel> models) {
+        adapter.submitList(models != null ? models : new ArrayList<>());
+        updateEmptyState();
+    }
+
+    private void updateEmptyState() {
+        if (adapter.getItemCount() == 0) {
+            // Show empty state
+            binding.tvEmptyState.setText(listControls.getQuery().hasFilters()
+                    ? "No models match the filters." : emptyStateText);
+            binding.rvModels.setVisibility(View.GONE);
+            binding.tvEmptyState.setVisibility(View.VISIBLE);
+        } else {
+            // Show models list
+            binding.rvModels.setVisibility(View.VISIBLE);
+            binding.tvEmptyState.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * Observe the background queue so users know more models are on the way
+     */
+    private void observeQueue() {
+        ModelWorkQueue.observe(this).observe(this, infos -> {
+            String status = ModelWorkQueue.describe(infos);
+            binding.tvQueueStatus.setVisibility(status == null ? View.GONE : View.VISIBLE);
+            binding.tvQueueStatus.setText(status);
         });
     }
 
@@ -126,28 +217,144 @@ public class UserActivity extends AppCompatActivity implements GlbModelAdapter.O
     }
 
     /**
-     * View GLB model - Show options dialog
+     * View GLB model - Offer the parts of a split model, then show options dialog
      */
     private void viewModel(GlbModel model) {
-        File file = new File(model.getFilePath());
+        AppDatabase.databaseWriteExecutor.execute(() -> {
+            try {
+                List<ModelPart> parts = database.glbModelDao().getParts(model.getId());
+                runOnUiThread(() -> {
+                    if (parts.isEmpty()) {
+                        openModel(model);
+                    } else {
+                        chooseModelPart(model, parts);
+                    }
+                });
+            } catch (Exception e) {
+                runOnUiThread(() ->
+                        Toast.makeText(this, "Error opening model: " + e.getMessage(),
+                                Toast.LENGTH_SHORT).show()
+                );
+            }
+        });
+    }
+
+    /**
+     * Let the user open a split model whole or just one of its parts
+     * A part opens straight from its own file, without preparing the whole model
+     */
+    private void chooseModelPart(GlbModel model, List<ModelPart> parts) {
+        String[] labels = new String[parts.size() + 1];
+        labels[0] = "Whole model";
+        for (int i = 0; i < parts.size(); i++) {
+            ModelPart part = parts.get(i);
+            labels[i + 1] = String.format(Locale.getDefault(), "%s (%.1f MB)", part.getName(),
+                    part.getFileSize() / (1024.0 * 1024.0));
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(model.getName())
+                .setItems(labels, (dialog, which) -> {
+                    if (which == 0) {
+                        openModel(model);
+                    } else {
+                        showPartOptions(model, parts.get(which - 1));
+                    }
+                })
+                .show();
+    }
 
+    /**
+     * Open the whole model file (decompressing it first if needed)
+     */
+    private void openModel(GlbModel model) {
+        boolean compressed = ModelStorage.isCompressed(model);
+        if (compressed) {
+            // Not opened for a while: decompress it in the background first
+            Toast.makeText(this, "Preparing " + model.getName() + "…", Toast.LENGTH_SHORT).show();
+        }
+        // The validation report is read on the way, so a broken file comes with a warning
+        AppDatabase.databaseWriteExecutor.execute(() -> {
+            try {
+                File file = modelStorage.open(model);
+                if (compressed) {
+                    ModelWorkQueue.enqueueStorageCheck(this);
+                }
+                ValidationReport report = modelValidator.getStored(model.getId());
+                runOnUiThread(() -> showOpenOptions(model, file, report));
+            } catch (Exception e) {
+                runOnUiThread(() ->
+                        Toast.makeText(this, "Error opening model: " + e.getMessage(),
+                                Toast.LENGTH_SHORT).show()
+                );
+            }
+        });
+    }
+
+    /**
+     * Show open options for a model file that is ready to read
+     */
+    private void showOpenOptions(GlbModel model, File file, ValidationReport report) {
         if (!file.exists()) {
             Toast.makeText(this, "Model file not found", Toast.LENGTH_SHORT).show();
             return;
         }
 
+        String message = "How would you like to open: " + model.getName() + "?";
+        if (report != null && !report.isValid()) {
+            message += "\n\nThis file has " + report.getSummary() + " and may not display correctly.";
+        }
+        RuntimeCost.Budget budget = new DeviceBudgetSettings(this).getBudget();
+        List<String> overruns = budget.overruns(model.getGpuBytes(), model.getDrawCalls(),
+                model.getMaterialCount());
+        if (!overruns.isEmpty()) {
+            message += "\n\nOver the " + budget.name + " device budget: " + String.join(", ", overruns) + ".";
+        }
+
         // Show dialog with options
         new AlertDialog.Builder(this)
                 .setTitle("Open 3D Model")
-                .setMessage("How would you like to open: " + model.getName() + "?")
+                .setMessage(message)
                 .setPositiveButton("GLB Viewer", (dialog, which) ->
                         openWithGlbViewer(file, model.getName()))
                 .setNegativeButton("Other Apps", (dialog, which) ->
                         openWithOtherApps(file))
-                .setNeutralButton("Cancel", null)
+                .setNeutralButton("Preview", (dialog, which) ->
+                        openPreview(file, model.getName()))
                 .show();
     }
 
+    /**
+     * Show open options for one part of a split model
+     */
+    private void showPartOptions(GlbModel model, ModelPart part) {
+        File file = new File(part.getFilePath());
+        if (!file.exists()) {
+            Toast.makeText(this, "Model part not found", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String name = model.getName() + " - " + part.getName();
+        new AlertDialog.Builder(this)
+                .setTitle("Open Model Part")
+                .setMessage("How would you like to open: " + name + "?")
+                .setPositiveButton("GLB Viewer", (dialog, which) ->
+                        openWithGlbViewer(file, name))
+                .setNegativeButton("Other Apps", (dialog, which) ->
+                        openWithOtherApps(file))
+                .setNeutralButton("Preview", (dialog, which) ->
+                        openPreview(file, name))
+                .show();
+    }
+
+    /**
+     * Open the built-in CPU-rendered preview
+     */
+    private void openPreview(File file, String modelName) {
+        Intent intent = new Intent(this, PreviewActivity.class);
+        intent.putExtra(PreviewActivity.EXTRA_PATH, file.getAbsolutePath());
+        intent.putExtra(PreviewActivity.EXTRA_NAME, modelName);
+        startActivity(intent);
+    }
+
     /**
      * Open with GLB Viewer app
      */
@@ -175,6 +382,8 @@ public class UserActivity extends AppCompatActivity implements GlbModelAdapter.O
         }
 
         // GLB Viewer is installed - copy file to Downloads folder
+        Telemetry.Operation operation = Telemetry.get().begin(Telemetry.KIND_EXPORT);
+        operation.setName(modelName);
         try {
             // Get Downloads directory
             File downloadsDir = android.os.Environment.getExternalStoragePublicDirectory(
@@ -192,9 +401,13 @@ public class UserActivity extends AppCompatActivity implements GlbModelAdapter.O
             File destFile = new File(glbDir, fileName);
 
             // Copy file
+            long copyStart = System.nanoTime();
             copyFile(sourceFile, destFile);
+            operation.add(Telemetry.STAGE_COPY, copyStart);
+            operation.addBytes(destFile.length());
 
             // Show instructions dialog
+            long notifyStart = System.nanoTime();
             String instructions = "File saved to:\nDownloads/GLBModels/" + fileName +
                     "\n\n1. GLB Viewer will open now\n2. Tap the menu (☰)\n3. Select 'Open File'\n4. Navigate to Downloads/GLBModels\n5. Select: " + fileName;
 
@@ -211,8 +424,11 @@ public class UserActivity extends AppCompatActivity implements GlbModelAdapter.O
                     .setNegativeButton("Cancel", null)
                     .setCancelable(false)
                     .show();
+            operation.add(Telemetry.STAGE_NOTIFY, notifyStart);
+            operation.finish(null);
 
         } catch (Exception e) {
+            operation.finish(e.getMessage());
             Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
         }
     }
@@ -266,6 +482,7 @@ public class UserActivity extends AppCompatActivity implements GlbModelAdapter.O
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.user_menu, menu);
+        menu.findItem(R.id.action_grid).setChecked(listControls.isGrid());
         return true;
     }
 
@@ -278,6 +495,19 @@ public class UserActivity extends AppCompatActivity implements GlbModelAdapter.O
             logout();
             return true;
         }
+        if (item.getItemId() == R.id.action_sort) {
+            listControls.showSortDialog();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_filter) {
+            listControls.showFilterDialog();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_grid) {
+            listControls.toggleLayout(binding.rvModels, adapter);
+            item.setChecked(listControls.isGrid());
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
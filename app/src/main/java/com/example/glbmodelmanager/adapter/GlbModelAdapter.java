@@ -4,17 +4,26 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageButton;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.glbmodelmanager.R;
 import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.data.GlbModelChange;
+import com.example.glbmodelmanager.data.ModelChangeFeed;
+import com.example.glbmodelmanager.data.ModelQuery;
+import com.example.glbmodelmanager.glb.RuntimeCost;
 import com.google.android.material.button.MaterialButton;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -25,16 +34,52 @@ import java.util.Locale;
  */
 public class GlbModelAdapter extends RecyclerView.Adapter<GlbModelAdapter.ModelViewHolder> {
 
+    public static final int VIEW_TYPE_LIST = 0;
+    public static final int VIEW_TYPE_GRID = 1;
+
+    // Grid rows whose previews are decoded before they scroll into view
+    private static final int PRELOAD_ROWS = 2;
+
     private List<GlbModel> models = new ArrayList<>();
+
+    // Sort order and filters of the list, as used for the last snapshot
+    private ModelQuery query = new ModelQuery(ModelQuery.SORT_NEWEST);
+    private Comparator<GlbModel> order = query.comparator();
     private boolean isAdmin;
     private OnItemClickListener listener;
 
+    // Device budget rows are checked against; null shows the cost without a verdict
+    private RuntimeCost.Budget budget;
+
+    // Shared by all rows; creating a formatter per bind is slow with large libraries
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
+    private final Date date = new Date();
+
+    // Grid of previews instead of text rows
+    private boolean grid;
+    private int thumbnailSize;
+    private ThumbnailLoader thumbnails;
+
+    private final RecyclerView.OnScrollListener preloader = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            if (grid && thumbnails != null && dy != 0
+                    && recyclerView.getLayoutManager() instanceof GridLayoutManager) {
+                preload((GridLayoutManager) recyclerView.getLayoutManager(), dy > 0);
+            }
+        }
+    };
+
     /**
      * Interface for handling click events
      */
     public interface OnItemClickListener {
         void onViewClick(GlbModel model);
         void onDeleteClick(GlbModel model);
+
+        // Long press on a row (admin only)
+        default void onModelLongClick(GlbModel model) {
+        }
     }
 
     /**
@@ -51,7 +96,9 @@ public class GlbModelAdapter extends RecyclerView.Adapter<GlbModelAdapter.ModelV
     public static class ModelViewHolder extends RecyclerView.ViewHolder {
         TextView tvModelName;
         TextView tvModelSize;
-        TextView tvModelDate;
+        TextView tvModelDate; // List rows only
+        TextView tvModelCost; // List rows only
+        ImageView ivThumbnail; // Grid cells only
         MaterialButton btnView;
         ImageButton btnDelete;
 
@@ -60,14 +107,32 @@ public class GlbModelAdapter extends RecyclerView.Adapter<GlbModelAdapter.ModelV
             tvModelName = itemView.findViewById(R.id.tvModelName);
             tvModelSize = itemView.findViewById(R.id.tvModelSize);
             tvModelDate = itemView.findViewById(R.id.tvModelDate);
+            tvModelCost = itemView.findViewById(R.id.tvModelCost);
+            ivThumbnail = itemView.findViewById(R.id.ivThumbnail);
             btnView = itemView.findViewById(R.id.btnView);
             btnDelete = itemView.findViewById(R.id.btnDelete);
         }
     }
 
+    @Override
+    public int getItemViewType(int position) {
+        return grid ? VIEW_TYPE_GRID : VIEW_TYPE_LIST;
+    }
+
     @NonNull
     @Override
     public ModelViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        if (viewType == VIEW_TYPE_GRID) {
+            View view = LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_glb_model_grid, parent, false);
+            ModelViewHolder holder = new ModelViewHolder(view);
+            // Square previews as wide as the cell
+            holder.ivThumbnail.getLayoutParams().height = thumbnailSize;
+            if (thumbnails == null) {
+                thumbnails = new ThumbnailLoader(parent.getContext(), thumbnailSize);
+            }
+            return holder;
+        }
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_glb_model, parent, false);
         return new ModelViewHolder(view);
@@ -80,12 +145,28 @@ public class GlbModelAdapter extends RecyclerView.Adapter<GlbModelAdapter.ModelV
         // Set model name
         holder.tvModelName.setText(model.getName());
 
-        // Format and set file size
-        holder.tvModelSize.setText(formatFileSize(model.getFileSize()));
+        // Format and set file size, with the triangle count once the geometry has been read
+        String size = formatFileSize(model.getFileSize());
+        if (model.getTriangleCount() >= 0) {
+            size += " · " + formatCount(model.getTriangleCount()) + " triangles";
+        }
+        holder.tvModelSize.setText(size);
 
         // Format and set date
-        SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
-        holder.tvModelDate.setText("Added: " + dateFormat.format(new Date(model.getAddedDate())));
+        if (holder.tvModelDate != null) {
+            date.setTime(model.getAddedDate());
+            holder.tvModelDate.setText("Added: " + dateFormat.format(date));
+        }
+
+        // Runtime cost once the model has been analyzed, flagged when over the device budget
+        if (holder.tvModelCost != null) {
+            bindCost(holder.tvModelCost, model);
+        }
+
+        // Preview, decoded in the background
+        if (holder.ivThumbnail != null && thumbnails != null) {
+            thumbnails.load(model, holder.ivThumbnail);
+        }
 
         // Handle View button click
         holder.btnView.setOnClickListener(v -> {
@@ -102,6 +183,12 @@ public class GlbModelAdapter extends RecyclerView.Adapter<GlbModelAdapter.ModelV
                     listener.onDeleteClick(model);
                 }
             });
+            holder.itemView.setOnLongClickListener(v -> {
+                if (listener != null) {
+                    listener.onModelLongClick(model);
+                }
+                return true;
+            });
         } else {
             holder.btnDelete.setVisibility(View.GONE);
         }
@@ -112,15 +199,173 @@ public class GlbModelAdapter extends RecyclerView.Adapter<GlbModelAdapter.ModelV
         return models.size();
     }
 
+    @Override
+    public void onViewRecycled(@NonNull ModelViewHolder holder) {
+        // The cell shows another model next; its pending decode is not needed anymore
+        if (holder.ivThumbnail != null && thumbnails != null) {
+            thumbnails.recycle(holder.ivThumbnail);
+        }
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(preloader);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(preloader);
+    }
+
+    /**
+     * Switch between text rows and a grid of previews
+     * @param thumbnailSize edge of a preview in pixels (grid only)
+     */
+    public void setGridMode(boolean grid, int thumbnailSize) {
+        if (thumbnails != null && (!grid || thumbnailSize != this.thumbnailSize)) {
+            thumbnails.release();
+            thumbnails = null;
+        }
+        this.grid = grid;
+        this.thumbnailSize = thumbnailSize;
+        notifyDataSetChanged();
+    }
+
+    public boolean isGridMode() {
+        return grid;
+    }
+
+    /**
+     * Device budget to flag rows against
+     */
+    public void setBudget(RuntimeCost.Budget budget) {
+        this.budget = budget;
+        notifyDataSetChanged();
+    }
+
+    private void bindCost(TextView view, GlbModel model) {
+        if (!model.hasRuntimeCost()) {
+            view.setVisibility(View.GONE);
+            return;
+        }
+        String cost = "GPU " + formatFileSize(model.getGpuBytes())
+                + " (" + formatFileSize(model.getTextureBytes()) + " textures) · "
+                + model.getDrawCalls() + " draw calls · " + model.getMaterialCount() + " materials";
+        boolean over = budget != null && !budget.overruns(model.getGpuBytes(), model.getDrawCalls(),
+                model.getMaterialCount()).isEmpty();
+        view.setVisibility(View.VISIBLE);
+        view.setText(over ? "Over " + budget.name + " budget: " + cost : cost);
+        view.setTextColor(ContextCompat.getColor(view.getContext(),
+                over ? android.R.color.holo_red_dark : android.R.color.darker_gray));
+    }
+
+    /**
+     * Stop decoding and let go of all previews (the list is going away)
+     */
+    public void release() {
+        if (thumbnails != null) {
+            thumbnails.release();
+        }
+    }
+
+    /**
+     * Decode previews for the rows just past the visible ones, in the scroll direction
+     */
+    private void preload(GridLayoutManager layout, boolean forward) {
+        int count = layout.getSpanCount() * PRELOAD_ROWS;
+        int from;
+        int to;
+        if (forward) {
+            from = layout.findLastVisibleItemPosition() + 1;
+            to = Math.min(models.size(), from + count);
+        } else {
+            to = layout.findFirstVisibleItemPosition();
+            from = Math.max(0, to - count);
+        }
+        if (from >= 0 && from < to) {
+            thumbnails.preload(models.subList(from, to));
+        }
+    }
+
     /**
      * Update the list of models
      * Called when data changes in database
      */
     public void submitList(List<GlbModel> newModels) {
-        this.models = newModels;
+        this.models = new ArrayList<>(newModels);
         notifyDataSetChanged();
     }
 
+    /**
+     * Sort order and filters for the deltas that follow
+     * The list itself is not re-sorted here; submit the re-queried list afterwards
+     */
+    public void setQuery(ModelQuery query) {
+        this.query = query;
+        this.order = query.comparator();
+    }
+
+    /**
+     * Patch the list with database changes, updating only the affected rows
+     * Models that no longer match the filters leave the list
+     */
+    public void applyChanges(List<ModelChangeFeed.Delta> deltas) {
+        for (ModelChangeFeed.Delta delta : deltas) {
+            int index = indexOf(delta.modelId);
+            if (delta.op == GlbModelChange.OP_DELETE || !query.matches(delta.model)) {
+                if (index >= 0) {
+                    models.remove(index);
+                    notifyItemRemoved(index);
+                }
+                continue;
+            }
+
+            if (index >= 0) {
+                if (order.compare(models.get(index), delta.model) == 0) {
+                    // Same place in the list, just new contents
+                    models.set(index, delta.model);
+                    notifyItemChanged(index);
+                    continue;
+                }
+                models.remove(index);
+                notifyItemRemoved(index);
+            }
+            int position = Collections.binarySearch(models, delta.model, order);
+            position = position < 0 ? -position - 1 : position;
+            models.add(position, delta.model);
+            notifyItemInserted(position);
+        }
+    }
+
+    /**
+     * Models currently shown (owned by the adapter, do not modify)
+     */
+    public List<GlbModel> getModels() {
+        return models;
+    }
+
+    private int indexOf(int modelId) {
+        for (int i = 0; i < models.size(); i++) {
+            if (models.get(i).getId() == modelId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Short form of a large count, e.g. 12.3k or 1.2M
+     */
+    private String formatCount(int count) {
+        if (count < 1000) {
+            return String.valueOf(count);
+        } else if (count < 1_000_000) {
+            return String.format(Locale.getDefault(), "%.1fk", count / 1000.0);
+        } else {
+            return String.format(Locale.getDefault(), "%.1fM", count / 1_000_000.0);
+        }
+    }
+
     /**
      * Helper function to format file size in human-readable format
      */
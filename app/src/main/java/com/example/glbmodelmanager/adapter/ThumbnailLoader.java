@@ -0,0 +1,260 @@
+package com.example.glbmodelmanager.adapter;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.ImageView;
+
+import androidx.annotation.MainThread;
+
+import com.example.glbmodelmanager.cache.AppCaches;
+import com.example.glbmodelmanager.cache.BitmapPool;
+import com.example.glbmodelmanager.cache.ManagedCache;
+import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.glb.GlbFile;
+import com.example.glbmodelmanager.glb.ThumbnailExtractor;
+import com.example.glbmodelmanager.storage.ModelStorage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads model previews into grid cells off the main thread
+ * Sources, cheapest first: the thumbnail cache, the JPEG written by ThumbnailWorker,
+ * then the first texture embedded in the model's BIN chunk. Decodes reuse pooled
+ * bitmap memory, and a cell that is recycled cancels the decode it was waiting for.
+ * All methods are called on the main thread
+ */
+@MainThread
+public class ThumbnailLoader {
+
+    // Shared by every grid; two decodes at a time keep up with a fling without
+    // competing with the UI thread for more cores
+    private static final ExecutorService DECODER = Executors.newFixedThreadPool(2);
+
+    private static final int PLACEHOLDER = android.R.drawable.ic_menu_view;
+
+    private final File filesDir;
+    private final ThumbnailExtractor extractor;
+    private final ManagedCache<Integer, Bitmap> cache = AppCaches.thumbnails();
+    private final BitmapPool pool = AppCaches.bitmapPool();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Pending decodes by model ID, and the cell each one is for
+    private final Map<Integer, Task> tasks = new HashMap<>();
+    private final Map<ImageView, Task> waiting = new HashMap<>();
+
+    // Bitmap each cell shows; the cell holds a pool reference to it
+    private final Map<ImageView, Bitmap> shown = new HashMap<>();
+
+    // Models without a usable embedded image, so rebinding them does not decode again
+    private final Set<Integer> withoutPreview = new HashSet<>();
+
+    /**
+     * @param size edge of a grid cell in pixels; images are decoded at or just above it
+     */
+    public ThumbnailLoader(Context context, int size) {
+        this.filesDir = context.getFilesDir();
+        this.extractor = new ThumbnailExtractor(size);
+    }
+
+    /**
+     * Show a model's preview in a cell, decoding it in the background if needed
+     */
+    public void load(GlbModel model, ImageView view) {
+        cancel(view);
+        Bitmap cached = cache.get(model.getId());
+        if (cached != null) {
+            show(view, cached);
+            return;
+        }
+        show(view, null);
+        if (withoutPreview.contains(model.getId())) {
+            return;
+        }
+
+        Task task = tasks.get(model.getId());
+        if (task == null) {
+            task = submit(model);
+        } else if (task.target != null) {
+            waiting.remove(task.target);
+        }
+        // Once a cell waits for it, a preload is an ordinary decode and is cancelled with the cell
+        task.target = view;
+        task.preload = false;
+        waiting.put(view, task);
+    }
+
+    /**
+     * Start decoding previews that are about to scroll into view
+     * Earlier preloads that are no longer wanted and have no cell waiting are cancelled
+     */
+    public void preload(List<GlbModel> models) {
+        Set<Integer> wanted = new HashSet<>();
+        for (GlbModel model : models) {
+            wanted.add(model.getId());
+        }
+        for (Iterator<Task> it = tasks.values().iterator(); it.hasNext(); ) {
+            Task task = it.next();
+            if (task.preload && !wanted.contains(task.modelId)) {
+                task.cancel();
+                it.remove();
+            }
+        }
+        for (GlbModel model : models) {
+            int id = model.getId();
+            if (!tasks.containsKey(id) && !withoutPreview.contains(id) && cache.get(id) == null) {
+                submit(model).preload = true;
+            }
+        }
+    }
+
+    /**
+     * A cell was recycled: drop its pending decode and its bitmap
+     */
+    public void recycle(ImageView view) {
+        cancel(view);
+        show(view, null);
+    }
+
+    /**
+     * Cancel everything and let go of every shown bitmap (the grid is going away)
+     */
+    public void release() {
+        for (Task task : tasks.values()) {
+            task.target = null;
+            task.cancel();
+        }
+        tasks.clear();
+        waiting.clear();
+        for (ImageView view : new ArrayList<>(shown.keySet())) {
+            show(view, null);
+        }
+    }
+
+    private Task submit(GlbModel model) {
+        Task task = new Task(model.getId(), model.getFilePath(), ModelStorage.isCompressed(model));
+        tasks.put(task.modelId, task);
+        task.future = DECODER.submit(task);
+        return task;
+    }
+
+    private void cancel(ImageView view) {
+        Task task = waiting.remove(view);
+        if (task != null && task.target == view) {
+            task.target = null;
+            task.cancel();
+            tasks.remove(task.modelId);
+        }
+    }
+
+    /**
+     * Put a bitmap (or the placeholder for null) in a cell, moving the pool reference
+     */
+    private void show(ImageView view, Bitmap bitmap) {
+        Bitmap previous = bitmap != null ? shown.put(view, bitmap) : shown.remove(view);
+        if (previous == bitmap) {
+            return;
+        }
+        if (bitmap != null) {
+            pool.acquire(bitmap);
+            view.setScaleType(ImageView.ScaleType.CENTER_CROP);
+            view.setImageBitmap(bitmap);
+        } else {
+            view.setScaleType(ImageView.ScaleType.CENTER_INSIDE);
+            view.setImageResource(PLACEHOLDER);
+        }
+        // Only after the view stopped drawing it may the old bitmap be decoded into again
+        if (previous != null) {
+            pool.release(previous);
+        }
+    }
+
+    private void onDecoded(Task task, Bitmap bitmap) {
+        if (tasks.get(task.modelId) == task) {
+            tasks.remove(task.modelId);
+        }
+        if (bitmap == null) {
+            if (!task.cancelled) {
+                withoutPreview.add(task.modelId);
+            }
+            return;
+        }
+        // The cell takes its reference first: the cache may evict the bitmap right away
+        if (task.target != null) {
+            waiting.remove(task.target);
+            show(task.target, bitmap);
+        }
+        // Keep it even if nobody waits anymore; the work is done and the cache is bounded
+        pool.acquire(bitmap);
+        cache.put(task.modelId, bitmap);
+    }
+
+    /**
+     * One decode; fields other than the model are only touched on the main thread
+     */
+    private final class Task implements Runnable {
+
+        final int modelId;
+        final String modelPath;
+        final boolean compressed;
+        ImageView target;
+        boolean preload;
+        Future<?> future;
+        volatile boolean cancelled;
+
+        Task(int modelId, String modelPath, boolean compressed) {
+            this.modelId = modelId;
+            this.modelPath = modelPath;
+            this.compressed = compressed;
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            Bitmap bitmap = null;
+            try {
+                bitmap = decode();
+            } catch (Exception e) {
+                // No preview for this model; the cell keeps the placeholder
+            }
+            Bitmap result = bitmap;
+            mainHandler.post(() -> onDecoded(this, result));
+        }
+
+        private Bitmap decode() throws Exception {
+            File thumbnail = ThumbnailExtractor.getThumbnailFile(filesDir, modelId);
+            if (thumbnail.exists()) {
+                Bitmap bitmap = extractor.decodeThumbnail(thumbnail, pool);
+                if (bitmap != null) {
+                    return bitmap;
+                }
+            }
+            if (compressed || cancelled) {
+                return null;
+            }
+            try (GlbFile glb = GlbFile.open(new File(modelPath))) {
+                return extractor.decodeFirstImage(glb, pool);
+            }
+        }
+    }
+}
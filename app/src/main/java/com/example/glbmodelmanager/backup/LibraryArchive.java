@@ -0,0 +1,219 @@
+package com.example.glbmodelmanager.backup;
+
+import com.example.glbmodelmanager.data.GlbModel;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Single-file backup of the model library
+ *
+ * Layout (little-endian):
+ *   header   "GLBK", format version
+ *   blobs    model files back to back, each exactly as it is stored on disk
+ *   index    gzip-compressed JSON of the catalog rows, with the offset,
+ *            length and CRC-32 of every blob
+ *   trailer  index offset and length, "GLBK", format version
+ *
+ * The trailer sits at a fixed distance from the end, so a reader finds the
+ * index with one seek and can then read any model without touching the rest.
+ * Everything is written front to back, so a backup can also be streamed
+ */
+public class LibraryArchive {
+
+    public static final String EXTENSION = ".glbk";
+    public static final String MIME_TYPE = "application/octet-stream";
+
+    static final int MAGIC = 0x4B424C47; // "GLBK"
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 8;
+    static final int TRAILER_LENGTH = 24;
+
+    // The index is read into memory; anything bigger than this is not one of ours
+    private static final long MAX_INDEX_LENGTH = 64L * 1024 * 1024;
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * One model in the archive
+     */
+    public static class Entry {
+        public final GlbModel model;  // Row as it was backed up, without its ID or path
+        public final long offset;     // Position of the blob in the archive
+        public final long length;     // Blob length in bytes
+        public final long crc32;      // CRC-32 of the blob
+
+        Entry(GlbModel model, long offset, long length, long crc32) {
+            this.model = model;
+            this.offset = offset;
+            this.length = length;
+            this.crc32 = crc32;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long createdDate;
+    private final List<Entry> entries;
+
+    private LibraryArchive(FileChannel channel, long createdDate, List<Entry> entries) {
+        this.channel = channel;
+        this.createdDate = createdDate;
+        this.entries = entries;
+    }
+
+    /**
+     * Read the index of an archive
+     * The channel must be seekable and stays owned by the caller
+     */
+    public static LibraryArchive open(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_LENGTH + TRAILER_LENGTH) {
+            throw new IOException("Not a library backup");
+        }
+
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, trailer, size - TRAILER_LENGTH);
+        trailer.flip();
+        long indexOffset = trailer.getLong();
+        long indexLength = trailer.getLong();
+        if (trailer.getInt() != MAGIC) {
+            throw new IOException("Not a library backup");
+        }
+        int version = trailer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported backup version: " + version);
+        }
+        // Compared without adding the two, so huge or negative values cannot wrap around
+        if (indexOffset < HEADER_LENGTH || indexLength < 0 || indexLength > MAX_INDEX_LENGTH
+                || indexOffset != size - TRAILER_LENGTH - indexLength) {
+            throw new IOException("Backup index is damaged");
+        }
+
+        ByteBuffer index = ByteBuffer.allocate((int) indexLength);
+        readFully(channel, index, indexOffset);
+
+        try {
+            JSONObject json = new JSONObject(inflate(index.array()));
+            JSONArray models = json.getJSONArray("models");
+            List<Entry> entries = new ArrayList<>(models.length());
+            for (int i = 0; i < models.length(); i++) {
+                JSONObject row = models.getJSONObject(i);
+                long offset = row.getLong("offset");
+                long length = row.getLong("length");
+                if (offset < HEADER_LENGTH || length < 0 || length > indexOffset - offset) {
+                    throw new IOException("Backup index is damaged");
+                }
+                entries.add(new Entry(fromJson(row), offset, length, row.getLong("crc32")));
+            }
+            return new LibraryArchive(channel, json.optLong("created"), entries);
+        } catch (JSONException e) {
+            throw new IOException("Backup index is damaged", e);
+        }
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public long getCreatedDate() {
+        return createdDate;
+    }
+
+    /**
+     * Copy one model out of the archive, checking its CRC
+     * Only that model's bytes are read; safe to call from several threads
+     */
+    public void extract(Entry entry, File dest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        CRC32 crc = new CRC32();
+        try (FileOutputStream output = new FileOutputStream(dest)) {
+            long position = entry.offset;
+            long end = entry.offset + entry.length;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, end - position));
+                int length = channel.read(buffer, position);
+                if (length < 0) {
+                    throw new EOFException("Backup is truncated");
+                }
+                crc.update(buffer.array(), 0, length);
+                output.write(buffer.array(), 0, length);
+                position += length;
+            }
+        }
+        if (crc.getValue() != entry.crc32) {
+            throw new IOException("Backup copy of " + entry.model.getName() + " is damaged");
+        }
+    }
+
+    /**
+     * Catalog row as stored in the index (the blob position is added by the writer)
+     */
+    static JSONObject toJson(GlbModel model) throws JSONException {
+        JSONObject row = new JSONObject();
+        row.put("name", model.getName());
+        row.put("fileName", model.getFileName());
+        row.put("fileSize", model.getFileSize());
+        row.put("addedDate", model.getAddedDate());
+        row.put("lastAccessed", model.getLastAccessed());
+        row.put("storageTier", model.getStorageTier());
+        if (model.getContentHash() != null) {
+            row.put("contentHash", model.getContentHash());
+        }
+        return row;
+    }
+
+    private static GlbModel fromJson(JSONObject row) throws JSONException {
+        GlbModel model = new GlbModel(
+                row.getString("name"),
+                row.getString("fileName"),
+                null,
+                row.getLong("fileSize"),
+                row.getLong("addedDate")
+        );
+        model.setLastAccessed(row.optLong("lastAccessed", model.getAddedDate()));
+        model.setStorageTier(row.optInt("storageTier", GlbModel.TIER_HOT));
+        model.setContentHash(row.optString("contentHash", null));
+        return model;
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int length = channel.read(buffer, position);
+            if (length < 0) {
+                throw new EOFException("Backup is truncated");
+            }
+            position += length;
+        }
+    }
+
+    private static String inflate(byte[] data) throws IOException {
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                output.write(buffer, 0, length);
+            }
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
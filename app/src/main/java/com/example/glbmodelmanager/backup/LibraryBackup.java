@@ -0,0 +1,240 @@
+package com.example.glbmodelmanager.backup;
+
+import android.content.Context;
+
+import com.example.glbmodelmanager.data.AppDatabase;
+import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.data.GlbModelDao;
+import com.example.glbmodelmanager.storage.ModelStorage;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the whole library into one archive (see LibraryArchive)
+ * Runs on a background thread (see work.BackupWorker)
+ */
+public class LibraryBackup {
+
+    private static final int COPY_THREADS = 4;
+
+    /**
+     * Receives progress while models are copied
+     */
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+    }
+
+    private final GlbModelDao dao;
+
+    /**
+     * Constructor
+     */
+    public LibraryBackup(Context context) {
+        this.dao = AppDatabase.getDatabase(context).glbModelDao();
+    }
+
+    /**
+     * Write every model to target, which should be empty
+     * Models are copied in parallel when the target is seekable and one after
+     * another otherwise. Returns the number of models backed up
+     */
+    public int write(FileChannel target, ProgressListener listener) throws IOException {
+        // Lay the blobs out back to back; every offset is known before copying starts
+        List<GlbModel> models = new ArrayList<>();
+        List<File> sources = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        List<Long> lengths = new ArrayList<>();
+        long position = LibraryArchive.HEADER_LENGTH;
+        for (GlbModel model : dao.getAllModelsList()) {
+            File source = ModelStorage.isCompressed(model)
+                    ? ModelStorage.getCompressedFile(model)
+                    : new File(model.getFilePath());
+            if (!source.exists()) {
+                continue; // Lost file, nothing to back up
+            }
+            models.add(model);
+            sources.add(source);
+            offsets.add(position);
+            lengths.add(source.length());
+            position += source.length();
+        }
+        long indexOffset = position;
+
+        boolean seekable = isSeekable(target);
+        ByteBuffer header = ByteBuffer.allocate(LibraryArchive.HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LibraryArchive.MAGIC).putInt(LibraryArchive.VERSION).flip();
+        write(target, header, seekable ? 0 : -1);
+
+        long[] crcs = new long[models.size()];
+        if (seekable) {
+            copyParallel(target, sources, offsets, lengths, crcs, listener);
+        } else {
+            for (int i = 0; i < models.size(); i++) {
+                crcs[i] = copyBlob(sources.get(i), lengths.get(i), target, -1);
+                if (listener != null) {
+                    listener.onProgress(i + 1, models.size());
+                }
+            }
+        }
+
+        byte[] index = buildIndex(models, offsets, lengths, crcs);
+        write(target, ByteBuffer.wrap(index), seekable ? indexOffset : -1);
+
+        ByteBuffer trailer = ByteBuffer.allocate(LibraryArchive.TRAILER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.putLong(indexOffset)
+                .putLong(index.length)
+                .putInt(LibraryArchive.MAGIC)
+                .putInt(LibraryArchive.VERSION)
+                .flip();
+        long end = indexOffset + index.length;
+        write(target, trailer, seekable ? end : -1);
+
+        if (seekable) {
+            target.truncate(end + LibraryArchive.TRAILER_LENGTH);
+            target.force(false);
+        }
+        return models.size();
+    }
+
+    /**
+     * Copy blobs on a small pool, each into its own region of the archive
+     */
+    private void copyParallel(FileChannel target, List<File> sources, List<Long> offsets,
+                              List<Long> lengths, long[] crcs, ProgressListener listener) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(COPY_THREADS);
+        try {
+            CompletionService<Integer> completion = new ExecutorCompletionService<>(pool);
+            for (int i = 0; i < sources.size(); i++) {
+                final int blob = i;
+                completion.submit(() -> {
+                    crcs[blob] = copyBlob(sources.get(blob), lengths.get(blob), target, offsets.get(blob));
+                    return blob;
+                });
+            }
+            for (int done = 1; done <= sources.size(); done++) {
+                Future<Integer> copied = completion.take();
+                copied.get();
+                if (listener != null) {
+                    listener.onProgress(done, sources.size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Backup cancelled");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Copy one model file to the archive at position (-1 = current position)
+     * Returns the CRC-32 of the copied bytes
+     */
+    private static long copyBlob(File source, long length, FileChannel target, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(LibraryArchive.BUFFER_SIZE);
+        CRC32 crc = new CRC32();
+        try (FileInputStream input = new FileInputStream(source)) {
+            FileChannel channel = input.getChannel();
+            if (channel.size() != length) {
+                // Compressed, restored or optimized since the layout was made
+                throw new IOException(source.getName() + " changed during the backup, please try again");
+            }
+            long copied = 0;
+            while (copied < length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), length - copied));
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    throw new EOFException(source.getName() + " changed during the backup, please try again");
+                }
+                crc.update(buffer.array(), 0, read);
+                buffer.flip();
+                write(target, buffer, position < 0 ? -1 : position + copied);
+                copied += read;
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Catalog rows plus blob positions, as gzip-compressed JSON
+     */
+    private static byte[] buildIndex(List<GlbModel> models, List<Long> offsets, List<Long> lengths,
+                                     long[] crcs) throws IOException {
+        try {
+            JSONArray rows = new JSONArray();
+            for (int i = 0; i < models.size(); i++) {
+                JSONObject row = LibraryArchive.toJson(models.get(i));
+                row.put("offset", offsets.get(i));
+                row.put("length", lengths.get(i));
+                row.put("crc32", crcs[i]);
+                rows.put(row);
+            }
+            JSONObject json = new JSONObject();
+            json.put("created", System.currentTimeMillis());
+            json.put("models", rows);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (OutputStream output = new GZIPOutputStream(bytes)) {
+                output.write(json.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            return bytes.toByteArray();
+        } catch (JSONException e) {
+            throw new IOException("Could not write backup index", e);
+        }
+    }
+
+    /**
+     * Write all of buffer at position, or at the current position if it is -1
+     */
+    private static void write(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (position < 0) {
+                target.write(buffer);
+            } else {
+                position += target.write(buffer, position);
+            }
+        }
+    }
+
+    /**
+     * Whether positional writes work (a pipe from a cloud provider does not support them)
+     */
+    private static boolean isSeekable(FileChannel channel) {
+        try {
+            channel.position(channel.position());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.glbmodelmanager.backup;
+
+import android.content.Context;
+
+import com.example.glbmodelmanager.data.AppDatabase;
+import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.data.GlbModelDao;
+import com.example.glbmodelmanager.importer.ModelImporter;
+import com.example.glbmodelmanager.storage.ModelStorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Adds the models from a library archive to this device's library
+ * Models already in the library (same content hash) are skipped without
+ * reading their data. Runs on a background thread (see work.RestoreWorker)
+ */
+public class LibraryRestore {
+
+    private static final int COPY_THREADS = 4;
+
+    /**
+     * Outcome of a restore
+     */
+    public static class Result {
+        public int restored;  // Models added to the library
+        public int skipped;   // Models that were already in the library
+        public final List<Integer> modelIds = new ArrayList<>();
+    }
+
+    private final Context context;
+    private final GlbModelDao dao;
+
+    /**
+     * Constructor
+     */
+    public LibraryRestore(Context context) {
+        this.context = context.getApplicationContext();
+        this.dao = AppDatabase.getDatabase(context).glbModelDao();
+    }
+
+    /**
+     * Extract the new models in parallel, then insert their rows in one transaction
+     * If anything fails, the files extracted so far are removed again
+     */
+    public Result restore(LibraryArchive archive, LibraryBackup.ProgressListener listener) throws IOException {
+        Result result = new Result();
+        Set<String> knownHashes = new HashSet<>(dao.getContentHashes());
+
+        List<LibraryArchive.Entry> entries = new ArrayList<>();
+        List<GlbModel> models = new ArrayList<>();
+        List<File> dests = new ArrayList<>();
+        File modelsDir = ModelImporter.getModelsDir(context);
+        for (LibraryArchive.Entry entry : archive.getEntries()) {
+            String hash = entry.model.getContentHash();
+            if (hash != null && !knownHashes.add(hash)) {
+                result.skipped++;
+                continue;
+            }
+
+            GlbModel model = entry.model;
+            File file = newModelFile(modelsDir, model.getFileName(), dests);
+            model.setId(0);
+            model.setFileName(file.getName());
+            model.setFilePath(file.getAbsolutePath());
+            model.setStoredSize(entry.length);
+            entries.add(entry);
+            models.add(model);
+            dests.add(ModelStorage.isCompressed(model) ? ModelStorage.getCompressedFile(model) : file);
+        }
+
+        try {
+            extractParallel(archive, entries, dests, listener);
+            if (!models.isEmpty()) {
+                for (long id : dao.insertAll(models)) {
+                    result.modelIds.add((int) id);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (File dest : dests) {
+                dest.delete();
+            }
+            throw e;
+        }
+        result.restored = models.size();
+        return result;
+    }
+
+    private void extractParallel(LibraryArchive archive, List<LibraryArchive.Entry> entries, List<File> dests,
+                                 LibraryBackup.ProgressListener listener) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(COPY_THREADS);
+        try {
+            CompletionService<Void> completion = new ExecutorCompletionService<>(pool);
+            for (int i = 0; i < entries.size(); i++) {
+                LibraryArchive.Entry entry = entries.get(i);
+                File dest = dests.get(i);
+                completion.submit(() -> {
+                    archive.extract(entry, dest);
+                    return null;
+                });
+            }
+            for (int done = 1; done <= entries.size(); done++) {
+                completion.take().get();
+                if (listener != null) {
+                    listener.onProgress(done, entries.size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Restore cancelled");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Keep the backed-up file name unless it is taken (e.g. restoring onto the same device)
+     */
+    private static File newModelFile(File modelsDir, String fileName, List<File> reserved) {
+        File file = new File(modelsDir, fileName);
+        for (int i = 1; isTaken(file, reserved); i++) {
+            file = new File(modelsDir, "restored_" + i + "_" + fileName);
+        }
+        return file;
+    }
+
+    private static boolean isTaken(File file, List<File> reserved) {
+        File compressed = new File(file.getPath() + ModelStorage.COMPRESSED_SUFFIX);
+        return file.exists() || compressed.exists() || reserved.contains(file) || reserved.contains(compressed);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.glbmodelmanager.cache;
+
+import android.graphics.Bitmap;
+
+import com.example.glbmodelmanager.data.GlbModel;
+
+import java.util.List;
+
+/**
+ * The app's shared caches, registered with CacheRegistry on first use
+ */
+public class AppCaches {
+
+    // Rough fixed cost of a GlbModel row and its list slot, beyond its strings
+    private static final int MODEL_OVERHEAD_BYTES = 96;
+
+    private static volatile ManagedCache<String, List<GlbModel>> catalog;
+    private static volatile ManagedCache<Integer, Bitmap> thumbnails;
+    private static volatile BitmapPool bitmapPool;
+
+    /**
+     * Model lists from the database by ModelQuery.cacheKey(), so dashboards can render
+     * before the query returns
+     */
+    public static ManagedCache<String, List<GlbModel>> catalog() {
+        if (catalog == null) {
+            synchronized (AppCaches.class) {
+                if (catalog == null) {
+                    catalog = CacheRegistry.get().register("catalog", heapFraction(16),
+                            ManagedCache.PRIORITY_HIGH, (key, models) -> estimateSize(models));
+                }
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * Decoded model previews by model ID
+     * Each entry holds a bitmapPool() reference: acquire one before put(); the
+     * cache releases it when the entry leaves
+     */
+    public static ManagedCache<Integer, Bitmap> thumbnails() {
+        if (thumbnails == null) {
+            synchronized (AppCaches.class) {
+                if (thumbnails == null) {
+                    ManagedCache<Integer, Bitmap> cache = CacheRegistry.get().register("thumbnails",
+                            heapFraction(8), ManagedCache.PRIORITY_LOW, (id, bitmap) -> bitmap.getAllocationByteCount());
+                    cache.setRemovalListener((id, bitmap) -> bitmapPool().release(bitmap));
+                    thumbnails = cache;
+                }
+            }
+        }
+        return thumbnails;
+    }
+
+    /**
+     * Spare bitmap memory for decoding previews into
+     */
+    public static BitmapPool bitmapPool() {
+        if (bitmapPool == null) {
+            synchronized (AppCaches.class) {
+                if (bitmapPool == null) {
+                    bitmapPool = new BitmapPool(heapFraction(32));
+                }
+            }
+        }
+        return bitmapPool;
+    }
+
+    /**
+     * Estimated heap size of a list of model rows
+     */
+    static int estimateSize(List<GlbModel> models) {
+        long bytes = 0;
+        for (GlbModel model : models) {
+            bytes += MODEL_OVERHEAD_BYTES + 2L * (length(model.getName()) + length(model.getFileName())
+                    + length(model.getFilePath()) + length(model.getContentHash()));
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static int heapFraction(int divisor) {
+        return (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / divisor);
+    }
+}
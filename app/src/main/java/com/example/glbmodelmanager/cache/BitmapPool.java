@@ -0,0 +1,161 @@
+package com.example.glbmodelmanager.cache;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bitmaps whose memory can be decoded into again (BitmapFactory.Options.inBitmap)
+ * Every holder of a bitmap (a cache entry, an ImageView) takes a reference and gives
+ * it back; when the last one is gone the bitmap is parked here instead of being left
+ * to the garbage collector, so scrolling through previews does not churn the heap
+ */
+public class BitmapPool implements ComponentCallbacks2 {
+
+    // A pooled bitmap is only handed out for a decode at least half its size
+    private static final int MAX_WASTE_FACTOR = 2;
+
+    private final long maxBytes;
+
+    // Parked bitmaps by allocation size
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> free = new TreeMap<>();
+    private final Map<Bitmap, Integer> references = new IdentityHashMap<>();
+    private long size;
+    private int hits;
+    private int misses;
+
+    BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Bytes needed for an ARGB_8888 decode of an image at a sample size
+     */
+    public static int byteCount(int width, int height, int sampleSize) {
+        int sampledWidth = (width + sampleSize - 1) / sampleSize;
+        int sampledHeight = (height + sampleSize - 1) / sampleSize;
+        return sampledWidth * sampledHeight * 4;
+    }
+
+    /**
+     * A parked bitmap with room for at least byteCount bytes, or null
+     * The caller owns it; hand it back with put() if the decode fails
+     */
+    public synchronized Bitmap get(int byteCount) {
+        Map.Entry<Integer, ArrayDeque<Bitmap>> entry = free.ceilingEntry(byteCount);
+        if (entry == null || entry.getKey() > (long) byteCount * MAX_WASTE_FACTOR) {
+            misses++;
+            return null;
+        }
+        Bitmap bitmap = entry.getValue().poll();
+        if (entry.getValue().isEmpty()) {
+            free.remove(entry.getKey());
+        }
+        size -= entry.getKey();
+        hits++;
+        return bitmap;
+    }
+
+    /**
+     * Park a bitmap nobody uses anymore
+     * Immutable bitmaps cannot be decoded into and are left to the garbage collector
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() || references.containsKey(bitmap)) {
+            return;
+        }
+        int bytes = bitmap.getAllocationByteCount();
+        if (bytes > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        free.computeIfAbsent(bytes, key -> new ArrayDeque<>()).add(bitmap);
+        size += bytes;
+        // Over budget: drop the smallest bitmaps first, they are the cheapest to allocate again
+        while (size > maxBytes) {
+            Map.Entry<Integer, ArrayDeque<Bitmap>> smallest = free.firstEntry();
+            smallest.getValue().poll().recycle();
+            if (smallest.getValue().isEmpty()) {
+                free.remove(smallest.getKey());
+            }
+            size -= smallest.getKey();
+        }
+    }
+
+    /**
+     * Take a reference to a bitmap that is about to be cached or displayed
+     */
+    public synchronized void acquire(Bitmap bitmap) {
+        Integer count = references.get(bitmap);
+        references.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Give a reference back; the last one parks the bitmap in the pool
+     */
+    public synchronized void release(Bitmap bitmap) {
+        Integer count = references.get(bitmap);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            references.put(bitmap, count - 1);
+        } else {
+            references.remove(bitmap);
+            put(bitmap);
+        }
+    }
+
+    public synchronized void clear() {
+        for (ArrayDeque<Bitmap> bitmaps : free.values()) {
+            for (Bitmap bitmap : bitmaps) {
+                bitmap.recycle();
+            }
+        }
+        free.clear();
+        size = 0;
+    }
+
+    /**
+     * Bytes held by parked bitmaps
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxBytes;
+    }
+
+    public synchronized int getHitCount() {
+        return hits;
+    }
+
+    public synchronized int getMissCount() {
+        return misses;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        // Parked bitmaps are pure reserve, so any pressure drops them. Registered after
+        // CacheRegistry, so this also drops what the cache trim just released
+        clear();
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        // Not relevant for the pool
+    }
+}
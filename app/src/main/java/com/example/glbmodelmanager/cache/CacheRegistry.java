@@ -0,0 +1,101 @@
+package com.example.glbmodelmanager.cache;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Central registry of in-memory caches
+ * Every cache declares its weight in bytes and a priority. When the system
+ * reports memory pressure, caches are trimmed or cleared lowest priority first
+ */
+public class CacheRegistry implements ComponentCallbacks2 {
+
+    private static final CacheRegistry INSTANCE = new CacheRegistry();
+
+    private final List<ManagedCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+
+    public static CacheRegistry get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Create and register a cache
+     */
+    public <K, V> ManagedCache<K, V> register(String name, int maxBytes, int priority,
+                                              ManagedCache.Weigher<K, V> weigher) {
+        ManagedCache<K, V> cache = new ManagedCache<>(name, maxBytes, priority, weigher);
+        caches.add(cache);
+        return cache;
+    }
+
+    public void unregister(ManagedCache<?, ?> cache) {
+        cache.evictAll();
+        caches.remove(cache);
+    }
+
+    /**
+     * Registered caches, lowest priority first
+     */
+    public List<ManagedCache<?, ?>> getCaches() {
+        List<ManagedCache<?, ?>> sorted = new ArrayList<>(caches);
+        Collections.sort(sorted, (a, b) -> Integer.compare(a.getPriority(), b.getPriority()));
+        return sorted;
+    }
+
+    /**
+     * Total bytes currently held by all caches
+     */
+    public long getTotalSize() {
+        long total = 0;
+        for (ManagedCache<?, ?> cache : caches) {
+            total += cache.size();
+        }
+        return total;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_COMPLETE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            // About to be killed or the foreground is starving: drop everything
+            trim(ManagedCache.PRIORITY_HIGH, 0f);
+        } else if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_LOW) {
+            trim(ManagedCache.PRIORITY_NORMAL, 0f);
+            trim(ManagedCache.PRIORITY_HIGH, 0.5f);
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_MODERATE) {
+            // UI not visible (or mild pressure): previews can be rebuilt cheaply
+            trim(ManagedCache.PRIORITY_LOW, 0f);
+            trim(ManagedCache.PRIORITY_NORMAL, 0.5f);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim(ManagedCache.PRIORITY_HIGH, 0f);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        // Not relevant for caches
+    }
+
+    /**
+     * Trim every cache up to maxPriority, lowest priority first
+     * Caches below maxPriority are cleared; those at it are cut to fraction
+     */
+    private void trim(int maxPriority, float fraction) {
+        for (ManagedCache<?, ?> cache : getCaches()) {
+            if (cache.getPriority() < maxPriority) {
+                cache.evictAll();
+            } else if (cache.getPriority() == maxPriority) {
+                cache.trimToFraction(fraction);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.glbmodelmanager.cache;
+
+import android.util.LruCache;
+
+/**
+ * LRU cache whose size is the estimated weight of its entries in bytes
+ * Created through CacheRegistry so memory pressure can shrink it
+ */
+public class ManagedCache<K, V> extends LruCache<K, V> {
+
+    // Eviction order under memory pressure: LOW goes first, HIGH last
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_HIGH = 2;
+
+    /**
+     * Estimated heap size of a cached value
+     */
+    public interface Weigher<K, V> {
+        int weigh(K key, V value);
+    }
+
+    /**
+     * Told when an entry leaves the cache (evicted, replaced or removed)
+     */
+    public interface RemovalListener<K, V> {
+        void onRemoved(K key, V value);
+    }
+
+    private final String name;
+    private final int priority;
+    private final Weigher<K, V> weigher;
+    private volatile RemovalListener<K, V> removalListener;
+
+    ManagedCache(String name, int maxBytes, int priority, Weigher<K, V> weigher) {
+        super(maxBytes);
+        this.name = name;
+        this.priority = priority;
+        this.weigher = weigher;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setRemovalListener(RemovalListener<K, V> listener) {
+        this.removalListener = listener;
+    }
+
+    @Override
+    protected int sizeOf(K key, V value) {
+        return Math.max(1, weigher.weigh(key, value));
+    }
+
+    @Override
+    protected void entryRemoved(boolean evicted, K key, V oldValue, V newValue) {
+        RemovalListener<K, V> listener = removalListener;
+        if (listener != null && oldValue != newValue) {
+            listener.onRemoved(key, oldValue);
+        }
+    }
+
+    /**
+     * Shrink to a fraction (0..1) of what the cache holds now
+     * Relative to the current size, so a half-full cache still gives memory back
+     */
+    public void trimToFraction(float fraction) {
+        trimToSize((int) (size() * fraction));
+    }
+}
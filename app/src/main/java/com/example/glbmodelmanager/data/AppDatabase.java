@@ -1,13 +1,20 @@
 package com.example.glbmodelmanager.data;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.os.Trace;
 
 import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.example.glbmodelmanager.diagnostics.QueryStats;
+import com.example.glbmodelmanager.diagnostics.TimedGlbModelDao;
+import com.example.glbmodelmanager.diagnostics.TimedUserDao;
+
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -15,12 +22,37 @@ import java.util.concurrent.Executors;
  * Main database class using Room
  * Singleton pattern ensures only one database instance exists
  */
-@Database(entities = {User.class, GlbModel.class}, version = 1, exportSchema = false)
+@Database(entities = {User.class, GlbModel.class, GlbModelChange.class, ModelFingerprint.class,
+        FingerprintBucket.class, ModelValidation.class, ModelPart.class, ModelOptimization.class},
+        version = 11, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
 
-    // Abstract methods to get DAOs
-    public abstract UserDao userDao();
-    public abstract GlbModelDao glbModelDao();
+    // Abstract methods implemented by Room; callers use the timed DAOs below
+    abstract UserDao roomUserDao();
+    abstract GlbModelDao roomGlbModelDao();
+
+    private volatile UserDao userDao;
+    private volatile GlbModelDao glbModelDao;
+
+    /**
+     * User DAO, with every call recorded in QueryStats
+     */
+    public UserDao userDao() {
+        if (userDao == null) {
+            userDao = new TimedUserDao(roomUserDao(), QueryStats.get());
+        }
+        return userDao;
+    }
+
+    /**
+     * GLB model DAO, with every call recorded in QueryStats
+     */
+    public GlbModelDao glbModelDao() {
+        if (glbModelDao == null) {
+            glbModelDao = new TimedGlbModelDao(roomGlbModelDao(), QueryStats.get());
+        }
+        return glbModelDao;
+    }
 
     // Singleton instance
     private static volatile AppDatabase INSTANCE;
@@ -44,6 +76,14 @@ public abstract class AppDatabase extends RoomDatabase {
                                     "glb_model_database"
                             )
                             .addCallback(sRoomDatabaseCallback)
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5,
+                                    MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9,
+                                    MIGRATION_9_10, MIGRATION_10_11)
+                            // Time LiveData queries and capture the SQL of every query
+                            .setQueryExecutor(QueryStats.get().timed(
+                                    Executors.newFixedThreadPool(NUMBER_OF_THREADS)))
+                            .setQueryCallback((sql, args) -> QueryStats.get().onQuery(sql, args),
+                                    Runnable::run)
                             .build();
                 }
             }
@@ -51,6 +91,215 @@ public abstract class AppDatabase extends RoomDatabase {
         return INSTANCE;
     }
 
+    /**
+     * Open the database in the background so the first query does not pay for it
+     * Room only opens SQLite (and runs migrations) on first use
+     */
+    public static void warmUp(final Context context) {
+        databaseWriteExecutor.execute(() -> {
+            Trace.beginSection("AppDatabase.warmUp");
+            try {
+                getDatabase(context).getOpenHelper().getWritableDatabase();
+            } catch (Exception e) {
+                // The first real query will report the problem
+            } finally {
+                Trace.endSection();
+            }
+        });
+    }
+
+    /**
+     * Version 2: content hash of each imported model
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE glb_models ADD COLUMN contentHash TEXT");
+        }
+    };
+
+    /**
+     * Version 3: storage tier, on-disk size and last access of each model
+     * Existing models start out uncompressed, last opened when they were added
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE glb_models ADD COLUMN lastAccessed INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE glb_models ADD COLUMN storageTier INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE glb_models ADD COLUMN storedSize INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE glb_models SET lastAccessed = addedDate, storedSize = fileSize");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_glb_models_lastAccessed ON glb_models (lastAccessed)");
+        }
+    };
+
+    /**
+     * Version 4: change log of glb_models, filled by triggers
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS glb_model_changes ("
+                    + "seq INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "modelId INTEGER NOT NULL, op INTEGER NOT NULL)");
+            createChangeTriggers(db);
+        }
+    };
+
+    /**
+     * Version 5: geometric fingerprints and their locality-sensitive hash index
+     * Existing models are fingerprinted in the background (see work.FingerprintWorker)
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS model_fingerprints ("
+                    + "modelId INTEGER NOT NULL, signature BLOB NOT NULL, shapeMid REAL NOT NULL, "
+                    + "shapeMin REAL NOT NULL, vertexCount INTEGER NOT NULL, PRIMARY KEY(modelId), "
+                    + "FOREIGN KEY(modelId) REFERENCES glb_models(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS fingerprint_buckets ("
+                    + "band INTEGER NOT NULL, bucket INTEGER NOT NULL, modelId INTEGER NOT NULL, "
+                    + "PRIMARY KEY(band, bucket, modelId), "
+                    + "FOREIGN KEY(modelId) REFERENCES glb_models(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_fingerprint_buckets_modelId ON fingerprint_buckets (modelId)");
+        }
+    };
+
+    /**
+     * Version 6: sort key and geometry stats of each model, and indexes for every sort order
+     * Geometry stats are filled in by FingerprintWorker
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE glb_models ADD COLUMN sortName TEXT");
+            db.execSQL("ALTER TABLE glb_models ADD COLUMN vertexCount INTEGER NOT NULL DEFAULT -1");
+            db.execSQL("ALTER TABLE glb_models ADD COLUMN triangleCount INTEGER NOT NULL DEFAULT -1");
+
+            // SQLite cannot fold accents, so sort keys are computed here
+            try (Cursor cursor = db.query("SELECT id, name FROM glb_models")) {
+                while (cursor.moveToNext()) {
+                    db.execSQL("UPDATE glb_models SET sortName = ? WHERE id = ?",
+                            new Object[]{GlbModel.sortKey(cursor.getString(1)), cursor.getInt(0)});
+                }
+            }
+
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_glb_models_addedDate ON glb_models (addedDate)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_glb_models_fileSize ON glb_models (fileSize)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_glb_models_sortName ON glb_models (sortName)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_glb_models_vertexCount ON glb_models (vertexCount)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_glb_models_triangleCount ON glb_models (triangleCount)");
+
+            // The dashboards now show geometry stats, so the update trigger must log them
+            db.execSQL("DROP TRIGGER IF EXISTS glb_models_log_update");
+            createChangeTriggers(db);
+        }
+    };
+
+    /**
+     * Version 7: structural validation reports
+     * Existing models are validated in the background (see work.FingerprintWorker)
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS model_validations ("
+                    + "modelId INTEGER NOT NULL, errorCount INTEGER NOT NULL, warningCount INTEGER NOT NULL, "
+                    + "report TEXT NOT NULL, validatedAt INTEGER NOT NULL, PRIMARY KEY(modelId), "
+                    + "FOREIGN KEY(modelId) REFERENCES glb_models(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+        }
+    };
+
+    /**
+     * Version 8: runtime cost of each model (GPU memory, draw calls, materials)
+     * Filled in by FingerprintWorker
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE glb_models ADD COLUMN geometryBytes INTEGER NOT NULL DEFAULT -1");
+            db.execSQL("ALTER TABLE glb_models ADD COLUMN textureBytes INTEGER NOT NULL DEFAULT -1");
+            db.execSQL("ALTER TABLE glb_models ADD COLUMN drawCalls INTEGER NOT NULL DEFAULT -1");
+            db.execSQL("ALTER TABLE glb_models ADD COLUMN materialCount INTEGER NOT NULL DEFAULT -1");
+
+            // The list rows show the cost, so the update trigger must log it
+            db.execSQL("DROP TRIGGER IF EXISTS glb_models_log_update");
+            createChangeTriggers(db);
+        }
+    };
+
+    /**
+     * Version 9: parts of models split into smaller GLBs
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS model_parts ("
+                    + "modelId INTEGER NOT NULL, partIndex INTEGER NOT NULL, name TEXT NOT NULL, "
+                    + "filePath TEXT NOT NULL, fileSize INTEGER NOT NULL, triangleCount INTEGER NOT NULL, "
+                    + "PRIMARY KEY(modelId, partIndex), "
+                    + "FOREIGN KEY(modelId) REFERENCES glb_models(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+        }
+    };
+
+    /**
+     * Version 10: savings of the optimization stages, per model and stage
+     */
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS model_optimizations ("
+                    + "modelId INTEGER NOT NULL, stage TEXT NOT NULL, bytesBefore INTEGER NOT NULL, "
+                    + "bytesAfter INTEGER NOT NULL, drawCallsBefore INTEGER NOT NULL, "
+                    + "drawCallsAfter INTEGER NOT NULL, summary TEXT NOT NULL, optimizedAt INTEGER NOT NULL, "
+                    + "PRIMARY KEY(modelId, stage), "
+                    + "FOREIGN KEY(modelId) REFERENCES glb_models(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+        }
+    };
+
+    /**
+     * Version 11: list indexes that also hold the id tie-break and the filter columns,
+     * replacing the single-column ones
+     */
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            for (String column : new String[]{"addedDate", "fileSize", "sortName", "vertexCount", "triangleCount"}) {
+                db.execSQL("DROP INDEX IF EXISTS index_glb_models_" + column);
+            }
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_glb_models_addedDate_id_fileSize_vertexCount "
+                    + "ON glb_models (addedDate, id, fileSize, vertexCount)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_glb_models_fileSize_id_addedDate_vertexCount "
+                    + "ON glb_models (fileSize, id, addedDate, vertexCount)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_glb_models_sortName_id_addedDate_fileSize_vertexCount "
+                    + "ON glb_models (sortName, id, addedDate, fileSize, vertexCount)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_glb_models_vertexCount_id_addedDate_fileSize "
+                    + "ON glb_models (vertexCount, id, addedDate, fileSize)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_glb_models_triangleCount_id_addedDate_fileSize_vertexCount "
+                    + "ON glb_models (triangleCount, id, addedDate, fileSize, vertexCount)");
+        }
+    };
+
+    /**
+     * Record every change to glb_models in glb_model_changes (see ModelChangeFeed)
+     * Updates that only touch lastAccessed are not shown anywhere, so they are left out;
+     * add new columns to the update trigger when the dashboards start showing them
+     */
+    static void createChangeTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS glb_models_log_insert AFTER INSERT ON glb_models BEGIN "
+                + "INSERT INTO glb_model_changes (modelId, op) VALUES (NEW.id, "
+                + GlbModelChange.OP_INSERT + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS glb_models_log_update AFTER UPDATE OF "
+                + "name, fileName, filePath, fileSize, addedDate, contentHash, storageTier, storedSize, "
+                + "vertexCount, triangleCount, geometryBytes, textureBytes, drawCalls, materialCount "
+                + "ON glb_models BEGIN "
+                + "INSERT INTO glb_model_changes (modelId, op) VALUES (NEW.id, "
+                + GlbModelChange.OP_UPDATE + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS glb_models_log_delete AFTER DELETE ON glb_models BEGIN "
+                + "INSERT INTO glb_model_changes (modelId, op) VALUES (OLD.id, "
+                + GlbModelChange.OP_DELETE + "); END");
+    }
+
     /**
      * Callback to populate database with default users
      * Runs when database is created for the first time
@@ -59,6 +308,7 @@ public abstract class AppDatabase extends RoomDatabase {
         @Override
         public void onCreate(@NonNull SupportSQLiteDatabase db) {
             super.onCreate(db);
+            createChangeTriggers(db);
 
             // Insert default users in background thread
             databaseWriteExecutor.execute(() -> {
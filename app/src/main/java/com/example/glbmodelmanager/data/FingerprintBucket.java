@@ -0,0 +1,52 @@
+package com.example.glbmodelmanager.data;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+/**
+ * Locality-sensitive hash index entry: one row per model and LSH band
+ * Models with the same bucket in any band are likely to be similar. The primary
+ * key doubles as the (band, bucket) lookup index
+ */
+@Entity(tableName = "fingerprint_buckets",
+        primaryKeys = {"band", "bucket", "modelId"},
+        indices = {@Index("modelId")},
+        foreignKeys = @ForeignKey(entity = GlbModel.class, parentColumns = "id",
+                childColumns = "modelId", onDelete = ForeignKey.CASCADE))
+public class FingerprintBucket {
+
+    private int band;     // Band number, 0 to GeometryFingerprint.BANDS - 1
+    private int bucket;   // Hash of the signature slots in this band
+    private int modelId;
+
+    public FingerprintBucket(int band, int bucket, int modelId) {
+        this.band = band;
+        this.bucket = bucket;
+        this.modelId = modelId;
+    }
+
+    public int getBand() {
+        return band;
+    }
+
+    public void setBand(int band) {
+        this.band = band;
+    }
+
+    public int getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(int bucket) {
+        this.bucket = bucket;
+    }
+
+    public int getModelId() {
+        return modelId;
+    }
+
+    public void setModelId(int modelId) {
+        this.modelId = modelId;
+    }
+}
@@ -1,15 +1,31 @@
 package com.example.glbmodelmanager.data;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import java.text.Normalizer;
+import java.util.Locale;
+
 /**
  * GLB Model entity for storing 3D model information
  * Stores metadata about GLB files, actual file stored in internal storage
  */
-@Entity(tableName = "glb_models")
+@Entity(tableName = "glb_models", indices = {@Index("lastAccessed"),
+        // One index per sort order (see ModelQuery): the sort column and its id tie-break,
+        // then the filter columns, so filters are checked on the index before rows are read
+        @Index({"addedDate", "id", "fileSize", "vertexCount"}),
+        @Index({"fileSize", "id", "addedDate", "vertexCount"}),
+        @Index({"sortName", "id", "addedDate", "fileSize", "vertexCount"}),
+        @Index({"vertexCount", "id", "addedDate", "fileSize"}),
+        @Index({"triangleCount", "id", "addedDate", "fileSize", "vertexCount"})})
 public class GlbModel {
 
+    // Storage tiers (see storage.ModelStorage)
+    public static final int TIER_HOT = 0;         // Plain .glb, opened directly
+    public static final int TIER_COMPRESSED = 1;  // Gzip-compressed, decompressed on open
+
     @PrimaryKey(autoGenerate = true)
     private int id;              // Auto-generated unique ID
 
@@ -18,14 +34,66 @@ public class GlbModel {
     private String filePath;     // Full path to file in internal storage
     private long fileSize;       // Size in bytes
     private long addedDate;      // Timestamp when added (milliseconds)
+    private String contentHash;  // SHA-256 (hex) of the file as it was received
+
+    @ColumnInfo(defaultValue = "0")
+    private long lastAccessed;   // Last time the model was opened (milliseconds)
+
+    @ColumnInfo(defaultValue = "0")
+    private int storageTier;     // TIER_HOT or TIER_COMPRESSED
+
+    @ColumnInfo(defaultValue = "0")
+    private long storedSize;     // Bytes the model currently takes on disk
+
+    private String sortName;     // Name folded for sorting and prefix filters (see sortKey)
+
+    @ColumnInfo(defaultValue = "-1")
+    private int vertexCount;     // Vertices in all meshes, -1 until the geometry has been read
+
+    @ColumnInfo(defaultValue = "-1")
+    private int triangleCount;   // Triangles in all meshes, -1 until the geometry has been read
+
+    // Runtime cost (see glb.RuntimeCost), -1 until the model has been analyzed
+    @ColumnInfo(defaultValue = "-1")
+    private long geometryBytes;  // Vertex and index buffers
+
+    @ColumnInfo(defaultValue = "-1")
+    private long textureBytes;   // Decoded textures with mipmaps
+
+    @ColumnInfo(defaultValue = "-1")
+    private int drawCalls;
+
+    @ColumnInfo(defaultValue = "-1")
+    private int materialCount;
 
     // Constructor
     public GlbModel(String name, String fileName, String filePath, long fileSize, long addedDate) {
         this.name = name;
+        this.sortName = sortKey(name);
         this.fileName = fileName;
         this.filePath = filePath;
         this.fileSize = fileSize;
         this.addedDate = addedDate;
+        this.lastAccessed = addedDate;
+        this.storedSize = fileSize;
+        this.vertexCount = -1;
+        this.triangleCount = -1;
+        this.geometryBytes = -1;
+        this.textureBytes = -1;
+        this.drawCalls = -1;
+        this.materialCount = -1;
+    }
+
+    /**
+     * Case- and accent-insensitive form of a name, so "Ébène" sorts with "ebony"
+     * Stored and indexed, because SQLite's NOCASE collation only folds ASCII
+     */
+    public static String sortKey(String name) {
+        if (name == null) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}+", "").toLowerCase(Locale.ROOT);
     }
 
     // Getters and Setters
@@ -43,6 +111,15 @@ public class GlbModel {
 
     public void setName(String name) {
         this.name = name;
+        this.sortName = sortKey(name);
+    }
+
+    public String getSortName() {
+        return sortName;
+    }
+
+    public void setSortName(String sortName) {
+        this.sortName = sortName;
     }
 
     public String getFileName() {
@@ -76,4 +153,98 @@ public class GlbModel {
     public void setAddedDate(long addedDate) {
         this.addedDate = addedDate;
     }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public long getLastAccessed() {
+        return lastAccessed;
+    }
+
+    public void setLastAccessed(long lastAccessed) {
+        this.lastAccessed = lastAccessed;
+    }
+
+    public int getStorageTier() {
+        return storageTier;
+    }
+
+    public void setStorageTier(int storageTier) {
+        this.storageTier = storageTier;
+    }
+
+    public long getStoredSize() {
+        return storedSize;
+    }
+
+    public void setStoredSize(long storedSize) {
+        this.storedSize = storedSize;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public void setVertexCount(int vertexCount) {
+        this.vertexCount = vertexCount;
+    }
+
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    public void setTriangleCount(int triangleCount) {
+        this.triangleCount = triangleCount;
+    }
+
+    public long getGeometryBytes() {
+        return geometryBytes;
+    }
+
+    public void setGeometryBytes(long geometryBytes) {
+        this.geometryBytes = geometryBytes;
+    }
+
+    public long getTextureBytes() {
+        return textureBytes;
+    }
+
+    public void setTextureBytes(long textureBytes) {
+        this.textureBytes = textureBytes;
+    }
+
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    public void setDrawCalls(int drawCalls) {
+        this.drawCalls = drawCalls;
+    }
+
+    public int getMaterialCount() {
+        return materialCount;
+    }
+
+    public void setMaterialCount(int materialCount) {
+        this.materialCount = materialCount;
+    }
+
+    /**
+     * GPU memory for geometry and textures, or -1 if not estimated yet
+     */
+    public long getGpuBytes() {
+        return hasRuntimeCost() ? geometryBytes + textureBytes : -1;
+    }
+
+    /**
+     * Whether the runtime cost has been estimated yet
+     */
+    public boolean hasRuntimeCost() {
+        return drawCalls >= 0;
+    }
 }
\ No newline at end of file
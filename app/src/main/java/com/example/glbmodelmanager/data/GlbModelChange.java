@@ -0,0 +1,51 @@
+package com.example.glbmodelmanager.data;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * One recorded change to the glb_models table
+ * Rows are written by triggers (see AppDatabase) and consumed by ModelChangeFeed
+ */
+@Entity(tableName = "glb_model_changes")
+public class GlbModelChange {
+
+    public static final int OP_INSERT = 1;
+    public static final int OP_UPDATE = 2;
+    public static final int OP_DELETE = 3;
+
+    @PrimaryKey(autoGenerate = true)
+    private long seq;     // Increases with every change
+
+    private int modelId;  // ID of the changed model
+    private int op;       // OP_INSERT, OP_UPDATE or OP_DELETE
+
+    public GlbModelChange(int modelId, int op) {
+        this.modelId = modelId;
+        this.op = op;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public int getModelId() {
+        return modelId;
+    }
+
+    public void setModelId(int modelId) {
+        this.modelId = modelId;
+    }
+
+    public int getOp() {
+        return op;
+    }
+
+    public void setOp(int op) {
+        this.op = op;
+    }
+}
@@ -4,7 +4,11 @@ import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
+import androidx.room.Update;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
 import java.util.List;
 
@@ -17,9 +21,22 @@ public interface GlbModelDao {
 
     /**
      * Insert a new GLB model record
+     * Returns the generated ID
      */
     @Insert
-    void insert(GlbModel model);
+    long insert(GlbModel model);
+
+    /**
+     * Insert several GLB model records in a single transaction
+     */
+    @Insert
+    List<Long> insertAll(List<GlbModel> models);
+
+    /**
+     * Update an existing GLB model record
+     */
+    @Update
+    void update(GlbModel model);
 
     /**
      * Delete a GLB model record
@@ -27,6 +44,12 @@ public interface GlbModelDao {
     @Delete
     void delete(GlbModel model);
 
+    /**
+     * Delete several GLB model records in a single transaction
+     */
+    @Delete
+    void deleteAll(List<GlbModel> models);
+
     /**
      * Get all GLB models, sorted by date (newest first)
      * LiveData automatically updates UI when data changes
@@ -34,9 +57,184 @@ public interface GlbModelDao {
     @Query("SELECT * FROM glb_models ORDER BY addedDate DESC")
     LiveData<List<GlbModel>> getAllModels();
 
+    /**
+     * Get every GLB model once, without observing changes
+     */
+    @Query("SELECT * FROM glb_models ORDER BY id")
+    List<GlbModel> getAllModelsList();
+
+    /**
+     * Content hashes of every model that has one (to skip models already in the library)
+     */
+    @Query("SELECT contentHash FROM glb_models WHERE contentHash IS NOT NULL")
+    List<String> getContentHashes();
+
+    /**
+     * Get the models matching a sorted and filtered query built by ModelQuery
+     */
+    @RawQuery
+    List<GlbModel> getModels(SupportSQLiteQuery query);
+
+    /**
+     * Get the models with the given IDs (at most 999 per call)
+     */
+    @Query("SELECT * FROM glb_models WHERE id IN (:ids)")
+    List<GlbModel> getModelsByIds(List<Integer> ids);
+
+    /**
+     * Changes recorded after seq, oldest first
+     */
+    @Query("SELECT * FROM glb_model_changes WHERE seq > :seq ORDER BY seq")
+    List<GlbModelChange> getChangesAfter(long seq);
+
+    /**
+     * Sequence number of the newest recorded change (0 if none)
+     */
+    @Query("SELECT COALESCE(MAX(seq), 0) FROM glb_model_changes")
+    long getLatestChangeSeq();
+
+    /**
+     * Drop changes that have been consumed
+     */
+    @Query("DELETE FROM glb_model_changes WHERE seq <= :seq")
+    void deleteChangesUpTo(long seq);
+
     /**
      * Get a specific model by ID
      */
     @Query("SELECT * FROM glb_models WHERE id = :id")
     GlbModel getModelById(int id);
+
+    /**
+     * Find models whose name contains the query, newest first
+     */
+    @Query("SELECT * FROM glb_models WHERE name LIKE '%' || :query || '%' ORDER BY addedDate DESC")
+    List<GlbModel> searchModels(String query);
+
+    /**
+     * Record that a model was opened
+     */
+    @Query("UPDATE glb_models SET lastAccessed = :timestamp WHERE id = :id")
+    void updateLastAccessed(int id, long timestamp);
+
+    /**
+     * Uncompressed models, least recently opened first (candidates for compression)
+     */
+    @Query("SELECT * FROM glb_models WHERE storageTier = " + GlbModel.TIER_HOT + " ORDER BY lastAccessed ASC")
+    List<GlbModel> getHotModelsByLastAccess();
+
+    /**
+     * Total bytes the library takes on disk
+     */
+    @Query("SELECT COALESCE(SUM(storedSize), 0) FROM glb_models")
+    long getStoredBytes();
+
+    /**
+     * Store a model's geometric fingerprint, replacing an older one
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertFingerprint(ModelFingerprint fingerprint);
+
+    /**
+     * Add LSH buckets of a fingerprint
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertFingerprintBuckets(List<FingerprintBucket> buckets);
+
+    /**
+     * Remove the LSH buckets of a model (before re-indexing it)
+     */
+    @Query("DELETE FROM fingerprint_buckets WHERE modelId = :modelId")
+    void deleteFingerprintBuckets(int modelId);
+
+    /**
+     * Get the fingerprint of a model, or null if it has none yet
+     */
+    @Query("SELECT * FROM model_fingerprints WHERE modelId = :modelId")
+    ModelFingerprint getFingerprint(int modelId);
+
+    /**
+     * Get the fingerprints of the given models (at most 999 per call)
+     */
+    @Query("SELECT * FROM model_fingerprints WHERE modelId IN (:modelIds)")
+    List<ModelFingerprint> getFingerprints(List<Integer> modelIds);
+
+    /**
+     * Models that share at least one LSH bucket with a model
+     * Each of its buckets is a lookup on the bucket index, so the cost depends on
+     * the number of near matches, not on the size of the library
+     */
+    @Query("SELECT DISTINCT other.modelId FROM fingerprint_buckets AS mine "
+            + "JOIN fingerprint_buckets AS other ON other.band = mine.band AND other.bucket = mine.bucket "
+            + "WHERE mine.modelId = :modelId AND other.modelId != :modelId")
+    List<Integer> getSimilarCandidates(int modelId);
+
+    /**
+     * Uncompressed models without a fingerprint, geometry stats or runtime cost yet
+     */
+    @Query("SELECT id FROM glb_models WHERE storageTier = " + GlbModel.TIER_HOT
+            + " AND (vertexCount < 0 OR drawCalls < 0 OR id NOT IN (SELECT modelId FROM model_fingerprints))")
+    List<Integer> getUnindexedModelIds();
+
+    /**
+     * Record the vertex and triangle counts of a model
+     */
+    @Query("UPDATE glb_models SET vertexCount = :vertexCount, triangleCount = :triangleCount WHERE id = :id")
+    void updateGeometryStats(int id, int vertexCount, int triangleCount);
+
+    /**
+     * Record the runtime cost estimate of a model
+     */
+    @Query("UPDATE glb_models SET geometryBytes = :geometryBytes, textureBytes = :textureBytes, "
+            + "drawCalls = :drawCalls, materialCount = :materialCount WHERE id = :id")
+    void updateRuntimeCost(int id, long geometryBytes, long textureBytes, int drawCalls, int materialCount);
+
+    /**
+     * Store a model's validation report, replacing an older one
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertValidation(ModelValidation validation);
+
+    /**
+     * Get the validation report of a model, or null if it was not validated yet
+     */
+    @Query("SELECT * FROM model_validations WHERE modelId = :modelId")
+    ModelValidation getValidation(int modelId);
+
+    /**
+     * Add the parts of a split model
+     */
+    @Insert
+    void insertParts(List<ModelPart> parts);
+
+    /**
+     * Remove the parts of a model (before splitting it again)
+     */
+    @Query("DELETE FROM model_parts WHERE modelId = :modelId")
+    void deleteParts(int modelId);
+
+    /**
+     * Parts of a split model in index order (empty if it was never split)
+     */
+    @Query("SELECT * FROM model_parts WHERE modelId = :modelId ORDER BY partIndex")
+    List<ModelPart> getParts(int modelId);
+
+    /**
+     * Store what an optimization stage saved on a model, replacing its older result
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertOptimization(ModelOptimization optimization);
+
+    /**
+     * Optimization results of a model, in the order the stages ran
+     */
+    @Query("SELECT * FROM model_optimizations WHERE modelId = :modelId ORDER BY optimizedAt")
+    List<ModelOptimization> getOptimizations(int modelId);
+
+    /**
+     * Uncompressed models without a validation report yet
+     */
+    @Query("SELECT id FROM glb_models WHERE storageTier = " + GlbModel.TIER_HOT
+            + " AND id NOT IN (SELECT modelId FROM model_validations)")
+    List<Integer> getUnvalidatedModelIds();
 }
@@ -0,0 +1,225 @@
+package com.example.glbmodelmanager.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.room.InvalidationTracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Typed stream of changes to glb_models, for observers that keep their own list
+ * Triggers log every insert, update and delete in glb_model_changes. The feed
+ * reads only those log rows and the changed models, instead of re-running the
+ * full list query after every write, and hands the result to listeners on the
+ * main thread at most once per frame
+ * Consumed log rows are only pruned once the last listener is gone: deleting from
+ * the log invalidates it, and doing that after every poll would wake the feed
+ * again for a read that finds nothing
+ */
+public class ModelChangeFeed {
+
+    /**
+     * One change to apply to a model list
+     */
+    public static class Delta {
+        public final int op;         // GlbModelChange.OP_INSERT, OP_UPDATE or OP_DELETE
+        public final int modelId;
+        public final GlbModel model; // Current row, null for deletes
+
+        Delta(int op, int modelId, GlbModel model) {
+            this.op = op;
+            this.modelId = modelId;
+            this.model = model;
+        }
+    }
+
+    /**
+     * Receives the model list, then the changes to it (always on the main thread)
+     * Deltas are idempotent: an insert of a model already in the list replaces it,
+     * and a delete of a model not in the list does nothing
+     */
+    public interface Listener {
+        void onSnapshot(List<GlbModel> models);
+        void onChanges(List<Delta> deltas);
+    }
+
+    // SQLite allows at most 999 bound variables per statement
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    private static volatile ModelChangeFeed INSTANCE;
+
+    private final GlbModelDao dao;
+    private final ExecutorService reader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "model-change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean pollQueued = new AtomicBoolean(false);
+
+    // Only touched on the reader thread
+    private long lastSeq;
+
+    // Only touched on the main thread
+    private final List<Delta> pending = new ArrayList<>();
+    private boolean frameScheduled;
+
+    /**
+     * Shared feed for the app database
+     */
+    public static ModelChangeFeed get(Context context) {
+        if (INSTANCE == null) {
+            synchronized (ModelChangeFeed.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ModelChangeFeed(AppDatabase.getDatabase(context));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    @VisibleForTesting
+    ModelChangeFeed(AppDatabase database) {
+        this.dao = database.glbModelDao();
+
+        // Anything logged before now is covered by the snapshots listeners start from
+        reader.execute(() -> lastSeq = dao.getLatestChangeSeq());
+
+        database.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("glb_model_changes") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                // With no listeners nobody holds a list that could go stale, and a
+                // burst of writes needs only one read of the log
+                if (!listeners.isEmpty() && pollQueued.compareAndSet(false, true)) {
+                    reader.execute(ModelChangeFeed.this::poll);
+                }
+            }
+        });
+    }
+
+    /**
+     * Start delivering to a listener, beginning with a snapshot of the models matching query
+     * Deltas cover every model; listeners drop the ones their query does not match
+     */
+    public void addListener(Listener listener, ModelQuery query) {
+        listeners.add(listener);
+        reload(listener, query);
+    }
+
+    /**
+     * Send a listener a new snapshot, e.g. after its sort order or filters changed
+     * Runs on the reader thread, so it is ordered with the deltas around it
+     */
+    public void reload(Listener listener, ModelQuery query) {
+        reader.execute(() -> {
+            List<GlbModel> models = dao.getModels(query.toSql());
+            mainHandler.post(() -> {
+                if (listeners.contains(listener)) {
+                    listener.onSnapshot(models);
+                }
+            });
+        });
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            reader.execute(this::prune);
+        }
+    }
+
+    /**
+     * Drop the whole log once nobody is listening; the next listener starts from a snapshot
+     */
+    private void prune() {
+        if (listeners.isEmpty()) {
+            lastSeq = dao.getLatestChangeSeq();
+            dao.deleteChangesUpTo(lastSeq);
+        }
+    }
+
+    /**
+     * Read new log rows, collapse them per model and queue the deltas
+     */
+    private void poll() {
+        pollQueued.set(false);
+        List<GlbModelChange> changes = dao.getChangesAfter(lastSeq);
+        if (changes.isEmpty()) {
+            return;
+        }
+        lastSeq = changes.get(changes.size() - 1).getSeq();
+        if (listeners.isEmpty()) {
+            return; // Nobody is holding a list that could go stale
+        }
+
+        // Several changes to one model become one delta; the current row tells the final state
+        Map<Integer, Integer> ops = new LinkedHashMap<>();
+        for (GlbModelChange change : changes) {
+            Integer first = ops.get(change.getModelId());
+            ops.put(change.getModelId(), change.getOp() == GlbModelChange.OP_DELETE || first == null
+                    ? change.getOp() : first);
+        }
+        Map<Integer, GlbModel> rows = loadRows(ops);
+
+        List<Delta> deltas = new ArrayList<>(ops.size());
+        for (Map.Entry<Integer, Integer> entry : ops.entrySet()) {
+            GlbModel model = rows.get(entry.getKey());
+            int op = model == null ? GlbModelChange.OP_DELETE : entry.getValue();
+            deltas.add(new Delta(op, entry.getKey(), op == GlbModelChange.OP_DELETE ? null : model));
+        }
+        mainHandler.post(() -> queue(deltas));
+    }
+
+    private Map<Integer, GlbModel> loadRows(Map<Integer, Integer> ops) {
+        List<Integer> ids = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : ops.entrySet()) {
+            if (entry.getValue() != GlbModelChange.OP_DELETE) {
+                ids.add(entry.getKey());
+            }
+        }
+        Map<Integer, GlbModel> rows = new HashMap<>();
+        for (int start = 0; start < ids.size(); start += MAX_IDS_PER_QUERY) {
+            List<Integer> chunk = ids.subList(start, Math.min(ids.size(), start + MAX_IDS_PER_QUERY));
+            for (GlbModel model : dao.getModelsByIds(chunk)) {
+                rows.put(model.getId(), model);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Hold deltas until the next frame, so a burst reaches the UI in one update
+     */
+    private void queue(List<Delta> deltas) {
+        pending.addAll(deltas);
+        if (!frameScheduled) {
+            frameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(frameTimeNanos -> deliver());
+        }
+    }
+
+    private void deliver() {
+        frameScheduled = false;
+        List<Delta> deltas = Collections.unmodifiableList(new ArrayList<>(pending));
+        pending.clear();
+        for (Listener listener : listeners) {
+            listener.onChanges(deltas);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.glbmodelmanager.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+
+/**
+ * Geometric fingerprint of a model (see glb.GeometryFingerprint)
+ * Removed together with the model
+ */
+@Entity(tableName = "model_fingerprints",
+        foreignKeys = @ForeignKey(entity = GlbModel.class, parentColumns = "id",
+                childColumns = "modelId", onDelete = ForeignKey.CASCADE))
+public class ModelFingerprint {
+
+    @PrimaryKey
+    private int modelId;
+
+    @NonNull
+    private byte[] signature;  // MinHash slots, little-endian ints
+    private float shapeMid;    // Second longest side of the bounds / longest side
+    private float shapeMin;    // Shortest side of the bounds / longest side
+    private int vertexCount;
+
+    public ModelFingerprint(int modelId, @NonNull byte[] signature, float shapeMid, float shapeMin,
+                            int vertexCount) {
+        this.modelId = modelId;
+        this.signature = signature;
+        this.shapeMid = shapeMid;
+        this.shapeMin = shapeMin;
+        this.vertexCount = vertexCount;
+    }
+
+    public int getModelId() {
+        return modelId;
+    }
+
+    public void setModelId(int modelId) {
+        this.modelId = modelId;
+    }
+
+    @NonNull
+    public byte[] getSignature() {
+        return signature;
+    }
+
+    public void setSignature(@NonNull byte[] signature) {
+        this.signature = signature;
+    }
+
+    public float getShapeMid() {
+        return shapeMid;
+    }
+
+    public void setShapeMid(float shapeMid) {
+        this.shapeMid = shapeMid;
+    }
+
+    public float getShapeMin() {
+        return shapeMin;
+    }
+
+    public void setShapeMin(float shapeMin) {
+        this.shapeMin = shapeMin;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public void setVertexCount(int vertexCount) {
+        this.vertexCount = vertexCount;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.glbmodelmanager.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+
+/**
+ * What one optimization stage saved on a model, kept for the admin report
+ * One row per model and stage, replaced when the stage runs again
+ */
+@Entity(tableName = "model_optimizations",
+        primaryKeys = {"modelId", "stage"},
+        foreignKeys = @ForeignKey(entity = GlbModel.class, parentColumns = "id",
+                childColumns = "modelId", onDelete = ForeignKey.CASCADE))
+public class ModelOptimization {
+
+    // Stages
+    public static final String STAGE_INSTANCING = "instancing";
+    public static final String STAGE_ANIMATION = "animation";
+
+    private int modelId;
+    @NonNull
+    private String stage;
+    private long bytesBefore;      // Bytes of the data the stage works on
+    private long bytesAfter;
+    private int drawCallsBefore;   // -1 if the stage does not change draw calls
+    private int drawCallsAfter;
+    @NonNull
+    private String summary;
+    private long optimizedAt;
+
+    public ModelOptimization(int modelId, @NonNull String stage, long bytesBefore, long bytesAfter,
+                             int drawCallsBefore, int drawCallsAfter, @NonNull String summary,
+                             long optimizedAt) {
+        this.modelId = modelId;
+        this.stage = stage;
+        this.bytesBefore = bytesBefore;
+        this.bytesAfter = bytesAfter;
+        this.drawCallsBefore = drawCallsBefore;
+        this.drawCallsAfter = drawCallsAfter;
+        this.summary = summary;
+        this.optimizedAt = optimizedAt;
+    }
+
+    public int getModelId() {
+        return modelId;
+    }
+
+    public void setModelId(int modelId) {
+        this.modelId = modelId;
+    }
+
+    @NonNull
+    public String getStage() {
+        return stage;
+    }
+
+    public void setStage(@NonNull String stage) {
+        this.stage = stage;
+    }
+
+    public long getBytesBefore() {
+        return bytesBefore;
+    }
+
+    public void setBytesBefore(long bytesBefore) {
+        this.bytesBefore = bytesBefore;
+    }
+
+    public long getBytesAfter() {
+        return bytesAfter;
+    }
+
+    public void setBytesAfter(long bytesAfter) {
+        this.bytesAfter = bytesAfter;
+    }
+
+    public int getDrawCallsBefore() {
+        return drawCallsBefore;
+    }
+
+    public void setDrawCallsBefore(int drawCallsBefore) {
+        this.drawCallsBefore = drawCallsBefore;
+    }
+
+    public int getDrawCallsAfter() {
+        return drawCallsAfter;
+    }
+
+    public void setDrawCallsAfter(int drawCallsAfter) {
+        this.drawCallsAfter = drawCallsAfter;
+    }
+
+    @NonNull
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(@NonNull String summary) {
+        this.summary = summary;
+    }
+
+    public long getOptimizedAt() {
+        return optimizedAt;
+    }
+
+    public void setOptimizedAt(long optimizedAt) {
+        this.optimizedAt = optimizedAt;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.glbmodelmanager.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+/**
+ * One sub-GLB of a model split by glb.GlbSplitter
+ * Parts can be opened on their own; removed together with the model
+ */
+@Entity(tableName = "model_parts",
+        primaryKeys = {"modelId", "partIndex"},
+        foreignKeys = @ForeignKey(entity = GlbModel.class, parentColumns = "id",
+                childColumns = "modelId", onDelete = ForeignKey.CASCADE))
+public class ModelPart {
+
+    private int modelId;
+    private int partIndex;       // Position in the split index
+    @NonNull
+    private String name;
+    @NonNull
+    private String filePath;
+    private long fileSize;
+    private int triangleCount;
+
+    public ModelPart(int modelId, int partIndex, @NonNull String name, @NonNull String filePath,
+                     long fileSize, int triangleCount) {
+        this.modelId = modelId;
+        this.partIndex = partIndex;
+        this.name = name;
+        this.filePath = filePath;
+        this.fileSize = fileSize;
+        this.triangleCount = triangleCount;
+    }
+
+    public int getModelId() {
+        return modelId;
+    }
+
+    public void setModelId(int modelId) {
+        this.modelId = modelId;
+    }
+
+    public int getPartIndex() {
+        return partIndex;
+    }
+
+    public void setPartIndex(int partIndex) {
+        this.partIndex = partIndex;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    public void setName(@NonNull String name) {
+        this.name = name;
+    }
+
+    @NonNull
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(@NonNull String filePath) {
+        this.filePath = filePath;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    public void setTriangleCount(int triangleCount) {
+        this.triangleCount = triangleCount;
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.glbmodelmanager.data;
+
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sort order and range filters for a dashboard's model list
+ * Every sort and every range runs on an indexed column of glb_models (see GlbModel),
+ * with the row ID as tie-breaker, which SQLite reads from the same index. The other
+ * filter columns follow in each sort index, so SQLite can walk the list in order and
+ * skip rows that fail a filter without reading them. The same rules are available in
+ * memory so change feed deltas land in the right place
+ */
+public class ModelQuery {
+
+    public static final int SORT_NEWEST = 0;
+    public static final int SORT_OLDEST = 1;
+    public static final int SORT_NAME = 2;
+    public static final int SORT_LARGEST = 3;
+    public static final int SORT_SMALLEST = 4;
+    public static final int SORT_MOST_VERTICES = 5;
+    public static final int SORT_MOST_TRIANGLES = 6;
+
+    public static final String[] SORT_LABELS = {
+            "Newest first", "Oldest first", "Name", "Largest first", "Smallest first",
+            "Most vertices", "Most triangles"
+    };
+
+    // Bounds of an open range
+    public static final long ANY = -1;
+
+    private final int sort;
+    private long minSize = ANY;
+    private long maxSize = ANY;
+    private long minDate = ANY;
+    private long maxDate = ANY;
+    private long minVertices = ANY;
+    private long maxVertices = ANY;
+    private String namePrefix;
+
+    public ModelQuery(int sort) {
+        if (sort < 0 || sort >= SORT_LABELS.length) {
+            throw new IllegalArgumentException("Unknown sort " + sort);
+        }
+        this.sort = sort;
+    }
+
+    /**
+     * Same filters with another sort order
+     */
+    public ModelQuery withSort(int newSort) {
+        ModelQuery query = new ModelQuery(newSort);
+        query.setSizeRange(minSize, maxSize);
+        query.setDateRange(minDate, maxDate);
+        query.setVertexRange(minVertices, maxVertices);
+        query.setNamePrefix(namePrefix);
+        return query;
+    }
+
+    /**
+     * Same sort order without any filter
+     */
+    public ModelQuery withoutFilters() {
+        return new ModelQuery(sort);
+    }
+
+    public int getSort() {
+        return sort;
+    }
+
+    /**
+     * File size range in bytes, inclusive; ANY leaves a side open
+     */
+    public void setSizeRange(long min, long max) {
+        this.minSize = min;
+        this.maxSize = max;
+    }
+
+    /**
+     * Date added range (milliseconds), inclusive; ANY leaves a side open
+     */
+    public void setDateRange(long min, long max) {
+        this.minDate = min;
+        this.maxDate = max;
+    }
+
+    /**
+     * Vertex count range, inclusive; ANY leaves a side open
+     * Models whose geometry has not been read yet only match an open range
+     */
+    public void setVertexRange(long min, long max) {
+        this.minVertices = min == ANY && max != ANY ? 0 : min;
+        this.maxVertices = max;
+    }
+
+    /**
+     * Only names starting with a prefix (case- and accent-insensitive)
+     * A prefix is a range on the name index; "contains" searches cannot use one
+     */
+    public void setNamePrefix(String prefix) {
+        this.namePrefix = prefix == null || prefix.isEmpty() ? null : GlbModel.sortKey(prefix);
+    }
+
+    public long getMinSize() {
+        return minSize;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public long getMinDate() {
+        return minDate;
+    }
+
+    public long getMaxDate() {
+        return maxDate;
+    }
+
+    public long getMinVertices() {
+        return minVertices;
+    }
+
+    public long getMaxVertices() {
+        return maxVertices;
+    }
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    public boolean hasFilters() {
+        return minSize != ANY || maxSize != ANY || minDate != ANY || maxDate != ANY
+                || minVertices != ANY || maxVertices != ANY || namePrefix != null;
+    }
+
+    /**
+     * SQL for GlbModelDao.getModels
+     */
+    public SupportSQLiteQuery toSql() {
+        StringBuilder sql = new StringBuilder("SELECT * FROM glb_models");
+        List<Object> args = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        addRange(conditions, args, "fileSize", minSize, maxSize);
+        addRange(conditions, args, "addedDate", minDate, maxDate);
+        addRange(conditions, args, "vertexCount", minVertices, maxVertices);
+        if (namePrefix != null) {
+            // Everything that starts with the prefix sorts from it up to (not including) prefixEnd
+            String end = prefixEnd(namePrefix);
+            conditions.add(end != null ? "sortName >= ? AND sortName < ?" : "sortName >= ?");
+            args.add(namePrefix);
+            if (end != null) {
+                args.add(end);
+            }
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY ").append(orderBy());
+        return new SimpleSQLiteQuery(sql.toString(), args.toArray());
+    }
+
+    /**
+     * Smallest string above every string that starts with prefix, or null if there is none
+     * SQLite compares text by UTF-8 bytes, which is code point order, so the last code
+     * point is incremented; appending U+FFFF would miss names continuing with a
+     * character outside the BMP
+     */
+    static String prefixEnd(String prefix) {
+        int end = prefix.length();
+        while (end > 0) {
+            int last = prefix.codePointBefore(end);
+            end -= Character.charCount(last);
+            if (last < Character.MAX_CODE_POINT) {
+                // Surrogate code points cannot be encoded, skip over them
+                int next = last + 1 == Character.MIN_SURROGATE ? Character.MAX_SURROGATE + 1 : last + 1;
+                return new StringBuilder(prefix.substring(0, end)).appendCodePoint(next).toString();
+            }
+        }
+        return null;
+    }
+
+    private static void addRange(List<String> conditions, List<Object> args, String column, long min, long max) {
+        if (min != ANY) {
+            conditions.add(column + " >= ?");
+            args.add(min);
+        }
+        if (max != ANY) {
+            conditions.add(column + " <= ?");
+            args.add(max);
+        }
+    }
+
+    private String orderBy() {
+        switch (sort) {
+            case SORT_OLDEST:
+                return "addedDate ASC, id ASC";
+            case SORT_NAME:
+                return "sortName ASC, id ASC";
+            case SORT_LARGEST:
+                return "fileSize DESC, id DESC";
+            case SORT_SMALLEST:
+                return "fileSize ASC, id ASC";
+            case SORT_MOST_VERTICES:
+                return "vertexCount DESC, id DESC";
+            case SORT_MOST_TRIANGLES:
+                return "triangleCount DESC, id DESC";
+            default:
+                return "addedDate DESC, id DESC";
+        }
+    }
+
+    /**
+     * Whether a model passes the filters (same rules as the SQL)
+     */
+    public boolean matches(GlbModel model) {
+        return inRange(model.getFileSize(), minSize, maxSize)
+                && inRange(model.getAddedDate(), minDate, maxDate)
+                && inRange(model.getVertexCount(), minVertices, maxVertices)
+                && (namePrefix == null || (model.getSortName() != null
+                        && model.getSortName().startsWith(namePrefix)));
+    }
+
+    private static boolean inRange(long value, long min, long max) {
+        return (min == ANY || value >= min) && (max == ANY || value <= max);
+    }
+
+    /**
+     * Order of the list (same as the SQL ORDER BY)
+     */
+    public Comparator<GlbModel> comparator() {
+        switch (sort) {
+            case SORT_OLDEST:
+                return (a, b) -> compare(a.getAddedDate(), b.getAddedDate(), a, b);
+            case SORT_NAME:
+                return (a, b) -> {
+                    int result = compareNames(a.getSortName(), b.getSortName());
+                    return result != 0 ? result : Integer.compare(a.getId(), b.getId());
+                };
+            case SORT_LARGEST:
+                return (a, b) -> compare(b.getFileSize(), a.getFileSize(), b, a);
+            case SORT_SMALLEST:
+                return (a, b) -> compare(a.getFileSize(), b.getFileSize(), a, b);
+            case SORT_MOST_VERTICES:
+                return (a, b) -> compare(b.getVertexCount(), a.getVertexCount(), b, a);
+            case SORT_MOST_TRIANGLES:
+                return (a, b) -> compare(b.getTriangleCount(), a.getTriangleCount(), b, a);
+            default:
+                return (a, b) -> compare(b.getAddedDate(), a.getAddedDate(), b, a);
+        }
+    }
+
+    private static int compare(long first, long second, GlbModel a, GlbModel b) {
+        int result = Long.compare(first, second);
+        return result != 0 ? result : Integer.compare(a.getId(), b.getId());
+    }
+
+    /**
+     * SQLite sorts NULL first and compares text by UTF-8 bytes, i.e. by code point;
+     * String.compareTo compares UTF-16 units, which puts characters outside the BMP
+     * before U+E000..U+FFFF
+     */
+    static int compareNames(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    /**
+     * Key for caching the result list
+     */
+    public String cacheKey() {
+        return sort + "|" + minSize + "|" + maxSize + "|" + minDate + "|" + maxDate + "|"
+                + minVertices + "|" + maxVertices + "|" + namePrefix;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.glbmodelmanager.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+
+/**
+ * Result of the structural check of a model (see glb.GltfValidator)
+ * Removed together with the model
+ */
+@Entity(tableName = "model_validations",
+        foreignKeys = @ForeignKey(entity = GlbModel.class, parentColumns = "id",
+                childColumns = "modelId", onDelete = ForeignKey.CASCADE))
+public class ModelValidation {
+
+    @PrimaryKey
+    private int modelId;
+
+    private int errorCount;
+    private int warningCount;
+    @NonNull
+    private String report;     // ValidationReport.toJson()
+    private long validatedAt;
+
+    public ModelValidation(int modelId, int errorCount, int warningCount, @NonNull String report,
+                           long validatedAt) {
+        this.modelId = modelId;
+        this.errorCount = errorCount;
+        this.warningCount = warningCount;
+        this.report = report;
+        this.validatedAt = validatedAt;
+    }
+
+    public int getModelId() {
+        return modelId;
+    }
+
+    public void setModelId(int modelId) {
+        this.modelId = modelId;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public void setErrorCount(int errorCount) {
+        this.errorCount = errorCount;
+    }
+
+    public int getWarningCount() {
+        return warningCount;
+    }
+
+    public void setWarningCount(int warningCount) {
+        this.warningCount = warningCount;
+    }
+
+    @NonNull
+    public String getReport() {
+        return report;
+    }
+
+    public void setReport(@NonNull String report) {
+        this.report = report;
+    }
+
+    public long getValidatedAt() {
+        return validatedAt;
+    }
+
+    public void setValidatedAt(long validatedAt) {
+        this.validatedAt = validatedAt;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.glbmodelmanager.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size latency histogram with log-linear buckets (microsecond resolution)
+ * Recording is lock-free and allocation-free, so it is cheap enough for every query
+ */
+public class LatencyHistogram {
+
+    // 8 sub-buckets per power of two keeps the error of a percentile under 12.5%
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Largest tracked value is 2^36 µs (about 19 hours); anything above lands in the last bucket
+    private static final int MAX_MAGNITUDE = 36;
+    private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Point-in-time summary, in microseconds
+     */
+    public static class Snapshot {
+        public final long count;
+        public final long p50;
+        public final long p99;
+        public final long max;
+        public final long mean;
+
+        Snapshot(long count, long p50, long p99, long max, long mean) {
+            this.count = count;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+            this.mean = mean;
+        }
+    }
+
+    /**
+     * Record one duration
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+
+        long current = maxMicros.get();
+        while (micros > current && !maxMicros.compareAndSet(current, micros)) {
+            current = maxMicros.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile (0..1), capped at the max
+     */
+    public long percentile(double fraction) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    public Snapshot snapshot() {
+        long total = count.get();
+        return new Snapshot(total, percentile(0.5), percentile(0.99), maxMicros.get(),
+                total == 0 ? 0 : totalMicros.get() / total);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value; // Small values are exact
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        int index = (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    static long bucketUpperBound(int index) {
+        int group = index / SUB_BUCKETS;
+        int sub = index % SUB_BUCKETS;
+        if (group == 0) {
+            return sub;
+        }
+        long width = 1L << (group - 1);
+        return (SUB_BUCKETS + sub) * width + width - 1;
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.glbmodelmanager.diagnostics;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-query latency statistics for the Room database
+ * DAO calls are timed by TimedGlbModelDao and TimedUserDao, LiveData queries by the timed query executor.
+ * Room's query callback supplies the SQL and bind arguments of the running query,
+ * which are only kept (redacted) for queries slower than the threshold
+ */
+public class QueryStats {
+
+    private static final String TAG = "SlowQuery";
+
+    public static final long DEFAULT_SLOW_QUERY_MS = 100;
+
+    // Caps on retained data, so raw queries cannot grow these without bound
+    private static final int MAX_QUERIES = 200;
+    private static final int MAX_SLOW_QUERIES = 50;
+    private static final String OTHER_QUERIES = "(other)";
+
+    private static final QueryStats INSTANCE = new QueryStats();
+
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final ArrayDeque<SlowQuery> slowQueries = new ArrayDeque<>();
+    private volatile long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_MS);
+
+    // Query seen by the callback during the current timed call on this thread
+    private final ThreadLocal<Scope> scopes = new ThreadLocal<Scope>() {
+        @Override
+        protected Scope initialValue() {
+            return new Scope();
+        }
+    };
+
+    private static class Scope {
+        int depth;
+        String sql;
+        List<?> args;
+    }
+
+    /**
+     * A query that took longer than the threshold
+     */
+    public static class SlowQuery {
+        public final String name;
+        public final String sql;
+        public final String args;
+        public final long durationMicros;
+        public final long timestamp;
+
+        SlowQuery(String name, String sql, String args, long durationMicros, long timestamp) {
+            this.name = name;
+            this.sql = sql;
+            this.args = args;
+            this.durationMicros = durationMicros;
+            this.timestamp = timestamp;
+        }
+    }
+
+    public static QueryStats get() {
+        return INSTANCE;
+    }
+
+    public long getSlowQueryThresholdMs() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    public void setSlowQueryThresholdMs(long thresholdMs) {
+        slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+    }
+
+    /**
+     * Start timing a call on this thread; pass the result to end()
+     */
+    public long begin() {
+        Scope scope = scopes.get();
+        if (scope.depth++ == 0) {
+            scope.sql = null;
+            scope.args = null;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Room query callback; must run on the query thread (direct executor)
+     */
+    public void onQuery(String sql, List<?> args) {
+        Scope scope = scopes.get();
+        if (scope.depth > 0 && scope.sql == null) {
+            scope.sql = sql;
+            scope.args = args;
+        }
+    }
+
+    /**
+     * Finish timing a call
+     * With a null name the call is recorded under the SQL it ran, if any
+     */
+    public void end(String name, long start) {
+        long elapsed = System.nanoTime() - start;
+        Scope scope = scopes.get();
+        String sql = scope.sql;
+        List<?> args = scope.args;
+        if (--scope.depth == 0) {
+            scope.sql = null;
+            scope.args = null;
+        }
+
+        if (name == null) {
+            if (sql == null) {
+                return; // No query ran
+            }
+            name = sql;
+        }
+        histogram(name).record(elapsed);
+        if (elapsed >= slowThresholdNanos) {
+            onSlowQuery(name, sql, args, elapsed);
+        }
+    }
+
+    /**
+     * Wrap an executor so every task is timed under the query it runs
+     * Used as Room's query executor, which runs LiveData queries
+     */
+    public Executor timed(Executor delegate) {
+        return command -> delegate.execute(() -> {
+            long start = begin();
+            try {
+                command.run();
+            } finally {
+                end(null, start);
+            }
+        });
+    }
+
+    /**
+     * Summaries of every query, sorted by name
+     */
+    public Map<String, LatencyHistogram.Snapshot> snapshot() {
+        Map<String, LatencyHistogram.Snapshot> result = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * Recent slow queries, newest first
+     */
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            List<SlowQuery> result = new ArrayList<>(slowQueries);
+            Collections.reverse(result);
+            return result;
+        }
+    }
+
+    public void reset() {
+        histograms.clear();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    /**
+     * All statistics as JSON for export
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONArray queries = new JSONArray();
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : snapshot().entrySet()) {
+            LatencyHistogram.Snapshot stats = entry.getValue();
+            queries.put(new JSONObject()
+                    .put("name", entry.getKey())
+                    .put("count", stats.count)
+                    .put("p50Us", stats.p50)
+                    .put("p99Us", stats.p99)
+                    .put("maxUs", stats.max)
+                    .put("meanUs", stats.mean));
+        }
+
+        JSONArray slow = new JSONArray();
+        for (SlowQuery query : getSlowQueries()) {
+            slow.put(new JSONObject()
+                    .put("name", query.name)
+                    .put("sql", query.sql)
+                    .put("args", query.args)
+                    .put("durationUs", query.durationMicros)
+                    .put("timestamp", query.timestamp));
+        }
+
+        return new JSONObject()
+                .put("slowQueryThresholdMs", getSlowQueryThresholdMs())
+                .put("queries", queries)
+                .put("slowQueries", slow);
+    }
+
+    /**
+     * Bind arguments with their values removed, e.g. [text(5), number, null]
+     */
+    static String redact(List<?> args) {
+        if (args == null) {
+            return "[]";
+        }
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < args.size(); i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            Object arg = args.get(i);
+            if (arg == null) {
+                builder.append("null");
+            } else if (arg instanceof String) {
+                builder.append("text(").append(((String) arg).length()).append(')');
+            } else if (arg instanceof byte[]) {
+                builder.append("blob(").append(((byte[]) arg).length).append(')');
+            } else if (arg instanceof Number) {
+                builder.append("number");
+            } else {
+                builder.append(arg.getClass().getSimpleName());
+            }
+        }
+        return builder.append(']').toString();
+    }
+
+    private LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            if (histograms.size() >= MAX_QUERIES) {
+                name = OTHER_QUERIES;
+            }
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = histograms.putIfAbsent(name, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    private void onSlowQuery(String name, String sql, List<?> args, long elapsedNanos) {
+        String redacted = redact(args);
+        long micros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+        Log.w(TAG, name + " took " + (micros / 1000) + " ms: " + sql + " " + redacted);
+
+        synchronized (slowQueries) {
+            if (slowQueries.size() == MAX_SLOW_QUERIES) {
+                slowQueries.removeFirst();
+            }
+            slowQueries.addLast(new SlowQuery(name, sql, redacted, micros, System.currentTimeMillis()));
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.glbmodelmanager.diagnostics;
+
+import android.content.Context;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Timing spans for the import and export pipeline
+ * Each finished operation goes into a bounded in-memory ring and is appended as
+ * one JSON line to a small rolling log file. Recording a span is two nanoTime()
+ * calls and an array add, so the overhead stays far below 1% of a file copy
+ */
+public class Telemetry {
+
+    public static final String KIND_IMPORT = "import";
+    public static final String KIND_EXPORT = "export";
+
+    // Pipeline stages
+    public static final int STAGE_LOOKUP = 0;   // Provider name and size lookup
+    public static final int STAGE_COPY = 1;     // Reading the source and writing the file
+    public static final int STAGE_HASH = 2;     // SHA-256 of the copied bytes
+    public static final int STAGE_PARSE = 3;    // glTF JSON parsing and packing
+    public static final int STAGE_INSERT = 4;   // Database insert
+    public static final int STAGE_NOTIFY = 5;   // Progress notifications and dialogs
+    public static final int STAGE_INDEX = 6;    // Geometric fingerprint for the similarity index
+    public static final int STAGE_VALIDATE = 7; // Structural check of the glTF
+    public static final String[] STAGE_NAMES = {"lookup", "copy", "hash", "parse", "insert", "notify", "index",
+            "validate"};
+
+    private static final int RING_CAPACITY = 50;
+
+    // Log file rolls over to a single backup at this size
+    private static final String LOG_DIR = "telemetry";
+    private static final String LOG_FILE = "telemetry.log";
+    private static final String LOG_BACKUP = "telemetry.1.log";
+    private static final long MAX_LOG_BYTES = 256 * 1024;
+
+    private static final Telemetry INSTANCE = new Telemetry();
+
+    private final Operation[] ring = new Operation[RING_CAPACITY];
+    private int next = 0;
+    private int size = 0;
+
+    private volatile Context context;
+    private final ExecutorService sinkExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "telemetry-sink");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * One import or export, with the time spent in each stage
+     * Used by a single thread until finish()
+     */
+    public static class Operation {
+        public final String kind;
+        public final long startedAt;
+        public final long[] stageNanos = new long[STAGE_NAMES.length];
+        private final long startNanos;
+        private final Telemetry owner;
+
+        public String name;
+        public long bytes;
+        public long totalNanos;
+        public String error;
+
+        Operation(Telemetry owner, String kind) {
+            this.owner = owner;
+            this.kind = kind;
+            this.startedAt = System.currentTimeMillis();
+            this.startNanos = System.nanoTime();
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Add the time since startNanos (from System.nanoTime()) to a stage
+         */
+        public void add(int stage, long startNanos) {
+            stageNanos[stage] += System.nanoTime() - startNanos;
+        }
+
+        public void addNanos(int stage, long nanos) {
+            stageNanos[stage] += nanos;
+        }
+
+        /**
+         * Count bytes moved by the copy stage (for throughput)
+         */
+        public void addBytes(long count) {
+            bytes += count;
+        }
+
+        /**
+         * Copy throughput in MB/s, or 0 if nothing was copied
+         */
+        public double getCopyMegabytesPerSecond() {
+            long nanos = stageNanos[STAGE_COPY];
+            return nanos == 0 ? 0 : (bytes / (1024.0 * 1024.0)) / (nanos / 1e9);
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * Close the operation; error is null on success
+         */
+        public void finish(String error) {
+            if (owner == null) {
+                return;
+            }
+            this.totalNanos = System.nanoTime() - startNanos;
+            this.error = error;
+            owner.record(this);
+        }
+
+        public JSONObject toJson() throws JSONException {
+            JSONObject stages = new JSONObject();
+            for (int i = 0; i < STAGE_NAMES.length; i++) {
+                stages.put(STAGE_NAMES[i], stageNanos[i] / 1000);
+            }
+            return new JSONObject()
+                    .put("kind", kind)
+                    .put("name", name)
+                    .put("startedAt", startedAt)
+                    .put("totalUs", totalNanos / 1000)
+                    .put("bytes", bytes)
+                    .put("copyMBps", Math.round(getCopyMegabytesPerSecond() * 100) / 100.0)
+                    .put("success", isSuccess())
+                    .put("error", error)
+                    .put("stagesUs", stages);
+        }
+    }
+
+    public static Telemetry get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Enable the file sink (files are written on a background thread)
+     */
+    public void init(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Start timing an operation
+     */
+    public Operation begin(String kind) {
+        return new Operation(this, kind);
+    }
+
+    /**
+     * Operation that records nothing, for callers that are not traced
+     */
+    public static Operation disabled() {
+        return new Operation(null, "disabled");
+    }
+
+    /**
+     * Finished operations, newest first
+     */
+    public synchronized List<Operation> getRecent() {
+        List<Operation> result = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            result.add(ring[(next - i + RING_CAPACITY) % RING_CAPACITY]);
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < RING_CAPACITY; i++) {
+            ring[i] = null;
+        }
+        next = 0;
+        size = 0;
+    }
+
+    private void record(Operation operation) {
+        synchronized (this) {
+            ring[next] = operation;
+            next = (next + 1) % RING_CAPACITY;
+            size = Math.min(size + 1, RING_CAPACITY);
+        }
+        if (context != null) {
+            sinkExecutor.execute(() -> append(operation));
+        }
+    }
+
+    /**
+     * Append one JSON line to the log, rolling it over when it gets too big
+     */
+    private void append(Operation operation) {
+        try {
+            File dir = new File(context.getFilesDir(), LOG_DIR);
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            File log = new File(dir, LOG_FILE);
+            if (log.length() > MAX_LOG_BYTES) {
+                File backup = new File(dir, LOG_BACKUP);
+                backup.delete();
+                log.renameTo(backup);
+            }
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(log, true), StandardCharsets.UTF_8)) {
+                writer.write(operation.toJson().toString());
+                writer.write('\n');
+            }
+        } catch (IOException | JSONException e) {
+            // Telemetry must never break imports
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package com.example.glbmodelmanager.diagnostics;
+
+import androidx.lifecycle.LiveData;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import com.example.glbmodelmanager.data.FingerprintBucket;
+import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.data.GlbModelChange;
+import com.example.glbmodelmanager.data.GlbModelDao;
+import com.example.glbmodelmanager.data.ModelFingerprint;
+import com.example.glbmodelmanager.data.ModelOptimization;
+import com.example.glbmodelmanager.data.ModelPart;
+import com.example.glbmodelmanager.data.ModelValidation;
+
+import java.util.List;
+
+/**
+ * GlbModelDao that times every call in QueryStats under "GlbModelDao.method"
+ * Written out by hand rather than as a reflection proxy, so timing a call adds no
+ * argument arrays, boxing or string building on top of the query itself
+ */
+public class TimedGlbModelDao implements GlbModelDao {
+
+    private final GlbModelDao dao;
+    private final QueryStats stats;
+
+    public TimedGlbModelDao(GlbModelDao dao, QueryStats stats) {
+        this.dao = dao;
+        this.stats = stats;
+    }
+
+    @Override
+    public long insert(GlbModel model) {
+        long start = stats.begin();
+        try {
+            return dao.insert(model);
+        } finally {
+            stats.end("GlbModelDao.insert", start);
+        }
+    }
+
+    @Override
+    public List<Long> insertAll(List<GlbModel> models) {
+        long start = stats.begin();
+        try {
+            return dao.insertAll(models);
+        } finally {
+            stats.end("GlbModelDao.insertAll", start);
+        }
+    }
+
+    @Override
+    public void update(GlbModel model) {
+        long start = stats.begin();
+        try {
+            dao.update(model);
+        } finally {
+            stats.end("GlbModelDao.update", start);
+        }
+    }
+
+    @Override
+    public void delete(GlbModel model) {
+        long start = stats.begin();
+        try {
+            dao.delete(model);
+        } finally {
+            stats.end("GlbModelDao.delete", start);
+        }
+    }
+
+    @Override
+    public void deleteAll(List<GlbModel> models) {
+        long start = stats.begin();
+        try {
+            dao.deleteAll(models);
+        } finally {
+            stats.end("GlbModelDao.deleteAll", start);
+        }
+    }
+
+    @Override
+    public LiveData<List<GlbModel>> getAllModels() {
+        // Runs later on the query executor and is timed there
+        return dao.getAllModels();
+    }
+
+    @Override
+    public List<GlbModel> getAllModelsList() {
+        long start = stats.begin();
+        try {
+            return dao.getAllModelsList();
+        } finally {
+            stats.end("GlbModelDao.getAllModelsList", start);
+        }
+    }
+
+    @Override
+    public List<String> getContentHashes() {
+        long start = stats.begin();
+        try {
+            return dao.getContentHashes();
+        } finally {
+            stats.end("GlbModelDao.getContentHashes", start);
+        }
+    }
+
+    @Override
+    public List<GlbModel> getModels(SupportSQLiteQuery query) {
+        long start = stats.begin();
+        try {
+            return dao.getModels(query);
+        } finally {
+            stats.end("GlbModelDao.getModels", start);
+        }
+    }
+
+    @Override
+    public List<GlbModel> getModelsByIds(List<Integer> ids) {
+        long start = stats.begin();
+        try {
+            return dao.getModelsByIds(ids);
+        } finally {
+            stats.end("GlbModelDao.getModelsByIds", start);
+        }
+    }
+
+    @Override
+    public List<GlbModelChange> getChangesAfter(long seq) {
+        long start = stats.begin();
+        try {
+            return dao.getChangesAfter(seq);
+        } finally {
+            stats.end("GlbModelDao.getChangesAfter", start);
+        }
+    }
+
+    @Override
+    public long getLatestChangeSeq() {
+        long start = stats.begin();
+        try {
+            return dao.getLatestChangeSeq();
+        } finally {
+            stats.end("GlbModelDao.getLatestChangeSeq", start);
+        }
+    }
+
+    @Override
+    public void deleteChangesUpTo(long seq) {
+        long start = stats.begin();
+        try {
+            dao.deleteChangesUpTo(seq);
+        } finally {
+            stats.end("GlbModelDao.deleteChangesUpTo", start);
+        }
+    }
+
+    @Override
+    public GlbModel getModelById(int id) {
+        long start = stats.begin();
+        try {
+            return dao.getModelById(id);
+        } finally {
+            stats.end("GlbModelDao.getModelById", start);
+        }
+    }
+
+    @Override
+    public List<GlbModel> searchModels(String query) {
+        long start = stats.begin();
+        try {
+            return dao.searchModels(query);
+        } finally {
+            stats.end("GlbModelDao.searchModels", start);
+        }
+    }
+
+    @Override
+    public void updateLastAccessed(int id, long timestamp) {
+        long start = stats.begin();
+        try {
+            dao.updateLastAccessed(id, timestamp);
+        } finally {
+            stats.end("GlbModelDao.updateLastAccessed", start);
+        }
+    }
+
+    @Override
+    public List<GlbModel> getHotModelsByLastAccess() {
+        long start = stats.begin();
+        try {
+            return dao.getHotModelsByLastAccess();
+        } finally {
+            stats.end("GlbModelDao.getHotModelsByLastAccess", start);
+        }
+    }
+
+    @Override
+    public long getStoredBytes() {
+        long start = stats.begin();
+        try {
+            return dao.getStoredBytes();
+        } finally {
+            stats.end("GlbModelDao.getStoredBytes", start);
+        }
+    }
+
+    @Override
+    public void insertFingerprint(ModelFingerprint fingerprint) {
+        long start = stats.begin();
+        try {
+            dao.insertFingerprint(fingerprint);
+        } finally {
+            stats.end("GlbModelDao.insertFingerprint", start);
+        }
+    }
+
+    @Override
+    public void insertFingerprintBuckets(List<FingerprintBucket> buckets) {
+        long start = stats.begin();
+        try {
+            dao.insertFingerprintBuckets(buckets);
+        } finally {
+            stats.end("GlbModelDao.insertFingerprintBuckets", start);
+        }
+    }
+
+    @Override
+    public void deleteFingerprintBuckets(int modelId) {
+        long start = stats.begin();
+        try {
+            dao.deleteFingerprintBuckets(modelId);
+        } finally {
+            stats.end("GlbModelDao.deleteFingerprintBuckets", start);
+        }
+    }
+
+    @Override
+    public ModelFingerprint getFingerprint(int modelId) {
+        long start = stats.begin();
+        try {
+            return dao.getFingerprint(modelId);
+        } finally {
+            stats.end("GlbModelDao.getFingerprint", start);
+        }
+    }
+
+    @Override
+    public List<ModelFingerprint> getFingerprints(List<Integer> modelIds) {
+        long start = stats.begin();
+        try {
+            return dao.getFingerprints(modelIds);
+        } finally {
+            stats.end("GlbModelDao.getFingerprints", start);
+        }
+    }
+
+    @Override
+    public List<Integer> getSimilarCandidates(int modelId) {
+        long start = stats.begin();
+        try {
+            return dao.getSimilarCandidates(modelId);
+        } finally {
+            stats.end("GlbModelDao.getSimilarCandidates", start);
+        }
+    }
+
+    @Override
+    public List<Integer> getUnindexedModelIds() {
+        long start = stats.begin();
+        try {
+            return dao.getUnindexedModelIds();
+        } finally {
+            stats.end("GlbModelDao.getUnindexedModelIds", start);
+        }
+    }
+
+    @Override
+    public void updateGeometryStats(int id, int vertexCount, int triangleCount) {
+        long start = stats.begin();
+        try {
+            dao.updateGeometryStats(id, vertexCount, triangleCount);
+        } finally {
+            stats.end("GlbModelDao.updateGeometryStats", start);
+        }
+    }
+
+    @Override
+    public void updateRuntimeCost(int id, long geometryBytes, long textureBytes, int drawCalls, int materialCount) {
+        long start = stats.begin();
+        try {
+            dao.updateRuntimeCost(id, geometryBytes, textureBytes, drawCalls, materialCount);
+        } finally {
+            stats.end("GlbModelDao.updateRuntimeCost", start);
+        }
+    }
+
+    @Override
+    public void insertValidation(ModelValidation validation) {
+        long start = stats.begin();
+        try {
+            dao.insertValidation(validation);
+        } finally {
+            stats.end("GlbModelDao.insertValidation", start);
+        }
+    }
+
+    @Override
+    public ModelValidation getValidation(int modelId) {
+        long start = stats.begin();
+        try {
+            return dao.getValidation(modelId);
+        } finally {
+            stats.end("GlbModelDao.getValidation", start);
+        }
+    }
+
+    @Override
+    public void insertParts(List<ModelPart> parts) {
+        long start = stats.begin();
+        try {
+            dao.insertParts(parts);
+        } finally {
+            stats.end("GlbModelDao.insertParts", start);
+        }
+    }
+
+    @Override
+    public void deleteParts(int modelId) {
+        long start = stats.begin();
+        try {
+            dao.deleteParts(modelId);
+        } finally {
+            stats.end("GlbModelDao.deleteParts", start);
+        }
+    }
+
+    @Override
+    public List<ModelPart> getParts(int modelId) {
+        long start = stats.begin();
+        try {
+            return dao.getParts(modelId);
+        } finally {
+            stats.end("GlbModelDao.getParts", start);
+        }
+    }
+
+    @Override
+    public void insertOptimization(ModelOptimization optimization) {
+        long start = stats.begin();
+        try {
+            dao.insertOptimization(optimization);
+        } finally {
+            stats.end("GlbModelDao.insertOptimization", start);
+        }
+    }
+
+    @Override
+    public List<ModelOptimization> getOptimizations(int modelId) {
+        long start = stats.begin();
+        try {
+            return dao.getOptimizations(modelId);
+        } finally {
+            stats.end("GlbModelDao.getOptimizations", start);
+        }
+    }
+
+    @Override
+    public List<Integer> getUnvalidatedModelIds() {
+        long start = stats.begin();
+        try {
+            return dao.getUnvalidatedModelIds();
+        } finally {
+            stats.end("GlbModelDao.getUnvalidatedModelIds", start);
+        }
+    }
+}
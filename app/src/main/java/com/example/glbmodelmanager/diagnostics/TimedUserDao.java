@@ -0,0 +1,48 @@
+package com.example.glbmodelmanager.diagnostics;
+
+import com.example.glbmodelmanager.data.User;
+import com.example.glbmodelmanager.data.UserDao;
+
+/**
+ * UserDao that times every call in QueryStats under "UserDao.method"
+ */
+public class TimedUserDao implements UserDao {
+
+    private final UserDao dao;
+    private final QueryStats stats;
+
+    public TimedUserDao(UserDao dao, QueryStats stats) {
+        this.dao = dao;
+        this.stats = stats;
+    }
+
+    @Override
+    public void insert(User user) {
+        long start = stats.begin();
+        try {
+            dao.insert(user);
+        } finally {
+            stats.end("UserDao.insert", start);
+        }
+    }
+
+    @Override
+    public User login(String username, String password) {
+        long start = stats.begin();
+        try {
+            return dao.login(username, password);
+        } finally {
+            stats.end("UserDao.login", start);
+        }
+    }
+
+    @Override
+    public int getUserCount() {
+        long start = stats.begin();
+        try {
+            return dao.getUserCount();
+        } finally {
+            stats.end("UserDao.getUserCount", start);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Random access to the elements of a glTF accessor stored in the BIN chunk
+ * Values are read straight from the mapped buffer, nothing is copied
+ */
+public class Accessor {
+
+    // glTF componentType values
+    public static final int BYTE = 5120;
+    public static final int UNSIGNED_BYTE = 5121;
+    public static final int SHORT = 5122;
+    public static final int UNSIGNED_SHORT = 5123;
+    public static final int UNSIGNED_INT = 5125;
+    public static final int FLOAT = 5126;
+
+    private final ByteBuffer data;
+    private final int count;
+    private final int componentType;
+    private final int components;
+    private final boolean normalized;
+    private final int componentSize;
+    private final int stride;
+
+    private Accessor(ByteBuffer data, int count, int componentType, int components,
+                     boolean normalized, int stride) {
+        this.data = data;
+        this.count = count;
+        this.componentType = componentType;
+        this.components = components;
+        this.normalized = normalized;
+        this.componentSize = componentSize(componentType);
+        this.stride = stride;
+    }
+
+    /**
+     * Open an accessor of the embedded buffer
+     * Returns null if the accessor has no bufferView (all zeros, sparse-only or
+     * compressed by an extension)
+     */
+    public static Accessor open(GlbFile glb, int index) throws IOException {
+        JSONArray accessors = glb.getJson().optJSONArray("accessors");
+        JSONObject accessor = accessors != null ? accessors.optJSONObject(index) : null;
+        if (accessor == null) {
+            throw new GlbFormatException("Missing accessor " + index);
+        }
+        if (!accessor.has("bufferView")) {
+            return null;
+        }
+        int viewIndex = accessor.optInt("bufferView", -1);
+        ByteBuffer view = glb.getBufferView(viewIndex);
+        if (view == null) {
+            return null;
+        }
+
+        int componentType = accessor.optInt("componentType", 0);
+        int components = componentCount(accessor.optString("type", ""));
+        int size = componentSize(componentType);
+        if (components == 0 || size == 0) {
+            throw new GlbFormatException("Accessor " + index + " has an unknown type");
+        }
+        int count = accessor.optInt("count", 0);
+        int elementSize = components * size;
+        JSONObject viewJson = glb.getJson().optJSONArray("bufferViews").optJSONObject(viewIndex);
+        int stride = viewJson.optInt("byteStride", 0);
+        if (stride == 0) {
+            stride = elementSize;
+        }
+
+        return slice(view, accessor.optLong("byteOffset", 0), count, componentType, components,
+                accessor.optBoolean("normalized", false), stride, "Accessor " + index);
+    }
+
+    /**
+     * Open count tightly packed elements at offset in a bufferView of the embedded buffer
+     * (the indices or values of a sparse accessor)
+     * Returns null if the bufferView is not in the BIN chunk
+     */
+    static Accessor openView(GlbFile glb, int viewIndex, long offset, int count, int componentType,
+                             int components, boolean normalized) throws IOException {
+        ByteBuffer view = glb.getBufferView(viewIndex);
+        if (view == null) {
+            return null;
+        }
+        int size = componentSize(componentType);
+        if (components == 0 || size == 0) {
+            throw new GlbFormatException("bufferView " + viewIndex + " is read with an unknown type");
+        }
+        return slice(view, offset, count, componentType, components, normalized, components * size,
+                "Data in bufferView " + viewIndex);
+    }
+
+    private static Accessor slice(ByteBuffer view, long offset, int count, int componentType, int components,
+                                  boolean normalized, int stride, String name) throws IOException {
+        int elementSize = components * componentSize(componentType);
+        long needed = count == 0 ? 0 : offset + (long) (count - 1) * stride + elementSize;
+        if (offset < 0 || count < 0 || needed > view.remaining()) {
+            throw new GlbFormatException(name + " runs past its bufferView");
+        }
+        ByteBuffer data = GlbFile.slice(view, (int) offset, view.remaining() - (int) offset);
+        return new Accessor(data, count, componentType, components, normalized, stride);
+    }
+
+    /**
+     * Accessor over tightly packed data that is already in memory (e.g. decoded Draco)
+     */
+    static Accessor wrap(ByteBuffer data, int count, int componentType, int components) {
+        return new Accessor(data.duplicate().order(ByteOrder.LITTLE_ENDIAN), count, componentType, components,
+                false, components * componentSize(componentType));
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getComponents() {
+        return components;
+    }
+
+    public int getComponentType() {
+        return componentType;
+    }
+
+    /**
+     * One component of one element, as a float
+     * Normalized integers are mapped to [0, 1] or [-1, 1] as the spec requires
+     */
+    public float get(int element, int component) {
+        int position = element * stride + component * componentSize;
+        switch (componentType) {
+            case FLOAT:
+                return data.getFloat(position);
+            case BYTE:
+                return normalized ? Math.max(data.get(position) / 127f, -1f) : data.get(position);
+            case UNSIGNED_BYTE:
+                int ubyte = data.get(position) & 0xFF;
+                return normalized ? ubyte / 255f : ubyte;
+            case SHORT:
+                return normalized ? Math.max(data.getShort(position) / 32767f, -1f) : data.getShort(position);
+            case UNSIGNED_SHORT:
+                int ushort = data.getShort(position) & 0xFFFF;
+                return normalized ? ushort / 65535f : ushort;
+            default:
+                return data.getInt(position) & 0xFFFFFFFFL;
+        }
+    }
+
+    /**
+     * One component of one element, as an integer (for index accessors)
+     */
+    public long getInt(int element, int component) {
+        int position = element * stride + component * componentSize;
+        switch (componentType) {
+            case UNSIGNED_BYTE:
+                return data.get(position) & 0xFF;
+            case UNSIGNED_SHORT:
+                return data.getShort(position) & 0xFFFF;
+            case UNSIGNED_INT:
+                return data.getInt(position) & 0xFFFFFFFFL;
+            default:
+                return (long) get(element, component);
+        }
+    }
+
+    /**
+     * Number of components for an accessor type, or 0 if unknown
+     */
+    public static int componentCount(String type) {
+        switch (type) {
+            case "SCALAR":
+                return 1;
+            case "VEC2":
+                return 2;
+            case "VEC3":
+                return 3;
+            case "VEC4":
+            case "MAT2":
+                return 4;
+            case "MAT3":
+                return 9;
+            case "MAT4":
+                return 16;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Size in bytes of a component type, or 0 if unknown
+     */
+    public static int componentSize(int componentType) {
+        switch (componentType) {
+            case BYTE:
+            case UNSIGNED_BYTE:
+                return 1;
+            case SHORT:
+            case UNSIGNED_SHORT:
+                return 2;
+            case UNSIGNED_INT:
+            case FLOAT:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+}
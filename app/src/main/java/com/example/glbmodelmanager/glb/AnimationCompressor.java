@@ -0,0 +1,656 @@
+package com.example.glbmodelmanager.glb;
+
+import com.example.glbmodelmanager.utils.ImportSettings;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Import stage that shrinks baked animations
+ * Each LINEAR sampler is optionally resampled down to a target key rate, then keys
+ * that interpolation reproduces within the channel's tolerance are removed
+ * (Douglas-Peucker, so long constant stretches collapse to their two ends).
+ * Rotations are compared by angle and interpolated with slerp, and can be stored
+ * as normalized shorts. STEP samplers only lose repeated keys; CUBICSPLINE
+ * samplers are left alone
+ *
+ * The tolerance bounds the final error: the written keys (after resampling, reduction
+ * and quantization together) are checked against every original key, and a step that
+ * would go over is skipped
+ *
+ * Keys are read one sampler at a time straight from the mapped BIN chunk
+ */
+public class AnimationCompressor {
+
+    private static final String PATH_ROTATION = "rotation";
+    private static final String PATH_SCALE = "scale";
+    private static final String PATH_WEIGHTS = "weights";
+    private static final String LINEAR = "LINEAR";
+    private static final String STEP = "STEP";
+
+    // Reduction budgets tried (halving each time) before keeping the original keys
+    private static final int MAX_ATTEMPTS = 4;
+
+    private final float translationTolerance;
+    private final float rotationTolerance;   // Radians
+    private final float scaleTolerance;
+    private final float weightTolerance;
+    private final int sampleRate;            // Keys per second, 0 keeps the original rate
+    private final boolean quantizeRotations;
+
+    /**
+     * What the stage saved on one model; bytes count key times and values only
+     */
+    public static class Report {
+        private final int channels;
+        private final int keysBefore;
+        private final int keysAfter;
+        private final long bytesBefore;
+        private final long bytesAfter;
+
+        public Report(int channels, int keysBefore, int keysAfter, long bytesBefore, long bytesAfter) {
+            this.channels = channels;
+            this.keysBefore = keysBefore;
+            this.keysAfter = keysAfter;
+            this.bytesBefore = bytesBefore;
+            this.bytesAfter = bytesAfter;
+        }
+
+        /**
+         * Samplers that were rewritten
+         */
+        public int getChannels() {
+            return channels;
+        }
+
+        public int getKeysBefore() {
+            return keysBefore;
+        }
+
+        public int getKeysAfter() {
+            return keysAfter;
+        }
+
+        public long getBytesBefore() {
+            return bytesBefore;
+        }
+
+        public long getBytesAfter() {
+            return bytesAfter;
+        }
+
+        /**
+         * Animation data before / after, e.g. 8.0 for an eighth of the size
+         */
+        public float getCompressionRatio() {
+            return bytesAfter > 0 ? (float) bytesBefore / bytesAfter : 1;
+        }
+
+        public String getSummary() {
+            return String.format(Locale.US, "%d → %d keyframes in %d channels, %.1fx smaller",
+                    keysBefore, keysAfter, channels, getCompressionRatio());
+        }
+    }
+
+    /**
+     * Keys of one sampler: times and width values per key
+     */
+    static class Track {
+        final float[] times;
+        final float[] values;
+        final int width;
+
+        Track(float[] times, float[] values, int width) {
+            this.times = times;
+            this.values = values;
+            this.width = width;
+        }
+
+        int size() {
+            return times.length;
+        }
+    }
+
+    /**
+     * Constructor; the rotation tolerance is in degrees
+     */
+    public AnimationCompressor(float translationTolerance, float rotationToleranceDegrees, float scaleTolerance,
+                               float weightTolerance, int sampleRate, boolean quantizeRotations) {
+        this.translationTolerance = Math.max(0, translationTolerance);
+        this.rotationTolerance = (float) Math.toRadians(Math.max(0, rotationToleranceDegrees));
+        this.scaleTolerance = Math.max(0, scaleTolerance);
+        this.weightTolerance = Math.max(0, weightTolerance);
+        this.sampleRate = Math.max(0, sampleRate);
+        this.quantizeRotations = quantizeRotations;
+    }
+
+    /**
+     * Create a compressor from the saved import settings
+     */
+    public static AnimationCompressor fromSettings(ImportSettings settings) {
+        return new AnimationCompressor(
+                settings.getAnimationTranslationTolerance(),
+                settings.getAnimationRotationTolerance(),
+                settings.getAnimationScaleTolerance(),
+                settings.getAnimationWeightTolerance(),
+                settings.getAnimationSampleRate(),
+                settings.isAnimationRotationQuantized()
+        );
+    }
+
+    /**
+     * Compress the animations of source and write the result to dest
+     * Returns null (and leaves dest untouched) when the animations cannot be made smaller
+     */
+    public Report compress(File source, File dest) throws IOException {
+        try (GlbFile glb = GlbFile.open(source)) {
+            JSONObject json = glb.getJson();
+            JSONArray animations = json.optJSONArray("animations");
+            JSONArray accessors = json.optJSONArray("accessors");
+            if (animations == null || accessors == null || !glb.hasEmbeddedBuffer()) {
+                return null;
+            }
+
+            List<JSONObject> samplers = new ArrayList<>();
+            List<Track> tracks = new ArrayList<>();
+            List<Boolean> quantizedTracks = new ArrayList<>();
+            List<String> types = new ArrayList<>();
+            Set<Integer> oldAccessors = new HashSet<>();
+            // Keys of samplers left as they are, which stay in the file even if shared
+            Set<Integer> keptAccessors = new HashSet<>();
+            int keysBefore = 0;
+            int keysAfter = 0;
+            for (int a = 0; a < animations.length(); a++) {
+                JSONObject animation = animations.optJSONObject(a);
+                JSONArray animationSamplers = animation != null ? animation.optJSONArray("samplers") : null;
+                for (int s = 0; animationSamplers != null && s < animationSamplers.length(); s++) {
+                    JSONObject sampler = animationSamplers.optJSONObject(s);
+                    if (sampler == null) {
+                        continue;
+                    }
+                    String path = samplerPath(animation, s);
+                    String interpolation = sampler.optString("interpolation", LINEAR);
+                    Track track = path != null && (LINEAR.equals(interpolation) || STEP.equals(interpolation))
+                            ? read(glb, sampler.optInt("input", -1), sampler.optInt("output", -1)) : null;
+                    boolean rotation = track != null && PATH_ROTATION.equals(path) && track.width == 4;
+                    if (track == null || (!PATH_WEIGHTS.equals(path) && track.width != 3 && !rotation)) {
+                        keptAccessors.add(sampler.optInt("input", -1));
+                        keptAccessors.add(sampler.optInt("output", -1));
+                        continue;
+                    }
+                    float tolerance = tolerance(path);
+                    boolean step = STEP.equals(interpolation);
+                    boolean quantized = rotation && quantizeRotations
+                            && maxError(track, quantize(track), rotation, step) <= tolerance;
+                    Track compressed = compress(track, tolerance, rotation, step, quantized);
+
+                    keysBefore += track.size();
+                    keysAfter += compressed.size();
+                    oldAccessors.add(sampler.optInt("input"));
+                    oldAccessors.add(sampler.optInt("output"));
+                    samplers.add(sampler);
+                    tracks.add(compressed);
+                    quantizedTracks.add(quantized);
+                    types.add(PATH_WEIGHTS.equals(path) ? "SCALAR" : track.width == 4 ? "VEC4" : "VEC3");
+                }
+            }
+            if (samplers.isEmpty()) {
+                return null;
+            }
+            long bytesBefore = 0;
+            for (int accessor : oldAccessors) {
+                if (!keptAccessors.contains(accessor)) {
+                    bytesBefore += accessorBytes(accessors.optJSONObject(accessor));
+                }
+            }
+
+            // Detach the old keys so pruning drops them, then add the new ones
+            for (JSONObject sampler : samplers) {
+                sampler.put("input", -1);
+                sampler.put("output", -1);
+            }
+            GltfPruner.prune(json);
+            // Samplers that end up with the same key times share one accessor
+            Map<Integer, ByteBuffer> replacements = new HashMap<>();
+            Map<Integer, List<Integer>> timesByHash = new HashMap<>();
+            Map<Integer, float[]> writtenTimes = new HashMap<>();
+            long bytesAfter = 0;
+            for (int i = 0; i < samplers.size(); i++) {
+                Track track = tracks.get(i);
+                List<Integer> same = timesByHash.get(Arrays.hashCode(track.times));
+                if (same == null) {
+                    same = new ArrayList<>();
+                    timesByHash.put(Arrays.hashCode(track.times), same);
+                }
+                int input = -1;
+                for (int candidate : same) {
+                    if (Arrays.equals(writtenTimes.get(candidate), track.times)) {
+                        input = candidate;
+                    }
+                }
+                if (input < 0) {
+                    input = addTimes(json, track.times, replacements);
+                    same.add(input);
+                    writtenTimes.put(input, track.times);
+                    bytesAfter += track.times.length * 4L;
+                }
+                boolean quantized = quantizedTracks.get(i);
+                int output = addValues(json, track, types.get(i), quantized, replacements);
+                bytesAfter += (long) track.values.length * (quantized ? 2 : 4);
+                samplers.get(i).put("input", input);
+                samplers.get(i).put("output", output);
+            }
+            if (bytesAfter >= bytesBefore) {
+                return null;
+            }
+
+            GlbWriter writer = GlbWriter.fromBufferViews(glb, json, replacements);
+            writer.write(dest, json);
+            return new Report(samplers.size(), keysBefore, keysAfter, bytesBefore, bytesAfter);
+        } catch (JSONException e) {
+            throw new IOException("Invalid glTF JSON: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Path animated by a sampler, or null if it is unused or drives different paths
+     */
+    private static String samplerPath(JSONObject animation, int sampler) {
+        String path = null;
+        JSONArray channels = animation.optJSONArray("channels");
+        for (int c = 0; channels != null && c < channels.length(); c++) {
+            JSONObject channel = channels.optJSONObject(c);
+            JSONObject target = channel != null ? channel.optJSONObject("target") : null;
+            if (target == null || channel.optInt("sampler", -1) != sampler) {
+                continue;
+            }
+            String channelPath = target.optString("path", "");
+            if (path != null && !path.equals(channelPath)) {
+                return null;
+            }
+            path = channelPath;
+        }
+        return path;
+    }
+
+    private float tolerance(String path) {
+        switch (path) {
+            case PATH_ROTATION:
+                return rotationTolerance;
+            case PATH_SCALE:
+                return scaleTolerance;
+            case PATH_WEIGHTS:
+                return weightTolerance;
+            default:
+                return translationTolerance;
+        }
+    }
+
+    /**
+     * Read a sampler's keys, or null if its data is not plain accessor data
+     */
+    private static Track read(GlbFile glb, int input, int output) throws IOException {
+        JSONArray accessors = glb.getJson().optJSONArray("accessors");
+        if (accessors == null || isSparse(accessors.optJSONObject(input)) || isSparse(accessors.optJSONObject(output))) {
+            return null;
+        }
+        Accessor times = input >= 0 ? Accessor.open(glb, input) : null;
+        Accessor values = output >= 0 ? Accessor.open(glb, output) : null;
+        if (times == null || values == null || times.getCount() < 2 || times.getComponents() != 1) {
+            return null;
+        }
+        int count = times.getCount();
+        int components = values.getComponents();
+        if ((values.getCount() * components) % count != 0) {
+            return null;
+        }
+        int width = values.getCount() * components / count;  // Weights: one value per morph target
+        float[] keyTimes = new float[count];
+        for (int k = 0; k < count; k++) {
+            keyTimes[k] = times.get(k, 0);
+            if (k > 0 && !(keyTimes[k] > keyTimes[k - 1])) {
+                return null;  // Not strictly increasing, leave it to the validator
+            }
+        }
+        float[] keyValues = new float[count * width];
+        for (int e = 0; e < values.getCount(); e++) {
+            for (int c = 0; c < components; c++) {
+                keyValues[e * components + c] = values.get(e, c);
+            }
+        }
+        return new Track(keyTimes, keyValues, width);
+    }
+
+    /**
+     * Fewest keys found that stay within tolerance of every original key once written
+     * Resampling is used only if it leaves room for reduction; the reduction budget is
+     * halved until the written keys fit, and the original keys are kept if nothing does
+     */
+    Track compress(Track track, float tolerance, boolean rotation, boolean step, boolean quantized) {
+        Track original = quantized ? quantize(track) : track;
+        float quantizationError = quantized ? maxError(track, original, rotation, step) : 0;
+        Track best = original;
+
+        Track base = track;
+        float baseError = 0;
+        if (!step) {
+            Track resampled = resample(track, sampleRate, rotation);
+            float resampleError = resampled != track ? maxError(track, resampled, rotation, false) : 0;
+            if (resampleError + quantizationError <= tolerance / 2) {
+                base = resampled;
+                baseError = resampleError;
+            }
+        }
+        float budget = tolerance - baseError - quantizationError;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && budget >= 0; attempt++, budget /= 2) {
+            Track candidate = step ? dropRepeats(base, budget, rotation) : reduce(base, budget, rotation);
+            if (quantized) {
+                candidate = quantize(candidate);
+            }
+            if (maxError(track, candidate, rotation, step) <= tolerance) {
+                if (candidate.size() < best.size()) {
+                    best = candidate;
+                }
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Largest difference between the original keys and compressed keys evaluated at the
+     * original times (held values for STEP, interpolation otherwise)
+     */
+    static float maxError(Track original, Track compressed, boolean rotation, boolean step) {
+        float[] value = new float[original.width];
+        float worst = 0;
+        int segment = 0;
+        int n = compressed.size();
+        for (int k = 0; k < original.size(); k++) {
+            float time = original.times[k];
+            while (segment < n - 2 && compressed.times[segment + 1] <= time) {
+                segment++;
+            }
+            if (step || n == 1) {
+                int held = n > 1 && compressed.times[segment + 1] <= time ? segment + 1 : segment;
+                System.arraycopy(compressed.values, held * original.width, value, 0, original.width);
+            } else {
+                float s = (time - compressed.times[segment])
+                        / (compressed.times[segment + 1] - compressed.times[segment]);
+                interpolate(compressed, segment, segment + 1, Math.max(0, Math.min(1, s)), rotation, value, 0);
+            }
+            worst = Math.max(worst, error(value, 0, original.values, k * original.width, original.width, rotation));
+        }
+        return worst;
+    }
+
+    /**
+     * Rotation keys as they read back from normalized shorts
+     */
+    static Track quantize(Track track) {
+        float[] values = new float[track.values.length];
+        for (int k = 0; k < track.size(); k++) {
+            float length = 0;
+            for (int c = 0; c < 4; c++) {
+                length += track.values[k * 4 + c] * track.values[k * 4 + c];
+            }
+            length = length > 0 ? (float) Math.sqrt(length) : 1;
+            for (int c = 0; c < 4; c++) {
+                values[k * 4 + c] = Math.round(track.values[k * 4 + c] / length * Short.MAX_VALUE)
+                        / (float) Short.MAX_VALUE;
+            }
+        }
+        return new Track(track.times, values, track.width);
+    }
+
+    /**
+     * Resample evenly at rate keys per second, first and last key kept
+     * Tracks already at or below the rate are returned unchanged
+     */
+    static Track resample(Track track, int rate, boolean rotation) {
+        int n = track.size();
+        float start = track.times[0];
+        float duration = track.times[n - 1] - start;
+        if (rate <= 0 || duration <= 0 || (n - 1) <= duration * rate) {
+            return track;
+        }
+        int count = (int) Math.ceil(duration * rate) + 1;
+        float[] times = new float[count];
+        float[] values = new float[count * track.width];
+        int segment = 0;
+        for (int i = 0; i < count; i++) {
+            float time = i == count - 1 ? track.times[n - 1] : start + duration * i / (count - 1);
+            while (segment < n - 2 && track.times[segment + 1] <= time) {
+                segment++;
+            }
+            float s = (time - track.times[segment]) / (track.times[segment + 1] - track.times[segment]);
+            times[i] = time;
+            interpolate(track, segment, segment + 1, Math.max(0, Math.min(1, s)), rotation, values, i * track.width);
+        }
+        return new Track(times, values, track.width);
+    }
+
+    /**
+     * Keep the keys needed to stay within tolerance of every original key (Douglas-Peucker)
+     */
+    static Track reduce(Track track, float tolerance, boolean rotation) {
+        int n = track.size();
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        float[] interpolated = new float[track.width];
+
+        // Segments still to check, as (first, last) pairs
+        List<int[]> stack = new ArrayList<>();
+        stack.add(new int[]{0, n - 1});
+        while (!stack.isEmpty()) {
+            int[] segment = stack.remove(stack.size() - 1);
+            int first = segment[0];
+            int last = segment[1];
+            float worst = tolerance;
+            int split = -1;
+            float span = track.times[last] - track.times[first];
+            for (int k = first + 1; k < last; k++) {
+                float s = (track.times[k] - track.times[first]) / span;
+                interpolate(track, first, last, s, rotation, interpolated, 0);
+                float error = error(interpolated, 0, track.values, k * track.width, track.width, rotation);
+                if (error > worst) {
+                    worst = error;
+                    split = k;
+                }
+            }
+            if (split >= 0) {
+                keep[split] = true;
+                stack.add(new int[]{first, split});
+                stack.add(new int[]{split, last});
+            }
+        }
+        return select(track, keep);
+    }
+
+    /**
+     * STEP keys: drop a key that repeats the value held before it
+     * The last key is always kept, so the animation keeps its length
+     */
+    static Track dropRepeats(Track track, float tolerance, boolean rotation) {
+        int n = track.size();
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int held = 0;
+        for (int k = 1; k < n - 1; k++) {
+            if (error(track.values, held * track.width, track.values, k * track.width, track.width, rotation)
+                    > tolerance) {
+                keep[k] = true;
+                held = k;
+            }
+        }
+        return select(track, keep);
+    }
+
+    private static Track select(Track track, boolean[] keep) {
+        int count = 0;
+        for (boolean kept : keep) {
+            count += kept ? 1 : 0;
+        }
+        float[] times = new float[count];
+        float[] values = new float[count * track.width];
+        int next = 0;
+        for (int k = 0; k < keep.length; k++) {
+            if (keep[k]) {
+                times[next] = track.times[k];
+                System.arraycopy(track.values, k * track.width, values, next * track.width, track.width);
+                next++;
+            }
+        }
+        return new Track(times, values, track.width);
+    }
+
+    /**
+     * Value between keys a and b at fraction s: slerp for rotations, lerp otherwise
+     */
+    private static void interpolate(Track track, int a, int b, float s, boolean rotation, float[] out, int offset) {
+        float[] values = track.values;
+        int width = track.width;
+        int ia = a * width;
+        int ib = b * width;
+        if (!rotation) {
+            for (int c = 0; c < width; c++) {
+                out[offset + c] = values[ia + c] + (values[ib + c] - values[ia + c]) * s;
+            }
+            return;
+        }
+
+        // Shortest path, as viewers interpolate rotations
+        float dot = 0;
+        for (int c = 0; c < 4; c++) {
+            dot += values[ia + c] * values[ib + c];
+        }
+        float sign = dot < 0 ? -1 : 1;
+        dot = Math.abs(dot);
+        float wa;
+        float wb;
+        if (dot > 0.9995f) {
+            wa = 1 - s;
+            wb = s;
+        } else {
+            double theta = Math.acos(dot);
+            double sin = Math.sin(theta);
+            wa = (float) (Math.sin((1 - s) * theta) / sin);
+            wb = (float) (Math.sin(s * theta) / sin);
+        }
+        float length = 0;
+        for (int c = 0; c < 4; c++) {
+            out[offset + c] = wa * values[ia + c] + sign * wb * values[ib + c];
+            length += out[offset + c] * out[offset + c];
+        }
+        length = (float) Math.sqrt(length);
+        for (int c = 0; c < 4 && length > 0; c++) {
+            out[offset + c] /= length;
+        }
+    }
+
+    /**
+     * Difference between two values: angle in radians for rotations, largest
+     * component difference otherwise
+     */
+    private static float error(float[] a, int ia, float[] b, int ib, int width, boolean rotation) {
+        if (rotation) {
+            // In double: near 1, float cosines are too coarse for sub-degree angles
+            double dot = 0;
+            double lengthA = 0;
+            double lengthB = 0;
+            for (int c = 0; c < 4; c++) {
+                dot += (double) a[ia + c] * b[ib + c];
+                lengthA += (double) a[ia + c] * a[ia + c];
+                lengthB += (double) b[ib + c] * b[ib + c];
+            }
+            double cos = Math.abs(dot) / Math.sqrt(lengthA * lengthB);
+            return (float) (2 * Math.acos(Math.min(1, cos)));
+        }
+        float worst = 0;
+        for (int c = 0; c < width; c++) {
+            worst = Math.max(worst, Math.abs(a[ia + c] - b[ib + c]));
+        }
+        return worst;
+    }
+
+    private static int addTimes(JSONObject json, float[] times, Map<Integer, ByteBuffer> replacements)
+            throws JSONException {
+        ByteBuffer data = ByteBuffer.allocate(times.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (float time : times) {
+            data.putFloat(time);
+        }
+        int accessor = addAccessor(json, data, times.length, "SCALAR", Accessor.FLOAT, false, replacements);
+        json.getJSONArray("accessors").getJSONObject(accessor)
+                .put("min", new JSONArray().put((double) times[0]))
+                .put("max", new JSONArray().put((double) times[times.length - 1]));
+        return accessor;
+    }
+
+    /**
+     * Key values: rotations as normalized shorts when quantized (values from quantize()), floats otherwise
+     */
+    private static int addValues(JSONObject json, Track track, String type, boolean quantized,
+                                 Map<Integer, ByteBuffer> replacements) throws JSONException {
+        if (quantized) {
+            ByteBuffer data = ByteBuffer.allocate(track.values.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+            for (float value : track.values) {
+                data.putShort((short) Math.round(value * Short.MAX_VALUE));
+            }
+            return addAccessor(json, data, track.size(), "VEC4", Accessor.SHORT, true, replacements);
+        }
+
+        ByteBuffer data = ByteBuffer.allocate(track.values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (float value : track.values) {
+            data.putFloat(value);
+        }
+        int count = type.equals("SCALAR") ? track.values.length : track.size();
+        return addAccessor(json, data, count, type, Accessor.FLOAT, false, replacements);
+    }
+
+    private static int addAccessor(JSONObject json, ByteBuffer data, int count, String type, int componentType,
+                                   boolean normalized, Map<Integer, ByteBuffer> replacements) throws JSONException {
+        data.flip();
+        JSONArray views = json.getJSONArray("bufferViews");
+        JSONArray accessors = json.getJSONArray("accessors");
+        replacements.put(views.length(), data);
+        views.put(new JSONObject().put("buffer", 0).put("byteLength", data.remaining()));
+        JSONObject accessor = new JSONObject()
+                .put("bufferView", views.length() - 1)
+                .put("componentType", componentType)
+                .put("count", count)
+                .put("type", type);
+        if (normalized) {
+            accessor.put("normalized", true);
+        }
+        accessors.put(accessor);
+        return accessors.length() - 1;
+    }
+
+    private static boolean isSparse(JSONObject accessor) {
+        return accessor != null && accessor.has("sparse");
+    }
+
+    private static long accessorBytes(JSONObject accessor) {
+        if (accessor == null) {
+            return 0;
+        }
+        return Math.max(0, accessor.optLong("count", 0)) * Accessor.componentCount(accessor.optString("type", ""))
+                * Accessor.componentSize(accessor.optInt("componentType", 0));
+    }
+}
@@ -0,0 +1,567 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Pure-Java decoder for KHR_draco_mesh_compression primitives (Draco bitstream 2.2)
+ *
+ * Supported: triangle meshes with sequential connectivity (raw or entropy coded
+ * indices), generic, integer and quantized attributes, rANS symbol coding
+ * (raw and tagged) and difference prediction with the delta or wrap transform.
+ * Normals with octahedral prediction are parsed but not reconstructed.
+ * Edgebreaker connectivity and metadata blocks throw GlbFormatException; the
+ * readers leave such primitives out (PreviewLoader, GltfValidator warns) or give
+ * no result for the model (GeometryFingerprint).
+ *
+ * Reads straight from the (memory-mapped) bufferView and writes into a reusable
+ * DracoMesh. One decoder keeps its own lookup tables, so use one per thread
+ */
+public class DracoDecoder {
+
+    public static final String EXTENSION = "KHR_draco_mesh_compression";
+
+    private static final byte[] MAGIC = {'D', 'R', 'A', 'C', 'O'};
+    private static final int ENCODER_MESH = 1;
+    private static final int METHOD_SEQUENTIAL = 0;
+    private static final int FLAG_METADATA = 0x8000;
+    private static final int CONNECTIVITY_COMPRESSED = 0;
+    private static final int CONNECTIVITY_RAW = 1;
+
+    // Attribute decoder types
+    private static final int DECODER_GENERIC = 0;
+    private static final int DECODER_INTEGER = 1;
+    private static final int DECODER_QUANTIZATION = 2;
+    private static final int DECODER_NORMALS = 3;
+
+    // Prediction schemes and transforms
+    private static final int PREDICTION_NONE = -2;
+    private static final int PREDICTION_DIFFERENCE = 0;
+    private static final int TRANSFORM_DELTA = 0;
+    private static final int TRANSFORM_WRAP = 1;
+    private static final int TRANSFORM_NORMAL_OCTAHEDRON = 2;
+    private static final int TRANSFORM_NORMAL_OCTAHEDRON_CANONICALIZED = 3;
+
+    // Symbol coding schemes
+    private static final int SYMBOLS_TAGGED = 0;
+    private static final int SYMBOLS_RAW = 1;
+
+    // Draco data types, index = Draco enum value
+    private static final int[] DATA_TYPE_SIZES = {0, 1, 1, 2, 2, 4, 4, 8, 8, 4, 8, 1};
+    private static final int DT_INT8 = 1;
+    private static final int DT_UINT8 = 2;
+    private static final int DT_INT16 = 3;
+    private static final int DT_UINT16 = 4;
+    private static final int DT_INT32 = 5;
+    private static final int DT_FLOAT32 = 9;
+    private static final int DT_FLOAT64 = 10;
+
+    /**
+     * Attribute as described in the stream
+     */
+    private static class Attribute {
+        int dataType;
+        int components;
+        boolean normalized;
+        int uniqueId;
+        int decoderType;
+        ByteBuffer values;  // Quantized ints until the transform data is read, then floats
+        boolean decoded;
+    }
+
+    // rANS tables, reused between symbol blocks and decodes
+    private int[] lookup = new int[1 << 12];
+    private int[] probabilities = new int[256];
+    private int[] cumulative = new int[256];
+
+    // rANS state
+    private ByteBuffer ansData;
+    private int ansOffset;
+    private long ansState;
+    private int ansPrecision;
+
+    /**
+     * The KHR_draco_mesh_compression object of a primitive, or null if it is not compressed
+     */
+    public static JSONObject extension(JSONObject primitive) {
+        JSONObject extensions = primitive != null ? primitive.optJSONObject("extensions") : null;
+        return extensions != null ? extensions.optJSONObject(EXTENSION) : null;
+    }
+
+    /**
+     * Decode a compressed primitive of the GLB into out
+     * Returns false if the primitive is not Draco compressed or its data is not in the BIN chunk
+     */
+    public boolean decodePrimitive(GlbFile glb, JSONObject primitive, DracoMesh out) throws IOException {
+        JSONObject draco = extension(primitive);
+        if (draco == null) {
+            return false;
+        }
+        ByteBuffer data = glb.getBufferView(draco.optInt("bufferView", -1));
+        if (data == null) {
+            return false;
+        }
+        decode(data, out);
+
+        JSONObject attributes = draco.optJSONObject("attributes");
+        if (attributes != null) {
+            for (Iterator<String> names = attributes.keys(); names.hasNext(); ) {
+                String name = names.next();
+                out.name(name, attributes.optInt(name, -1));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode one Draco mesh stream into out
+     * Throws GlbFormatException if the stream is broken or uses an unsupported feature
+     */
+    public void decode(ByteBuffer data, DracoMesh out) throws GlbFormatException {
+        ByteBuffer in = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            decodeStream(in, out);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new GlbFormatException("Draco stream is truncated");
+        }
+    }
+
+    private void decodeStream(ByteBuffer in, DracoMesh out) throws GlbFormatException {
+        // Header
+        for (byte b : MAGIC) {
+            if (in.get() != b) {
+                throw new GlbFormatException("Not a Draco stream");
+            }
+        }
+        int major = in.get() & 0xFF;
+        int minor = in.get() & 0xFF;
+        if (major != 2 || minor < 2) {
+            throw new GlbFormatException("Unsupported Draco version " + major + "." + minor);
+        }
+        if ((in.get() & 0xFF) != ENCODER_MESH) {
+            throw new GlbFormatException("Draco point clouds are not supported");
+        }
+        if ((in.get() & 0xFF) != METHOD_SEQUENTIAL) {
+            throw new GlbFormatException("Draco edgebreaker connectivity is not supported");
+        }
+        if ((in.getShort() & FLAG_METADATA) != 0) {
+            throw new GlbFormatException("Draco metadata is not supported");
+        }
+
+        // Connectivity
+        long faces = varint(in);
+        long points = varint(in);
+        if (faces * 3 > Integer.MAX_VALUE / 4 || points > Integer.MAX_VALUE / 16) {
+            throw new GlbFormatException("Draco mesh is too large");
+        }
+        out.reset((int) faces, (int) points);
+        decodeConnectivity(in, out.indexBuffer(), (int) faces * 3, (int) points);
+
+        // Attribute descriptions, for every attribute decoder
+        int decoders = in.get() & 0xFF;
+        List<Attribute> attributes = new ArrayList<>();
+        for (int d = 0; d < decoders; d++) {
+            int count = (int) varint(in);
+            int first = attributes.size();
+            for (int a = 0; a < count; a++) {
+                Attribute attribute = new Attribute();
+                in.get(); // Attribute type; glTF names come from the extension
+                attribute.dataType = in.get() & 0xFF;
+                attribute.components = in.get() & 0xFF;
+                attribute.normalized = in.get() != 0;
+                attribute.uniqueId = (int) varint(in);
+                if (attribute.dataType >= DATA_TYPE_SIZES.length || DATA_TYPE_SIZES[attribute.dataType] == 0
+                        || attribute.components == 0) {
+                    throw new GlbFormatException("Draco attribute " + attribute.uniqueId + " has an unknown type");
+                }
+                attributes.add(attribute);
+            }
+            for (int a = first; a < attributes.size(); a++) {
+                attributes.get(a).decoderType = in.get() & 0xFF;
+            }
+        }
+
+        // Values of every attribute, then the data of their transforms
+        int pointCount = (int) points;
+        for (Attribute attribute : attributes) {
+            attribute.values = out.attributeBuffer(attribute.uniqueId, attribute.components);
+            decodeValues(in, attribute, pointCount);
+        }
+        for (Attribute attribute : attributes) {
+            decodeTransform(in, attribute, pointCount);
+            if (!attribute.decoded) {
+                out.drop(attribute.uniqueId);
+            }
+        }
+    }
+
+    private void decodeConnectivity(ByteBuffer in, ByteBuffer indices, int count, int points)
+            throws GlbFormatException {
+        int method = in.get() & 0xFF;
+        if (method == CONNECTIVITY_COMPRESSED) {
+            // Zigzag deltas between consecutive indices
+            decodeSymbols(in, count, 1, indices);
+            int last = 0;
+            for (int i = 0; i < count; i++) {
+                int symbol = indices.getInt(i * 4);
+                int delta = symbol >>> 1;
+                last += (symbol & 1) != 0 ? -delta : delta;
+                indices.putInt(i * 4, last);
+            }
+        } else if (method == CONNECTIVITY_RAW) {
+            for (int i = 0; i < count; i++) {
+                long index;
+                if (points < 256) {
+                    index = in.get() & 0xFF;
+                } else if (points < (1 << 16)) {
+                    index = in.getShort() & 0xFFFF;
+                } else if (points < (1 << 21)) {
+                    index = varint(in);
+                } else {
+                    index = in.getInt() & 0xFFFFFFFFL;
+                }
+                indices.putInt(i * 4, (int) index);
+            }
+        } else {
+            throw new GlbFormatException("Unknown Draco connectivity method " + method);
+        }
+        for (int i = 0; i < count; i++) {
+            int index = indices.getInt(i * 4);
+            if (index < 0 || index >= points) {
+                throw new GlbFormatException("Draco index " + index + " is out of range");
+            }
+        }
+    }
+
+    private void decodeValues(ByteBuffer in, Attribute attribute, int points) throws GlbFormatException {
+        ByteBuffer values = attribute.values;
+        if (attribute.decoderType == DECODER_GENERIC) {
+            // Raw values in their own data type
+            for (int i = 0; i < points * attribute.components; i++) {
+                values.putFloat(i * 4, readValue(in, attribute.dataType, attribute.normalized));
+            }
+            attribute.decoded = true;
+            return;
+        }
+        if (attribute.decoderType > DECODER_NORMALS) {
+            throw new GlbFormatException("Unknown Draco attribute decoder " + attribute.decoderType);
+        }
+
+        // Integer values (quantized, octahedral or plain), possibly predicted
+        int components = attribute.decoderType == DECODER_NORMALS ? 2 : attribute.components;
+        int count = points * components;
+        int method = in.get();
+        int transform = TRANSFORM_DELTA;
+        if (method != PREDICTION_NONE) {
+            if (method != PREDICTION_DIFFERENCE) {
+                throw new GlbFormatException("Draco prediction scheme " + method + " is not supported");
+            }
+            transform = in.get();
+        }
+        boolean octahedral = transform == TRANSFORM_NORMAL_OCTAHEDRON
+                || transform == TRANSFORM_NORMAL_OCTAHEDRON_CANONICALIZED;
+        if (method != PREDICTION_NONE && transform != TRANSFORM_DELTA && transform != TRANSFORM_WRAP && !octahedral) {
+            throw new GlbFormatException("Draco prediction transform " + transform + " is not supported");
+        }
+
+        if (count > 0) {
+            if (in.get() != 0) {
+                decodeSymbols(in, count, components, values);
+            } else {
+                int bytes = in.get() & 0xFF;
+                if (bytes < 1 || bytes > 4) {
+                    throw new GlbFormatException("Bad Draco value size " + bytes);
+                }
+                for (int i = 0; i < count; i++) {
+                    int value = 0;
+                    for (int b = 0; b < bytes; b++) {
+                        value |= (in.get() & 0xFF) << (8 * b);
+                    }
+                    values.putInt(i * 4, value);
+                }
+            }
+            // Octahedral corrections are stored as positive values, all others zigzag coded
+            if (method == PREDICTION_NONE || !octahedral) {
+                for (int i = 0; i < count; i++) {
+                    int symbol = values.getInt(i * 4);
+                    values.putInt(i * 4, (symbol >>> 1) ^ -(symbol & 1));
+                }
+            }
+        }
+
+        if (method == PREDICTION_NONE) {
+            // Values are final
+        } else if (octahedral) {
+            // Maximum quantized value and center value; the normals themselves are not rebuilt
+            in.getInt();
+            in.getInt();
+        } else if (transform == TRANSFORM_WRAP) {
+            int min = in.getInt();
+            int max = in.getInt();
+            if (min > max) {
+                throw new GlbFormatException("Bad Draco wrap bounds");
+            }
+            long range = (long) max - min + 1;
+            for (int i = 0; i < count; i++) {
+                long predicted = i < components ? 0 : values.getInt((i - components) * 4);
+                predicted = Math.max(min, Math.min(max, predicted));
+                long value = predicted + values.getInt(i * 4);
+                if (value > max) {
+                    value -= range;
+                } else if (value < min) {
+                    value += range;
+                }
+                values.putInt(i * 4, (int) value);
+            }
+        } else {
+            for (int i = components; i < count; i++) {
+                values.putInt(i * 4, values.getInt(i * 4) + values.getInt((i - components) * 4));
+            }
+        }
+        attribute.decoded = attribute.decoderType != DECODER_NORMALS;
+    }
+
+    /**
+     * Read the data of the attribute's transform and turn its integers into floats
+     */
+    private static void decodeTransform(ByteBuffer in, Attribute attribute, int points) throws GlbFormatException {
+        ByteBuffer values = attribute.values;
+        int count = points * attribute.components;
+        switch (attribute.decoderType) {
+            case DECODER_INTEGER:
+                for (int i = 0; i < count; i++) {
+                    values.putFloat(i * 4, values.getInt(i * 4));
+                }
+                break;
+            case DECODER_QUANTIZATION:
+                float[] min = new float[attribute.components];
+                for (int c = 0; c < min.length; c++) {
+                    min[c] = in.getFloat();
+                }
+                float range = in.getFloat();
+                int bits = in.get() & 0xFF;
+                if (bits < 1 || bits > 30) {
+                    throw new GlbFormatException("Bad Draco quantization bits " + bits);
+                }
+                float delta = range / ((1 << bits) - 1);
+                for (int i = 0; i < count; i++) {
+                    values.putFloat(i * 4, min[i % min.length] + values.getInt(i * 4) * delta);
+                }
+                break;
+            case DECODER_NORMALS:
+                in.get(); // Quantization bits
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static float readValue(ByteBuffer in, int dataType, boolean normalized) throws GlbFormatException {
+        switch (dataType) {
+            case DT_INT8:
+                byte b = in.get();
+                return normalized ? Math.max(b / 127f, -1f) : b;
+            case DT_UINT8:
+                int ub = in.get() & 0xFF;
+                return normalized ? ub / 255f : ub;
+            case DT_INT16:
+                short s = in.getShort();
+                return normalized ? Math.max(s / 32767f, -1f) : s;
+            case DT_UINT16:
+                int us = in.getShort() & 0xFFFF;
+                return normalized ? us / 65535f : us;
+            case DT_INT32:
+                return in.getInt();
+            case DT_FLOAT32:
+                return in.getFloat();
+            case DT_FLOAT64:
+                return (float) in.getDouble();
+            default:
+                throw new GlbFormatException("Unsupported Draco data type " + dataType);
+        }
+    }
+
+    // --- Symbol coding ---
+
+    /**
+     * Decode count entropy-coded unsigned symbols into out (as ints)
+     */
+    private void decodeSymbols(ByteBuffer in, int count, int components, ByteBuffer out)
+            throws GlbFormatException {
+        if (count == 0) {
+            return;
+        }
+        int scheme = in.get() & 0xFF;
+        if (scheme == SYMBOLS_RAW) {
+            int maxBitLength = in.get() & 0xFF;
+            if (maxBitLength < 1 || maxBitLength > 18) {
+                throw new GlbFormatException("Bad Draco symbol bit length " + maxBitLength);
+            }
+            readProbabilities(in, precisionBits(maxBitLength));
+            startRans(in);
+            for (int i = 0; i < count; i++) {
+                out.putInt(i * 4, readRans());
+            }
+        } else if (scheme == SYMBOLS_TAGGED) {
+            // rANS coded bit lengths, each followed by that many raw bits per component
+            readProbabilities(in, precisionBits(5));
+            startRans(in);
+            int bitStart = in.position();
+            long bit = 0;
+            for (int i = 0; i < count; i += components) {
+                int length = readRans();
+                if (length > 32) {
+                    throw new GlbFormatException("Bad Draco tagged symbol length " + length);
+                }
+                for (int c = 0; c < components && i + c < count; c++) {
+                    int value = 0;
+                    for (int b = 0; b < length; b++, bit++) {
+                        int source = in.get(bitStart + (int) (bit >>> 3)) & 0xFF;
+                        value |= ((source >>> (bit & 7)) & 1) << b;
+                    }
+                    out.putInt((i + c) * 4, value);
+                }
+            }
+            in.position(bitStart + (int) ((bit + 7) >>> 3));
+        } else {
+            throw new GlbFormatException("Unknown Draco symbol coding " + scheme);
+        }
+    }
+
+    private static int precisionBits(int symbolBitLength) {
+        return Math.max(12, Math.min(20, (3 * symbolBitLength) / 2));
+    }
+
+    /**
+     * Read a symbol probability table and build the lookup from slot to symbol
+     */
+    private void readProbabilities(ByteBuffer in, int precisionBits) throws GlbFormatException {
+        int symbols = (int) varint(in);
+        if (symbols == 0 || symbols > (1 << 20)) {
+            throw new GlbFormatException("Bad Draco symbol count " + symbols);
+        }
+        if (probabilities.length < symbols) {
+            probabilities = new int[symbols];
+            cumulative = new int[symbols];
+        }
+        for (int i = 0; i < symbols; i++) {
+            int data = in.get() & 0xFF;
+            int token = data & 3;
+            if (token == 3) {
+                // Run of zero probabilities
+                int run = data >>> 2;
+                if (i + run >= symbols) {
+                    throw new GlbFormatException("Bad Draco probability table");
+                }
+                for (int j = 0; j <= run; j++) {
+                    probabilities[i + j] = 0;
+                }
+                i += run;
+            } else {
+                int probability = data >>> 2;
+                for (int b = 0; b < token; b++) {
+                    probability |= (in.get() & 0xFF) << (8 * (b + 1) - 2);
+                }
+                probabilities[i] = probability;
+            }
+        }
+
+        ansPrecision = 1 << precisionBits;
+        if (lookup.length < ansPrecision) {
+            lookup = new int[ansPrecision];
+        }
+        int total = 0;
+        for (int i = 0; i < symbols; i++) {
+            cumulative[i] = total;
+            if (total + probabilities[i] > ansPrecision) {
+                throw new GlbFormatException("Draco probabilities exceed the precision");
+            }
+            for (int slot = total; slot < total + probabilities[i]; slot++) {
+                lookup[slot] = i;
+            }
+            total += probabilities[i];
+        }
+        if (total != ansPrecision) {
+            throw new GlbFormatException("Draco probabilities do not add up");
+        }
+    }
+
+    /**
+     * Start reading an rANS block; the state is stored at the end of the block
+     */
+    private void startRans(ByteBuffer in) throws GlbFormatException {
+        long length = varint(in);
+        if (length < 1 || length > in.remaining()) {
+            throw new GlbFormatException("Bad Draco rANS block length");
+        }
+        ansData = GlbFile.slice(in, in.position(), (int) length);
+        in.position(in.position() + (int) length);
+
+        int offset = (int) length;
+        int last = ansData.get(offset - 1) & 0xFF;
+        switch (last >>> 6) {
+            case 0:
+                ansOffset = offset - 1;
+                ansState = last & 0x3F;
+                break;
+            case 1:
+                if (offset < 2) {
+                    throw new GlbFormatException("Bad Draco rANS state");
+                }
+                ansOffset = offset - 2;
+                ansState = (ansData.getShort(offset - 2) & 0xFFFF) & 0x3FFF;
+                break;
+            case 2:
+                if (offset < 3) {
+                    throw new GlbFormatException("Bad Draco rANS state");
+                }
+                ansOffset = offset - 3;
+                ansState = ((ansData.getShort(offset - 3) & 0xFFFF) | ((ansData.get(offset - 1) & 0xFF) << 16))
+                        & 0x3FFFFF;
+                break;
+            default:
+                if (offset < 4) {
+                    throw new GlbFormatException("Bad Draco rANS state");
+                }
+                ansOffset = offset - 4;
+                ansState = (ansData.getInt(offset - 4) & 0xFFFFFFFFL) & 0x3FFFFFFF;
+                break;
+        }
+        long lowerBound = ansPrecision * 4L;
+        ansState += lowerBound;
+        if (ansState >= lowerBound * 256) {
+            throw new GlbFormatException("Bad Draco rANS state");
+        }
+    }
+
+    private int readRans() {
+        long lowerBound = ansPrecision * 4L;
+        while (ansState < lowerBound && ansOffset > 0) {
+            ansState = ansState * 256 + (ansData.get(--ansOffset) & 0xFF);
+        }
+        long quotient = ansState / ansPrecision;
+        int remainder = (int) (ansState % ansPrecision);
+        int symbol = lookup[remainder];
+        ansState = quotient * probabilities[symbol] + remainder - cumulative[symbol];
+        return symbol;
+    }
+
+    private static long varint(ByteBuffer in) throws GlbFormatException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new GlbFormatException("Bad Draco varint");
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.glbmodelmanager.glb;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Output of DracoDecoder: triangle indices and float attributes of one primitive
+ * The buffers only grow, so decoding many primitives into the same DracoMesh
+ * allocates once. Accessors handed out stay valid until the next decode
+ */
+public class DracoMesh {
+
+    private ByteBuffer indices = allocate(0);
+    private int faceCount;
+    private int pointCount;
+
+    // Draco unique id -> decoded values (float32, tightly packed)
+    private final Map<Integer, ByteBuffer> values = new HashMap<>();
+    private final Map<Integer, Integer> components = new HashMap<>();
+
+    // glTF attribute name -> Draco unique id, from the primitive's extension
+    private final Map<String, Integer> names = new HashMap<>();
+
+    /**
+     * Forget the previous primitive, keeping its buffers for reuse
+     */
+    void reset(int faceCount, int pointCount) {
+        this.faceCount = faceCount;
+        this.pointCount = pointCount;
+        components.clear();
+        names.clear();
+        indices = ensure(indices, faceCount * 3 * 4);
+    }
+
+    ByteBuffer indexBuffer() {
+        return indices;
+    }
+
+    /**
+     * Buffer for one attribute, sized for pointCount elements
+     */
+    ByteBuffer attributeBuffer(int uniqueId, int componentCount) {
+        ByteBuffer buffer = ensure(values.get(uniqueId), pointCount * componentCount * 4);
+        values.put(uniqueId, buffer);
+        components.put(uniqueId, componentCount);
+        return buffer;
+    }
+
+    /**
+     * Hide an attribute that was parsed but could not be rebuilt
+     */
+    void drop(int uniqueId) {
+        components.remove(uniqueId);
+    }
+
+    void name(String attribute, int uniqueId) {
+        names.put(attribute, uniqueId);
+    }
+
+    public int getFaceCount() {
+        return faceCount;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * Triangle indices as an UNSIGNED_INT accessor, 3 per face
+     */
+    public Accessor getIndices() {
+        return Accessor.wrap(indices, faceCount * 3, Accessor.UNSIGNED_INT, 1);
+    }
+
+    /**
+     * A glTF attribute (e.g. "POSITION") as a FLOAT accessor, or null if the stream does not have it
+     */
+    public Accessor getAttribute(String name) {
+        Integer id = names.get(name);
+        Integer count = id != null ? components.get(id) : null;
+        if (count == null) {
+            return null;
+        }
+        return Accessor.wrap(values.get(id), pointCount, Accessor.FLOAT, count);
+    }
+
+    private static ByteBuffer ensure(ByteBuffer buffer, int bytes) {
+        if (buffer == null || buffer.capacity() < bytes) {
+            buffer = allocate(Math.max(bytes, buffer != null ? buffer.capacity() * 2 : 0));
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shape fingerprint of a model, computed from the vertex positions in the BIN chunk
+ * Positions are placed by their node transforms, scaled into a unit cube and snapped
+ * to a voxel grid, so re-exports with other vertex order, precision, scale, file
+ * layout or node hierarchy (transforms kept on nodes or baked into the vertices)
+ * give the same voxel set.
+ * The set is summarized with MinHash; two signatures agree in about the same
+ * fraction of slots as the voxel sets overlap (Jaccard similarity)
+ */
+public class GeometryFingerprint {
+
+    // MinHash slots, split into LSH bands of ROWS_PER_BAND slots each
+    public static final int SIGNATURE_SIZE = 64;
+    public static final int ROWS_PER_BAND = 4;
+    public static final int BANDS = SIGNATURE_SIZE / ROWS_PER_BAND;
+
+    // Voxels per axis along the longest side of the bounds
+    private static final int GRID = 64;
+
+    private static final String POSITION = "POSITION";
+
+    private final int[] signature;
+    private final float shapeMid;
+    private final float shapeMin;
+    private final int vertexCount;
+
+    public GeometryFingerprint(int[] signature, float shapeMid, float shapeMin, int vertexCount) {
+        this.signature = signature;
+        this.shapeMid = shapeMid;
+        this.shapeMin = shapeMin;
+        this.vertexCount = vertexCount;
+    }
+
+    /**
+     * Fingerprint every drawn mesh primitive, in world space
+     * Returns null if the model has no readable geometry, or draws a Draco primitive the
+     * decoder does not support: a fingerprint of part of the model would match other models
+     */
+    public static GeometryFingerprint compute(GlbFile glb) throws IOException {
+        Map<JSONObject, List<float[]>> draws = findDraws(glb);
+        if (draws.isEmpty()) {
+            return null;
+        }
+        PositionReader reader = new PositionReader(glb);
+
+        // Pass 1: bounds of all positions
+        float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        float[] point = new float[3];
+        int vertexCount = 0;
+        for (Map.Entry<JSONObject, List<float[]>> entry : draws.entrySet()) {
+            Accessor accessor;
+            try {
+                accessor = reader.open(entry.getKey());
+            } catch (GlbFormatException e) {
+                return null; // Unsupported Draco feature (edgebreaker connectivity)
+            }
+            if (accessor == null) {
+                continue;
+            }
+            for (float[] matrix : entry.getValue()) {
+                for (int i = 0; i < accessor.getCount(); i++) {
+                    NodeTransforms.transform(matrix, accessor.get(i, 0), accessor.get(i, 1),
+                            accessor.get(i, 2), point, 0);
+                    for (int c = 0; c < 3; c++) {
+                        if (point[c] < min[c]) min[c] = point[c];
+                        if (point[c] > max[c]) max[c] = point[c];
+                    }
+                }
+                vertexCount += accessor.getCount();
+            }
+        }
+
+        // Longest axis first, so models that were re-exported with swapped axes line up
+        int[] axes = {0, 1, 2};
+        float[] extent = {max[0] - min[0], max[1] - min[1], max[2] - min[2]};
+        for (int i = 1; i < 3; i++) {
+            for (int j = i; j > 0 && extent[axes[j]] > extent[axes[j - 1]]; j--) {
+                int swap = axes[j];
+                axes[j] = axes[j - 1];
+                axes[j - 1] = swap;
+            }
+        }
+        float longest = extent[axes[0]];
+        if (!(longest > 0) || Float.isInfinite(longest)) {
+            return null; // Empty, flat-to-a-point or broken geometry
+        }
+
+        // Pass 2: voxels touched by a vertex
+        BitSet voxels = new BitSet(GRID * GRID * GRID);
+        float scale = GRID / longest;
+        for (Map.Entry<JSONObject, List<float[]>> entry : draws.entrySet()) {
+            Accessor accessor = reader.open(entry.getKey());
+            if (accessor == null) {
+                continue;
+            }
+            for (float[] matrix : entry.getValue()) {
+                for (int i = 0; i < accessor.getCount(); i++) {
+                    NodeTransforms.transform(matrix, accessor.get(i, 0), accessor.get(i, 1),
+                            accessor.get(i, 2), point, 0);
+                    int key = 0;
+                    for (int a = 0; a < 3; a++) {
+                        int axis = axes[a];
+                        int cell = (int) ((point[axis] - min[axis]) * scale);
+                        key = key * GRID + Math.max(0, Math.min(GRID - 1, cell));
+                    }
+                    voxels.set(key);
+                }
+            }
+        }
+
+        return new GeometryFingerprint(minHash(voxels),
+                extent[axes[1]] / longest, extent[axes[2]] / longest, vertexCount);
+    }
+
+    /**
+     * MinHash of a voxel set: slot i keeps the smallest value of hash function i
+     * The functions are derived from two base hashes (h1 + i * h2)
+     */
+    static int[] minHash(BitSet voxels) {
+        int[] signature = new int[SIGNATURE_SIZE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int key = voxels.nextSetBit(0); key >= 0; key = voxels.nextSetBit(key + 1)) {
+            long mixed = mix(key);
+            int h1 = (int) mixed;
+            int h2 = (int) (mixed >>> 32) | 1;
+            for (int i = 0; i < SIGNATURE_SIZE; i++) {
+                // Compare as unsigned so the whole int range is used
+                int value = (h1 + i * h2) ^ Integer.MIN_VALUE;
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * World matrices of each drawn primitive, so a primitive drawn several times is read
+     * once per pass
+     */
+    private static Map<JSONObject, List<float[]>> findDraws(GlbFile glb) throws IOException {
+        Map<JSONObject, List<float[]>> draws = new IdentityHashMap<>();
+        if (!glb.hasEmbeddedBuffer()) {
+            return draws;
+        }
+        for (MeshDraw draw : MeshDraw.collect(glb)) {
+            List<float[]> matrices = draws.get(draw.primitive);
+            if (matrices == null) {
+                matrices = new ArrayList<>();
+                draws.put(draw.primitive, matrices);
+            }
+            matrices.add(draw.matrix);
+        }
+        return draws;
+    }
+
+    /**
+     * Opens POSITION accessors, decoding Draco primitives into one reused mesh
+     * Decoding again in the second pass is cheaper than keeping a copy of every primitive
+     */
+    private static class PositionReader {
+        private final GlbFile glb;
+        private final DracoDecoder draco = new DracoDecoder();
+        private final DracoMesh dracoMesh = new DracoMesh();
+
+        PositionReader(GlbFile glb) {
+            this.glb = glb;
+        }
+
+        /**
+         * POSITION of a primitive, or null if it has no readable 3-component positions
+         * A decoded Draco accessor is valid until the next call
+         * Throws GlbFormatException if a Draco stream cannot be decoded
+         */
+        Accessor open(JSONObject primitive) throws IOException {
+            Accessor accessor;
+            if (DracoDecoder.extension(primitive) != null) {
+                accessor = draco.decodePrimitive(glb, primitive, dracoMesh) ? dracoMesh.getAttribute(POSITION) : null;
+            } else {
+                accessor = Accessor.open(glb, primitive.optJSONObject("attributes").optInt(POSITION));
+            }
+            return accessor != null && accessor.getComponents() == 3 ? accessor : null;
+        }
+    }
+
+    public int[] getSignature() {
+        return signature;
+    }
+
+    /**
+     * Second longest side of the bounds relative to the longest
+     */
+    public float getShapeMid() {
+        return shapeMid;
+    }
+
+    /**
+     * Shortest side of the bounds relative to the longest
+     */
+    public float getShapeMin() {
+        return shapeMin;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Hash of one LSH band; models that share any band hash are candidates
+     */
+    public int bandHash(int band) {
+        long hash = band;
+        for (int i = band * ROWS_PER_BAND; i < (band + 1) * ROWS_PER_BAND; i++) {
+            hash = mix(hash * 31 + signature[i]);
+        }
+        return (int) hash;
+    }
+
+    /**
+     * Estimated Jaccard similarity of the voxel sets (0 to 1)
+     */
+    public static float similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return same / (float) SIGNATURE_SIZE;
+    }
+
+    /**
+     * Signature as little-endian bytes, for storage
+     */
+    public static byte[] toBytes(int[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(signature.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asIntBuffer().put(signature);
+        return buffer.array();
+    }
+
+    public static int[] fromBytes(byte[] bytes) {
+        int[] signature = new int[bytes.length / 4];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(signature);
+        return signature;
+    }
+
+    /**
+     * SplitMix64 finalizer
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
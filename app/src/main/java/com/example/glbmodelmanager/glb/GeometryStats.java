@@ -0,0 +1,165 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Vertex and triangle counts of a model, read from the glTF JSON alone
+ * Counts cover what the default scene draws, as MeshDraw walks it: a mesh drawn by
+ * several nodes, or by several EXT_mesh_gpu_instancing instances, counts once per copy,
+ * so instancing a model at import leaves its counts unchanged. Without a scene every
+ * stored mesh counts once
+ */
+public class GeometryStats {
+
+    // glTF primitive modes
+    private static final int MODE_TRIANGLES = 4;
+    private static final int MODE_TRIANGLE_STRIP = 5;
+    private static final int MODE_TRIANGLE_FAN = 6;
+
+    private final int vertexCount;
+    private final int triangleCount;
+
+    public GeometryStats(int vertexCount, int triangleCount) {
+        this.vertexCount = vertexCount;
+        this.triangleCount = triangleCount;
+    }
+
+    /**
+     * Count the vertices and triangles of every drawn mesh primitive
+     */
+    public static GeometryStats read(GlbFile glb) {
+        JSONObject json = glb.getJson();
+        JSONArray meshes = json.optJSONArray("meshes");
+        JSONArray accessors = json.optJSONArray("accessors");
+        if (meshes == null || accessors == null) {
+            return new GeometryStats(0, 0);
+        }
+
+        long[] copies = copies(json, meshes.length());
+        long vertices = 0;
+        long triangles = 0;
+        for (int m = 0; m < meshes.length(); m++) {
+            JSONObject mesh = meshes.optJSONObject(m);
+            JSONArray primitives = mesh != null ? mesh.optJSONArray("primitives") : null;
+            if (primitives == null || copies[m] == 0) {
+                continue;
+            }
+            long meshVertices = 0;
+            long meshTriangles = 0;
+            for (int p = 0; p < primitives.length(); p++) {
+                JSONObject primitive = primitives.optJSONObject(p);
+                JSONObject attributes = primitive != null ? primitive.optJSONObject("attributes") : null;
+                if (attributes == null) {
+                    continue;
+                }
+                int positionCount = count(accessors, attributes.optInt("POSITION", -1));
+                meshVertices += positionCount;
+
+                // Indexed primitives draw one element per index, others one per vertex
+                int elements = primitive.has("indices")
+                        ? count(accessors, primitive.optInt("indices", -1)) : positionCount;
+                switch (primitive.optInt("mode", MODE_TRIANGLES)) {
+                    case MODE_TRIANGLES:
+                        meshTriangles += elements / 3;
+                        break;
+                    case MODE_TRIANGLE_STRIP:
+                    case MODE_TRIANGLE_FAN:
+                        meshTriangles += Math.max(0, elements - 2);
+                        break;
+                    default:
+                        break; // Points and lines
+                }
+            }
+            vertices += meshVertices * copies[m];
+            triangles += meshTriangles * copies[m];
+        }
+        return new GeometryStats(clamp(vertices), clamp(triangles));
+    }
+
+    /**
+     * How many times the default scene draws each mesh, counting GPU instances
+     * Every mesh is drawn once if there is no scene
+     */
+    private static long[] copies(JSONObject json, int meshCount) {
+        long[] copies = new long[meshCount];
+        JSONArray nodes = json.optJSONArray("nodes");
+        JSONArray scenes = json.optJSONArray("scenes");
+        JSONObject scene = scenes != null ? scenes.optJSONObject(json.optInt("scene", 0)) : null;
+        JSONArray roots = scene != null ? scene.optJSONArray("nodes") : null;
+        if (nodes == null || roots == null) {
+            Arrays.fill(copies, 1);
+            return copies;
+        }
+
+        // A node is visited once even if the file has a cycle, as in MeshDraw
+        boolean[] visited = new boolean[nodes.length()];
+        List<Integer> stack = new ArrayList<>();
+        for (int r = 0; r < roots.length(); r++) {
+            stack.add(roots.optInt(r, -1));
+        }
+        while (!stack.isEmpty()) {
+            int index = stack.remove(stack.size() - 1);
+            if (index < 0 || index >= visited.length || visited[index]) {
+                continue;
+            }
+            visited[index] = true;
+            JSONObject node = nodes.optJSONObject(index);
+            if (node == null) {
+                continue;
+            }
+            int mesh = node.optInt("mesh", -1);
+            if (mesh >= 0 && mesh < meshCount) {
+                copies[mesh] += instanceCount(json, node);
+            }
+            JSONArray children = node.optJSONArray("children");
+            for (int c = 0; children != null && c < children.length(); c++) {
+                stack.add(children.optInt(c, -1));
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * Number of EXT_mesh_gpu_instancing instances a node draws, or 1 without the extension
+     */
+    private static int instanceCount(JSONObject json, JSONObject node) {
+        JSONObject extensions = node.optJSONObject("extensions");
+        JSONObject instancing = extensions != null
+                ? extensions.optJSONObject(NodeTransforms.EXT_MESH_GPU_INSTANCING) : null;
+        JSONObject attributes = instancing != null ? instancing.optJSONObject("attributes") : null;
+        if (attributes == null) {
+            return 1;
+        }
+        // Instances stop at the shortest attribute, as in NodeTransforms.instances
+        JSONArray accessors = json.optJSONArray("accessors");
+        int count = Integer.MAX_VALUE;
+        for (String name : new String[]{"TRANSLATION", "ROTATION", "SCALE"}) {
+            if (attributes.has(name)) {
+                count = Math.min(count, count(accessors, attributes.optInt(name, -1)));
+            }
+        }
+        return count == Integer.MAX_VALUE ? 1 : count;
+    }
+
+    private static int count(JSONArray accessors, int index) {
+        JSONObject accessor = accessors.optJSONObject(index);
+        return accessor != null ? Math.max(0, accessor.optInt("count", 0)) : 0;
+    }
+
+    private static int clamp(long value) {
+        return (int) Math.min(Integer.MAX_VALUE, value);
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only view of a binary glTF (GLB) file
+ * Parses the header and JSON chunk, and memory-maps the BIN chunk on demand
+ */
+public class GlbFile implements Closeable {
+
+    // GLB container constants (little-endian)
+    public static final int MAGIC = 0x46546C67;        // "glTF"
+    public static final int VERSION = 2;
+    public static final int CHUNK_JSON = 0x4E4F534A;   // "JSON"
+    public static final int CHUNK_BIN = 0x004E4942;    // "BIN\0"
+    public static final int HEADER_LENGTH = 12;
+    public static final int CHUNK_HEADER_LENGTH = 8;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final JSONObject json;
+    private final long binOffset;
+    private final long binLength;
+    private MappedByteBuffer bin;
+
+    private GlbFile(File file, RandomAccessFile raf, JSONObject json, long binOffset, long binLength) {
+        this.file = file;
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        this.json = json;
+        this.binOffset = binOffset;
+        this.binLength = binLength;
+    }
+
+    /**
+     * Open a GLB file and parse its header and JSON chunk
+     * Throws IOException if the file is not a valid GLB container
+     */
+    public static GlbFile open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long fileLength = channel.size();
+
+            // Read 12-byte header
+            ByteBuffer header = readFully(channel, 0, HEADER_LENGTH);
+            if (header.getInt() != MAGIC) {
+                throw new GlbFormatException("Not a GLB file");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new GlbFormatException("Unsupported GLB version: " + version);
+            }
+            long totalLength = header.getInt() & 0xFFFFFFFFL;
+            if (totalLength > fileLength) {
+                throw new GlbFormatException("GLB file is truncated");
+            }
+
+            // First chunk must be JSON
+            ByteBuffer jsonHeader = readFully(channel, HEADER_LENGTH, CHUNK_HEADER_LENGTH);
+            long jsonLength = jsonHeader.getInt() & 0xFFFFFFFFL;
+            if (jsonHeader.getInt() != CHUNK_JSON) {
+                throw new GlbFormatException("First GLB chunk is not JSON");
+            }
+            long jsonStart = HEADER_LENGTH + CHUNK_HEADER_LENGTH;
+            if (jsonStart + jsonLength > totalLength) {
+                throw new GlbFormatException("JSON chunk runs past end of file");
+            }
+            ByteBuffer jsonBytes = readFully(channel, jsonStart, (int) jsonLength);
+
+            JSONObject json;
+            try {
+                json = new JSONObject(new String(jsonBytes.array(), StandardCharsets.UTF_8).trim());
+            } catch (JSONException e) {
+                throw new GlbFormatException("Invalid glTF JSON: " + e.getMessage());
+            }
+
+            // Optional BIN chunk follows the JSON chunk
+            long binOffset = 0;
+            long binLength = 0;
+            long next = jsonStart + jsonLength;
+            if (next + CHUNK_HEADER_LENGTH <= totalLength) {
+                ByteBuffer binHeader = readFully(channel, next, CHUNK_HEADER_LENGTH);
+                long length = binHeader.getInt() & 0xFFFFFFFFL;
+                if (binHeader.getInt() == CHUNK_BIN) {
+                    binOffset = next + CHUNK_HEADER_LENGTH;
+                    binLength = length;
+                    if (binOffset + binLength > totalLength) {
+                        throw new GlbFormatException("BIN chunk runs past end of file");
+                    }
+                }
+            }
+
+            return new GlbFile(file, raf, json, binOffset, binLength);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public JSONObject getJson() {
+        return json;
+    }
+
+    public boolean hasBin() {
+        return binLength > 0;
+    }
+
+    public long getBinOffset() {
+        return binOffset;
+    }
+
+    public long getBinLength() {
+        return binLength;
+    }
+
+    /**
+     * Memory-map the BIN chunk (little-endian)
+     * The mapping is created once and shared by all callers
+     */
+    public synchronized ByteBuffer getBin() throws IOException {
+        if (bin == null) {
+            if (binLength > Integer.MAX_VALUE) {
+                throw new IOException("BIN chunk too large to map");
+            }
+            bin = channel.map(FileChannel.MapMode.READ_ONLY, binOffset, binLength);
+        }
+        return bin.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Get the bytes of a bufferView as a little-endian slice of the BIN chunk
+     * Returns null if the view does not point into the embedded buffer
+     */
+    public ByteBuffer getBufferView(int index) throws IOException {
+        JSONArray views = json.optJSONArray("bufferViews");
+        if (views == null || index < 0 || index >= views.length()) {
+            return null;
+        }
+        JSONObject view = views.optJSONObject(index);
+        if (view == null || view.optInt("buffer", 0) != 0 || !hasEmbeddedBuffer()) {
+            return null;
+        }
+        long offset = view.optLong("byteOffset", 0);
+        long length = view.optLong("byteLength", 0);
+        if (offset < 0 || length < 0 || offset + length > binLength) {
+            throw new GlbFormatException("bufferView " + index + " runs past end of BIN chunk");
+        }
+        return slice(getBin(), (int) offset, (int) length);
+    }
+
+    /**
+     * Check whether buffer 0 is the GLB-stored buffer (no uri)
+     */
+    public boolean hasEmbeddedBuffer() {
+        JSONArray buffers = json.optJSONArray("buffers");
+        if (buffers == null || buffers.length() == 0 || !hasBin()) {
+            return false;
+        }
+        JSONObject buffer = buffers.optJSONObject(0);
+        return buffer != null && !buffer.has("uri");
+    }
+
+    /**
+     * Little-endian slice of a buffer without touching its position
+     */
+    public static ByteBuffer slice(ByteBuffer source, int offset, int length) {
+        ByteBuffer copy = source.duplicate();
+        copy.limit(offset + length);
+        copy.position(offset);
+        return copy.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new GlbFormatException("Unexpected end of GLB file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        bin = null;
+        raf.close();
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.glbmodelmanager.glb;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a file is readable but is not a well-formed GLB container
+ */
+public class GlbFormatException extends IOException {
+
+    public GlbFormatException(String message) {
+        super(message);
+    }
+}
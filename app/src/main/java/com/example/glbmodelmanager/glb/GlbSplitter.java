@@ -0,0 +1,1038 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Splits a large GLB into smaller, independently valid GLBs plus an index
+ *
+ * MODE_NODES keeps whole node subtrees together and packs consecutive ones
+ * into parts of about targetPartBytes; a subtree that is larger on its own is
+ * split again at its children. MODE_GRID puts every node with a mesh into the
+ * cell of a gridCells x gridCells grid (over X and Z) holding its center.
+ *
+ * Each part node keeps its world transform. Skins, cameras and animations are
+ * left out, so parts are static geometry. Of the root-level extensions only
+ * KHR_lights_punctual is kept (with the lights the part's nodes use); the others
+ * are dropped along with every reference to them.
+ *
+ * Binary data is streamed from the mapped source file into each part, so memory
+ * use does not grow with the model. Only the byte ranges the part's accessors
+ * use are copied, so parts of a model with one shared bufferView stay small
+ */
+public class GlbSplitter {
+
+    public static final int MODE_NODES = 0;
+    public static final int MODE_GRID = 1;
+
+    public static final String INDEX_FILE = "index.json";
+
+    private static final String KHR_LIGHTS_PUNCTUAL = "KHR_lights_punctual";
+
+    // Parts small enough for external viewers and a quick copy to Downloads
+    public static final long DEFAULT_PART_BYTES = 64L * 1024 * 1024;
+    public static final int DEFAULT_GRID_CELLS = 4;
+
+    private final int mode;
+    private final long targetPartBytes;
+    private final int gridCells;
+    private volatile boolean cancelled;
+
+    /**
+     * Receives the number of parts written so far, on the splitting thread
+     */
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+    }
+
+    /**
+     * One written part, as listed in the index
+     */
+    public static class Part {
+        private final String fileName;
+        private final String name;
+        private final long fileSize;
+        private final int nodeCount;
+        private final int triangleCount;
+        private final float[] bounds;  // min x, y, z, max x, y, z; null if unknown
+
+        Part(String fileName, String name, long fileSize, int nodeCount, int triangleCount, float[] bounds) {
+            this.fileName = fileName;
+            this.name = name;
+            this.fileSize = fileSize;
+            this.nodeCount = nodeCount;
+            this.triangleCount = triangleCount;
+            this.bounds = bounds;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        public int getNodeCount() {
+            return nodeCount;
+        }
+
+        public int getTriangleCount() {
+            return triangleCount;
+        }
+
+        public float[] getBounds() {
+            return bounds;
+        }
+    }
+
+    /**
+     * A node placed at the root of a part, with or without its subtree
+     */
+    private static class Unit {
+        final int node;
+        final float[] world;
+        final boolean withChildren;
+        long bytes;
+        float[] bounds;
+
+        Unit(int node, float[] world, boolean withChildren) {
+            this.node = node;
+            this.world = world;
+            this.withChildren = withChildren;
+        }
+    }
+
+    /**
+     * Old index -> new index, in order of first use
+     */
+    private static class Remap {
+        final List<Integer> old = new ArrayList<>();
+        final Map<Integer, Integer> index = new HashMap<>();
+
+        int map(int oldIndex) {
+            Integer mapped = index.get(oldIndex);
+            if (mapped == null) {
+                mapped = old.size();
+                old.add(oldIndex);
+                index.put(oldIndex, mapped);
+            }
+            return mapped;
+        }
+
+        int size() {
+            return old.size();
+        }
+    }
+
+    /**
+     * Byte ranges of the source bufferViews a part uses
+     * Ranges of a view that overlap once their starts are rounded down to 4 bytes (which
+     * keeps component alignment) become one output bufferView; bytes between them are left out
+     */
+    private static class Slices {
+        // Source view -> used {start, end} ranges, views in order of first use
+        private final Map<Integer, List<long[]>> used = new LinkedHashMap<>();
+        // Output views as {source view, start, end}
+        private final List<long[]> slices = new ArrayList<>();
+        private final Map<Integer, List<Integer>> byView = new HashMap<>();
+
+        void add(int view, long start, long end) {
+            List<long[]> ranges = used.get(view);
+            if (ranges == null) {
+                ranges = new ArrayList<>();
+                used.put(view, ranges);
+            }
+            ranges.add(new long[]{start, end});
+        }
+
+        /**
+         * The whole of a view (images, Draco streams, accessors that cannot be measured)
+         */
+        void addWhole(JSONObject json, int view) {
+            JSONObject viewJson = item(json, "bufferViews", view);
+            add(view, 0, viewJson != null ? viewJson.optLong("byteLength", 0) : 0);
+        }
+
+        /**
+         * Merge the ranges of each view into output views, once everything is added
+         */
+        void build() {
+            for (Map.Entry<Integer, List<long[]>> entry : used.entrySet()) {
+                List<long[]> ranges = entry.getValue();
+                ranges.sort((a, b) -> Long.compare(a[0], b[0]));
+                List<Integer> indices = new ArrayList<>();
+                long[] current = null;
+                for (long[] range : ranges) {
+                    long start = range[0] & ~3L;
+                    if (current != null && start <= current[2]) {
+                        current[2] = Math.max(current[2], range[1]);
+                    } else {
+                        current = new long[]{entry.getKey(), start, range[1]};
+                        indices.add(slices.size());
+                        slices.add(current);
+                    }
+                }
+                byView.put(entry.getKey(), indices);
+            }
+        }
+
+        int size() {
+            return slices.size();
+        }
+
+        long[] get(int slice) {
+            return slices.get(slice);
+        }
+
+        long bytes() {
+            long bytes = 0;
+            for (long[] slice : slices) {
+                bytes += slice[2] - slice[1];
+            }
+            return bytes;
+        }
+
+        /**
+         * Point a reference at the output view holding its data, moving its offset (offsetKey,
+         * or null for references to a whole view) to match
+         */
+        void remap(JSONObject object, String offsetKey) throws JSONException {
+            if (object == null || !object.has("bufferView")) {
+                return;
+            }
+            int view = object.getInt("bufferView");
+            long offset = offsetKey != null ? object.optLong(offsetKey, 0) : 0;
+            List<Integer> indices = byView.get(view);
+            for (int i = 0; indices != null && i < indices.size(); i++) {
+                long[] slice = slices.get(indices.get(i));
+                if (slice[1] <= offset && (offset < slice[2] || slice[1] == slice[2])) {
+                    object.put("bufferView", (int) indices.get(i));
+                    if (offsetKey != null && (object.has(offsetKey) || slice[1] > 0)) {
+                        object.put(offsetKey, offset - slice[1]);
+                    }
+                    return;
+                }
+            }
+            throw new JSONException("bufferView " + view + " has no data at " + offset);
+        }
+    }
+
+    public GlbSplitter(int mode, long targetPartBytes, int gridCells) {
+        this.mode = mode;
+        this.targetPartBytes = Math.max(1, targetPartBytes);
+        this.gridCells = Math.max(1, gridCells);
+    }
+
+    /**
+     * Stop splitting before the next write; split() then throws InterruptedIOException
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Split source into part_NNN.glb files and INDEX_FILE inside dir
+     */
+    public List<Part> split(File source, File dir) throws IOException {
+        return split(source, dir, null);
+    }
+
+    /**
+     * Split source into part_NNN.glb files and INDEX_FILE inside dir, reporting each
+     * written part to listener (may be null)
+     */
+    public List<Part> split(File source, File dir, ProgressListener listener) throws IOException {
+        try (GlbFile glb = GlbFile.open(source)) {
+            JSONObject json = glb.getJson();
+            JSONArray nodes = json.optJSONArray("nodes");
+            JSONArray scenes = json.optJSONArray("scenes");
+            JSONObject scene = scenes != null ? scenes.optJSONObject(json.optInt("scene", 0)) : null;
+            JSONArray roots = scene != null ? scene.optJSONArray("nodes") : null;
+            if (nodes == null || roots == null || roots.length() == 0) {
+                throw new GlbFormatException("Model has no scene to split");
+            }
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+
+            List<Unit> units = new ArrayList<>();
+            boolean[] visited = new boolean[nodes.length()];
+            for (int r = 0; r < roots.length(); r++) {
+                int root = roots.optInt(r, -1);
+                if (mode == MODE_GRID) {
+                    addMeshNodes(json, root, NodeTransforms.identity(), visited, units);
+                } else {
+                    addSubtrees(json, root, NodeTransforms.identity(), visited, units);
+                }
+            }
+            if (units.isEmpty()) {
+                throw new GlbFormatException("Model has no meshes to split");
+            }
+
+            List<List<Unit>> groups = mode == MODE_GRID ? groupByCell(units) : groupBySize(units);
+            List<Part> parts = new ArrayList<>();
+            JSONArray index = new JSONArray();
+            for (List<Unit> group : groups) {
+                if (cancelled) {
+                    throw new InterruptedIOException("Split cancelled");
+                }
+                if (listener != null) {
+                    listener.onProgress(parts.size(), groups.size());
+                }
+                String fileName = String.format(Locale.US, "part_%03d.glb", parts.size());
+                File file = new File(dir, fileName);
+                writePart(glb, json, group, file);
+
+                float[] bounds = null;
+                for (Unit unit : group) {
+                    bounds = union(bounds, unit.bounds);
+                }
+                int triangles;
+                try (GlbFile written = GlbFile.open(file)) {
+                    triangles = GeometryStats.read(written).getTriangleCount();
+                }
+                Part part = new Part(fileName, partName(json, group, parts.size()), file.length(),
+                        group.size(), triangles, bounds);
+                parts.add(part);
+                index.put(toJson(part));
+            }
+
+            JSONObject indexJson = new JSONObject()
+                    .put("source", source.getName())
+                    .put("mode", mode == MODE_GRID ? "grid" : "nodes")
+                    .put("parts", index);
+            try (OutputStream output = new FileOutputStream(new File(dir, INDEX_FILE))) {
+                output.write(indexJson.toString(2).getBytes(StandardCharsets.UTF_8));
+            }
+            return parts;
+        } catch (JSONException e) {
+            throw new IOException("Invalid glTF JSON: " + e.getMessage());
+        }
+    }
+
+    // --- Choosing the parts ---
+
+    /**
+     * Whole subtrees that fit the target size; larger ones are split at their children
+     */
+    private void addSubtrees(JSONObject json, int index, float[] parent, boolean[] visited, List<Unit> units) {
+        JSONObject node = json.optJSONArray("nodes").optJSONObject(index);
+        if (node == null || visited[index]) {
+            return;
+        }
+        float[] world = NodeTransforms.multiply(parent, NodeTransforms.local(node));
+        Unit whole = measure(json, new Unit(index, world, true));
+        JSONArray children = node.optJSONArray("children");
+        if (whole.bytes <= targetPartBytes || children == null || children.length() == 0) {
+            markSubtree(json, index, visited);
+            units.add(whole);
+            return;
+        }
+
+        visited[index] = true;
+        if (node.has("mesh")) {
+            units.add(measure(json, new Unit(index, world, false)));
+        }
+        for (int c = 0; c < children.length(); c++) {
+            int child = children.optInt(c, -1);
+            if (child >= 0 && child < visited.length) {
+                addSubtrees(json, child, world, visited, units);
+            }
+        }
+    }
+
+    /**
+     * Every node with a mesh, on its own
+     */
+    private static void addMeshNodes(JSONObject json, int index, float[] parent, boolean[] visited,
+                                     List<Unit> units) {
+        JSONArray nodes = json.optJSONArray("nodes");
+        List<Integer> stack = new ArrayList<>();
+        List<float[]> parents = new ArrayList<>();
+        stack.add(index);
+        parents.add(parent);
+        while (!stack.isEmpty()) {
+            int current = stack.remove(stack.size() - 1);
+            float[] parentWorld = parents.remove(parents.size() - 1);
+            JSONObject node = nodes.optJSONObject(current);
+            if (node == null || visited[current]) {
+                continue;
+            }
+            visited[current] = true;
+            float[] world = NodeTransforms.multiply(parentWorld, NodeTransforms.local(node));
+            if (node.has("mesh")) {
+                units.add(measure(json, new Unit(current, world, false)));
+            }
+            JSONArray children = node.optJSONArray("children");
+            for (int c = children != null ? children.length() - 1 : -1; c >= 0; c--) {
+                stack.add(children.optInt(c, -1));
+                parents.add(world);
+            }
+        }
+    }
+
+    private static void markSubtree(JSONObject json, int index, boolean[] visited) {
+        JSONArray nodes = json.optJSONArray("nodes");
+        List<Integer> stack = new ArrayList<>();
+        stack.add(index);
+        while (!stack.isEmpty()) {
+            int current = stack.remove(stack.size() - 1);
+            JSONObject node = nodes.optJSONObject(current);
+            if (node == null || visited[current]) {
+                continue;
+            }
+            visited[current] = true;
+            JSONArray children = node.optJSONArray("children");
+            for (int c = 0; children != null && c < children.length(); c++) {
+                stack.add(children.optInt(c, -1));
+            }
+        }
+    }
+
+    /**
+     * Consecutive units packed up to the target size
+     */
+    private List<List<Unit>> groupBySize(List<Unit> units) {
+        List<List<Unit>> groups = new ArrayList<>();
+        List<Unit> current = new ArrayList<>();
+        long bytes = 0;
+        for (Unit unit : units) {
+            if (!current.isEmpty() && bytes + unit.bytes > targetPartBytes) {
+                groups.add(current);
+                current = new ArrayList<>();
+                bytes = 0;
+            }
+            current.add(unit);
+            bytes += unit.bytes;
+        }
+        if (!current.isEmpty()) {
+            groups.add(current);
+        }
+        return groups;
+    }
+
+    /**
+     * Units grouped by the grid cell holding their center, cells in row order
+     */
+    private List<List<Unit>> groupByCell(List<Unit> units) {
+        float[] extent = null;
+        for (Unit unit : units) {
+            extent = union(extent, unit.bounds);
+        }
+        Map<Integer, List<Unit>> cells = new TreeMap<>();
+        for (Unit unit : units) {
+            int cell = 0;
+            if (unit.bounds != null) {
+                int cx = cell(unit.bounds[0], unit.bounds[3], extent[0], extent[3]);
+                int cz = cell(unit.bounds[2], unit.bounds[5], extent[2], extent[5]);
+                cell = cz * gridCells + cx;
+            }
+            List<Unit> list = cells.get(cell);
+            if (list == null) {
+                list = new ArrayList<>();
+                cells.put(cell, list);
+            }
+            list.add(unit);
+        }
+        return new ArrayList<>(cells.values());
+    }
+
+    private int cell(float min, float max, float extentMin, float extentMax) {
+        float size = extentMax - extentMin;
+        if (size <= 0) {
+            return 0;
+        }
+        int cell = (int) (((min + max) / 2 - extentMin) / size * gridCells);
+        return Math.max(0, Math.min(gridCells - 1, cell));
+    }
+
+    /**
+     * Bytes of binary data and world bounds of a unit
+     */
+    private static Unit measure(JSONObject json, Unit unit) {
+        Remap nodes = new Remap();
+        Remap meshes = new Remap();
+        Remap accessors = new Remap();
+        Remap materials = new Remap();
+        Remap textures = new Remap();
+        Remap images = new Remap();
+        List<float[]> worlds = new ArrayList<>();
+        nodes.map(unit.node);
+        worlds.add(unit.world);
+        for (int i = 0; i < nodes.size(); i++) {
+            JSONObject node = json.optJSONArray("nodes").optJSONObject(nodes.old.get(i));
+            float[] world = worlds.get(i);
+            int mesh = node.optInt("mesh", -1);
+            if (mesh >= 0) {
+                meshes.map(mesh);
+                unit.bounds = union(unit.bounds, meshBounds(json, mesh, world));
+            }
+            mapValues(instancingAttributes(node), accessors);
+            JSONArray children = node.optJSONArray("children");
+            if (!unit.withChildren || children == null) {
+                continue;
+            }
+            for (int c = 0; c < children.length(); c++) {
+                int child = children.optInt(c, -1);
+                JSONObject childNode = json.optJSONArray("nodes").optJSONObject(child);
+                if (childNode != null && !nodes.index.containsKey(child)) {
+                    nodes.map(child);
+                    worlds.add(NodeTransforms.multiply(world, NodeTransforms.local(childNode)));
+                }
+            }
+        }
+        Slices slices = new Slices();
+        collect(json, meshes, accessors, materials, textures, images, new Remap(), slices);
+        slices.build();
+        unit.bytes = slices.bytes();
+        return unit;
+    }
+
+    /**
+     * Union of the transformed POSITION min/max boxes of a mesh
+     */
+    private static float[] meshBounds(JSONObject json, int mesh, float[] world) {
+        JSONObject meshJson = item(json, "meshes", mesh);
+        JSONArray primitives = meshJson != null ? meshJson.optJSONArray("primitives") : null;
+        JSONArray accessors = json.optJSONArray("accessors");
+        float[] bounds = null;
+        float[] point = new float[3];
+        for (int p = 0; primitives != null && accessors != null && p < primitives.length(); p++) {
+            JSONObject primitive = primitives.optJSONObject(p);
+            JSONObject attributes = primitive != null ? primitive.optJSONObject("attributes") : null;
+            JSONObject position = attributes != null ? accessors.optJSONObject(attributes.optInt("POSITION", -1)) : null;
+            JSONArray min = position != null ? position.optJSONArray("min") : null;
+            JSONArray max = position != null ? position.optJSONArray("max") : null;
+            if (min == null || max == null || min.length() < 3 || max.length() < 3) {
+                continue;
+            }
+            for (int corner = 0; corner < 8; corner++) {
+                NodeTransforms.transform(world,
+                        (float) ((corner & 1) == 0 ? min : max).optDouble(0, 0),
+                        (float) ((corner & 2) == 0 ? min : max).optDouble(1, 0),
+                        (float) ((corner & 4) == 0 ? min : max).optDouble(2, 0), point, 0);
+                bounds = union(bounds, new float[]{point[0], point[1], point[2], point[0], point[1], point[2]});
+            }
+        }
+        return bounds;
+    }
+
+    private static float[] union(float[] a, float[] b) {
+        if (a == null) {
+            return b != null ? b.clone() : null;
+        }
+        if (b != null) {
+            for (int axis = 0; axis < 3; axis++) {
+                a[axis] = Math.min(a[axis], b[axis]);
+                a[axis + 3] = Math.max(a[axis + 3], b[axis + 3]);
+            }
+        }
+        return a;
+    }
+
+    // --- Writing a part ---
+
+    /**
+     * Map everything the meshes use, in dependency order, so each pass only adds to later ones
+     * The binary data they use is added to slices, which still has to be built
+     */
+    private static void collect(JSONObject json, Remap meshes, Remap accessors, Remap materials,
+                                Remap textures, Remap images, Remap samplers, Slices slices) {
+        for (int mesh : meshes.old) {
+            JSONObject meshJson = item(json, "meshes", mesh);
+            JSONArray primitives = meshJson != null ? meshJson.optJSONArray("primitives") : null;
+            for (int p = 0; primitives != null && p < primitives.length(); p++) {
+                JSONObject primitive = primitives.optJSONObject(p);
+                if (primitive == null) {
+                    continue;
+                }
+                mapValues(primitive.optJSONObject("attributes"), accessors);
+                JSONArray targets = primitive.optJSONArray("targets");
+                for (int t = 0; targets != null && t < targets.length(); t++) {
+                    mapValues(targets.optJSONObject(t), accessors);
+                }
+                if (primitive.has("indices")) {
+                    accessors.map(primitive.optInt("indices"));
+                }
+                if (primitive.has("material")) {
+                    materials.map(primitive.optInt("material"));
+                }
+                JSONObject draco = DracoDecoder.extension(primitive);
+                if (draco != null && draco.has("bufferView")) {
+                    slices.addWhole(json, draco.optInt("bufferView"));
+                }
+            }
+        }
+        for (int material : materials.old) {
+            mapTextures(item(json, "materials", material), textures);
+        }
+        for (int texture : textures.old) {
+            JSONObject textureJson = item(json, "textures", texture);
+            if (textureJson == null) {
+                continue;
+            }
+            if (textureJson.has("source")) {
+                images.map(textureJson.optInt("source"));
+            }
+            if (textureJson.has("sampler")) {
+                samplers.map(textureJson.optInt("sampler"));
+            }
+            // Alternative sources (KHR_texture_basisu, EXT_texture_webp, ...)
+            JSONObject extensions = textureJson.optJSONObject("extensions");
+            for (Iterator<String> keys = extensions != null ? extensions.keys() : null;
+                 keys != null && keys.hasNext(); ) {
+                JSONObject extension = extensions.optJSONObject(keys.next());
+                if (extension != null && extension.has("source")) {
+                    images.map(extension.optInt("source"));
+                }
+            }
+        }
+        for (int image : images.old) {
+            JSONObject imageJson = item(json, "images", image);
+            if (imageJson != null && imageJson.has("bufferView")) {
+                slices.addWhole(json, imageJson.optInt("bufferView"));
+            }
+        }
+        for (int accessor : accessors.old) {
+            JSONObject accessorJson = item(json, "accessors", accessor);
+            if (accessorJson == null) {
+                continue;
+            }
+            int element = elementBytes(accessorJson.optString("type"), accessorJson.optInt("componentType"));
+            if (accessorJson.has("bufferView")) {
+                int view = accessorJson.optInt("bufferView");
+                JSONObject viewJson = item(json, "bufferViews", view);
+                int stride = viewJson != null ? viewJson.optInt("byteStride", 0) : 0;
+                addRange(json, slices, view, accessorJson.optLong("byteOffset", 0),
+                        accessorJson.optInt("count", 0), stride > 0 ? stride : element, element);
+            }
+            JSONObject sparse = accessorJson.optJSONObject("sparse");
+            JSONObject indices = sparse != null ? sparse.optJSONObject("indices") : null;
+            JSONObject values = sparse != null ? sparse.optJSONObject("values") : null;
+            int count = sparse != null ? sparse.optInt("count", 0) : 0;
+            if (indices != null && indices.has("bufferView")) {
+                int size = Accessor.componentSize(indices.optInt("componentType"));
+                addRange(json, slices, indices.optInt("bufferView"), indices.optLong("byteOffset", 0),
+                        count, size, size);
+            }
+            if (values != null && values.has("bufferView")) {
+                addRange(json, slices, values.optInt("bufferView"), values.optLong("byteOffset", 0),
+                        count, element, element);
+            }
+        }
+    }
+
+    /**
+     * Add the bytes of count elements, or the whole view if they cannot be measured
+     */
+    private static void addRange(JSONObject json, Slices slices, int view, long offset, int count,
+                                 int stride, int element) {
+        JSONObject viewJson = item(json, "bufferViews", view);
+        long length = viewJson != null ? viewJson.optLong("byteLength", 0) : 0;
+        long end = offset + (count - 1L) * stride + element;
+        if (count <= 0 || element <= 0 || offset < 0 || offset >= length) {
+            slices.addWhole(json, view);
+        } else {
+            slices.add(view, offset, Math.min(length, end));
+        }
+    }
+
+    /**
+     * Bytes of one accessor element; matrix columns of 1 and 2 byte components are padded to 4
+     */
+    private static int elementBytes(String type, int componentType) {
+        int size = Accessor.componentSize(componentType);
+        int components = Accessor.componentCount(type);
+        if (type.startsWith("MAT") && size < 4) {
+            int rows = type.equals("MAT2") ? 2 : type.equals("MAT3") ? 3 : 4;
+            return rows * ((rows * size + 3) & ~3);
+        }
+        return components * size;
+    }
+
+    private void writePart(GlbFile glb, JSONObject json, List<Unit> units, File file)
+            throws IOException, JSONException {
+        Remap nodes = new Remap();
+        Remap meshes = new Remap();
+        Remap accessors = new Remap();
+        Remap materials = new Remap();
+        Remap textures = new Remap();
+        Remap images = new Remap();
+        Remap samplers = new Remap();
+        Remap lights = new Remap();
+        Slices slices = new Slices();
+
+        // Nodes: unit roots first, then their descendants as they are reached
+        Map<Integer, Unit> rootUnits = new HashMap<>();
+        JSONArray sceneNodes = new JSONArray();
+        for (Unit unit : units) {
+            rootUnits.put(unit.node, unit);
+            sceneNodes.put(nodes.map(unit.node));
+        }
+        JSONArray outNodes = new JSONArray();
+        for (int i = 0; i < nodes.size(); i++) {
+            int old = nodes.old.get(i);
+            JSONObject node = copy(json.optJSONArray("nodes").optJSONObject(old));
+            node.remove("skin");
+            node.remove("camera");
+            Unit unit = rootUnits.get(old);
+            if (unit != null) {
+                NodeTransforms.setMatrix(node, unit.world);
+            }
+            if (node.has("mesh")) {
+                node.put("mesh", meshes.map(node.getInt("mesh")));
+            }
+            remapValues(instancingAttributes(node), accessors);
+            remap(extension(node, KHR_LIGHTS_PUNCTUAL), "light", lights);
+            JSONArray children = node.optJSONArray("children");
+            if (children != null && (unit == null || unit.withChildren)) {
+                JSONArray mapped = new JSONArray();
+                for (int c = 0; c < children.length(); c++) {
+                    int child = children.getInt(c);
+                    if (!rootUnits.containsKey(child)) {
+                        mapped.put(nodes.map(child));
+                    }
+                }
+                node.put("children", mapped);
+            } else {
+                node.remove("children");
+            }
+            outNodes.put(node);
+        }
+
+        collect(json, meshes, accessors, materials, textures, images, samplers, slices);
+        slices.build();
+
+        JSONArray outMeshes = new JSONArray();
+        for (int mesh : meshes.old) {
+            JSONObject meshJson = copy(json.getJSONArray("meshes").getJSONObject(mesh));
+            JSONArray primitives = meshJson.optJSONArray("primitives");
+            for (int p = 0; primitives != null && p < primitives.length(); p++) {
+                JSONObject primitive = primitives.getJSONObject(p);
+                remapValues(primitive.optJSONObject("attributes"), accessors);
+                JSONArray targets = primitive.optJSONArray("targets");
+                for (int t = 0; targets != null && t < targets.length(); t++) {
+                    remapValues(targets.optJSONObject(t), accessors);
+                }
+                remap(primitive, "indices", accessors);
+                remap(primitive, "material", materials);
+                slices.remap(DracoDecoder.extension(primitive), null);
+            }
+            outMeshes.put(meshJson);
+        }
+        JSONArray outMaterials = new JSONArray();
+        for (int material : materials.old) {
+            JSONObject materialJson = copy(json.getJSONArray("materials").getJSONObject(material));
+            remapTextures(materialJson, textures);
+            outMaterials.put(materialJson);
+        }
+        JSONArray outTextures = new JSONArray();
+        for (int texture : textures.old) {
+            JSONObject textureJson = copy(json.getJSONArray("textures").getJSONObject(texture));
+            remap(textureJson, "source", images);
+            remap(textureJson, "sampler", samplers);
+            JSONObject extensions = textureJson.optJSONObject("extensions");
+            for (Iterator<String> keys = extensions != null ? extensions.keys() : null;
+                 keys != null && keys.hasNext(); ) {
+                remap(extensions.optJSONObject(keys.next()), "source", images);
+            }
+            outTextures.put(textureJson);
+        }
+        JSONArray outImages = new JSONArray();
+        for (int image : images.old) {
+            JSONObject imageJson = copy(json.getJSONArray("images").getJSONObject(image));
+            slices.remap(imageJson, null);
+            outImages.put(imageJson);
+        }
+        JSONArray outSamplers = new JSONArray();
+        for (int sampler : samplers.old) {
+            outSamplers.put(copy(json.getJSONArray("samplers").getJSONObject(sampler)));
+        }
+        JSONArray outAccessors = new JSONArray();
+        for (int accessor : accessors.old) {
+            JSONObject accessorJson = copy(json.getJSONArray("accessors").getJSONObject(accessor));
+            slices.remap(accessorJson, "byteOffset");
+            JSONObject sparse = accessorJson.optJSONObject("sparse");
+            if (sparse != null) {
+                slices.remap(sparse.optJSONObject("indices"), "byteOffset");
+                slices.remap(sparse.optJSONObject("values"), "byteOffset");
+            }
+            outAccessors.put(accessorJson);
+        }
+
+        // Root-level extensions: the lights the nodes use; the rest cannot be remapped
+        JSONObject outExtensions = new JSONObject();
+        Set<String> dropped = new HashSet<>();
+        JSONObject extensions = json.optJSONObject("extensions");
+        for (Iterator<String> keys = extensions != null ? extensions.keys() : null; keys != null && keys.hasNext(); ) {
+            String name = keys.next();
+            if (KHR_LIGHTS_PUNCTUAL.equals(name) && lights.size() > 0) {
+                JSONArray sourceLights = extensions.getJSONObject(name).getJSONArray("lights");
+                JSONArray outLights = new JSONArray();
+                for (int light : lights.old) {
+                    outLights.put(copy(sourceLights.getJSONObject(light)));
+                }
+                outExtensions.put(name, new JSONObject().put("lights", outLights));
+            } else {
+                dropped.add(name);
+            }
+        }
+
+        // Binary data is streamed from the mapped source, slice by slice
+        GlbWriter writer = new GlbWriter();
+        JSONArray outViews = new JSONArray();
+        for (int i = 0; i < slices.size(); i++) {
+            if (cancelled) {
+                throw new InterruptedIOException("Split cancelled");
+            }
+            long[] slice = slices.get(i);
+            int view = (int) slice[0];
+            JSONObject viewJson = copy(json.getJSONArray("bufferViews").getJSONObject(view));
+            ByteBuffer data = viewJson.optInt("buffer", 0) == 0 ? glb.getBufferView(view) : null;
+            if (data == null) {
+                throw new GlbFormatException("bufferView " + view + " is not in the BIN chunk");
+            }
+            // Slices start on a multiple of 4 within the view, keep the view's alignment
+            // so accessor offsets stay valid
+            writer.align(4, (int) (viewJson.optLong("byteOffset", 0) & 3));
+            viewJson.put("buffer", 0);
+            viewJson.put("byteOffset", writer.addBuffer(GlbFile.slice(data, (int) slice[1], (int) (slice[2] - slice[1]))));
+            viewJson.put("byteLength", slice[2] - slice[1]);
+            outViews.put(viewJson);
+        }
+
+        JSONObject part = new JSONObject();
+        part.put("asset", copy(json.getJSONObject("asset")));
+        copyIfPresent(json, part, "extensionsUsed");
+        copyIfPresent(json, part, "extensionsRequired");
+        part.put("scene", 0);
+        part.put("scenes", new JSONArray().put(new JSONObject().put("nodes", sceneNodes)));
+        part.put("nodes", outNodes);
+        putIfNotEmpty(part, "meshes", outMeshes);
+        putIfNotEmpty(part, "materials", outMaterials);
+        putIfNotEmpty(part, "textures", outTextures);
+        putIfNotEmpty(part, "images", outImages);
+        putIfNotEmpty(part, "samplers", outSamplers);
+        putIfNotEmpty(part, "accessors", outAccessors);
+        putIfNotEmpty(part, "bufferViews", outViews);
+        if (outViews.length() > 0) {
+            part.put("buffers", new JSONArray().put(new JSONObject().put("byteLength", writer.getBinLength())));
+        }
+        if (outExtensions.length() > 0) {
+            part.put("extensions", outExtensions);
+        }
+        removeExtensions(part, dropped);
+        writer.write(file, part);
+    }
+
+    /**
+     * Remove the named extensions from every object of a part and from its extension lists
+     */
+    private static void removeExtensions(JSONObject part, Set<String> names) throws JSONException {
+        if (names.isEmpty()) {
+            return;
+        }
+        for (String key : new String[]{"extensionsUsed", "extensionsRequired"}) {
+            JSONArray list = part.optJSONArray(key);
+            if (list == null) {
+                continue;
+            }
+            JSONArray kept = new JSONArray();
+            for (int i = 0; i < list.length(); i++) {
+                if (!names.contains(list.optString(i))) {
+                    kept.put(list.opt(i));
+                }
+            }
+            if (kept.length() > 0) {
+                part.put(key, kept);
+            } else {
+                part.remove(key);
+            }
+        }
+        removeExtensionObjects(part, names);
+    }
+
+    private static void removeExtensionObjects(Object value, Set<String> names) {
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            for (int i = 0; i < array.length(); i++) {
+                removeExtensionObjects(array.opt(i), names);
+            }
+            return;
+        }
+        if (!(value instanceof JSONObject)) {
+            return;
+        }
+        JSONObject object = (JSONObject) value;
+        JSONObject extensions = object.optJSONObject("extensions");
+        if (extensions != null) {
+            for (String name : names) {
+                extensions.remove(name);
+            }
+            if (extensions.length() == 0) {
+                object.remove("extensions");
+            }
+        }
+        for (Iterator<String> keys = object.keys(); keys.hasNext(); ) {
+            removeExtensionObjects(object.opt(keys.next()), names);
+        }
+    }
+
+    /**
+     * Map the "index" of every texture reference ("...Texture" objects, including in extensions)
+     */
+    private static void mapTextures(JSONObject object, Remap textures) {
+        for (Iterator<String> keys = object != null ? object.keys() : null; keys != null && keys.hasNext(); ) {
+            String key = keys.next();
+            JSONObject value = object.optJSONObject(key);
+            if (value == null) {
+                continue;
+            }
+            if (key.endsWith("Texture") && value.has("index")) {
+                textures.map(value.optInt("index"));
+            } else {
+                mapTextures(value, textures);
+            }
+        }
+    }
+
+    private static void remapTextures(JSONObject object, Remap textures) throws JSONException {
+        for (Iterator<String> keys = object.keys(); keys.hasNext(); ) {
+            String key = keys.next();
+            JSONObject value = object.optJSONObject(key);
+            if (value == null) {
+                continue;
+            }
+            if (key.endsWith("Texture") && value.has("index")) {
+                remap(value, "index", textures);
+            } else {
+                remapTextures(value, textures);
+            }
+        }
+    }
+
+    private static void mapValues(JSONObject object, Remap remap) {
+        for (Iterator<String> keys = object != null ? object.keys() : null; keys != null && keys.hasNext(); ) {
+            remap.map(object.optInt(keys.next()));
+        }
+    }
+
+    private static void remapValues(JSONObject object, Remap remap) throws JSONException {
+        if (object == null) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        for (Iterator<String> it = object.keys(); it.hasNext(); ) {
+            keys.add(it.next());
+        }
+        for (String key : keys) {
+            remap(object, key, remap);
+        }
+    }
+
+    private static void remap(JSONObject object, String key, Remap remap) throws JSONException {
+        if (object != null && object.has(key)) {
+            object.put(key, remap.map(object.getInt(key)));
+        }
+    }
+
+    /**
+     * Instance transform accessors of a node (EXT_mesh_gpu_instancing), or null
+     * Unit bounds only cover the node's own transform, not the spread of its instances
+     */
+    private static JSONObject instancingAttributes(JSONObject node) {
+        JSONObject extensions = node.optJSONObject("extensions");
+        JSONObject instancing = extensions != null
+                ? extensions.optJSONObject(NodeTransforms.EXT_MESH_GPU_INSTANCING) : null;
+        return instancing != null ? instancing.optJSONObject("attributes") : null;
+    }
+
+    /**
+     * Extension object of a glTF object, or null
+     */
+    private static JSONObject extension(JSONObject object, String name) {
+        JSONObject extensions = object != null ? object.optJSONObject("extensions") : null;
+        return extensions != null ? extensions.optJSONObject(name) : null;
+    }
+
+    /**
+     * Element of a top-level array, or null if it is missing
+     */
+    private static JSONObject item(JSONObject json, String key, int index) {
+        JSONArray array = json.optJSONArray(key);
+        return array != null ? array.optJSONObject(index) : null;
+    }
+
+    private static JSONObject copy(JSONObject object) throws JSONException {
+        return new JSONObject(object.toString());
+    }
+
+    private static void copyIfPresent(JSONObject from, JSONObject to, String key) throws JSONException {
+        JSONArray value = from.optJSONArray(key);
+        if (value != null) {
+            to.put(key, new JSONArray(value.toString()));
+        }
+    }
+
+    private static void putIfNotEmpty(JSONObject json, String key, JSONArray value) throws JSONException {
+        if (value.length() > 0) {
+            json.put(key, value);
+        }
+    }
+
+    // --- Index ---
+
+    private String partName(JSONObject json, List<Unit> group, int number) {
+        if (mode == MODE_GRID && group.get(0).bounds != null) {
+            float[] bounds = group.get(0).bounds;
+            return String.format(Locale.US, "Area %d (around %.0f, %.0f)", number + 1,
+                    (bounds[0] + bounds[3]) / 2, (bounds[2] + bounds[5]) / 2);
+        }
+        String first = json.optJSONArray("nodes").optJSONObject(group.get(0).node).optString("name", "");
+        if (first.isEmpty()) {
+            first = "Part " + (number + 1);
+        }
+        return group.size() > 1 ? first + " + " + (group.size() - 1) + " more" : first;
+    }
+
+    private static JSONObject toJson(Part part) throws JSONException {
+        JSONObject json = new JSONObject()
+                .put("file", part.getFileName())
+                .put("name", part.getName())
+                .put("bytes", part.getFileSize())
+                .put("nodes", part.getNodeCount())
+                .put("triangles", part.getTriangleCount());
+        if (part.getBounds() != null) {
+            JSONArray bounds = new JSONArray();
+            for (float value : part.getBounds()) {
+                bounds.put((double) value);
+            }
+            json.put("bounds", bounds);
+        }
+        return json;
+    }
+}
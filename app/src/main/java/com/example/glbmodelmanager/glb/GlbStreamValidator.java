@@ -0,0 +1,78 @@
+package com.example.glbmodelmanager.glb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Incremental GLB header check for data that is being streamed
+ * Feed every copied chunk to update() and call finish() at the end
+ */
+public class GlbStreamValidator {
+
+    private static final int CHECKED_LENGTH = GlbFile.HEADER_LENGTH + GlbFile.CHUNK_HEADER_LENGTH;
+
+    private final byte[] head = new byte[CHECKED_LENGTH];
+    private long total = 0;
+    private long declaredLength = -1;
+
+    /**
+     * Inspect the next chunk of the stream
+     * Throws as soon as the header is known to be invalid
+     */
+    public void update(byte[] data, int offset, int length) throws IOException {
+        if (total < CHECKED_LENGTH) {
+            int needed = (int) Math.min(CHECKED_LENGTH - total, length);
+            System.arraycopy(data, offset, head, (int) total, needed);
+            if (total + needed == CHECKED_LENGTH) {
+                checkHeader();
+            }
+        }
+        total += length;
+        if (declaredLength >= 0 && total > declaredLength) {
+            throw new GlbFormatException("GLB data runs past its declared length");
+        }
+    }
+
+    /**
+     * Check that the stream ended exactly at the declared length
+     */
+    public void finish() throws IOException {
+        if (total < CHECKED_LENGTH) {
+            throw new GlbFormatException("File is too small to be a GLB");
+        }
+        if (total != declaredLength) {
+            throw new GlbFormatException("GLB file is truncated");
+        }
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Length from the GLB header, or -1 until the header has been seen
+     */
+    public long getDeclaredLength() {
+        return declaredLength;
+    }
+
+    private void checkHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(head).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt() != GlbFile.MAGIC) {
+            throw new GlbFormatException("Not a GLB file");
+        }
+        int version = header.getInt();
+        if (version != GlbFile.VERSION) {
+            throw new GlbFormatException("Unsupported GLB version: " + version);
+        }
+        declaredLength = header.getInt() & 0xFFFFFFFFL;
+        long jsonLength = header.getInt() & 0xFFFFFFFFL;
+        if (header.getInt() != GlbFile.CHUNK_JSON) {
+            throw new GlbFormatException("First GLB chunk is not JSON");
+        }
+        if (CHECKED_LENGTH + jsonLength > declaredLength) {
+            throw new GlbFormatException("JSON chunk runs past end of file");
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a GLB container from a glTF JSON document and a list of binary segments
+ * Segments are streamed into the BIN chunk in order, so large sources are never
+ * held in memory all at once
+ */
+public class GlbWriter {
+
+    /**
+     * A piece of the BIN chunk that can write itself to a channel
+     */
+    public interface Segment {
+        long length();
+        void writeTo(WritableByteChannel out) throws IOException;
+    }
+
+    private final List<Segment> segments = new ArrayList<>();
+    private long binLength = 0;
+
+    /**
+     * Build a writer holding every bufferView of the embedded buffer
+     * Views listed in replacements are swapped for new data, the rest are streamed
+     * from the source BIN chunk. Offsets and lengths in json are rewritten in place
+     */
+    public static GlbWriter fromBufferViews(GlbFile source, JSONObject json,
+                                            Map<Integer, ByteBuffer> replacements) throws IOException {
+        GlbWriter writer = new GlbWriter();
+        JSONArray views = json.optJSONArray("bufferViews");
+        if (views == null) {
+            return writer;
+        }
+
+        try {
+            for (int i = 0; i < views.length(); i++) {
+                JSONObject view = views.getJSONObject(i);
+                if (view.optInt("buffer", 0) != 0) {
+                    continue; // External buffer, nothing to pack
+                }
+
+                ByteBuffer data = replacements.get(i);
+                int phase = 0;
+                if (data == null) {
+                    data = source.getBufferView(i);
+                    if (data == null) {
+                        throw new IOException("bufferView " + i + " has no data");
+                    }
+                    // Keep the original alignment so accessor offsets stay valid
+                    phase = (int) (view.optLong("byteOffset", 0) & 3);
+                }
+
+                writer.align(4, phase);
+                long offset = writer.addBuffer(data);
+                view.put("byteOffset", offset);
+                view.put("byteLength", data.remaining());
+            }
+
+            JSONArray buffers = json.optJSONArray("buffers");
+            if (buffers != null && buffers.length() > 0) {
+                buffers.getJSONObject(0).put("byteLength", writer.getBinLength());
+            }
+        } catch (JSONException e) {
+            throw new IOException("Invalid glTF JSON: " + e.getMessage());
+        }
+        return writer;
+    }
+
+    /**
+     * Append a buffer to the BIN chunk
+     * Returns the byte offset of the data inside the BIN chunk
+     */
+    public long addBuffer(ByteBuffer data) {
+        ByteBuffer copy = data.duplicate();
+        return addSegment(new Segment() {
+            @Override
+            public long length() {
+                return copy.remaining();
+            }
+
+            @Override
+            public void writeTo(WritableByteChannel out) throws IOException {
+                ByteBuffer source = copy.duplicate();
+                while (source.hasRemaining()) {
+                    out.write(source);
+                }
+            }
+        });
+    }
+
+    /**
+     * Append raw bytes to the BIN chunk
+     */
+    public long addBytes(byte[] data) {
+        return addBuffer(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Append a custom segment to the BIN chunk
+     */
+    public long addSegment(Segment segment) {
+        long offset = binLength;
+        segments.add(segment);
+        binLength += segment.length();
+        return offset;
+    }
+
+    /**
+     * Pad the BIN chunk so the next segment starts at the given alignment
+     * An optional phase keeps the original offset modulo the alignment
+     */
+    public void align(int alignment, int phase) {
+        int padding = (int) Math.floorMod(phase - binLength, (long) alignment);
+        if (padding > 0) {
+            addBuffer(ByteBuffer.allocate(padding));
+        }
+    }
+
+    public long getBinLength() {
+        return binLength;
+    }
+
+    /**
+     * Write the container to a file
+     */
+    public void write(File dest, JSONObject json) throws IOException {
+        try (FileOutputStream output = new FileOutputStream(dest);
+             FileChannel channel = output.getChannel()) {
+            write(channel, json);
+        }
+    }
+
+    /**
+     * Write the container to a channel
+     * The JSON chunk is padded with spaces and the BIN chunk with zeros (4-byte aligned)
+     */
+    public void write(WritableByteChannel out, JSONObject json) throws IOException {
+        byte[] jsonBytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        int jsonPadded = pad4(jsonBytes.length);
+        long binPadded = pad4(binLength);
+        boolean hasBin = binLength > 0;
+
+        long total = GlbFile.HEADER_LENGTH + GlbFile.CHUNK_HEADER_LENGTH + jsonPadded;
+        if (hasBin) {
+            total += GlbFile.CHUNK_HEADER_LENGTH + binPadded;
+        }
+        if (total > 0xFFFFFFFFL) {
+            throw new IOException("GLB output exceeds 4 GB");
+        }
+
+        // Header + JSON chunk
+        ByteBuffer head = ByteBuffer.allocate(GlbFile.HEADER_LENGTH + GlbFile.CHUNK_HEADER_LENGTH + jsonPadded)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        head.putInt(GlbFile.MAGIC);
+        head.putInt(GlbFile.VERSION);
+        head.putInt((int) total);
+        head.putInt(jsonPadded);
+        head.putInt(GlbFile.CHUNK_JSON);
+        head.put(jsonBytes);
+        while (head.hasRemaining()) {
+            head.put((byte) 0x20);
+        }
+        head.flip();
+        writeFully(out, head);
+
+        if (!hasBin) {
+            return;
+        }
+
+        // BIN chunk
+        ByteBuffer binHeader = ByteBuffer.allocate(GlbFile.CHUNK_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        binHeader.putInt((int) binPadded);
+        binHeader.putInt(GlbFile.CHUNK_BIN);
+        binHeader.flip();
+        writeFully(out, binHeader);
+
+        for (Segment segment : segments) {
+            segment.writeTo(out);
+        }
+        writeFully(out, ByteBuffer.allocate((int) (binPadded - binLength)));
+    }
+
+    private static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static int pad4(int length) {
+        return (length + 3) & ~3;
+    }
+
+    private static long pad4(long length) {
+        return (length + 3) & ~3L;
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.glbmodelmanager.glb;
+
+import android.util.Base64;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Converts a multi-file glTF (.gltf + external buffers and images) into a GLB
+ * External files and data URIs are streamed into the BIN chunk one segment at a
+ * time, so the whole asset is never held in memory
+ */
+public class GltfPacker {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final int BASE64_CHUNK = 64 * 1024; // Must be a multiple of 4
+
+    /**
+     * Looks up the files referenced by relative URIs in the glTF
+     */
+    public interface Resolver {
+        /**
+         * Size of the referenced file in bytes, or -1 if unknown
+         */
+        long length(String path) throws IOException;
+
+        InputStream open(String path) throws IOException;
+    }
+
+    private final Resolver resolver;
+
+    /**
+     * Constructor
+     */
+    public GltfPacker(Resolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * Pack a parsed .gltf document into dest
+     * All buffers are merged into the single GLB buffer and every image is moved
+     * into a bufferView
+     */
+    public void pack(JSONObject json, File dest) throws IOException {
+        try {
+            GlbWriter writer = new GlbWriter();
+            JSONArray buffers = json.optJSONArray("buffers");
+            JSONArray views = json.optJSONArray("bufferViews");
+            if (views == null) {
+                views = new JSONArray();
+                json.put("bufferViews", views);
+            }
+
+            // Append every buffer and remember where it starts in the BIN chunk
+            int bufferCount = buffers != null ? buffers.length() : 0;
+            long[] bases = new long[bufferCount];
+            for (int i = 0; i < bufferCount; i++) {
+                JSONObject buffer = buffers.getJSONObject(i);
+                long length = buffer.optLong("byteLength", 0);
+                writer.align(4, 0);
+                bases[i] = writer.addSegment(openSegment(buffer.optString("uri", null), length));
+            }
+
+            // Re-point buffer views at the merged buffer
+            for (int i = 0; i < views.length(); i++) {
+                JSONObject view = views.getJSONObject(i);
+                int buffer = view.optInt("buffer", 0);
+                if (buffer < 0 || buffer >= bufferCount) {
+                    throw new IOException("bufferView " + i + " references missing buffer " + buffer);
+                }
+                view.put("buffer", 0);
+                view.put("byteOffset", view.optLong("byteOffset", 0) + bases[buffer]);
+            }
+
+            // Move images with a uri into new buffer views
+            JSONArray images = json.optJSONArray("images");
+            if (images != null) {
+                for (int i = 0; i < images.length(); i++) {
+                    JSONObject image = images.getJSONObject(i);
+                    String uri = image.optString("uri", null);
+                    if (uri == null) {
+                        continue;
+                    }
+                    GlbWriter.Segment segment = openSegment(uri, -1);
+                    writer.align(4, 0);
+                    long offset = writer.addSegment(segment);
+
+                    JSONObject view = new JSONObject();
+                    view.put("buffer", 0);
+                    view.put("byteOffset", offset);
+                    view.put("byteLength", segment.length());
+                    views.put(view);
+
+                    if (!image.has("mimeType")) {
+                        image.put("mimeType", guessMimeType(uri));
+                    }
+                    image.put("bufferView", views.length() - 1);
+                    image.remove("uri");
+                }
+            }
+
+            // A GLB has exactly one buffer: the BIN chunk
+            JSONArray packed = new JSONArray();
+            if (writer.getBinLength() > 0) {
+                packed.put(new JSONObject().put("byteLength", writer.getBinLength()));
+            }
+            if (packed.length() > 0) {
+                json.put("buffers", packed);
+            } else {
+                json.remove("buffers");
+            }
+            if (views.length() == 0) {
+                json.remove("bufferViews");
+            }
+
+            writer.write(dest, json);
+        } catch (JSONException e) {
+            throw new IOException("Invalid glTF JSON: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Create a segment for a buffer or image uri
+     * expectedLength is the declared byteLength, or -1 to use the file size
+     */
+    private GlbWriter.Segment openSegment(String uri, long expectedLength) throws IOException {
+        if (uri == null) {
+            throw new IOException("Buffer without uri in .gltf file");
+        }
+        if (uri.startsWith("data:")) {
+            return new DataUriSegment(uri, expectedLength);
+        }
+
+        String path = decodePath(uri);
+        long length = expectedLength;
+        if (length < 0) {
+            length = resolver.length(path);
+        }
+        if (length < 0) {
+            length = countBytes(path); // Provider did not report a size
+        }
+        return new FileSegment(path, length);
+    }
+
+    /**
+     * Count the bytes of a file by streaming through it once
+     */
+    private long countBytes(String path) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long total = 0;
+        try (InputStream input = resolver.open(path)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                total += read;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * External file streamed from the resolver
+     */
+    private class FileSegment implements GlbWriter.Segment {
+        private final String path;
+        private final long length;
+
+        FileSegment(String path, long length) {
+            this.path = path;
+            this.length = length;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(WritableByteChannel out) throws IOException {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            long remaining = length;
+            try (InputStream input = resolver.open(path)) {
+                while (remaining > 0) {
+                    int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read == -1) {
+                        throw new IOException(path + " is shorter than declared");
+                    }
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                    while (chunk.hasRemaining()) {
+                        out.write(chunk);
+                    }
+                    remaining -= read;
+                }
+            }
+        }
+    }
+
+    /**
+     * Base64 data URI decoded in fixed-size chunks while writing
+     */
+    private static class DataUriSegment implements GlbWriter.Segment {
+        private final String uri;
+        private final int payloadStart;
+        private final long length;
+
+        DataUriSegment(String uri, long expectedLength) throws IOException {
+            int comma = uri.indexOf(',');
+            if (comma < 0 || !uri.substring(0, comma).endsWith(";base64")) {
+                throw new IOException("Unsupported data URI");
+            }
+            this.uri = uri;
+            this.payloadStart = comma + 1;
+
+            int payload = uri.length() - payloadStart;
+            int padding = 0;
+            if (payload > 0 && uri.charAt(uri.length() - 1) == '=') padding++;
+            if (payload > 1 && uri.charAt(uri.length() - 2) == '=') padding++;
+            long decoded = (payload / 4L) * 3 - padding;
+            if (expectedLength >= 0 && decoded < expectedLength) {
+                throw new IOException("Data URI is shorter than declared");
+            }
+            this.length = expectedLength >= 0 ? expectedLength : decoded;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(WritableByteChannel out) throws IOException {
+            long remaining = length;
+            for (int start = payloadStart; start < uri.length() && remaining > 0; start += BASE64_CHUNK) {
+                int end = Math.min(uri.length(), start + BASE64_CHUNK);
+                byte[] encoded = uri.substring(start, end).getBytes(StandardCharsets.US_ASCII);
+                byte[] decoded;
+                try {
+                    decoded = Base64.decode(encoded, Base64.DEFAULT);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid base64 in data URI");
+                }
+                ByteBuffer chunk = ByteBuffer.wrap(decoded, 0, (int) Math.min(decoded.length, remaining));
+                remaining -= chunk.remaining();
+                while (chunk.hasRemaining()) {
+                    out.write(chunk);
+                }
+            }
+        }
+    }
+
+    /**
+     * Guess an image MIME type from its uri
+     */
+    static String guessMimeType(String uri) {
+        if (uri.startsWith("data:")) {
+            int end = uri.indexOf(';');
+            return end > 5 ? uri.substring(5, end) : "application/octet-stream";
+        }
+        String lower = uri.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".png")) return "image/png";
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return "image/jpeg";
+        if (lower.endsWith(".webp")) return "image/webp";
+        if (lower.endsWith(".ktx2")) return "image/ktx2";
+        return "application/octet-stream";
+    }
+
+    /**
+     * Percent-decode a relative uri into a file path ('+' is kept as-is)
+     */
+    static String decodePath(String uri) {
+        if (uri.indexOf('%') < 0) {
+            return uri;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(uri.length());
+        for (int i = 0; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (c == '%' && i + 2 < uri.length()) {
+                int hi = Character.digit(uri.charAt(i + 1), 16);
+                int lo = Character.digit(uri.charAt(i + 2), 16);
+                if (hi >= 0 && lo >= 0) {
+                    bytes.write((hi << 4) | lo);
+                    i += 2;
+                    continue;
+                }
+            }
+            byte[] raw = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+            bytes.write(raw, 0, raw.length);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
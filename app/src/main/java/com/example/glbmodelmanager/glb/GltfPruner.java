@@ -0,0 +1,201 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+
+/**
+ * Drops meshes, accessors and bufferViews nothing refers to any more, and renumbers
+ * the references to the rest. Run by stages that replace data in the JSON before
+ * GlbWriter.fromBufferViews, so the orphaned data is not written out
+ */
+class GltfPruner {
+
+    private GltfPruner() {
+    }
+
+    /**
+     * Prune json in place; returns true if anything was removed
+     */
+    static boolean prune(JSONObject json) throws JSONException {
+        boolean changed = false;
+
+        // Meshes: kept if a node uses them (all of them when the file has no nodes)
+        JSONArray nodes = json.optJSONArray("nodes");
+        JSONArray meshes = json.optJSONArray("meshes");
+        if (nodes != null && meshes != null) {
+            boolean[] usedMeshes = new boolean[meshes.length()];
+            for (int n = 0; n < nodes.length(); n++) {
+                JSONObject node = nodes.optJSONObject(n);
+                mark(usedMeshes, node != null ? node.optInt("mesh", -1) : -1);
+            }
+            int[] meshMap = renumber(usedMeshes);
+            if (removed(meshMap)) {
+                json.put("meshes", keep(meshes, meshMap));
+                for (int n = 0; n < nodes.length(); n++) {
+                    remap(nodes.optJSONObject(n), "mesh", meshMap);
+                }
+                changed = true;
+            }
+        }
+
+        // Accessors: primitives, instance transforms, skins and animation samplers
+        JSONArray accessors = json.optJSONArray("accessors");
+        if (accessors != null) {
+            boolean[] usedAccessors = new boolean[accessors.length()];
+            forEachAccessorOwner(json, (object, key) -> mark(usedAccessors, object.optInt(key, -1)));
+            int[] accessorMap = renumber(usedAccessors);
+            if (removed(accessorMap)) {
+                json.put("accessors", keep(accessors, accessorMap));
+                forEachAccessorOwner(json, (object, key) -> remap(object, key, accessorMap));
+                accessors = json.getJSONArray("accessors");
+                changed = true;
+            }
+        }
+
+        // BufferViews: accessors (sparse parts included), images and Draco streams
+        JSONArray views = json.optJSONArray("bufferViews");
+        if (views != null) {
+            boolean[] usedViews = new boolean[views.length()];
+            forEachViewOwner(json, (object, key) -> mark(usedViews, object.optInt(key, -1)));
+            int[] viewMap = renumber(usedViews);
+            if (removed(viewMap)) {
+                json.put("bufferViews", keep(views, viewMap));
+                forEachViewOwner(json, (object, key) -> remap(object, key, viewMap));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Callback for one index reference: object.key is an index into a top-level array
+     */
+    private interface Reference {
+        void visit(JSONObject object, String key) throws JSONException;
+    }
+
+    private static void forEachAccessorOwner(JSONObject json, Reference reference) throws JSONException {
+        JSONArray meshes = json.optJSONArray("meshes");
+        for (int m = 0; meshes != null && m < meshes.length(); m++) {
+            JSONObject mesh = meshes.optJSONObject(m);
+            JSONArray primitives = mesh != null ? mesh.optJSONArray("primitives") : null;
+            for (int p = 0; primitives != null && p < primitives.length(); p++) {
+                JSONObject primitive = primitives.optJSONObject(p);
+                if (primitive == null) {
+                    continue;
+                }
+                visitValues(primitive.optJSONObject("attributes"), reference);
+                JSONArray targets = primitive.optJSONArray("targets");
+                for (int t = 0; targets != null && t < targets.length(); t++) {
+                    visitValues(targets.optJSONObject(t), reference);
+                }
+                visit(primitive, "indices", reference);
+            }
+        }
+        JSONArray nodes = json.optJSONArray("nodes");
+        for (int n = 0; nodes != null && n < nodes.length(); n++) {
+            JSONObject node = nodes.optJSONObject(n);
+            JSONObject extensions = node != null ? node.optJSONObject("extensions") : null;
+            JSONObject instancing = extensions != null
+                    ? extensions.optJSONObject(NodeTransforms.EXT_MESH_GPU_INSTANCING) : null;
+            visitValues(instancing != null ? instancing.optJSONObject("attributes") : null, reference);
+        }
+        JSONArray skins = json.optJSONArray("skins");
+        for (int s = 0; skins != null && s < skins.length(); s++) {
+            visit(skins.optJSONObject(s), "inverseBindMatrices", reference);
+        }
+        JSONArray animations = json.optJSONArray("animations");
+        for (int a = 0; animations != null && a < animations.length(); a++) {
+            JSONObject animation = animations.optJSONObject(a);
+            JSONArray samplers = animation != null ? animation.optJSONArray("samplers") : null;
+            for (int s = 0; samplers != null && s < samplers.length(); s++) {
+                visit(samplers.optJSONObject(s), "input", reference);
+                visit(samplers.optJSONObject(s), "output", reference);
+            }
+        }
+    }
+
+    private static void forEachViewOwner(JSONObject json, Reference reference) throws JSONException {
+        JSONArray accessors = json.optJSONArray("accessors");
+        for (int a = 0; accessors != null && a < accessors.length(); a++) {
+            JSONObject accessor = accessors.optJSONObject(a);
+            visit(accessor, "bufferView", reference);
+            JSONObject sparse = accessor != null ? accessor.optJSONObject("sparse") : null;
+            if (sparse != null) {
+                visit(sparse.optJSONObject("indices"), "bufferView", reference);
+                visit(sparse.optJSONObject("values"), "bufferView", reference);
+            }
+        }
+        JSONArray images = json.optJSONArray("images");
+        for (int i = 0; images != null && i < images.length(); i++) {
+            visit(images.optJSONObject(i), "bufferView", reference);
+        }
+        JSONArray meshes = json.optJSONArray("meshes");
+        for (int m = 0; meshes != null && m < meshes.length(); m++) {
+            JSONObject mesh = meshes.optJSONObject(m);
+            JSONArray primitives = mesh != null ? mesh.optJSONArray("primitives") : null;
+            for (int p = 0; primitives != null && p < primitives.length(); p++) {
+                visit(DracoDecoder.extension(primitives.optJSONObject(p)), "bufferView", reference);
+            }
+        }
+    }
+
+    private static void visit(JSONObject object, String key, Reference reference) throws JSONException {
+        if (object != null && object.has(key)) {
+            reference.visit(object, key);
+        }
+    }
+
+    private static void visitValues(JSONObject object, Reference reference) throws JSONException {
+        for (Iterator<String> keys = object != null ? object.keys() : null; keys != null && keys.hasNext(); ) {
+            reference.visit(object, keys.next());
+        }
+    }
+
+    private static void mark(boolean[] used, int index) {
+        if (index >= 0 && index < used.length) {
+            used[index] = true;
+        }
+    }
+
+    /**
+     * New index of every element, -1 for removed ones
+     */
+    private static int[] renumber(boolean[] used) {
+        int[] map = new int[used.length];
+        int next = 0;
+        for (int i = 0; i < used.length; i++) {
+            map[i] = used[i] ? next++ : -1;
+        }
+        return map;
+    }
+
+    private static boolean removed(int[] map) {
+        for (int index : map) {
+            if (index < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static JSONArray keep(JSONArray array, int[] map) throws JSONException {
+        JSONArray kept = new JSONArray();
+        for (int i = 0; i < map.length; i++) {
+            if (map[i] >= 0) {
+                kept.put(array.get(i));
+            }
+        }
+        return kept;
+    }
+
+    private static void remap(JSONObject object, String key, int[] map) throws JSONException {
+        int index = object != null ? object.optInt(key, -1) : -1;
+        if (index >= 0 && index < map.length && map[index] >= 0) {
+            object.put(key, map[index]);
+        }
+    }
+}
@@ -0,0 +1,1140 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Structural check of a GLB beyond its container header
+ * First the glTF JSON is checked against the schema rules viewers rely on: required
+ * properties, enum values, references between objects, buffer view and accessor
+ * bounds against the BIN chunk, and a node hierarchy without cycles. Then the
+ * contents of every accessor are scanned in parallel on a fork/join pool, straight
+ * from the mapped BIN chunk: index values against the vertex count they address,
+ * NaN or infinite floats, declared min/max and animation key times. Sparse accessors
+ * are checked with their substitutions applied, as a viewer would read them
+ */
+public class GltfValidator {
+
+    // Accessor elements per fork/join leaf; smaller leaves cost more to schedule than they save
+    private static final int LEAF_ELEMENTS = 32 * 1024;
+
+    // Exporters round declared min/max a little
+    private static final double BOUNDS_TOLERANCE = 1e-4;
+
+    private static final String[] ARRAY_PROPERTIES = {"accessors", "animations", "buffers", "bufferViews",
+            "cameras", "images", "materials", "meshes", "nodes", "samplers", "scenes", "skins", "textures"};
+
+    private static final int MODE_TRIANGLES = 4;
+
+    private final ForkJoinPool pool;
+
+    public GltfValidator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public GltfValidator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Check a GLB; problems go into the report, only I/O failures throw
+     */
+    public ValidationReport validate(GlbFile glb) throws IOException {
+        long start = System.nanoTime();
+        ValidationReport report = new ValidationReport();
+        new Pass(glb, report).run();
+        report.setDurationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return report;
+    }
+
+    /**
+     * State of one validation run
+     */
+    private final class Pass {
+
+        private final GlbFile glb;
+        private final JSONObject json;
+        private final ValidationReport report;
+
+        private long[] bufferLengths;
+        private boolean[] bufferEmbedded;
+        private long[] viewOffsets;
+        private long[] viewLengths;
+        private int[] viewStrides;
+        private boolean[] viewValid;
+
+        // Per accessor: opened for scanning, the vertex count its values index into,
+        // and whether it holds animation key times
+        private Accessor[] opened;
+        private long[] indexLimits;
+        private boolean[] keyTimes;
+
+        // Per sparse accessor: the elements it replaces (strictly increasing) and their new values
+        private int[][] sparseIndices;
+        private Accessor[] sparseValues;
+
+        private int[] parents;
+
+        private final DracoDecoder draco = new DracoDecoder();
+        private final DracoMesh dracoMesh = new DracoMesh();
+
+        Pass(GlbFile glb, ValidationReport report) {
+            this.glb = glb;
+            this.json = glb.getJson();
+            this.report = report;
+        }
+
+        void run() throws IOException {
+            checkAsset();
+            checkBuffers();
+            checkBufferViews();
+            checkAccessors();
+            checkMeshes();
+            checkNodes();
+            checkScenes();
+            checkMaterials();
+            checkTextures();
+            checkSkins();
+            checkAnimations();
+            scanAccessors();
+        }
+
+        private void checkAsset() {
+            JSONObject asset = json.optJSONObject("asset");
+            if (asset == null) {
+                report.error("/asset", "Required property is missing");
+            } else if (!asset.optString("version", "").startsWith("2.")) {
+                report.error("/asset", "Unsupported glTF version \"" + asset.optString("version", "") + "\"");
+            }
+            for (String name : ARRAY_PROPERTIES) {
+                if (json.has(name) && !(json.opt(name) instanceof JSONArray)) {
+                    report.error("/" + name, "Must be an array");
+                }
+            }
+            JSONArray used = json.optJSONArray("extensionsUsed");
+            JSONArray required = json.optJSONArray("extensionsRequired");
+            for (int i = 0; required != null && i < required.length(); i++) {
+                if (!contains(used, required.optString(i))) {
+                    report.error("/extensionsRequired/" + i, required.optString(i) + " is not in extensionsUsed");
+                }
+            }
+        }
+
+        private void checkBuffers() {
+            JSONArray buffers = array("buffers");
+            bufferLengths = new long[buffers.length()];
+            bufferEmbedded = new boolean[buffers.length()];
+            for (int i = 0; i < buffers.length(); i++) {
+                String pointer = "/buffers/" + i;
+                JSONObject buffer = object(buffers, i, pointer);
+                if (buffer == null) {
+                    continue;
+                }
+                long length = integer(buffer.opt("byteLength"));
+                if (length < 1) {
+                    report.error(pointer, "byteLength must be at least 1");
+                    continue;
+                }
+                if (!buffer.has("uri")) {
+                    if (i != 0) {
+                        report.error(pointer, "Only the first buffer can be stored in the BIN chunk");
+                        continue;
+                    } else if (!glb.hasBin()) {
+                        report.error(pointer, "Refers to a BIN chunk the file does not have");
+                        continue;
+                    } else if (length > glb.getBinLength()) {
+                        report.error(pointer, String.format(Locale.US,
+                                "byteLength %d is larger than the BIN chunk (%d bytes)", length, glb.getBinLength()));
+                        length = glb.getBinLength();
+                    }
+                    bufferEmbedded[i] = true;
+                }
+                bufferLengths[i] = length;
+            }
+            if (glb.hasBin() && (bufferEmbedded.length == 0 || !bufferEmbedded[0])) {
+                report.warning("", "The BIN chunk is not used by any buffer");
+            }
+        }
+
+        private void checkBufferViews() {
+            JSONArray views = array("bufferViews");
+            int count = views.length();
+            viewOffsets = new long[count];
+            viewLengths = new long[count];
+            viewStrides = new int[count];
+            viewValid = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                String pointer = "/bufferViews/" + i;
+                JSONObject view = object(views, i, pointer);
+                if (view == null) {
+                    continue;
+                }
+                int buffer = requiredRef(view, "buffer", pointer, "buffers");
+                long offset = view.has("byteOffset") ? integer(view.opt("byteOffset")) : 0;
+                long length = integer(view.opt("byteLength"));
+                if (offset < 0) {
+                    report.error(pointer, "byteOffset must be a non-negative integer");
+                }
+                if (length < 1) {
+                    report.error(pointer, "byteLength must be at least 1");
+                }
+                if (view.has("byteStride")) {
+                    long stride = integer(view.opt("byteStride"));
+                    if (stride < 4 || stride > 252 || stride % 4 != 0) {
+                        report.error(pointer, "byteStride must be a multiple of 4 between 4 and 252");
+                        continue;
+                    }
+                    viewStrides[i] = (int) stride;
+                }
+                if (buffer < 0 || offset < 0 || length < 1) {
+                    continue;
+                }
+                if (offset + length > bufferLengths[buffer]) {
+                    report.error(pointer, String.format(Locale.US, "Runs past the end of buffer %d (%d + %d > %d bytes)",
+                            buffer, offset, length, bufferLengths[buffer]));
+                    continue;
+                }
+                viewOffsets[i] = offset;
+                viewLengths[i] = length;
+                viewValid[i] = true;
+            }
+        }
+
+        private void checkAccessors() throws IOException {
+            JSONArray accessors = array("accessors");
+            int count = accessors.length();
+            opened = new Accessor[count];
+            indexLimits = new long[count];
+            keyTimes = new boolean[count];
+            sparseIndices = new int[count][];
+            sparseValues = new Accessor[count];
+            Arrays.fill(indexLimits, Long.MAX_VALUE);
+            for (int i = 0; i < count; i++) {
+                String pointer = "/accessors/" + i;
+                JSONObject accessor = object(accessors, i, pointer);
+                if (accessor == null) {
+                    continue;
+                }
+                int componentType = accessor.optInt("componentType", 0);
+                int size = Accessor.componentSize(componentType);
+                int components = Accessor.componentCount(accessor.optString("type", ""));
+                long elements = integer(accessor.opt("count"));
+                long offset = accessor.has("byteOffset") ? integer(accessor.opt("byteOffset")) : 0;
+                if (size == 0) {
+                    report.error(pointer, "componentType " + accessor.opt("componentType") + " is not valid");
+                }
+                if (components == 0) {
+                    report.error(pointer, "type \"" + accessor.optString("type", "") + "\" is not valid");
+                }
+                if (elements < 1) {
+                    report.error(pointer, "count must be at least 1");
+                }
+                if (offset < 0) {
+                    report.error(pointer, "byteOffset must be a non-negative integer");
+                }
+                if (accessor.optBoolean("normalized", false)
+                        && (componentType == Accessor.FLOAT || componentType == Accessor.UNSIGNED_INT)) {
+                    report.error(pointer, "Only 8- and 16-bit integers can be normalized");
+                }
+                checkBoundsArray(accessor, "min", components, pointer);
+                checkBoundsArray(accessor, "max", components, pointer);
+                boolean sparse = accessor.has("sparse");
+                boolean sparseValid = sparse && checkSparse(accessor.optJSONObject("sparse"), elements,
+                        pointer + "/sparse");
+                if (size == 0 || components == 0 || elements < 1 || offset < 0 || elements > Integer.MAX_VALUE
+                        || (sparse && !sparseValid)) {
+                    continue; // Broken, with nothing to read
+                }
+                if (sparse && !openSparse(i, accessor, components, (int) elements, pointer + "/sparse")) {
+                    continue;
+                }
+                if (!accessor.has("bufferView")) {
+                    continue; // All zeros, apart from any sparse values
+                }
+
+                int view = requiredRef(accessor, "bufferView", pointer, "bufferViews");
+                if (view < 0 || !viewValid[view]) {
+                    sparseValues[i] = null; // Only the substitutions would be scanned
+                    continue;
+                }
+                long elementSize = (long) components * size;
+                long stride = viewStrides[view] > 0 ? viewStrides[view] : elementSize;
+                if (stride < elementSize) {
+                    report.error(pointer, "byteStride of bufferView " + view + " is smaller than one element");
+                    sparseValues[i] = null;
+                    continue;
+                }
+                if (offset % size != 0 || (viewOffsets[view] + offset) % size != 0) {
+                    report.error(pointer, "Data is not aligned to its " + size + "-byte components");
+                }
+                long end = offset + stride * (elements - 1) + elementSize;
+                if (end > viewLengths[view]) {
+                    report.error(pointer, String.format(Locale.US,
+                            "Runs past bufferView %d (needs %d bytes, it has %d)", view, end, viewLengths[view]));
+                    sparseValues[i] = null;
+                    continue;
+                }
+                if (!isEmbedded(view)) {
+                    sparseValues[i] = null; // External data is not read
+                    continue;
+                }
+                try {
+                    opened[i] = Accessor.open(glb, i);
+                } catch (GlbFormatException e) {
+                    report.error(pointer, e.getMessage());
+                    sparseValues[i] = null;
+                }
+            }
+        }
+
+        /**
+         * Check the structure of a sparse object
+         * Returns true if its indices and values can be read
+         */
+        private boolean checkSparse(JSONObject sparse, long elements, String pointer) {
+            if (sparse == null) {
+                report.error(pointer, "Must be an object");
+                return false;
+            }
+            long count = integer(sparse.opt("count"));
+            boolean valid = true;
+            if (count < 1 || (elements >= 1 && count > elements)) {
+                report.error(pointer, "count must be between 1 and the accessor count");
+                valid = false;
+            }
+            JSONObject indices = sparse.optJSONObject("indices");
+            JSONObject values = sparse.optJSONObject("values");
+            if (indices == null || values == null) {
+                report.error(pointer, "indices and values are required");
+                return false;
+            }
+            valid &= requiredRef(indices, "bufferView", pointer + "/indices", "bufferViews") >= 0;
+            valid &= requiredRef(values, "bufferView", pointer + "/values", "bufferViews") >= 0;
+            if (!isIndexType(indices.optInt("componentType", 0))) {
+                report.error(pointer + "/indices", "componentType must be an unsigned integer type");
+                valid = false;
+            }
+            return valid;
+        }
+
+        /**
+         * Read the substituted element indices of a sparse accessor and open its values
+         * Returns false if they are not in the BIN chunk or are broken (broken ones are reported);
+         * the accessor is not scanned then, its dense data alone is not what a viewer reads
+         */
+        private boolean openSparse(int index, JSONObject accessor, int components, int elements, String pointer)
+                throws IOException {
+            JSONObject sparse = accessor.optJSONObject("sparse");
+            JSONObject indicesJson = sparse.optJSONObject("indices");
+            JSONObject valuesJson = sparse.optJSONObject("values");
+            int indicesView = indicesJson.optInt("bufferView", -1);
+            int valuesView = valuesJson.optInt("bufferView", -1);
+            if (!viewValid[indicesView] || !viewValid[valuesView] || !isEmbedded(indicesView)
+                    || !isEmbedded(valuesView)) {
+                return false;
+            }
+            int count = (int) integer(sparse.opt("count"));
+            Accessor indices;
+            Accessor values;
+            try {
+                indices = Accessor.openView(glb, indicesView, Math.max(0, integer(indicesJson.opt("byteOffset"))),
+                        count, indicesJson.optInt("componentType", 0), 1, false);
+                values = Accessor.openView(glb, valuesView, Math.max(0, integer(valuesJson.opt("byteOffset"))),
+                        count, accessor.optInt("componentType", 0), components,
+                        accessor.optBoolean("normalized", false));
+            } catch (GlbFormatException e) {
+                report.error(pointer, e.getMessage());
+                return false;
+            }
+            if (indices == null || values == null) {
+                return false;
+            }
+
+            int[] substituted = new int[count];
+            for (int s = 0; s < count; s++) {
+                long element = indices.getInt(s, 0);
+                if (element >= elements || (s > 0 && element <= substituted[s - 1])) {
+                    report.error(pointer + "/indices", "Indices must be strictly increasing and below the "
+                            + "accessor count (element " + s + " is " + element + ")");
+                    return false;
+                }
+                substituted[s] = (int) element;
+            }
+            sparseIndices[index] = substituted;
+            sparseValues[index] = values;
+            return true;
+        }
+
+        private void checkMeshes() throws IOException {
+            JSONArray meshes = array("meshes");
+            JSONArray accessors = array("accessors");
+            for (int m = 0; m < meshes.length(); m++) {
+                String meshPointer = "/meshes/" + m;
+                JSONObject mesh = object(meshes, m, meshPointer);
+                if (mesh == null) {
+                    continue;
+                }
+                JSONArray primitives = mesh.optJSONArray("primitives");
+                if (primitives == null || primitives.length() == 0) {
+                    report.error(meshPointer, "Must have at least one primitive");
+                    continue;
+                }
+                for (int p = 0; p < primitives.length(); p++) {
+                    String pointer = meshPointer + "/primitives/" + p;
+                    JSONObject primitive = object(primitives, p, pointer);
+                    if (primitive != null) {
+                        checkPrimitive(primitive, pointer, accessors);
+                    }
+                }
+            }
+        }
+
+        private void checkPrimitive(JSONObject primitive, String pointer, JSONArray accessors) throws IOException {
+            JSONObject attributes = primitive.optJSONObject("attributes");
+            if (attributes == null || attributes.length() == 0) {
+                report.error(pointer, "attributes are missing");
+                return;
+            }
+
+            // Every attribute must have one element per vertex
+            long vertexCount = -1;
+            for (Iterator<String> it = attributes.keys(); it.hasNext(); ) {
+                String name = it.next();
+                int accessor = ref(attributes, name, pointer + "/attributes", "accessors");
+                if (accessor < 0) {
+                    continue;
+                }
+                long count = integer(accessors.optJSONObject(accessor).opt("count"));
+                if (vertexCount >= 0 && count != vertexCount) {
+                    report.error(pointer, "Attributes have different counts (" + vertexCount + " and " + count + ")");
+                }
+                vertexCount = vertexCount < 0 ? count : Math.min(vertexCount, count);
+            }
+            int position = ref(attributes, "POSITION", pointer + "/attributes", "accessors");
+            if (position >= 0) {
+                JSONObject accessor = accessors.optJSONObject(position);
+                if (!"VEC3".equals(accessor.optString("type"))) {
+                    report.error(pointer, "POSITION must be a VEC3 accessor");
+                } else if (!accessor.has("min") || !accessor.has("max")) {
+                    report.warning("/accessors/" + position, "POSITION accessor has no min/max");
+                }
+            }
+
+            long mode = primitive.has("mode") ? integer(primitive.opt("mode")) : MODE_TRIANGLES;
+            if (mode < 0 || mode > 6) {
+                report.error(pointer, "mode " + primitive.opt("mode") + " is not valid");
+            }
+            ref(primitive, "material", pointer, "materials");
+
+            int indices = ref(primitive, "indices", pointer, "accessors");
+            if (indices >= 0) {
+                JSONObject accessor = accessors.optJSONObject(indices);
+                if (!"SCALAR".equals(accessor.optString("type"))
+                        || !isIndexType(accessor.optInt("componentType", 0))) {
+                    report.error("/accessors/" + indices, "Indices must be unsigned byte, short or int scalars");
+                }
+                int view = accessor.optInt("bufferView", -1);
+                if (view >= 0 && view < viewStrides.length && viewStrides[view] > 0) {
+                    report.error("/bufferViews/" + view, "bufferView with indices must not have a byteStride");
+                }
+                if (vertexCount >= 0) {
+                    indexLimits[indices] = Math.min(indexLimits[indices], vertexCount);
+                }
+                if (mode == MODE_TRIANGLES && integer(accessor.opt("count")) % 3 != 0) {
+                    report.warning(pointer, "Index count is not a multiple of 3 for triangles");
+                }
+            } else if (mode == MODE_TRIANGLES && vertexCount >= 0 && vertexCount % 3 != 0) {
+                report.warning(pointer, "Vertex count is not a multiple of 3 for triangles");
+            }
+
+            JSONArray targets = primitive.optJSONArray("targets");
+            for (int t = 0; targets != null && t < targets.length(); t++) {
+                JSONObject target = object(targets, t, pointer + "/targets/" + t);
+                for (Iterator<String> it = target != null ? target.keys() : null; it != null && it.hasNext(); ) {
+                    ref(target, it.next(), pointer + "/targets/" + t, "accessors");
+                }
+            }
+            checkDraco(primitive, pointer, accessors, indices, vertexCount);
+        }
+
+        /**
+         * Decode a KHR_draco_mesh_compression stream and compare it with the accessors
+         */
+        private void checkDraco(JSONObject primitive, String pointer, JSONArray accessors, int indices,
+                                long vertexCount) throws IOException {
+            JSONObject extension = DracoDecoder.extension(primitive);
+            if (extension == null) {
+                return;
+            }
+            String dracoPointer = pointer + "/extensions/" + DracoDecoder.EXTENSION;
+            int view = requiredRef(extension, "bufferView", dracoPointer, "bufferViews");
+            if (view < 0 || !viewValid[view] || !isEmbedded(view)) {
+                return;
+            }
+            try {
+                draco.decodePrimitive(glb, primitive, dracoMesh);
+            } catch (GlbFormatException e) {
+                report.warning(dracoPointer, "Could not be decoded: " + e.getMessage());
+                return;
+            }
+            if (vertexCount >= 0 && dracoMesh.getPointCount() != vertexCount) {
+                report.error(dracoPointer, String.format(Locale.US, "Decodes to %d vertices, the accessors have %d",
+                        dracoMesh.getPointCount(), vertexCount));
+            }
+            long indexCount = indices >= 0 ? integer(accessors.optJSONObject(indices).opt("count")) : -1;
+            if (indexCount >= 0 && (long) dracoMesh.getFaceCount() * 3 != indexCount) {
+                report.error(dracoPointer, String.format(Locale.US, "Decodes to %d indices, the accessor has %d",
+                        (long) dracoMesh.getFaceCount() * 3, indexCount));
+            }
+        }
+
+        private void checkNodes() {
+            JSONArray nodes = array("nodes");
+            int count = nodes.length();
+            parents = new int[count];
+            Arrays.fill(parents, -1);
+            int[][] children = new int[count][];
+            for (int i = 0; i < count; i++) {
+                String pointer = "/nodes/" + i;
+                children[i] = new int[0];
+                JSONObject node = object(nodes, i, pointer);
+                if (node == null) {
+                    continue;
+                }
+                int mesh = ref(node, "mesh", pointer, "meshes");
+                ref(node, "camera", pointer, "cameras");
+                if (ref(node, "skin", pointer, "skins") >= 0 && mesh < 0) {
+                    report.error(pointer, "A skinned node must have a mesh");
+                }
+                checkTransform(node, pointer);
+
+                Object list = node.opt("children");
+                if (list == null) {
+                    continue;
+                }
+                if (!(list instanceof JSONArray)) {
+                    report.error(pointer, "children must be an array");
+                    continue;
+                }
+                JSONArray array = (JSONArray) list;
+                int[] valid = new int[array.length()];
+                int validCount = 0;
+                for (int c = 0; c < array.length(); c++) {
+                    long child = integer(array.opt(c));
+                    if (child < 0 || child >= count) {
+                        report.error(pointer, "Child " + array.opt(c) + " is not a node");
+                    } else if (child == i) {
+                        report.error(pointer, "Node is its own child");
+                    } else {
+                        if (parents[(int) child] >= 0) {
+                            report.error("/nodes/" + child, "Node has more than one parent (nodes "
+                                    + parents[(int) child] + " and " + i + ")");
+                        } else {
+                            parents[(int) child] = i;
+                        }
+                        // Kept for the cycle check, a second parent can close a loop
+                        valid[validCount++] = (int) child;
+                    }
+                }
+                children[i] = Arrays.copyOf(valid, validCount);
+            }
+            checkCycles(children);
+        }
+
+        /**
+         * Depth-first walk of the hierarchy with an explicit stack (hierarchies can be deep)
+         * A child that is still on the stack closes a cycle
+         */
+        private void checkCycles(int[][] children) {
+            int count = children.length;
+            byte[] state = new byte[count]; // 0 unvisited, 1 on the stack, 2 done
+            int[] stackNodes = new int[count];
+            int[] stackPositions = new int[count];
+            for (int start = 0; start < count; start++) {
+                if (state[start] != 0) {
+                    continue;
+                }
+                int depth = 0;
+                stackNodes[0] = start;
+                stackPositions[0] = 0;
+                state[start] = 1;
+                while (depth >= 0) {
+                    int node = stackNodes[depth];
+                    if (stackPositions[depth] < children[node].length) {
+                        int child = children[node][stackPositions[depth]++];
+                        if (state[child] == 1) {
+                            report.error("/nodes/" + node, "Node hierarchy has a cycle (node " + child
+                                    + " is both a child and an ancestor)");
+                        } else if (state[child] == 0) {
+                            state[child] = 1;
+                            depth++;
+                            stackNodes[depth] = child;
+                            stackPositions[depth] = 0;
+                        }
+                    } else {
+                        state[node] = 2;
+                        depth--;
+                    }
+                }
+            }
+        }
+
+        private void checkTransform(JSONObject node, String pointer) {
+            boolean trs = node.has("translation") || node.has("rotation") || node.has("scale");
+            if (node.has("matrix")) {
+                checkNumbers(node, "matrix", 16, pointer);
+                if (trs) {
+                    report.error(pointer, "Has both a matrix and translation/rotation/scale");
+                }
+            }
+            checkNumbers(node, "translation", 3, pointer);
+            checkNumbers(node, "scale", 3, pointer);
+            if (checkNumbers(node, "rotation", 4, pointer)) {
+                JSONArray rotation = node.optJSONArray("rotation");
+                double length = 0;
+                for (int i = 0; i < 4; i++) {
+                    length += rotation.optDouble(i) * rotation.optDouble(i);
+                }
+                if (Math.abs(Math.sqrt(length) - 1) > 1e-3) {
+                    report.warning(pointer, "rotation is not a unit quaternion");
+                }
+            }
+        }
+
+        private void checkScenes() {
+            JSONArray scenes = array("scenes");
+            for (int s = 0; s < scenes.length(); s++) {
+                String pointer = "/scenes/" + s;
+                JSONObject scene = object(scenes, s, pointer);
+                JSONArray nodes = scene != null ? scene.optJSONArray("nodes") : null;
+                for (int i = 0; nodes != null && i < nodes.length(); i++) {
+                    long node = integer(nodes.opt(i));
+                    if (node < 0 || node >= parents.length) {
+                        report.error(pointer, "Node " + nodes.opt(i) + " does not exist");
+                    } else if (parents[(int) node] >= 0) {
+                        report.error(pointer, "Node " + node + " is not a root node");
+                    }
+                }
+            }
+            ref(json, "scene", "", "scenes");
+        }
+
+        private void checkMaterials() {
+            JSONArray materials = array("materials");
+            for (int m = 0; m < materials.length(); m++) {
+                String pointer = "/materials/" + m;
+                JSONObject material = object(materials, m, pointer);
+                if (material == null) {
+                    continue;
+                }
+                JSONObject pbr = material.optJSONObject("pbrMetallicRoughness");
+                if (pbr != null) {
+                    checkTextureInfo(pbr, "baseColorTexture", pointer + "/pbrMetallicRoughness");
+                    checkTextureInfo(pbr, "metallicRoughnessTexture", pointer + "/pbrMetallicRoughness");
+                }
+                checkTextureInfo(material, "normalTexture", pointer);
+                checkTextureInfo(material, "occlusionTexture", pointer);
+                checkTextureInfo(material, "emissiveTexture", pointer);
+                String alphaMode = material.optString("alphaMode", "OPAQUE");
+                if (!alphaMode.equals("OPAQUE") && !alphaMode.equals("MASK") && !alphaMode.equals("BLEND")) {
+                    report.error(pointer, "alphaMode \"" + alphaMode + "\" is not valid");
+                }
+            }
+        }
+
+        private void checkTextureInfo(JSONObject parent, String key, String pointer) {
+            if (!parent.has(key)) {
+                return;
+            }
+            JSONObject info = parent.optJSONObject(key);
+            if (info == null) {
+                report.error(pointer + "/" + key, "Must be an object");
+            } else {
+                requiredRef(info, "index", pointer + "/" + key, "textures");
+            }
+        }
+
+        private void checkTextures() {
+            JSONArray textures = array("textures");
+            for (int t = 0; t < textures.length(); t++) {
+                String pointer = "/textures/" + t;
+                JSONObject texture = object(textures, t, pointer);
+                if (texture != null) {
+                    ref(texture, "source", pointer, "images");
+                    ref(texture, "sampler", pointer, "samplers");
+                }
+            }
+
+            JSONArray images = array("images");
+            for (int i = 0; i < images.length(); i++) {
+                String pointer = "/images/" + i;
+                JSONObject image = object(images, i, pointer);
+                if (image == null) {
+                    continue;
+                }
+                if (image.has("bufferView")) {
+                    ref(image, "bufferView", pointer, "bufferViews");
+                    if (image.has("uri")) {
+                        report.error(pointer, "Has both a uri and a bufferView");
+                    }
+                    if (!image.has("mimeType")) {
+                        report.error(pointer, "An image in a bufferView needs a mimeType");
+                    }
+                } else if (!image.has("uri")) {
+                    report.error(pointer, "Needs a uri or a bufferView");
+                }
+            }
+
+            JSONArray samplers = array("samplers");
+            for (int s = 0; s < samplers.length(); s++) {
+                String pointer = "/samplers/" + s;
+                JSONObject sampler = object(samplers, s, pointer);
+                if (sampler == null) {
+                    continue;
+                }
+                checkEnum(sampler, "magFilter", pointer, 9728, 9729);
+                checkEnum(sampler, "minFilter", pointer, 9728, 9729, 9984, 9985, 9986, 9987);
+                checkEnum(sampler, "wrapS", pointer, 33071, 33648, 10497);
+                checkEnum(sampler, "wrapT", pointer, 33071, 33648, 10497);
+            }
+        }
+
+        private void checkSkins() {
+            JSONArray skins = array("skins");
+            JSONArray accessors = array("accessors");
+            for (int s = 0; s < skins.length(); s++) {
+                String pointer = "/skins/" + s;
+                JSONObject skin = object(skins, s, pointer);
+                if (skin == null) {
+                    continue;
+                }
+                JSONArray joints = skin.optJSONArray("joints");
+                if (joints == null || joints.length() == 0) {
+                    report.error(pointer, "joints are missing");
+                    continue;
+                }
+                for (int j = 0; j < joints.length(); j++) {
+                    long joint = integer(joints.opt(j));
+                    if (joint < 0 || joint >= parents.length) {
+                        report.error(pointer, "Joint " + joints.opt(j) + " is not a node");
+                    }
+                }
+                int matrices = ref(skin, "inverseBindMatrices", pointer, "accessors");
+                if (matrices >= 0) {
+                    JSONObject accessor = accessors.optJSONObject(matrices);
+                    if (!"MAT4".equals(accessor.optString("type"))
+                            || integer(accessor.opt("count")) < joints.length()) {
+                        report.error(pointer, "inverseBindMatrices must hold a MAT4 for every joint");
+                    }
+                }
+            }
+        }
+
+        private void checkAnimations() {
+            JSONArray animations = array("animations");
+            JSONArray accessors = array("accessors");
+            for (int a = 0; a < animations.length(); a++) {
+                String pointer = "/animations/" + a;
+                JSONObject animation = object(animations, a, pointer);
+                if (animation == null) {
+                    continue;
+                }
+                JSONArray samplers = animation.optJSONArray("samplers");
+                JSONArray channels = animation.optJSONArray("channels");
+                if (samplers == null || samplers.length() == 0 || channels == null || channels.length() == 0) {
+                    report.error(pointer, "Needs at least one sampler and one channel");
+                    continue;
+                }
+
+                int[] inputs = new int[samplers.length()];
+                int[] outputs = new int[samplers.length()];
+                for (int s = 0; s < samplers.length(); s++) {
+                    String samplerPointer = pointer + "/samplers/" + s;
+                    JSONObject sampler = object(samplers, s, samplerPointer);
+                    inputs[s] = sampler != null ? requiredRef(sampler, "input", samplerPointer, "accessors") : -1;
+                    outputs[s] = sampler != null ? requiredRef(sampler, "output", samplerPointer, "accessors") : -1;
+                    if (sampler == null) {
+                        continue;
+                    }
+                    String interpolation = sampler.optString("interpolation", "LINEAR");
+                    if (!interpolation.equals("LINEAR") && !interpolation.equals("STEP")
+                            && !interpolation.equals("CUBICSPLINE")) {
+                        report.error(samplerPointer, "interpolation \"" + interpolation + "\" is not valid");
+                    }
+                    if (inputs[s] >= 0) {
+                        JSONObject input = accessors.optJSONObject(inputs[s]);
+                        if (!"SCALAR".equals(input.optString("type"))
+                                || input.optInt("componentType", 0) != Accessor.FLOAT) {
+                            report.error(samplerPointer, "input must be a float scalar accessor");
+                        } else {
+                            keyTimes[inputs[s]] = true;
+                        }
+                    }
+                }
+
+                for (int c = 0; c < channels.length(); c++) {
+                    String channelPointer = pointer + "/channels/" + c;
+                    JSONObject channel = object(channels, c, channelPointer);
+                    if (channel == null) {
+                        continue;
+                    }
+                    long sampler = integer(channel.opt("sampler"));
+                    if (sampler < 0 || sampler >= samplers.length()) {
+                        report.error(channelPointer, "sampler " + channel.opt("sampler") + " is not in this animation");
+                        sampler = -1;
+                    }
+                    JSONObject target = channel.optJSONObject("target");
+                    if (target == null) {
+                        report.error(channelPointer, "target is missing");
+                        continue;
+                    }
+                    ref(target, "node", channelPointer + "/target", "nodes");
+                    String path = target.optString("path", "");
+                    if (!path.equals("translation") && !path.equals("rotation") && !path.equals("scale")
+                            && !path.equals("weights")) {
+                        report.error(channelPointer + "/target", "path \"" + path + "\" is not valid");
+                    } else if (sampler >= 0 && !path.equals("weights")) {
+                        checkKeyframeCounts(samplers.optJSONObject((int) sampler), inputs[(int) sampler],
+                                outputs[(int) sampler], pointer + "/samplers/" + sampler, accessors);
+                    }
+                }
+            }
+        }
+
+        /**
+         * A transform channel has one output per key time (three for cubic splines)
+         */
+        private void checkKeyframeCounts(JSONObject sampler, int input, int output, String pointer,
+                                         JSONArray accessors) {
+            if (sampler == null || input < 0 || output < 0) {
+                return;
+            }
+            long times = integer(accessors.optJSONObject(input).opt("count"));
+            long values = integer(accessors.optJSONObject(output).opt("count"));
+            long expected = "CUBICSPLINE".equals(sampler.optString("interpolation")) ? times * 3 : times;
+            if (times >= 1 && values != expected) {
+                report.error(pointer, "output has " + values + " values for " + times + " key times");
+            }
+        }
+
+        /**
+         * Scan the contents of every readable accessor, all of them in one fork/join run
+         * A sparse accessor is scanned as its dense elements minus the substituted ones, plus
+         * the substituted values; its key times are not checked for order
+         */
+        private void scanAccessors() {
+            List<Scan> scans = new ArrayList<>();
+            List<Integer> scanned = new ArrayList<>();
+            for (int i = 0; i < opened.length; i++) {
+                int[] substituted = sparseIndices[i];
+                if (opened[i] != null) {
+                    scans.add(new Scan(opened[i], keyTimes[i] && substituted == null, substituted,
+                            0, opened[i].getCount()));
+                    scanned.add(i);
+                }
+                if (sparseValues[i] != null) {
+                    scans.add(new Scan(sparseValues[i], false, null, 0, sparseValues[i].getCount()));
+                    scanned.add(i);
+                }
+            }
+            if (scans.isEmpty()) {
+                return;
+            }
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(scans);
+                }
+            });
+
+            JSONArray accessors = array("accessors");
+            Stats[] results = new Stats[opened.length];
+            for (int s = 0; s < scans.size(); s++) {
+                int index = scanned.get(s);
+                Stats stats = scans.get(s).join();
+                results[index] = results[index] == null ? stats : results[index].merge(stats);
+            }
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    continue;
+                }
+                JSONObject accessor = accessors.optJSONObject(i);
+                if (opened[i] == null && sparseIndices[i].length < integer(accessor.opt("count"))) {
+                    results[i].merge(Stats.zeros(results[i].min.length)); // Elements no substitution covers
+                }
+                report(i, accessor, results[i]);
+            }
+        }
+
+        private void report(int index, JSONObject accessor, Stats stats) {
+            String pointer = "/accessors/" + index;
+            if (stats.nonFinite > 0) {
+                report.error(pointer, stats.nonFinite + " values are NaN or infinite");
+            }
+            if (indexLimits[index] != Long.MAX_VALUE && stats.max[0] >= indexLimits[index]) {
+                report.error(pointer, String.format(Locale.US, "Index %d is out of range for %d vertices",
+                        (long) stats.max[0], indexLimits[index]));
+            }
+            if (stats.firstUnordered >= 0) {
+                report.error(pointer, "Key times are not strictly increasing (element "
+                        + stats.firstUnordered + ")");
+            }
+            if (accessor.optBoolean("normalized", false)) {
+                return; // Declared bounds are raw integers, the scan saw normalized values
+            }
+            JSONArray min = accessor.optJSONArray("min");
+            JSONArray max = accessor.optJSONArray("max");
+            for (int c = 0; c < stats.min.length; c++) {
+                if (min != null && min.length() == stats.min.length && below(stats.min[c], min.optDouble(c))) {
+                    report.error(pointer, "Values are below the declared min (" + stats.min[c]
+                            + " < " + min.optDouble(c) + ")");
+                    break;
+                }
+                if (max != null && max.length() == stats.max.length && below(max.optDouble(c), stats.max[c])) {
+                    report.error(pointer, "Values are above the declared max (" + stats.max[c]
+                            + " > " + max.optDouble(c) + ")");
+                    break;
+                }
+            }
+        }
+
+        private boolean below(double value, double limit) {
+            return value < limit - BOUNDS_TOLERANCE * Math.max(1, Math.abs(limit));
+        }
+
+        private boolean isEmbedded(int view) {
+            JSONObject json = array("bufferViews").optJSONObject(view);
+            int buffer = json != null ? json.optInt("buffer", -1) : -1;
+            return buffer == 0 && bufferEmbedded.length > 0 && bufferEmbedded[0];
+        }
+
+        private void checkBoundsArray(JSONObject accessor, String key, int components, String pointer) {
+            if (accessor.has(key) && components > 0) {
+                checkNumbers(accessor, key, components, pointer);
+            }
+        }
+
+        /**
+         * Check that an optional property is an array of length numbers
+         * Returns true if it is present and valid
+         */
+        private boolean checkNumbers(JSONObject object, String key, int length, String pointer) {
+            if (!object.has(key)) {
+                return false;
+            }
+            JSONArray array = object.optJSONArray(key);
+            boolean valid = array != null && array.length() == length;
+            for (int i = 0; valid && i < length; i++) {
+                valid = array.opt(i) instanceof Number;
+            }
+            if (!valid) {
+                report.error(pointer, key + " must be an array of " + length + " numbers");
+            }
+            return valid;
+        }
+
+        private void checkEnum(JSONObject object, String key, String pointer, int... allowed) {
+            if (!object.has(key)) {
+                return;
+            }
+            long value = integer(object.opt(key));
+            for (int option : allowed) {
+                if (value == option) {
+                    return;
+                }
+            }
+            report.error(pointer, key + " " + object.opt(key) + " is not valid");
+        }
+
+        /**
+         * A top-level array, or an empty one if it is missing or not an array
+         */
+        private JSONArray array(String name) {
+            JSONArray array = json.optJSONArray(name);
+            return array != null ? array : new JSONArray();
+        }
+
+        private JSONObject object(JSONArray array, int index, String pointer) {
+            JSONObject object = array.optJSONObject(index);
+            if (object == null) {
+                report.error(pointer, "Must be an object");
+            }
+            return object;
+        }
+
+        private int requiredRef(JSONObject object, String key, String pointer, String target) {
+            if (!object.has(key)) {
+                report.error(pointer, key + " is required");
+                return -1;
+            }
+            return ref(object, key, pointer, target);
+        }
+
+        /**
+         * Check an optional reference into another top-level array
+         * Returns the index, or -1 if it is absent or invalid (invalid ones are reported)
+         */
+        private int ref(JSONObject object, String key, String pointer, String target) {
+            if (!object.has(key)) {
+                return -1;
+            }
+            long index = integer(object.opt(key));
+            JSONArray array = array(target);
+            if (index < 0 || index >= array.length() || array.optJSONObject((int) index) == null) {
+                report.error(pointer, key + " " + object.opt(key) + " does not refer to one of the "
+                        + array.length() + " " + target);
+                return -1;
+            }
+            return (int) index;
+        }
+    }
+
+    /**
+     * Value of a JSON integer, or -1 if it is not a non-negative integer
+     */
+    private static long integer(Object value) {
+        if (value instanceof Integer || value instanceof Long) {
+            long result = ((Number) value).longValue();
+            return result >= 0 ? result : -1;
+        }
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            return number >= 0 && number == Math.rint(number) && number < Long.MAX_VALUE ? (long) number : -1;
+        }
+        return -1;
+    }
+
+    private static boolean isIndexType(int componentType) {
+        return componentType == Accessor.UNSIGNED_BYTE || componentType == Accessor.UNSIGNED_SHORT
+                || componentType == Accessor.UNSIGNED_INT;
+    }
+
+    private static boolean contains(JSONArray array, String value) {
+        for (int i = 0; array != null && i < array.length(); i++) {
+            if (value.equals(array.optString(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Summary of a range of accessor elements
+     */
+    private static final class Stats {
+        final double[] min;
+        final double[] max;
+        long nonFinite;
+        long firstUnordered = -1;
+
+        Stats(int components) {
+            min = new double[components];
+            max = new double[components];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+
+        /**
+         * Stats of elements that are all zero
+         */
+        static Stats zeros(int components) {
+            Stats stats = new Stats(components);
+            Arrays.fill(stats.min, 0);
+            Arrays.fill(stats.max, 0);
+            return stats;
+        }
+
+        Stats merge(Stats other) {
+            for (int c = 0; c < min.length; c++) {
+                min[c] = Math.min(min[c], other.min[c]);
+                max[c] = Math.max(max[c], other.max[c]);
+            }
+            nonFinite += other.nonFinite;
+            if (firstUnordered < 0) {
+                firstUnordered = other.firstUnordered;
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Scan of elements [from, to) of an accessor, split in halves until a leaf is small
+     * Absolute reads on the shared mapped buffer, so leaves need no copies or locks
+     */
+    private static final class Scan extends RecursiveTask<Stats> {
+
+        private final Accessor accessor;
+        private final boolean increasing;
+        // Sorted elements to leave out (replaced by sparse values), or null
+        private final int[] skipped;
+        private final int from;
+        private final int to;
+
+        Scan(Accessor accessor, boolean increasing, int[] skipped, int from, int to) {
+            this.accessor = accessor;
+            this.increasing = increasing;
+            this.skipped = skipped;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (to - from > LEAF_ELEMENTS) {
+                int middle = (from + to) >>> 1;
+                Scan left = new Scan(accessor, increasing, skipped, from, middle);
+                left.fork();
+                Stats right = new Scan(accessor, increasing, skipped, middle, to).compute();
+                return left.join().merge(right);
+            }
+
+            int components = accessor.getComponents();
+            Stats stats = new Stats(components);
+            boolean floats = accessor.getComponentType() == Accessor.FLOAT;
+            int next = skipped != null ? firstAtOrAfter(skipped, from) : 0;
+            for (int e = from; e < to; e++) {
+                if (skipped != null && next < skipped.length && skipped[next] == e) {
+                    next++;
+                    continue;
+                }
+                for (int c = 0; c < components; c++) {
+                    double value = floats ? accessor.get(e, c) : accessor.getInt(e, c);
+                    if (Double.isNaN(value) || Double.isInfinite(value)) {
+                        stats.nonFinite++;
+                        continue;
+                    }
+                    if (value < stats.min[c]) {
+                        stats.min[c] = value;
+                    }
+                    if (value > stats.max[c]) {
+                        stats.max[c] = value;
+                    }
+                }
+                // Compares with the element before, which may belong to the neighbouring leaf
+                if (increasing && e > 0 && stats.firstUnordered < 0 && !(accessor.get(e, 0) > accessor.get(e - 1, 0))) {
+                    stats.firstUnordered = e;
+                }
+            }
+            return stats;
+        }
+
+        /**
+         * Position of the first value >= element in a sorted array
+         */
+        private static int firstAtOrAfter(int[] sorted, int element) {
+            int position = Arrays.binarySearch(sorted, element);
+            return position >= 0 ? position : -position - 1;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One primitive as the scene draws it, with the world matrix of its node (column-major)
+ * A primitive drawn by several nodes or instances appears once per draw, sharing its JSONObject
+ */
+public class MeshDraw {
+
+    public final JSONObject primitive;
+    public final float[] matrix;
+
+    public MeshDraw(JSONObject primitive, float[] matrix) {
+        this.primitive = primitive;
+        this.matrix = matrix;
+    }
+
+    /**
+     * Primitives with a POSITION attribute drawn by the default scene, or every mesh
+     * once if there is no scene
+     * A node with EXT_mesh_gpu_instancing adds its primitives once per instance
+     */
+    public static List<MeshDraw> collect(GlbFile glb) throws IOException {
+        JSONObject json = glb.getJson();
+        List<MeshDraw> draws = new ArrayList<>();
+        JSONArray meshes = json.optJSONArray("meshes");
+        if (meshes == null) {
+            return draws;
+        }
+        JSONArray nodes = json.optJSONArray("nodes");
+        JSONArray scenes = json.optJSONArray("scenes");
+        JSONObject scene = scenes != null ? scenes.optJSONObject(json.optInt("scene", 0)) : null;
+        JSONArray roots = scene != null ? scene.optJSONArray("nodes") : null;
+        if (nodes == null || roots == null) {
+            for (int m = 0; m < meshes.length(); m++) {
+                addPrimitives(draws, meshes.optJSONObject(m), NodeTransforms.identity());
+            }
+            return draws;
+        }
+
+        // Walk the hierarchy with a stack; a node is visited once even if the file has a cycle
+        boolean[] visited = new boolean[nodes.length()];
+        List<Integer> stack = new ArrayList<>();
+        List<float[]> parents = new ArrayList<>();
+        for (int r = 0; r < roots.length(); r++) {
+            stack.add(roots.optInt(r, -1));
+            parents.add(NodeTransforms.identity());
+        }
+        while (!stack.isEmpty()) {
+            int index = stack.remove(stack.size() - 1);
+            float[] parent = parents.remove(parents.size() - 1);
+            if (index < 0 || index >= visited.length || visited[index]) {
+                continue;
+            }
+            visited[index] = true;
+            JSONObject node = nodes.optJSONObject(index);
+            if (node == null) {
+                continue;
+            }
+            float[] world = NodeTransforms.multiply(parent, NodeTransforms.local(node));
+            int mesh = node.optInt("mesh", -1);
+            List<float[]> instances = NodeTransforms.instances(glb, node);
+            if (mesh >= 0 && mesh < meshes.length() && instances != null) {
+                for (float[] instance : instances) {
+                    addPrimitives(draws, meshes.optJSONObject(mesh), NodeTransforms.multiply(world, instance));
+                }
+            } else if (mesh >= 0 && mesh < meshes.length()) {
+                addPrimitives(draws, meshes.optJSONObject(mesh), world);
+            }
+            JSONArray children = node.optJSONArray("children");
+            for (int c = 0; children != null && c < children.length(); c++) {
+                stack.add(children.optInt(c, -1));
+                parents.add(world);
+            }
+        }
+        return draws;
+    }
+
+    private static void addPrimitives(List<MeshDraw> draws, JSONObject mesh, float[] matrix) {
+        JSONArray primitives = mesh != null ? mesh.optJSONArray("primitives") : null;
+        for (int p = 0; primitives != null && p < primitives.length(); p++) {
+            JSONObject primitive = primitives.optJSONObject(p);
+            JSONObject attributes = primitive != null ? primitive.optJSONObject("attributes") : null;
+            if (attributes != null && attributes.has("POSITION")) {
+                draws.add(new MeshDraw(primitive, matrix));
+            }
+        }
+    }
+}
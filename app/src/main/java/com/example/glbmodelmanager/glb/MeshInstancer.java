@@ -0,0 +1,651 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Import stage that draws repeated meshes with EXT_mesh_gpu_instancing
+ * Two meshes match when their primitives share topology and material and their
+ * vertices agree within a tolerance once each mesh is centred on its bounding box.
+ * That finds nodes pointing at duplicate copies as well as copies exported with
+ * their placement baked into the vertices. Every group of matching nodes is
+ * replaced by one instanced node at the scene root, and the duplicate meshes
+ * are dropped from the file
+ *
+ * Meshes are hashed in parallel; only meshes with equal hashes (or, near a
+ * quantization step, equal topology) are compared vertex by vertex
+ */
+public class MeshInstancer {
+
+    public static final float DEFAULT_TOLERANCE = 1e-4f;  // Of the mesh's bounding box diagonal
+
+    private static final int MIN_INSTANCES = 2;
+    private static final int MAX_CANDIDATES = 8;          // Groups compared when no hash matches
+    private static final float ATTRIBUTE_TOLERANCE = 1e-3f;  // Normals, UVs, colors
+    private static final float SHEAR_TOLERANCE = 1e-4f;
+    private static final long HASH_PRIME = 0x100000001B3L;
+
+    private final int threads;
+    private final float tolerance;
+
+    /**
+     * What the stage saved on one model
+     */
+    public static class Report {
+        private final int sharedMeshes;
+        private final int instances;
+        private final long bytesBefore;
+        private final long bytesAfter;
+        private final int drawCallsBefore;
+        private final int drawCallsAfter;
+
+        public Report(int sharedMeshes, int instances, long bytesBefore, long bytesAfter,
+                      int drawCallsBefore, int drawCallsAfter) {
+            this.sharedMeshes = sharedMeshes;
+            this.instances = instances;
+            this.bytesBefore = bytesBefore;
+            this.bytesAfter = bytesAfter;
+            this.drawCallsBefore = drawCallsBefore;
+            this.drawCallsAfter = drawCallsAfter;
+        }
+
+        /**
+         * Instanced nodes added, one per shared mesh
+         */
+        public int getSharedMeshes() {
+            return sharedMeshes;
+        }
+
+        /**
+         * Nodes whose meshes were replaced by an instance
+         */
+        public int getInstances() {
+            return instances;
+        }
+
+        public long getBytesBefore() {
+            return bytesBefore;
+        }
+
+        public long getBytesAfter() {
+            return bytesAfter;
+        }
+
+        public int getDrawCallsBefore() {
+            return drawCallsBefore;
+        }
+
+        public int getDrawCallsAfter() {
+            return drawCallsAfter;
+        }
+
+        public String getSummary() {
+            return String.format(Locale.US, "%d copies drawn as %d instanced meshes", instances, sharedMeshes);
+        }
+    }
+
+    /**
+     * Vertex data summary of one mesh, computed on the worker pool
+     */
+    private static class Shape {
+        final int mesh;
+        final float[] center;
+        final float diagonal;
+        long topology;   // Primitives, modes, materials, attribute layout and indices
+        long geometry;   // Centred, quantized vertex data
+
+        Shape(int mesh, float[] center, float diagonal) {
+            this.mesh = mesh;
+            this.center = center;
+            this.diagonal = diagonal;
+        }
+    }
+
+    /**
+     * Meshes found to be the same, drawn with the first one's data
+     */
+    private static class Group {
+        final Shape first;
+        final List<Integer> nodes = new ArrayList<>();
+        final List<float[]> transforms = new ArrayList<>();  // Translation, rotation, scale (10 floats)
+
+        Group(Shape first) {
+            this.first = first;
+        }
+    }
+
+    public MeshInstancer(int threads, float tolerance) {
+        this.threads = Math.max(1, threads);
+        this.tolerance = Math.max(0, tolerance);
+    }
+
+    /**
+     * Instance the repeated meshes of source and write the result to dest
+     * Returns null (and leaves dest untouched) when no mesh is repeated
+     */
+    public Report instance(File source, File dest) throws IOException {
+        int drawCallsBefore;
+        int sharedMeshes = 0;
+        int instances = 0;
+        try (GlbFile glb = GlbFile.open(source)) {
+            JSONObject json = glb.getJson();
+            JSONArray meshes = json.optJSONArray("meshes");
+            JSONArray nodes = json.optJSONArray("nodes");
+            JSONArray scenes = json.optJSONArray("scenes");
+            JSONObject scene = scenes != null ? scenes.optJSONObject(json.optInt("scene", 0)) : null;
+            if (meshes == null || nodes == null || scene == null || !scene.has("nodes")
+                    || !glb.hasEmbeddedBuffer()) {
+                return null;
+            }
+            drawCallsBefore = RuntimeCost.read(glb).getDrawCalls();
+
+            Map<Integer, Shape> shapes = new HashMap<>();
+            for (Shape shape : hashAll(glb, meshes)) {
+                shapes.put(shape.mesh, shape);
+            }
+            List<Group> groups = placeNodes(json, scene, shapes, match(glb, json, shapes.values()));
+            if (groups.isEmpty()) {
+                return null;
+            }
+
+            // Instanced nodes first, so pruning renumbers their meshes with the rest
+            List<Integer> instancedNodes = new ArrayList<>();
+            for (Group group : groups) {
+                for (int node : group.nodes) {
+                    nodes.getJSONObject(node).remove("mesh");
+                }
+                instancedNodes.add(nodes.length());
+                nodes.put(new JSONObject()
+                        .put("name", instancedName(json, group))
+                        .put("mesh", group.first.mesh));
+                scene.getJSONArray("nodes").put(nodes.length() - 1);
+                sharedMeshes++;
+                instances += group.nodes.size();
+            }
+            GltfPruner.prune(json);
+
+            Map<Integer, ByteBuffer> replacements = new HashMap<>();
+            for (int g = 0; g < groups.size(); g++) {
+                JSONObject attributes = addInstanceData(json, groups.get(g).transforms, replacements);
+                nodes.getJSONObject(instancedNodes.get(g)).put("extensions", new JSONObject()
+                        .put(NodeTransforms.EXT_MESH_GPU_INSTANCING, new JSONObject().put("attributes", attributes)));
+            }
+            // The copies no longer have meshes of their own, so there is nothing to fall back to
+            TextureOptimizer.addExtension(json, "extensionsUsed", NodeTransforms.EXT_MESH_GPU_INSTANCING);
+            TextureOptimizer.addExtension(json, "extensionsRequired", NodeTransforms.EXT_MESH_GPU_INSTANCING);
+
+            GlbWriter writer = GlbWriter.fromBufferViews(glb, json, replacements);
+            writer.write(dest, json);
+        } catch (JSONException e) {
+            throw new IOException("Invalid glTF JSON: " + e.getMessage());
+        }
+
+        int drawCallsAfter;
+        try (GlbFile glb = GlbFile.open(dest)) {
+            drawCallsAfter = RuntimeCost.read(glb).getDrawCalls();
+        }
+        return new Report(sharedMeshes, instances, source.length(), dest.length(), drawCallsBefore, drawCallsAfter);
+    }
+
+    /**
+     * Hash every mesh on a bounded worker pool, in mesh order
+     * Meshes that cannot be instanced (morph targets, Draco, missing data) are left out
+     */
+    private List<Shape> hashAll(GlbFile glb, JSONArray meshes) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Shape>> futures = new ArrayList<>();
+            for (int m = 0; m < meshes.length(); m++) {
+                int mesh = m;
+                futures.add(pool.submit(() -> hash(glb, meshes.optJSONObject(mesh), mesh)));
+            }
+            List<Shape> shapes = new ArrayList<>();
+            for (Future<Shape> future : futures) {
+                Shape shape = future.get();
+                if (shape != null) {
+                    shapes.add(shape);
+                }
+            }
+            return shapes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Mesh instancing interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Mesh instancing failed: " + e.getCause().getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Shape hash(GlbFile glb, JSONObject mesh, int index) throws IOException {
+        List<JSONObject> primitives = primitives(mesh);
+        if (primitives == null) {
+            return null;
+        }
+
+        // Bounding box of all primitives, the mesh is centred on it
+        float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+        float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (JSONObject primitive : primitives) {
+            Accessor position = Accessor.open(glb, primitive.optJSONObject("attributes").optInt("POSITION", -1));
+            if (position == null || position.getComponents() != 3) {
+                return null;
+            }
+            for (int v = 0; v < position.getCount(); v++) {
+                for (int c = 0; c < 3; c++) {
+                    float value = position.get(v, c);
+                    min[c] = Math.min(min[c], value);
+                    max[c] = Math.max(max[c], value);
+                }
+            }
+        }
+        if (min[0] > max[0]) {
+            return null;  // No vertices
+        }
+        float[] center = new float[3];
+        double diagonal = 0;
+        for (int c = 0; c < 3; c++) {
+            center[c] = (min[c] + max[c]) / 2;
+            diagonal += (double) (max[c] - min[c]) * (max[c] - min[c]);
+        }
+        Shape shape = new Shape(index, center, (float) Math.sqrt(diagonal));
+        float step = tolerance * shape.diagonal;
+
+        long topology = primitives.size();
+        long geometry = 0;
+        for (JSONObject primitive : primitives) {
+            topology = mix(topology, primitive.optInt("mode", 4));
+            topology = mix(topology, primitive.optInt("material", -1));
+            if (primitive.has("indices")) {
+                Accessor indices = Accessor.open(glb, primitive.optInt("indices", -1));
+                if (indices == null) {
+                    return null;
+                }
+                topology = mix(topology, indices.getCount());
+                for (int i = 0; i < indices.getCount(); i++) {
+                    topology = mix(topology, indices.getInt(i, 0));
+                }
+            }
+
+            JSONObject attributes = primitive.optJSONObject("attributes");
+            for (String name : sortedKeys(attributes)) {
+                Accessor accessor = Accessor.open(glb, attributes.optInt(name, -1));
+                if (accessor == null) {
+                    return null;
+                }
+                topology = mix(mix(mix(topology, name.hashCode()), accessor.getCount()), accessor.getComponents());
+                boolean position = "POSITION".equals(name);
+                for (int v = 0; v < accessor.getCount(); v++) {
+                    for (int c = 0; c < accessor.getComponents(); c++) {
+                        float value = accessor.get(v, c);
+                        geometry = mix(geometry, position
+                                ? quantize(value - center[c], step)
+                                : quantize(value, ATTRIBUTE_TOLERANCE));
+                    }
+                }
+            }
+        }
+        shape.topology = topology;
+        shape.geometry = geometry;
+        return shape;
+    }
+
+    /**
+     * Group the meshes, in mesh order; each group is keyed by all of its meshes
+     */
+    private Map<Integer, Group> match(GlbFile glb, JSONObject json, Collection<Shape> shapes) throws IOException {
+        List<Shape> ordered = new ArrayList<>(shapes);
+        Collections.sort(ordered, (a, b) -> Integer.compare(a.mesh, b.mesh));
+        Map<Long, List<Group>> byTopology = new HashMap<>();
+        Map<Integer, Group> groupByMesh = new HashMap<>();
+        for (Shape shape : ordered) {
+            List<Group> candidates = byTopology.get(shape.topology);
+            if (candidates == null) {
+                candidates = new ArrayList<>();
+                byTopology.put(shape.topology, candidates);
+            }
+
+            // Same hash first; near a quantization step the hash can differ, so try a few more
+            Group found = null;
+            for (Group group : candidates) {
+                if (group.first.geometry == shape.geometry && same(glb, json, group.first, shape)) {
+                    found = group;
+                    break;
+                }
+            }
+            for (int i = 0; found == null && i < Math.min(candidates.size(), MAX_CANDIDATES); i++) {
+                Group group = candidates.get(i);
+                if (group.first.geometry != shape.geometry && same(glb, json, group.first, shape)) {
+                    found = group;
+                }
+            }
+            if (found == null) {
+                found = new Group(shape);
+                candidates.add(found);
+            }
+            groupByMesh.put(shape.mesh, found);
+        }
+        return groupByMesh;
+    }
+
+    /**
+     * Compare two meshes vertex by vertex, each centred on its bounding box
+     */
+    private boolean same(GlbFile glb, JSONObject json, Shape a, Shape b) throws IOException {
+        if (a.mesh == b.mesh) {
+            return true;
+        }
+        JSONArray meshes = json.optJSONArray("meshes");
+        List<JSONObject> primitivesA = primitives(meshes.optJSONObject(a.mesh));
+        List<JSONObject> primitivesB = primitives(meshes.optJSONObject(b.mesh));
+        if (primitivesA.size() != primitivesB.size()) {
+            return false;
+        }
+        float limit = tolerance * Math.max(a.diagonal, b.diagonal);
+        for (int p = 0; p < primitivesA.size(); p++) {
+            JSONObject primitiveA = primitivesA.get(p);
+            JSONObject primitiveB = primitivesB.get(p);
+            if (primitiveA.optInt("mode", 4) != primitiveB.optInt("mode", 4)
+                    || primitiveA.optInt("material", -1) != primitiveB.optInt("material", -1)
+                    || primitiveA.has("indices") != primitiveB.has("indices")) {
+                return false;
+            }
+            if (primitiveA.has("indices") && !sameIndices(
+                    Accessor.open(glb, primitiveA.optInt("indices")), Accessor.open(glb, primitiveB.optInt("indices")))) {
+                return false;
+            }
+            JSONObject attributesA = primitiveA.optJSONObject("attributes");
+            JSONObject attributesB = primitiveB.optJSONObject("attributes");
+            if (attributesA.length() != attributesB.length()) {
+                return false;
+            }
+            for (String name : sortedKeys(attributesA)) {
+                Accessor accessorA = Accessor.open(glb, attributesA.optInt(name));
+                Accessor accessorB = attributesB.has(name) ? Accessor.open(glb, attributesB.optInt(name)) : null;
+                if (accessorB == null || accessorA.getCount() != accessorB.getCount()
+                        || accessorA.getComponents() != accessorB.getComponents()) {
+                    return false;
+                }
+                boolean position = "POSITION".equals(name);
+                for (int v = 0; v < accessorA.getCount(); v++) {
+                    for (int c = 0; c < accessorA.getComponents(); c++) {
+                        float difference = position
+                                ? (accessorA.get(v, c) - a.center[c]) - (accessorB.get(v, c) - b.center[c])
+                                : accessorA.get(v, c) - accessorB.get(v, c);
+                        if (Math.abs(difference) > (position ? limit : ATTRIBUTE_TOLERANCE)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameIndices(Accessor a, Accessor b) {
+        if (a == null || b == null || a.getCount() != b.getCount()) {
+            return false;
+        }
+        for (int i = 0; i < a.getCount(); i++) {
+            if (a.getInt(i, 0) != b.getInt(i, 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Walk the default scene and add each eligible mesh node to its group with the
+     * transform that places the group's first mesh where the node's copy was drawn
+     * Returns the groups that end up with at least MIN_INSTANCES nodes
+     */
+    private static List<Group> placeNodes(JSONObject json, JSONObject scene, Map<Integer, Shape> shapes,
+                                          Map<Integer, Group> groupByMesh) {
+        JSONArray nodes = json.optJSONArray("nodes");
+        Set<Integer> excluded = excludedNodes(json, scene);
+        Set<Group> used = new LinkedHashSet<>();
+
+        boolean[] visited = new boolean[nodes.length()];
+        List<Integer> stack = new ArrayList<>();
+        List<float[]> parents = new ArrayList<>();
+        JSONArray roots = scene.optJSONArray("nodes");
+        for (int r = roots.length() - 1; r >= 0; r--) {
+            stack.add(roots.optInt(r, -1));
+            parents.add(NodeTransforms.identity());
+        }
+        float[] t = new float[3];
+        float[] r = new float[4];
+        float[] s = new float[3];
+        while (!stack.isEmpty()) {
+            int index = stack.remove(stack.size() - 1);
+            float[] parent = parents.remove(parents.size() - 1);
+            if (index < 0 || index >= visited.length || visited[index]) {
+                continue;
+            }
+            visited[index] = true;
+            JSONObject node = nodes.optJSONObject(index);
+            if (node == null) {
+                continue;
+            }
+            float[] world = NodeTransforms.multiply(parent, NodeTransforms.local(node));
+
+            int mesh = node.optInt("mesh", -1);
+            Group group = groupByMesh.get(mesh);
+            if (group != null && !excluded.contains(index)) {
+                // The node's copy is the group's first mesh moved by the difference in centres
+                Shape shape = shapes.get(mesh);
+                float[] offset = NodeTransforms.identity();
+                for (int c = 0; c < 3; c++) {
+                    offset[12 + c] = shape.center[c] - group.first.center[c];
+                }
+                float[] transform = NodeTransforms.multiply(world, offset);
+                if (NodeTransforms.decompose(transform, t, r, s, SHEAR_TOLERANCE)) {
+                    group.nodes.add(index);
+                    group.transforms.add(new float[]{t[0], t[1], t[2], r[0], r[1], r[2], r[3], s[0], s[1], s[2]});
+                    used.add(group);
+                }
+            }
+
+            JSONArray children = node.optJSONArray("children");
+            for (int c = children != null ? children.length() - 1 : -1; c >= 0; c--) {
+                stack.add(children.optInt(c, -1));
+                parents.add(world);
+            }
+        }
+
+        List<Group> groups = new ArrayList<>();
+        for (Group group : used) {
+            if (group.nodes.size() >= MIN_INSTANCES) {
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Nodes whose mesh must stay where it is: skinned, morphed, animated, already
+     * instanced, or also shown by another scene
+     */
+    private static Set<Integer> excludedNodes(JSONObject json, JSONObject defaultScene) {
+        Set<Integer> excluded = new HashSet<>();
+        JSONArray nodes = json.optJSONArray("nodes");
+        for (int n = 0; n < nodes.length(); n++) {
+            JSONObject node = nodes.optJSONObject(n);
+            JSONObject extensions = node != null ? node.optJSONObject("extensions") : null;
+            if (node == null || node.has("skin") || node.has("weights")
+                    || (extensions != null && extensions.has(NodeTransforms.EXT_MESH_GPU_INSTANCING))) {
+                excluded.add(n);
+            }
+        }
+
+        // Animating any ancestor would move the copies, so whole animated subtrees stay
+        Set<Integer> animated = new HashSet<>();
+        JSONArray animations = json.optJSONArray("animations");
+        for (int a = 0; animations != null && a < animations.length(); a++) {
+            JSONObject animation = animations.optJSONObject(a);
+            JSONArray channels = animation != null ? animation.optJSONArray("channels") : null;
+            for (int c = 0; channels != null && c < channels.length(); c++) {
+                JSONObject channel = channels.optJSONObject(c);
+                JSONObject target = channel != null ? channel.optJSONObject("target") : null;
+                if (target != null && target.has("node")) {
+                    animated.add(target.optInt("node"));
+                }
+            }
+        }
+        JSONArray scenes = json.optJSONArray("scenes");
+        for (int s = 0; scenes != null && s < scenes.length(); s++) {
+            JSONObject scene = scenes.optJSONObject(s);
+            if (scene != null && scene != defaultScene) {
+                JSONArray roots = scene.optJSONArray("nodes");
+                for (int r = 0; roots != null && r < roots.length(); r++) {
+                    addSubtree(nodes, roots.optInt(r, -1), excluded);
+                }
+            }
+        }
+        for (int node : animated) {
+            addSubtree(nodes, node, excluded);
+        }
+        return excluded;
+    }
+
+    private static void addSubtree(JSONArray nodes, int root, Set<Integer> result) {
+        List<Integer> stack = new ArrayList<>();
+        stack.add(root);
+        Set<Integer> seen = new HashSet<>();
+        while (!stack.isEmpty()) {
+            int index = stack.remove(stack.size() - 1);
+            JSONObject node = nodes.optJSONObject(index);
+            if (node == null || !seen.add(index)) {
+                continue;
+            }
+            result.add(index);
+            JSONArray children = node.optJSONArray("children");
+            for (int c = 0; children != null && c < children.length(); c++) {
+                stack.add(children.optInt(c, -1));
+            }
+        }
+    }
+
+    /**
+     * Append the TRANSLATION / ROTATION / SCALE accessors of one instanced node
+     * Rotation and scale are left out when every instance has none
+     */
+    private static JSONObject addInstanceData(JSONObject json, List<float[]> transforms,
+                                              Map<Integer, ByteBuffer> replacements) throws JSONException {
+        int count = transforms.size();
+        ByteBuffer translations = ByteBuffer.allocate(count * 12).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer rotations = ByteBuffer.allocate(count * 16).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer scales = ByteBuffer.allocate(count * 12).order(ByteOrder.LITTLE_ENDIAN);
+        boolean rotated = false;
+        boolean scaled = false;
+        for (float[] trs : transforms) {
+            translations.putFloat(trs[0]).putFloat(trs[1]).putFloat(trs[2]);
+            rotations.putFloat(trs[3]).putFloat(trs[4]).putFloat(trs[5]).putFloat(trs[6]);
+            scales.putFloat(trs[7]).putFloat(trs[8]).putFloat(trs[9]);
+            rotated |= trs[3] != 0 || trs[4] != 0 || trs[5] != 0;
+            scaled |= trs[7] != 1 || trs[8] != 1 || trs[9] != 1;
+        }
+
+        JSONObject attributes = new JSONObject();
+        attributes.put("TRANSLATION", addAccessor(json, translations, count, "VEC3", replacements));
+        if (rotated) {
+            attributes.put("ROTATION", addAccessor(json, rotations, count, "VEC4", replacements));
+        }
+        if (scaled) {
+            attributes.put("SCALE", addAccessor(json, scales, count, "VEC3", replacements));
+        }
+        return attributes;
+    }
+
+    private static int addAccessor(JSONObject json, ByteBuffer data, int count, String type,
+                                   Map<Integer, ByteBuffer> replacements) throws JSONException {
+        data.flip();
+        JSONArray views = json.optJSONArray("bufferViews");
+        if (views == null) {
+            views = new JSONArray();
+            json.put("bufferViews", views);
+        }
+        JSONArray accessors = json.optJSONArray("accessors");
+        if (accessors == null) {
+            accessors = new JSONArray();
+            json.put("accessors", accessors);
+        }
+        replacements.put(views.length(), data);
+        views.put(new JSONObject().put("buffer", 0).put("byteLength", data.remaining()));
+        accessors.put(new JSONObject()
+                .put("bufferView", views.length() - 1)
+                .put("componentType", Accessor.FLOAT)
+                .put("count", count)
+                .put("type", type));
+        return accessors.length() - 1;
+    }
+
+    /**
+     * Name of an instanced node: the first copy's node name, or its mesh name
+     */
+    private static String instancedName(JSONObject json, Group group) {
+        JSONObject node = json.optJSONArray("nodes").optJSONObject(group.nodes.get(0));
+        JSONObject mesh = json.optJSONArray("meshes").optJSONObject(group.first.mesh);
+        String name = node.optString("name", mesh != null ? mesh.optString("name", "") : "");
+        return (name.isEmpty() ? "Mesh " + group.first.mesh : name) + " x" + group.nodes.size();
+    }
+
+    /**
+     * Primitives of a mesh, or null if the mesh cannot be instanced
+     */
+    private static List<JSONObject> primitives(JSONObject mesh) {
+        JSONArray array = mesh != null ? mesh.optJSONArray("primitives") : null;
+        if (array == null || array.length() == 0) {
+            return null;
+        }
+        List<JSONObject> primitives = new ArrayList<>();
+        for (int p = 0; p < array.length(); p++) {
+            JSONObject primitive = array.optJSONObject(p);
+            JSONObject attributes = primitive != null ? primitive.optJSONObject("attributes") : null;
+            if (attributes == null || !attributes.has("POSITION") || primitive.has("targets")
+                    || DracoDecoder.extension(primitive) != null) {
+                return null;
+            }
+            primitives.add(primitive);
+        }
+        return primitives;
+    }
+
+    private static List<String> sortedKeys(JSONObject object) {
+        List<String> keys = new ArrayList<>();
+        for (Iterator<String> it = object.keys(); it.hasNext(); ) {
+            keys.add(it.next());
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    private static long quantize(float value, float step) {
+        return step > 0 ? Math.round(value / step) : Float.floatToIntBits(value + 0f);  // + 0f folds -0 into 0
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * HASH_PRIME;
+    }
+}
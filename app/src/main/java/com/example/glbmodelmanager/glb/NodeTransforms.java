@@ -0,0 +1,254 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Column-major 4x4 matrix helpers for glTF node transforms
+ */
+public final class NodeTransforms {
+
+    public static final String EXT_MESH_GPU_INSTANCING = "EXT_mesh_gpu_instancing";
+
+    private NodeTransforms() {
+    }
+
+    /**
+     * Local transform of a node: matrix, or translation x rotation x scale
+     */
+    public static float[] local(JSONObject node) {
+        JSONArray matrix = node.optJSONArray("matrix");
+        if (matrix != null && matrix.length() == 16) {
+            float[] m = identity();
+            for (int i = 0; i < 16; i++) {
+                m[i] = (float) matrix.optDouble(i, m[i]);
+            }
+            return m;
+        }
+        return compose(vector(node.optJSONArray("translation"), 3, 0),
+                vector(node.optJSONArray("rotation"), 4, 0),
+                vector(node.optJSONArray("scale"), 3, 1));
+    }
+
+    /**
+     * Matrix of translation x rotation x scale; null parts are left out
+     * The rotation is a unit quaternion (x, y, z, w)
+     */
+    public static float[] compose(float[] t, float[] r, float[] s) {
+        float[] m = identity();
+        if (r != null) {
+            float x = r[0];
+            float y = r[1];
+            float z = r[2];
+            float w = r[3];
+            m[0] = 1 - 2 * (y * y + z * z);
+            m[1] = 2 * (x * y + z * w);
+            m[2] = 2 * (x * z - y * w);
+            m[4] = 2 * (x * y - z * w);
+            m[5] = 1 - 2 * (x * x + z * z);
+            m[6] = 2 * (y * z + x * w);
+            m[8] = 2 * (x * z + y * w);
+            m[9] = 2 * (y * z - x * w);
+            m[10] = 1 - 2 * (x * x + y * y);
+        }
+        if (s != null) {
+            for (int col = 0; col < 3; col++) {
+                for (int row = 0; row < 3; row++) {
+                    m[col * 4 + row] *= s[col];
+                }
+            }
+        }
+        if (t != null) {
+            m[12] = t[0];
+            m[13] = t[1];
+            m[14] = t[2];
+        }
+        return m;
+    }
+
+    /**
+     * Split an affine matrix into translation, rotation quaternion and scale
+     * A mirrored matrix gets a negative X scale. Returns false if the matrix has
+     * shear or projection, i.e. compose() of the parts would differ by more than
+     * tolerance (relative to the largest scale) in any element
+     */
+    public static boolean decompose(float[] m, float[] t, float[] r, float[] s, float tolerance) {
+        if (m[3] != 0 || m[7] != 0 || m[11] != 0 || m[15] != 1) {
+            return false;
+        }
+        float[] axes = m.clone();
+        for (int col = 0; col < 3; col++) {
+            s[col] = (float) Math.sqrt(axes[col * 4] * axes[col * 4] + axes[col * 4 + 1] * axes[col * 4 + 1]
+                    + axes[col * 4 + 2] * axes[col * 4 + 2]);
+            if (s[col] == 0) {
+                return false;
+            }
+        }
+        float determinant = m[0] * (m[5] * m[10] - m[9] * m[6]) - m[4] * (m[1] * m[10] - m[9] * m[2])
+                + m[8] * (m[1] * m[6] - m[5] * m[2]);
+        if (determinant < 0) {
+            s[0] = -s[0];
+        }
+        for (int col = 0; col < 3; col++) {
+            for (int row = 0; row < 3; row++) {
+                axes[col * 4 + row] /= s[col];
+            }
+        }
+
+        // Quaternion from the rotation part (Shepperd's method, largest component first)
+        float trace = axes[0] + axes[5] + axes[10];
+        if (trace > 0) {
+            float f = (float) Math.sqrt(trace + 1) * 2;
+            r[3] = f / 4;
+            r[0] = (axes[6] - axes[9]) / f;
+            r[1] = (axes[8] - axes[2]) / f;
+            r[2] = (axes[1] - axes[4]) / f;
+        } else if (axes[0] > axes[5] && axes[0] > axes[10]) {
+            float f = (float) Math.sqrt(1 + axes[0] - axes[5] - axes[10]) * 2;
+            r[3] = (axes[6] - axes[9]) / f;
+            r[0] = f / 4;
+            r[1] = (axes[4] + axes[1]) / f;
+            r[2] = (axes[8] + axes[2]) / f;
+        } else if (axes[5] > axes[10]) {
+            float f = (float) Math.sqrt(1 + axes[5] - axes[0] - axes[10]) * 2;
+            r[3] = (axes[8] - axes[2]) / f;
+            r[0] = (axes[4] + axes[1]) / f;
+            r[1] = f / 4;
+            r[2] = (axes[9] + axes[6]) / f;
+        } else {
+            float f = (float) Math.sqrt(1 + axes[10] - axes[0] - axes[5]) * 2;
+            r[3] = (axes[1] - axes[4]) / f;
+            r[0] = (axes[8] + axes[2]) / f;
+            r[1] = (axes[9] + axes[6]) / f;
+            r[2] = f / 4;
+        }
+        float length = (float) Math.sqrt(r[0] * r[0] + r[1] * r[1] + r[2] * r[2] + r[3] * r[3]);
+        for (int i = 0; i < 4; i++) {
+            r[i] /= length;
+        }
+        t[0] = m[12];
+        t[1] = m[13];
+        t[2] = m[14];
+
+        float[] check = compose(t, r, s);
+        float limit = tolerance * Math.max(Math.abs(s[0]), Math.max(Math.abs(s[1]), Math.abs(s[2])));
+        for (int i = 0; i < 12; i++) {
+            if (Math.abs(check[i] - m[i]) > limit) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Instance transforms of a node with EXT_mesh_gpu_instancing, relative to the node
+     * Returns null if the node is not instanced
+     */
+    public static List<float[]> instances(GlbFile glb, JSONObject node) throws IOException {
+        JSONObject extensions = node.optJSONObject("extensions");
+        JSONObject instancing = extensions != null ? extensions.optJSONObject(EXT_MESH_GPU_INSTANCING) : null;
+        JSONObject attributes = instancing != null ? instancing.optJSONObject("attributes") : null;
+        if (attributes == null) {
+            return null;
+        }
+        Accessor translation = open(glb, attributes, "TRANSLATION");
+        Accessor rotation = open(glb, attributes, "ROTATION");
+        Accessor scale = open(glb, attributes, "SCALE");
+        int count = Integer.MAX_VALUE;
+        for (Accessor accessor : new Accessor[]{translation, rotation, scale}) {
+            if (accessor != null) {
+                count = Math.min(count, accessor.getCount());
+            }
+        }
+        List<float[]> result = new ArrayList<>();
+        for (int i = 0; count != Integer.MAX_VALUE && i < count; i++) {
+            result.add(compose(element(translation, i, 3), element(rotation, i, 4), element(scale, i, 3)));
+        }
+        return result;
+    }
+
+    private static Accessor open(GlbFile glb, JSONObject attributes, String name) throws IOException {
+        return attributes.has(name) ? Accessor.open(glb, attributes.optInt(name, -1)) : null;
+    }
+
+    private static float[] element(Accessor accessor, int index, int size) {
+        if (accessor == null) {
+            return null;
+        }
+        float[] values = new float[size];
+        for (int c = 0; c < size; c++) {
+            values[c] = accessor.get(index, c);
+        }
+        return values;
+    }
+
+    private static float[] vector(JSONArray array, int length, float fallback) {
+        if (array == null || array.length() != length) {
+            return null;
+        }
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) array.optDouble(i, i == 3 ? 1 : fallback);  // Quaternion w defaults to 1
+        }
+        return values;
+    }
+
+    /**
+     * Replace a node's transform with a matrix (dropping translation/rotation/scale)
+     */
+    public static void setMatrix(JSONObject node, float[] m) throws JSONException {
+        node.remove("translation");
+        node.remove("rotation");
+        node.remove("scale");
+        node.remove("matrix");
+        if (isIdentity(m)) {
+            return;
+        }
+        JSONArray matrix = new JSONArray();
+        for (float value : m) {
+            matrix.put((double) value);
+        }
+        node.put("matrix", matrix);
+    }
+
+    public static float[] identity() {
+        return new float[]{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+    }
+
+    public static boolean isIdentity(float[] m) {
+        for (int i = 0; i < 16; i++) {
+            if (m[i] != (i % 5 == 0 ? 1 : 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static float[] multiply(float[] a, float[] b) {
+        float[] result = new float[16];
+        for (int col = 0; col < 4; col++) {
+            for (int row = 0; row < 4; row++) {
+                float sum = 0;
+                for (int k = 0; k < 4; k++) {
+                    sum += a[k * 4 + row] * b[col * 4 + k];
+                }
+                result[col * 4 + row] = sum;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Transform a point, writing x, y, z to out at offset
+     */
+    public static void transform(float[] m, float x, float y, float z, float[] out, int offset) {
+        out[offset] = m[0] * x + m[4] * y + m[8] * z + m[12];
+        out[offset + 1] = m[1] * x + m[5] * y + m[9] * z + m[13];
+        out[offset + 2] = m[2] * x + m[6] * y + m[10] * z + m[14];
+    }
+}
@@ -0,0 +1,408 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * What a model costs a viewer once it is loaded: GPU memory for vertex and index
+ * buffers and for decoded textures, draw calls per frame and materials
+ * Read from the glTF JSON and the headers of embedded images, without decoding anything
+ */
+public class RuntimeCost {
+
+    // Block-compressed formats a KTX2/Basis texture is transcoded to (ETC2 RGBA, ASTC 4x4)
+    private static final int TRANSCODED_BYTES_PER_PIXEL = 1;
+    private static final int DECODED_BYTES_PER_PIXEL = 4;  // RGBA8
+
+    // Texture extensions whose source viewers load instead of the core one
+    private static final String EXT_TEXTURE_WEBP = "EXT_texture_webp";
+    private static final String KHR_TEXTURE_BASISU = "KHR_texture_basisu";
+
+    private final long geometryBytes;
+    private final long textureBytes;
+    private final int drawCalls;
+    private final int materialCount;
+
+    public RuntimeCost(long geometryBytes, long textureBytes, int drawCalls, int materialCount) {
+        this.geometryBytes = geometryBytes;
+        this.textureBytes = textureBytes;
+        this.drawCalls = drawCalls;
+        this.materialCount = materialCount;
+    }
+
+    /**
+     * Limits for one class of target device
+     */
+    public static class Budget {
+        public final String name;
+        public final int memoryMb;    // Geometry and textures together
+        public final int drawCalls;
+        public final int materials;
+
+        public Budget(String name, int memoryMb, int drawCalls, int materials) {
+            this.name = name;
+            this.memoryMb = memoryMb;
+            this.drawCalls = drawCalls;
+            this.materials = materials;
+        }
+
+        /**
+         * Limits a model goes over, e.g. "312 MB memory (budget 256 MB)"; empty if it fits
+         * Unknown values (negative) never go over
+         */
+        public List<String> overruns(long memoryBytes, int drawCalls, int materials) {
+            List<String> overruns = new ArrayList<>();
+            if (memoryBytes > memoryMb * 1024L * 1024L) {
+                overruns.add(String.format(Locale.US, "%d MB memory (budget %d MB)",
+                        (memoryBytes + 1024 * 1024 - 1) / (1024 * 1024), memoryMb));
+            }
+            if (drawCalls > this.drawCalls) {
+                overruns.add(drawCalls + " draw calls (budget " + this.drawCalls + ")");
+            }
+            if (materials > this.materials) {
+                overruns.add(materials + " materials (budget " + this.materials + ")");
+            }
+            return overruns;
+        }
+    }
+
+    /**
+     * Estimate the cost of a model
+     */
+    public static RuntimeCost read(GlbFile glb) throws IOException {
+        JSONObject json = glb.getJson();
+        JSONArray meshes = json.optJSONArray("meshes");
+        JSONArray accessors = json.optJSONArray("accessors");
+        if (meshes == null) {
+            meshes = new JSONArray();
+        }
+
+        // Buffers are uploaded once per accessor, however many primitives or nodes share them
+        Set<Integer> vertexAccessors = new HashSet<>();
+        Set<Integer> indexAccessors = new HashSet<>();
+        for (int m = 0; m < meshes.length(); m++) {
+            for (JSONObject primitive : primitives(meshes, m)) {
+                collectAccessors(primitive.optJSONObject("attributes"), vertexAccessors);
+                JSONArray targets = primitive.optJSONArray("targets");
+                for (int t = 0; targets != null && t < targets.length(); t++) {
+                    collectAccessors(targets.optJSONObject(t), vertexAccessors);
+                }
+                if (primitive.has("indices")) {
+                    indexAccessors.add(primitive.optInt("indices", -1));
+                }
+            }
+        }
+        long geometry = 0;
+        for (int index : vertexAccessors) {
+            geometry += accessorBytes(accessors, index, false);
+        }
+        for (int index : indexAccessors) {
+            geometry += accessorBytes(accessors, index, true);
+        }
+
+        // One draw call per primitive of every mesh the scene shows, with the materials they use
+        Set<Integer> materials = new HashSet<>();
+        int drawCalls = 0;
+        for (int mesh : drawnMeshes(json, meshes.length())) {
+            for (JSONObject primitive : primitives(meshes, mesh)) {
+                drawCalls++;
+                materials.add(primitive.optInt("material", -1)); // -1: the default material
+            }
+        }
+
+        return new RuntimeCost(geometry, textureBytes(glb), drawCalls, materials.size());
+    }
+
+    private static List<JSONObject> primitives(JSONArray meshes, int mesh) {
+        List<JSONObject> list = new ArrayList<>();
+        JSONObject object = meshes.optJSONObject(mesh);
+        JSONArray primitives = object != null ? object.optJSONArray("primitives") : null;
+        for (int p = 0; primitives != null && p < primitives.length(); p++) {
+            JSONObject primitive = primitives.optJSONObject(p);
+            if (primitive != null) {
+                list.add(primitive);
+            }
+        }
+        return list;
+    }
+
+    private static void collectAccessors(JSONObject attributes, Set<Integer> accessors) {
+        for (Iterator<String> it = attributes != null ? attributes.keys() : null; it != null && it.hasNext(); ) {
+            accessors.add(attributes.optInt(it.next(), -1));
+        }
+    }
+
+    /**
+     * Bytes of an accessor once decoded (Draco-compressed ones included)
+     * Byte indices are widened to 16 bits, as most GPUs cannot draw with them directly
+     */
+    private static long accessorBytes(JSONArray accessors, int index, boolean indices) {
+        JSONObject accessor = accessors != null ? accessors.optJSONObject(index) : null;
+        if (accessor == null) {
+            return 0;
+        }
+        int componentSize = Accessor.componentSize(accessor.optInt("componentType", 0));
+        if (indices) {
+            componentSize = Math.max(componentSize, 2);
+        }
+        long count = Math.max(0, accessor.optLong("count", 0));
+        return count * Accessor.componentCount(accessor.optString("type", "")) * componentSize;
+    }
+
+    /**
+     * Meshes drawn by the default scene, once per node that uses them
+     * Without scenes every mesh is drawn once. A node with EXT_mesh_gpu_instancing
+     * still takes one draw call per primitive
+     */
+    private static List<Integer> drawnMeshes(JSONObject json, int meshCount) {
+        List<Integer> drawn = new ArrayList<>();
+        JSONArray nodes = json.optJSONArray("nodes");
+        JSONArray scenes = json.optJSONArray("scenes");
+        JSONObject scene = scenes != null ? scenes.optJSONObject(json.optInt("scene", 0)) : null;
+        JSONArray roots = scene != null ? scene.optJSONArray("nodes") : null;
+        if (nodes == null || roots == null) {
+            for (int m = 0; m < meshCount; m++) {
+                drawn.add(m);
+            }
+            return drawn;
+        }
+
+        // Walk the hierarchy with a stack; a node is visited once even if the file has a cycle
+        boolean[] visited = new boolean[nodes.length()];
+        List<Integer> stack = new ArrayList<>();
+        for (int r = 0; r < roots.length(); r++) {
+            stack.add(roots.optInt(r, -1));
+        }
+        while (!stack.isEmpty()) {
+            int index = stack.remove(stack.size() - 1);
+            if (index < 0 || index >= visited.length || visited[index]) {
+                continue;
+            }
+            visited[index] = true;
+            JSONObject node = nodes.optJSONObject(index);
+            if (node == null) {
+                continue;
+            }
+            int mesh = node.optInt("mesh", -1);
+            if (mesh >= 0 && mesh < meshCount) {
+                drawn.add(mesh);
+            }
+            JSONArray children = node.optJSONArray("children");
+            for (int c = 0; children != null && c < children.length(); c++) {
+                stack.add(children.optInt(c, -1));
+            }
+        }
+        return drawn;
+    }
+
+    /**
+     * GPU memory of every image a texture uses, with a full mip chain
+     * Images whose size cannot be read from their header (external, unknown format) count as 0
+     */
+    private static long textureBytes(GlbFile glb) throws IOException {
+        JSONObject json = glb.getJson();
+        JSONArray textures = json.optJSONArray("textures");
+        JSONArray images = json.optJSONArray("images");
+        if (textures == null || images == null) {
+            return 0;
+        }
+        // The source a viewer loads: WebP, or Basis Universal KTX2, if present, else the core one.
+        // Other extensions' sources are ignored, as viewers that do not know them are
+        Set<Integer> used = new HashSet<>();
+        for (int t = 0; t < textures.length(); t++) {
+            JSONObject texture = textures.optJSONObject(t);
+            if (texture == null) {
+                continue;
+            }
+            int source = texture.optInt("source", -1);
+            JSONObject extensions = texture.optJSONObject("extensions");
+            JSONObject webp = extensions != null ? extensions.optJSONObject(EXT_TEXTURE_WEBP) : null;
+            JSONObject basisu = extensions != null ? extensions.optJSONObject(KHR_TEXTURE_BASISU) : null;
+            if (basisu != null && isBasisImage(glb, images.optJSONObject(basisu.optInt("source", -1)))) {
+                source = basisu.optInt("source", -1);
+            } else if (webp != null && webp.has("source")) {
+                source = webp.optInt("source", -1);
+            }
+            if (source >= 0) {
+                used.add(source);
+            }
+        }
+
+        long total = 0;
+        for (int index : used) {
+            JSONObject image = images.optJSONObject(index);
+            if (image == null || !image.has("bufferView")) {
+                continue;
+            }
+            ByteBuffer data = glb.getBufferView(image.optInt("bufferView", -1));
+            if (data != null) {
+                total += imageBytes(data);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Whether an image is a KTX2 container of Basis Universal data (format 0), the only
+     * payload KHR_texture_basisu allows
+     */
+    private static boolean isBasisImage(GlbFile glb, JSONObject image) throws IOException {
+        ByteBuffer data = image != null && image.has("bufferView")
+                ? glb.getBufferView(image.optInt("bufferView", -1)) : null;
+        if (data == null || data.remaining() < 48) {
+            return false;
+        }
+        ByteBuffer bytes = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int start = bytes.position();
+        return bytes.getInt(start) == 0xAB4B5458 && bytes.getInt(start + 4) == 0x203230BB
+                && bytes.order(ByteOrder.LITTLE_ENDIAN).getInt(start + 12) == 0;
+    }
+
+    /**
+     * GPU bytes of an encoded image: PNG, JPEG and WebP decode to RGBA8 and get
+     * mipmaps generated; KTX2 holds its own levels
+     */
+    static long imageBytes(ByteBuffer data) {
+        ByteBuffer bytes = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int length = bytes.remaining();
+        int start = bytes.position();
+        if (length >= 24 && bytes.getInt(start) == 0x89504E47) {
+            // PNG: width and height lead the IHDR chunk
+            return mipChain(bytes.getInt(start + 16), bytes.getInt(start + 20), DECODED_BYTES_PER_PIXEL, 0);
+        }
+        if (length >= 4 && (bytes.getShort(start) & 0xFFFF) == 0xFFD8) {
+            return jpegBytes(bytes, start, length);
+        }
+        if (length >= 30 && bytes.getInt(start) == 0x52494646 && bytes.getInt(start + 8) == 0x57454250) {
+            return webpBytes(bytes.order(ByteOrder.LITTLE_ENDIAN), start, length);
+        }
+        if (length >= 48 && bytes.getInt(start) == 0xAB4B5458 && bytes.getInt(start + 4) == 0x203230BB) {
+            return ktx2Bytes(bytes.order(ByteOrder.LITTLE_ENDIAN), start, length);
+        }
+        return 0;
+    }
+
+    /**
+     * JPEG: the size is in the first start-of-frame segment
+     */
+    private static long jpegBytes(ByteBuffer bytes, int start, int length) {
+        int position = start + 2;
+        while (position + 9 <= start + length) {
+            if ((bytes.get(position) & 0xFF) != 0xFF) {
+                return 0;
+            }
+            int marker = bytes.get(position + 1) & 0xFF;
+            int segment = bytes.getShort(position + 2) & 0xFFFF;
+            // SOF0..SOF15, except DHT (C4), JPG (C8) and DAC (CC)
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                int height = bytes.getShort(position + 5) & 0xFFFF;
+                int width = bytes.getShort(position + 7) & 0xFFFF;
+                return mipChain(width, height, DECODED_BYTES_PER_PIXEL, 0);
+            }
+            position += 2 + segment;
+        }
+        return 0;
+    }
+
+    /**
+     * WebP: lossy (VP8), lossless (VP8L) or extended (VP8X) header
+     */
+    private static long webpBytes(ByteBuffer bytes, int start, int length) {
+        int chunk = bytes.getInt(start + 12);
+        int width;
+        int height;
+        if (chunk == 0x20385056) {          // "VP8 "
+            width = bytes.getShort(start + 26) & 0x3FFF;
+            height = bytes.getShort(start + 28) & 0x3FFF;
+        } else if (chunk == 0x4C385056) {   // "VP8L"
+            int bits = bytes.getInt(start + 21);
+            width = (bits & 0x3FFF) + 1;
+            height = ((bits >>> 14) & 0x3FFF) + 1;
+        } else if (chunk == 0x58385056) {   // "VP8X"
+            width = (read24(bytes, start + 24)) + 1;
+            height = (read24(bytes, start + 27)) + 1;
+        } else {
+            return 0;
+        }
+        return mipChain(width, height, DECODED_BYTES_PER_PIXEL, 0);
+    }
+
+    private static int read24(ByteBuffer bytes, int position) {
+        return (bytes.get(position) & 0xFF) | (bytes.get(position + 1) & 0xFF) << 8
+                | (bytes.get(position + 2) & 0xFF) << 16;
+    }
+
+    /**
+     * KTX2: Basis Universal data (format 0) is transcoded to a 1 byte per pixel block
+     * format; other formats are uploaded as stored, so the level index has the sizes
+     */
+    private static long ktx2Bytes(ByteBuffer bytes, int start, int length) {
+        int format = bytes.getInt(start + 12);
+        int width = bytes.getInt(start + 20);
+        int height = Math.max(1, bytes.getInt(start + 24));
+        int levels = bytes.getInt(start + 40);
+        if (format == 0) {
+            return mipChain(width, height, TRANSCODED_BYTES_PER_PIXEL, Math.max(1, levels));
+        }
+        long total = 0;
+        for (int level = 0; level < Math.max(1, levels); level++) {
+            int entry = start + 80 + level * 24;
+            if (entry + 24 > start + length) {
+                break;
+            }
+            total += bytes.getLong(entry + 16); // uncompressedByteLength
+        }
+        return total;
+    }
+
+    /**
+     * Bytes of an image and its mip levels (all of them if levels is 0)
+     */
+    private static long mipChain(int width, int height, int bytesPerPixel, int levels) {
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int level = 0; levels == 0 || level < levels; level++) {
+            total += (long) width * height * bytesPerPixel;
+            if (width == 1 && height == 1) {
+                break;
+            }
+            width = Math.max(1, width / 2);
+            height = Math.max(1, height / 2);
+        }
+        return total;
+    }
+
+    /**
+     * Vertex and index buffer bytes
+     */
+    public long getGeometryBytes() {
+        return geometryBytes;
+    }
+
+    /**
+     * Texture bytes, mip levels included
+     */
+    public long getTextureBytes() {
+        return textureBytes;
+    }
+
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    public int getMaterialCount() {
+        return materialCount;
+    }
+}
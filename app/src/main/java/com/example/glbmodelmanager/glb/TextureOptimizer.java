@@ -0,0 +1,316 @@
+package com.example.glbmodelmanager.glb;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import com.example.glbmodelmanager.utils.ImportSettings;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Import stage that downsamples and re-encodes textures embedded in the BIN chunk
+ * Each worker decodes one image at a time, directly at a reduced sample size,
+ * so peak memory is bounded by the worker count rather than the texture count
+ */
+public class TextureOptimizer {
+
+    private static final String MIME_PNG = "image/png";
+    private static final String MIME_JPEG = "image/jpeg";
+    private static final String MIME_WEBP = "image/webp";
+    private static final String EXT_TEXTURE_WEBP = "EXT_texture_webp";
+
+    private static final int MAX_WORKERS = 4;
+    private static final int QUALITY_STEP = 5;
+
+    private final int maxDimension;
+    private final boolean webp;
+    private final int quality;
+    private final int minQuality;
+    private final float bitsPerPixel;
+
+    /**
+     * Result of re-encoding a single image
+     */
+    private static class Encoded {
+        final byte[] data;
+        final String mimeType;
+
+        Encoded(byte[] data, String mimeType) {
+            this.data = data;
+            this.mimeType = mimeType;
+        }
+    }
+
+    /**
+     * Constructor
+     */
+    public TextureOptimizer(int maxDimension, String format, int quality, int minQuality, float bitsPerPixel) {
+        this.maxDimension = maxDimension;
+        this.webp = ImportSettings.FORMAT_WEBP.equals(format);
+        this.quality = quality;
+        this.minQuality = Math.min(minQuality, quality);
+        this.bitsPerPixel = bitsPerPixel;
+    }
+
+    /**
+     * Create an optimizer from the saved import settings
+     */
+    public static TextureOptimizer fromSettings(ImportSettings settings) {
+        return new TextureOptimizer(
+                settings.getMaxTextureSize(),
+                settings.getTextureFormat(),
+                settings.getTextureQuality(),
+                settings.getMinTextureQuality(),
+                settings.getTextureBitsPerPixel()
+        );
+    }
+
+    /**
+     * Optimize the embedded textures of source and write the result to dest
+     * Returns false (and leaves dest untouched) when nothing could be made smaller
+     */
+    public boolean optimize(File source, File dest) throws IOException {
+        try (GlbFile glb = GlbFile.open(source)) {
+            JSONObject json = glb.getJson();
+            JSONArray images = json.optJSONArray("images");
+            if (images == null || images.length() == 0 || !glb.hasEmbeddedBuffer()) {
+                return false;
+            }
+
+            // Collect one task per bufferView (images may share a view)
+            Map<Integer, List<Integer>> imagesByView = new HashMap<>();
+            for (int i = 0; i < images.length(); i++) {
+                JSONObject image = images.optJSONObject(i);
+                if (image == null || !image.has("bufferView")) {
+                    continue; // External or data URI image
+                }
+                String mimeType = image.optString("mimeType");
+                if (!MIME_PNG.equals(mimeType) && !MIME_JPEG.equals(mimeType)) {
+                    continue;
+                }
+                int view = image.optInt("bufferView");
+                List<Integer> list = imagesByView.get(view);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    imagesByView.put(view, list);
+                }
+                list.add(i);
+            }
+            if (imagesByView.isEmpty()) {
+                return false;
+            }
+
+            Map<Integer, Encoded> results = encodeAll(glb, imagesByView);
+            if (results.isEmpty()) {
+                return false;
+            }
+
+            // Point the images at their new encodings and rebuild the BIN chunk
+            Map<Integer, ByteBuffer> replacements = new HashMap<>();
+            boolean usesWebp = false;
+            for (Map.Entry<Integer, Encoded> entry : results.entrySet()) {
+                Encoded encoded = entry.getValue();
+                replacements.put(entry.getKey(), ByteBuffer.wrap(encoded.data));
+                for (int imageIndex : imagesByView.get(entry.getKey())) {
+                    images.getJSONObject(imageIndex).put("mimeType", encoded.mimeType);
+                    if (MIME_WEBP.equals(encoded.mimeType)) {
+                        moveTexturesToWebp(json, imageIndex);
+                        usesWebp = true;
+                    }
+                }
+            }
+            if (usesWebp) {
+                addExtension(json, "extensionsUsed", EXT_TEXTURE_WEBP);
+                addExtension(json, "extensionsRequired", EXT_TEXTURE_WEBP);
+            }
+
+            GlbWriter writer = GlbWriter.fromBufferViews(glb, json, replacements);
+            writer.write(dest, json);
+            return true;
+        } catch (JSONException e) {
+            throw new IOException("Invalid glTF JSON: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Re-encode every candidate view on a bounded worker pool
+     * Returns only the views whose new encoding is smaller than the original
+     */
+    private Map<Integer, Encoded> encodeAll(GlbFile glb, Map<Integer, List<Integer>> imagesByView)
+            throws IOException {
+        int workers = Math.max(1, Math.min(MAX_WORKERS,
+                Math.min(imagesByView.size(), Runtime.getRuntime().availableProcessors())));
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+
+        try {
+            Map<Integer, Future<Encoded>> futures = new HashMap<>();
+            for (int view : imagesByView.keySet()) {
+                ByteBuffer data = glb.getBufferView(view);
+                if (data != null) {
+                    futures.put(view, pool.submit(() -> encode(data)));
+                }
+            }
+
+            Map<Integer, Encoded> results = new HashMap<>();
+            for (Map.Entry<Integer, Future<Encoded>> entry : futures.entrySet()) {
+                Encoded encoded = entry.getValue().get();
+                if (encoded != null) {
+                    results.put(entry.getKey(), encoded);
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Texture optimization interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Texture optimization failed: " + e.getCause().getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Decode, downscale and re-encode one image
+     * Returns null if the image is already small enough and could not be shrunk
+     */
+    private Encoded encode(ByteBuffer source) {
+        byte[] original = new byte[source.remaining()];
+        source.duplicate().get(original);
+
+        // Read dimensions without allocating pixels
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(original, 0, original.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null; // Not decodable on this device
+        }
+
+        int largest = Math.max(bounds.outWidth, bounds.outHeight);
+        float scale = largest > maxDimension ? (float) maxDimension / largest : 1f;
+        int targetWidth = Math.max(1, Math.round(bounds.outWidth * scale));
+        int targetHeight = Math.max(1, Math.round(bounds.outHeight * scale));
+
+        // Decode at the largest power-of-two reduction that still covers the target size
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 1;
+        while (bounds.outWidth / (options.inSampleSize * 2) >= targetWidth
+                && bounds.outHeight / (options.inSampleSize * 2) >= targetHeight) {
+            options.inSampleSize *= 2;
+        }
+
+        Bitmap bitmap = BitmapFactory.decodeByteArray(original, 0, original.length, options);
+        if (bitmap == null) {
+            return null;
+        }
+        if (bitmap.getWidth() != targetWidth || bitmap.getHeight() != targetHeight) {
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap, targetWidth, targetHeight, true);
+            if (scaled != bitmap) {
+                bitmap.recycle();
+                bitmap = scaled;
+            }
+        }
+
+        try {
+            Encoded encoded = compress(bitmap);
+            if (encoded == null || encoded.data.length >= original.length) {
+                return null; // Re-encoding would not save anything
+            }
+            return encoded;
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Compress a bitmap, lowering quality step by step until it fits the size budget
+     */
+    @SuppressWarnings("deprecation")
+    private Encoded compress(Bitmap bitmap) {
+        Bitmap.CompressFormat format;
+        String mimeType;
+        if (webp) {
+            format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                    ? Bitmap.CompressFormat.WEBP_LOSSY
+                    : Bitmap.CompressFormat.WEBP;
+            mimeType = MIME_WEBP;
+        } else if (bitmap.hasAlpha()) {
+            // JPEG cannot carry alpha, keep PNG for the downscaled copy
+            format = Bitmap.CompressFormat.PNG;
+            mimeType = MIME_PNG;
+        } else {
+            format = Bitmap.CompressFormat.JPEG;
+            mimeType = MIME_JPEG;
+        }
+
+        long budget = (long) (bitmap.getWidth() * (long) bitmap.getHeight() * bitsPerPixel / 8);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int q = quality;
+        while (true) {
+            output.reset();
+            if (!bitmap.compress(format, q, output)) {
+                return null;
+            }
+            if (format == Bitmap.CompressFormat.PNG || output.size() <= budget || q - QUALITY_STEP < minQuality) {
+                break;
+            }
+            q -= QUALITY_STEP;
+        }
+        return new Encoded(output.toByteArray(), mimeType);
+    }
+
+    /**
+     * Point textures that use this image at it through EXT_texture_webp
+     */
+    private static void moveTexturesToWebp(JSONObject json, int imageIndex) throws JSONException {
+        JSONArray textures = json.optJSONArray("textures");
+        if (textures == null) {
+            return;
+        }
+        for (int i = 0; i < textures.length(); i++) {
+            JSONObject texture = textures.getJSONObject(i);
+            if (texture.optInt("source", -1) != imageIndex) {
+                continue;
+            }
+            JSONObject extensions = texture.optJSONObject("extensions");
+            if (extensions == null) {
+                extensions = new JSONObject();
+                texture.put("extensions", extensions);
+            }
+            extensions.put(EXT_TEXTURE_WEBP, new JSONObject().put("source", imageIndex));
+            texture.remove("source");
+        }
+    }
+
+    /**
+     * Add an extension name to extensionsUsed / extensionsRequired if missing
+     */
+    static void addExtension(JSONObject json, String key, String name) throws JSONException {
+        JSONArray list = json.optJSONArray(key);
+        if (list == null) {
+            list = new JSONArray();
+            json.put(key, list);
+        }
+        for (int i = 0; i < list.length(); i++) {
+            if (name.equals(list.optString(i))) {
+                return;
+            }
+        }
+        list.put(name);
+    }
+}
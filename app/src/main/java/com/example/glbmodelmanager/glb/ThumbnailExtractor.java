@@ -0,0 +1,161 @@
+package com.example.glbmodelmanager.glb;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.example.glbmodelmanager.cache.BitmapPool;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Builds small preview images from the first texture embedded in a GLB
+ */
+public class ThumbnailExtractor {
+
+    public static final String THUMBNAILS_DIR = "thumbnails";
+
+    private static final int JPEG_QUALITY = 80;
+
+    private final int maxSize;
+
+    public ThumbnailExtractor(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Thumbnail file for a model ID
+     */
+    public static File getThumbnailFile(File filesDir, int modelId) {
+        return new File(new File(filesDir, THUMBNAILS_DIR), modelId + ".jpg");
+    }
+
+    /**
+     * Find the bufferView of the first embedded image, or -1 if there is none
+     */
+    public static int findFirstImageView(GlbFile glb) {
+        JSONArray images = glb.getJson().optJSONArray("images");
+        if (images == null || !glb.hasEmbeddedBuffer()) {
+            return -1;
+        }
+        for (int i = 0; i < images.length(); i++) {
+            JSONObject image = images.optJSONObject(i);
+            if (image != null && image.has("bufferView")) {
+                return image.optInt("bufferView", -1);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decode the first embedded image, downsampled close to maxSize
+     * Returns null if the model has no decodable embedded image
+     */
+    public Bitmap decodeFirstImage(GlbFile glb) throws IOException {
+        return decodeFirstImage(glb, null);
+    }
+
+    /**
+     * Same as decodeFirstImage(GlbFile), decoding into a pooled bitmap when one fits
+     * The result is mutable when a pool is given, so it can go back to the pool later
+     */
+    public Bitmap decodeFirstImage(GlbFile glb, BitmapPool pool) throws IOException {
+        int view = findFirstImageView(glb);
+        if (view < 0) {
+            return null;
+        }
+        ByteBuffer data = glb.getBufferView(view);
+        if (data == null) {
+            return null;
+        }
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return decode(options -> BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options), pool);
+    }
+
+    /**
+     * Decode a thumbnail file written by writeThumbnail, downsampled close to maxSize
+     * Returns null if the file is missing or cannot be decoded
+     */
+    public Bitmap decodeThumbnail(File file, BitmapPool pool) {
+        String path = file.getAbsolutePath();
+        return decode(options -> BitmapFactory.decodeFile(path, options), pool);
+    }
+
+    private interface Source {
+        Bitmap decode(BitmapFactory.Options options);
+    }
+
+    private Bitmap decode(Source source, BitmapPool pool) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        source.decode(options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inSampleSize = 1;
+        while (Math.max(options.outWidth, options.outHeight) / (options.inSampleSize * 2) >= maxSize) {
+            options.inSampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        if (pool == null) {
+            return source.decode(options);
+        }
+
+        options.inMutable = true;
+        options.inBitmap = pool.get(BitmapPool.byteCount(options.outWidth, options.outHeight, options.inSampleSize));
+        Bitmap reused = options.inBitmap;
+        try {
+            Bitmap bitmap = source.decode(options);
+            if (bitmap == null && reused != null) {
+                pool.put(reused);
+            }
+            return bitmap;
+        } catch (IllegalArgumentException e) {
+            if (reused == null) {
+                throw e;
+            }
+            // The decoder could not reuse that bitmap: use new memory, and park the bitmap again
+            // since its contents are undefined but its memory is still good for another decode
+            options.inBitmap = null;
+            try {
+                return source.decode(options);
+            } finally {
+                pool.put(reused);
+            }
+        }
+    }
+
+    /**
+     * Write a JPEG thumbnail for a model file
+     * Returns false if the model has no embedded image to preview
+     */
+    public boolean writeThumbnail(File modelFile, File dest) throws IOException {
+        Bitmap bitmap;
+        try (GlbFile glb = GlbFile.open(modelFile)) {
+            bitmap = decodeFirstImage(glb);
+        }
+        if (bitmap == null) {
+            return false;
+        }
+
+        try {
+            File dir = dest.getParentFile();
+            if (dir != null && !dir.exists()) {
+                dir.mkdirs();
+            }
+            try (FileOutputStream output = new FileOutputStream(dest)) {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, output);
+            }
+            return true;
+        } finally {
+            bitmap.recycle();
+        }
+    }
+}
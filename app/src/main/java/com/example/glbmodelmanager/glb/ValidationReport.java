@@ -0,0 +1,155 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Result of a structural check of a glTF asset (see GltfValidator)
+ * Issues point at the offending JSON object, e.g. "/accessors/3". Only the first
+ * MAX_ISSUES are kept so a badly broken file does not give a huge report;
+ * the counts stay exact
+ */
+public class ValidationReport {
+
+    public static final int ERROR = 0;    // Breaks the spec in a way that can crash or corrupt rendering
+    public static final int WARNING = 1;  // Breaks the spec, but viewers usually cope
+
+    static final int MAX_ISSUES = 100;
+
+    /**
+     * One problem found in the asset
+     */
+    public static class Issue {
+        public final int severity;
+        public final String pointer;  // JSON pointer of the object, "" for the file itself
+        public final String message;
+
+        public Issue(int severity, String pointer, String message) {
+            this.severity = severity;
+            this.pointer = pointer;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return (severity == ERROR ? "error" : "warning")
+                    + (pointer.isEmpty() ? "" : " " + pointer) + ": " + message;
+        }
+    }
+
+    private final List<Issue> issues = new ArrayList<>();
+    private int errorCount;
+    private int warningCount;
+    private long durationMs;
+
+    /**
+     * Record a problem (called from several fork/join workers at once)
+     */
+    public synchronized void add(int severity, String pointer, String message) {
+        if (severity == ERROR) {
+            errorCount++;
+        } else {
+            warningCount++;
+        }
+        if (issues.size() < MAX_ISSUES) {
+            issues.add(new Issue(severity, pointer, message));
+        }
+    }
+
+    public synchronized void error(String pointer, String message) {
+        add(ERROR, pointer, message);
+    }
+
+    public synchronized void warning(String pointer, String message) {
+        add(WARNING, pointer, message);
+    }
+
+    /**
+     * Recorded issues, errors first
+     */
+    public synchronized List<Issue> getIssues() {
+        List<Issue> sorted = new ArrayList<>(issues);
+        Collections.sort(sorted, (a, b) -> Integer.compare(a.severity, b.severity));
+        return sorted;
+    }
+
+    public synchronized int getErrorCount() {
+        return errorCount;
+    }
+
+    public synchronized int getWarningCount() {
+        return warningCount;
+    }
+
+    public boolean isValid() {
+        return getErrorCount() == 0;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * One line summary, e.g. "2 errors, 1 warning"
+     */
+    public String getSummary() {
+        int errors = getErrorCount();
+        int warnings = getWarningCount();
+        if (errors == 0 && warnings == 0) {
+            return "No problems found";
+        }
+        return String.format(Locale.US, "%d error%s, %d warning%s",
+                errors, errors == 1 ? "" : "s", warnings, warnings == 1 ? "" : "s");
+    }
+
+    /**
+     * Report as JSON, for storage with the model
+     */
+    public synchronized String toJson() {
+        try {
+            JSONArray list = new JSONArray();
+            for (Issue issue : getIssues()) {
+                list.put(new JSONObject()
+                        .put("severity", issue.severity == ERROR ? "error" : "warning")
+                        .put("pointer", issue.pointer)
+                        .put("message", issue.message));
+            }
+            return new JSONObject()
+                    .put("errors", errorCount)
+                    .put("warnings", warningCount)
+                    .put("durationMs", durationMs)
+                    .put("issues", list)
+                    .toString();
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parse a report written by toJson()
+     */
+    public static ValidationReport fromJson(String text) throws JSONException {
+        JSONObject json = new JSONObject(text);
+        ValidationReport report = new ValidationReport();
+        JSONArray list = json.optJSONArray("issues");
+        for (int i = 0; list != null && i < list.length(); i++) {
+            JSONObject issue = list.getJSONObject(i);
+            report.issues.add(new Issue("error".equals(issue.optString("severity")) ? ERROR : WARNING,
+                    issue.optString("pointer", ""), issue.optString("message", "")));
+        }
+        report.errorCount = json.optInt("errors", 0);
+        report.warningCount = json.optInt("warnings", 0);
+        report.durationMs = json.optLong("durationMs", 0);
+        return report;
+    }
+}
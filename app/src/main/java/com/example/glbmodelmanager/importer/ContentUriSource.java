@@ -0,0 +1,108 @@
+package com.example.glbmodelmanager.importer;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Resumable source backed by a content provider document
+ * Seeks the file descriptor when the provider supports it, otherwise skips
+ */
+public class ContentUriSource implements ResumableCopier.Source {
+
+    private final ContentResolver resolver;
+    private final Uri uri;
+    private final long length;
+
+    public ContentUriSource(ContentResolver resolver, Uri uri, long length) {
+        this.resolver = resolver;
+        this.uri = uri;
+        this.length = length;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public InputStream open(long offset) throws IOException {
+        if (offset > 0) {
+            InputStream seeked = openSeeked(offset);
+            if (seeked != null) {
+                return seeked;
+            }
+        }
+
+        InputStream input = resolver.openInputStream(uri);
+        if (input == null) {
+            throw new FileNotFoundException("Cannot open " + uri);
+        }
+        try {
+            skipFully(input, offset);
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+        return input;
+    }
+
+    /**
+     * Open a seekable descriptor positioned at offset
+     * Returns null for pipes and other streams that cannot seek
+     */
+    private InputStream openSeeked(long offset) {
+        ParcelFileDescriptor descriptor = null;
+        try {
+            descriptor = resolver.openFileDescriptor(uri, "r");
+            if (descriptor == null) {
+                return null;
+            }
+            ParcelFileDescriptor.AutoCloseInputStream input =
+                    new ParcelFileDescriptor.AutoCloseInputStream(descriptor);
+            try {
+                input.getChannel().position(offset);
+                return input;
+            } catch (IOException e) {
+                input.close(); // Not seekable (pipe or socket)
+                return null;
+            }
+        } catch (IOException | RuntimeException e) {
+            if (descriptor != null) {
+                try {
+                    descriptor.close();
+                } catch (IOException ignored) {
+                    // Falling back to a plain stream anyway
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Skip bytes, reading and discarding them if the stream cannot skip
+     */
+    private static void skipFully(InputStream input, long count) throws IOException {
+        byte[] discard = null;
+        while (count > 0) {
+            long skipped = input.skip(count);
+            if (skipped > 0) {
+                count -= skipped;
+                continue;
+            }
+            if (discard == null) {
+                discard = new byte[64 * 1024];
+            }
+            int read = input.read(discard, 0, (int) Math.min(discard.length, count));
+            if (read == -1) {
+                throw new EOFException("Source is shorter than the resume offset");
+            }
+            count -= read;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.glbmodelmanager.importer;
+
+import android.content.ContentResolver;
+import android.text.TextUtils;
+
+import com.example.glbmodelmanager.glb.GltfPacker;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves relative URIs of a .gltf against the other picked documents
+ * Paths are matched relative to the .gltf's folder first, then by file name
+ * (a multi-file pick carries no folder structure)
+ */
+public class DocumentResolver implements GltfPacker.Resolver {
+
+    private final ContentResolver contentResolver;
+    private final String baseDir;
+    private final Map<String, PickedDocument> byPath = new HashMap<>();
+    private final Map<String, PickedDocument> byName = new HashMap<>();
+
+    /**
+     * Constructor
+     */
+    public DocumentResolver(ContentResolver contentResolver, PickedDocument gltf,
+                            List<PickedDocument> documents) {
+        this.contentResolver = contentResolver;
+        this.baseDir = gltf.getParent();
+        for (PickedDocument document : documents) {
+            byPath.put(document.getPath(), document);
+            if (!byName.containsKey(document.getName())) {
+                byName.put(document.getName(), document);
+            }
+        }
+    }
+
+    @Override
+    public long length(String path) throws IOException {
+        return find(path).getSize();
+    }
+
+    @Override
+    public InputStream open(String path) throws IOException {
+        InputStream input = contentResolver.openInputStream(find(path).getUri());
+        if (input == null) {
+            throw new FileNotFoundException("Cannot open " + path);
+        }
+        return input;
+    }
+
+    private PickedDocument find(String path) throws FileNotFoundException {
+        PickedDocument document = byPath.get(normalize(baseDir, path));
+        if (document == null) {
+            int slash = path.lastIndexOf('/');
+            document = byName.get(slash >= 0 ? path.substring(slash + 1) : path);
+        }
+        if (document == null) {
+            throw new FileNotFoundException("Missing file referenced by glTF: " + path);
+        }
+        return document;
+    }
+
+    /**
+     * Join a relative path onto a folder, resolving "." and ".." segments
+     */
+    static String normalize(String baseDir, String path) {
+        Deque<String> parts = new ArrayDeque<>();
+        String joined = baseDir.isEmpty() ? path : baseDir + "/" + path;
+        for (String part : joined.replace('\\', '/').split("/")) {
+            if (part.isEmpty() || part.equals(".")) {
+                continue;
+            }
+            if (part.equals("..")) {
+                parts.pollLast();
+            } else {
+                parts.addLast(part);
+            }
+        }
+        return TextUtils.join("/", parts);
+    }
+}
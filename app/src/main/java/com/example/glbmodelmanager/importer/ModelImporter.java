@@ -0,0 +1,489 @@
+package com.example.glbmodelmanager.importer;
+
+import android.content.Context;
+
+import com.example.glbmodelmanager.data.AppDatabase;
+import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.data.ModelOptimization;
+import com.example.glbmodelmanager.diagnostics.Telemetry;
+import com.example.glbmodelmanager.glb.AnimationCompressor;
+import com.example.glbmodelmanager.glb.GlbFormatException;
+import com.example.glbmodelmanager.glb.GlbStreamValidator;
+import com.example.glbmodelmanager.glb.GltfPacker;
+import com.example.glbmodelmanager.glb.MeshInstancer;
+import com.example.glbmodelmanager.glb.TextureOptimizer;
+import com.example.glbmodelmanager.similarity.SimilarityIndex;
+import com.example.glbmodelmanager.storage.ModelStorage;
+import com.example.glbmodelmanager.utils.HashUtils;
+import com.example.glbmodelmanager.utils.ImportSettings;
+import com.example.glbmodelmanager.validation.ModelValidator;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Copies picked models into internal storage and records them in the database
+ * Runs on a background thread (see work.ImportWorker)
+ */
+public class ModelImporter {
+
+    public static final String MODELS_DIR = "glb_models";
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final Context context;
+    private final AppDatabase database;
+    private final ImportSettings settings;
+    private final SimilarityIndex similarityIndex;
+    private final ModelValidator validator;
+    private final Telemetry.Operation operation;
+
+    /**
+     * Constructor
+     */
+    public ModelImporter(Context context) {
+        this(context, Telemetry.disabled());
+    }
+
+    /**
+     * Constructor that records stage timings into a telemetry operation
+     */
+    public ModelImporter(Context context, Telemetry.Operation operation) {
+        this.context = context.getApplicationContext();
+        this.database = AppDatabase.getDatabase(context);
+        this.settings = new ImportSettings(context);
+        this.similarityIndex = new SimilarityIndex(context);
+        this.validator = new ModelValidator(context);
+        this.operation = operation;
+    }
+
+    /**
+     * Outcome of an import of several documents
+     */
+    public static class Result {
+        public int imported;  // Models added to the library
+        public int skipped;   // Archive entries that were not valid GLB files
+        public final List<Integer> modelIds = new ArrayList<>();
+    }
+
+    /**
+     * Receives progress while documents are imported
+     */
+    public interface ProgressListener {
+        void onProgress(int done, int total, String name);
+    }
+
+    /**
+     * Import every .glb, .gltf and .zip among the picked documents
+     * Other files are only used as resources referenced by a .gltf
+     */
+    public Result importAll(List<PickedDocument> documents, ProgressListener listener) throws IOException {
+        Result result = new Result();
+        int total = documents.size();
+        for (int i = 0; i < total; i++) {
+            PickedDocument document = documents.get(i);
+            if (listener != null) {
+                listener.onProgress(i, total, document.getName());
+            }
+
+            if (document.hasExtension(".glb")) {
+                result.modelIds.add(importGlb(document).getId());
+                result.imported++;
+            } else if (document.hasExtension(".gltf")) {
+                result.modelIds.add(importGltf(document, documents).getId());
+                result.imported++;
+            } else if (document.hasExtension(".zip")) {
+                Result zipResult = importZip(document);
+                result.imported += zipResult.imported;
+                result.skipped += zipResult.skipped;
+                result.modelIds.addAll(zipResult.modelIds);
+            }
+        }
+        if (listener != null) {
+            listener.onProgress(total, total, null);
+        }
+        return result;
+    }
+
+    /**
+     * Copy a single .glb into internal storage
+     */
+    public GlbModel importGlb(PickedDocument document) throws IOException {
+        long timestamp = System.currentTimeMillis();
+        File destFile = newModelFile(timestamp, document.getName());
+
+        try {
+            // Copy file from URI to internal storage, validating and hashing as we go.
+            // Cloud-backed providers can stall or drop, so the copy resumes where it stopped
+            ContentUriSource source = new ContentUriSource(
+                    context.getContentResolver(), document.getUri(), document.getSize());
+            ResumableCopier.Checkpoint checkpoint = new ResumableCopier.Checkpoint();
+            long copyStart = System.nanoTime();
+            String hash = new ResumableCopier().copy(source, destFile, checkpoint);
+            recordCopy(copyStart, checkpoint.getOffset(), checkpoint.getHashNanos());
+            // Retry backoff is waiting, not copying
+            operation.addNanos(Telemetry.STAGE_COPY, -checkpoint.getBackoffNanos());
+
+            GlbModel model = prepareModel(destFile, stripExtension(document.getName()), timestamp, hash);
+            long insertStart = System.nanoTime();
+            model.setId((int) database.glbModelDao().insert(model));
+            operation.add(Telemetry.STAGE_INSERT, insertStart);
+            indexGeometry(Collections.singletonList(model));
+            return model;
+        } catch (IOException e) {
+            destFile.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Stream every .glb entry of a zip archive straight into model storage
+     * Entries are never extracted to temporary files. Invalid entries are skipped,
+     * and all rows are inserted together once the archive has been read
+     */
+    public Result importZip(PickedDocument zip) throws IOException {
+        Result result = new Result();
+        List<GlbModel> models = new ArrayList<>();
+
+        try (ZipInputStream zipStream = new ZipInputStream(new BufferedInputStream(openInput(zip)))) {
+            ZipEntry entry;
+            while ((entry = zipStream.getNextEntry()) != null) {
+                String entryName = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+                if (entry.isDirectory() || !entryName.toLowerCase(Locale.ROOT).endsWith(".glb")
+                        || entryName.startsWith(".")) {
+                    continue;
+                }
+
+                long timestamp = System.currentTimeMillis();
+                File destFile = newModelFile(timestamp, entryName);
+                try {
+                    String hash = copyValidated(zipStream, destFile);
+                    models.add(prepareModel(destFile, stripExtension(entryName), timestamp, hash));
+                } catch (GlbFormatException e) {
+                    // Not a valid GLB, keep going with the rest of the archive
+                    destFile.delete();
+                    result.skipped++;
+                } catch (IOException e) {
+                    destFile.delete();
+                    throw e;
+                }
+            }
+        } catch (IOException e) {
+            // Archive is unreadable: roll back every file copied so far
+            for (GlbModel model : models) {
+                new File(model.getFilePath()).delete();
+            }
+            throw e;
+        }
+
+        if (!models.isEmpty()) {
+            long insertStart = System.nanoTime();
+            List<Long> ids = database.glbModelDao().insertAll(models);
+            operation.add(Telemetry.STAGE_INSERT, insertStart);
+            for (int i = 0; i < ids.size(); i++) {
+                models.get(i).setId(ids.get(i).intValue());
+                result.modelIds.add(ids.get(i).intValue());
+            }
+            indexGeometry(models);
+        }
+        result.imported = models.size();
+        return result;
+    }
+
+    /**
+     * Pack a .gltf and the files it references into a single .glb
+     */
+    public GlbModel importGltf(PickedDocument gltf, List<PickedDocument> resources) throws IOException {
+        long timestamp = System.currentTimeMillis();
+        String displayName = stripExtension(gltf.getName());
+        File destFile = newModelFile(timestamp, displayName + ".glb");
+
+        try {
+            long parseStart = System.nanoTime();
+            JSONObject json;
+            try {
+                json = new JSONObject(readText(gltf));
+            } catch (JSONException e) {
+                throw new IOException("Invalid .gltf file: " + e.getMessage());
+            }
+            operation.add(Telemetry.STAGE_PARSE, parseStart);
+
+            // Packing reads every referenced resource, so it counts as the copy
+            long copyStart = System.nanoTime();
+            DocumentResolver resolver = new DocumentResolver(context.getContentResolver(), gltf, resources);
+            new GltfPacker(resolver).pack(json, destFile);
+            recordCopy(copyStart, destFile.length(), 0);
+
+            long hashStart = System.nanoTime();
+            String hash = hashFile(destFile);
+            operation.add(Telemetry.STAGE_HASH, hashStart);
+
+            GlbModel model = prepareModel(destFile, displayName, timestamp, hash);
+            long insertStart = System.nanoTime();
+            model.setId((int) database.glbModelDao().insert(model));
+            operation.add(Telemetry.STAGE_INSERT, insertStart);
+            indexGeometry(Collections.singletonList(model));
+            return model;
+        } catch (IOException e) {
+            destFile.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Build the database entry for a freshly copied file
+     */
+    private GlbModel prepareModel(File destFile, String displayName, long timestamp, String hash) {
+        GlbModel model = new GlbModel(
+                displayName,
+                destFile.getName(),
+                destFile.getAbsolutePath(),
+                destFile.length(),
+                timestamp
+        );
+        model.setContentHash(hash);
+        return model;
+    }
+
+    /**
+     * Add freshly inserted models to the similarity index and validate them while
+     * their files are still cached
+     * A model that cannot be fingerprinted, or fails validation, is still imported
+     */
+    private void indexGeometry(List<GlbModel> models) {
+        long indexStart = System.nanoTime();
+        similarityIndex.indexQuietly(models);
+        operation.add(Telemetry.STAGE_INDEX, indexStart);
+
+        long validateStart = System.nanoTime();
+        validator.validateQuietly(models);
+        operation.add(Telemetry.STAGE_VALIDATE, validateStart);
+    }
+
+    /**
+     * Copy a GLB stream to dest, checking the header and hashing inline
+     * The input is left open (it may be a zip entry)
+     * Returns the SHA-256 of the copied bytes
+     */
+    private String copyValidated(InputStream input, File dest) throws IOException {
+        GlbStreamValidator validator = new GlbStreamValidator();
+        MessageDigest digest = HashUtils.newSha256();
+        long copyStart = System.nanoTime();
+        long hashNanos = 0;
+
+        try (FileOutputStream output = new FileOutputStream(dest)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                validator.update(buffer, 0, length);
+                long hashStart = System.nanoTime();
+                digest.update(buffer, 0, length);
+                hashNanos += System.nanoTime() - hashStart;
+                output.write(buffer, 0, length);
+            }
+        } finally {
+            recordCopy(copyStart, validator.getTotal(), hashNanos);
+        }
+        validator.finish();
+        return HashUtils.toHex(digest.digest());
+    }
+
+    /**
+     * Record a copy in telemetry, splitting out the time spent hashing inline
+     */
+    private void recordCopy(long copyStart, long bytes, long hashNanos) {
+        operation.add(Telemetry.STAGE_COPY, copyStart);
+        operation.addNanos(Telemetry.STAGE_COPY, -hashNanos);
+        operation.addNanos(Telemetry.STAGE_HASH, hashNanos);
+        operation.addBytes(bytes);
+    }
+
+    /**
+     * SHA-256 of a file already in storage
+     */
+    private static String hashFile(File file) throws IOException {
+        MessageDigest digest = HashUtils.newSha256();
+        try (InputStream input = new FileInputStream(file)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, length);
+            }
+        }
+        return HashUtils.toHex(digest.digest());
+    }
+
+    /**
+     * Processing stage run after import: instance repeated meshes, compress animations,
+     * optimize textures, then update the row and re-read the model's geometry and cost
+     * Returns true if the stored file changed
+     */
+    public boolean optimizeModel(GlbModel model) throws IOException {
+        File file = new File(model.getFilePath());
+        if (ModelStorage.isCompressed(model) || !file.exists()) {
+            return false;
+        }
+        boolean changed = settings.isMeshInstancingEnabled() && instanceMeshes(model, file);
+        if (settings.isAnimationCompressionEnabled() && compressAnimations(model, file)) {
+            changed = true;
+        }
+        if (settings.isTextureOptimizationEnabled() && optimizeTextures(file)) {
+            changed = true;
+        }
+        if (!changed) {
+            return false;
+        }
+        model.setFileSize(file.length());
+        model.setStoredSize(file.length());
+        database.glbModelDao().update(model);
+        indexGeometry(Collections.singletonList(model));
+        return true;
+    }
+
+    /**
+     * Draw repeated meshes of an imported file with GPU instancing
+     * The instanced copy replaces the original only if it was written successfully,
+     * and what it saved is recorded for the optimization report
+     */
+    private boolean instanceMeshes(GlbModel model, File file) throws IOException {
+        File instanced = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            int threads = Runtime.getRuntime().availableProcessors();
+            MeshInstancer.Report report = new MeshInstancer(threads, settings.getInstanceTolerance())
+                    .instance(file, instanced);
+            if (report == null) {
+                return false;
+            }
+            if (!instanced.renameTo(file)) {
+                throw new IOException("Could not replace model with instanced copy");
+            }
+            database.glbModelDao().insertOptimization(new ModelOptimization(model.getId(),
+                    ModelOptimization.STAGE_INSTANCING, report.getBytesBefore(), report.getBytesAfter(),
+                    report.getDrawCallsBefore(), report.getDrawCallsAfter(), report.getSummary(),
+                    System.currentTimeMillis()));
+            return true;
+        } finally {
+            if (instanced.exists()) {
+                instanced.delete();
+            }
+        }
+    }
+
+    /**
+     * Remove redundant animation keyframes of an imported file
+     * The compressed copy replaces the original only if it was written successfully,
+     * and its compression ratio is recorded for the optimization report
+     */
+    private boolean compressAnimations(GlbModel model, File file) throws IOException {
+        File compressed = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            AnimationCompressor.Report report = AnimationCompressor.fromSettings(settings)
+                    .compress(file, compressed);
+            if (report == null) {
+                return false;
+            }
+            if (!compressed.renameTo(file)) {
+                throw new IOException("Could not replace model with compressed copy");
+            }
+            database.glbModelDao().insertOptimization(new ModelOptimization(model.getId(),
+                    ModelOptimization.STAGE_ANIMATION, report.getBytesBefore(), report.getBytesAfter(),
+                    -1, -1, report.getSummary(), System.currentTimeMillis()));
+            return true;
+        } finally {
+            if (compressed.exists()) {
+                compressed.delete();
+            }
+        }
+    }
+
+    /**
+     * Run the texture optimization stage on an imported file
+     * The optimized copy replaces the original only if it was written successfully
+     */
+    private boolean optimizeTextures(File file) throws IOException {
+
+        File optimized = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            if (!TextureOptimizer.fromSettings(settings).optimize(file, optimized)) {
+                return false;
+            }
+            if (!optimized.renameTo(file)) {
+                throw new IOException("Could not replace model with optimized copy");
+            }
+            return true;
+        } finally {
+            if (optimized.exists()) {
+                optimized.delete();
+            }
+        }
+    }
+
+    /**
+     * Create a unique file in internal storage to avoid name conflicts
+     */
+    private File newModelFile(long timestamp, String fileName) {
+        File internalDir = getModelsDir(context);
+        File file = new File(internalDir, timestamp + "_" + fileName);
+        // Archives can hold several entries with the same name
+        for (int i = 1; file.exists(); i++) {
+            file = new File(internalDir, timestamp + "_" + i + "_" + fileName);
+        }
+        return file;
+    }
+
+    /**
+     * Internal storage directory for model files (created if missing)
+     */
+    public static File getModelsDir(Context context) {
+        File internalDir = new File(context.getFilesDir(), MODELS_DIR);
+        if (!internalDir.exists()) {
+            internalDir.mkdirs();
+        }
+        return internalDir;
+    }
+
+    private InputStream openInput(PickedDocument document) throws IOException {
+        InputStream input = context.getContentResolver().openInputStream(document.getUri());
+        if (input == null) {
+            throw new FileNotFoundException("Cannot open " + document.getName());
+        }
+        return input;
+    }
+
+    private String readText(PickedDocument document) throws IOException {
+        try (InputStream input = openInput(document)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int length;
+            while ((length = input.read(buffer)) > 0) {
+                output.write(buffer, 0, length);
+            }
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Display name without the model file extension
+     */
+    static String stripExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+}
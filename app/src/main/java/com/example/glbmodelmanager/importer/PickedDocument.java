@@ -0,0 +1,134 @@
+package com.example.glbmodelmanager.importer;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A file picked by the admin, either directly or from inside a picked folder
+ * Path is relative to the picked folder ('/' separated), or just the file name
+ */
+public class PickedDocument {
+
+    private final String path;
+    private final Uri uri;
+    private final long size;
+
+    public PickedDocument(String path, Uri uri, long size) {
+        this.path = path;
+        this.uri = uri;
+        this.size = size;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Uri getUri() {
+        return uri;
+    }
+
+    /**
+     * Size in bytes, or -1 if the provider did not report it
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * File name without any folder part
+     */
+    public String getName() {
+        int slash = path.lastIndexOf('/');
+        return slash >= 0 ? path.substring(slash + 1) : path;
+    }
+
+    /**
+     * Folder part of the path ("" for top-level files)
+     */
+    public String getParent() {
+        int slash = path.lastIndexOf('/');
+        return slash >= 0 ? path.substring(0, slash) : "";
+    }
+
+    public boolean hasExtension(String extension) {
+        return getName().toLowerCase(Locale.ROOT).endsWith(extension);
+    }
+
+    /**
+     * Query display name and size for a single picked file
+     */
+    public static PickedDocument fromUri(ContentResolver resolver, Uri uri) {
+        String fileName = "model.glb";
+        long size = -1;
+        Cursor cursor = resolver.query(uri, null, null, null, null);
+
+        if (cursor != null) {
+            try {
+                if (cursor.moveToFirst()) {
+                    int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
+                    if (nameIndex >= 0) {
+                        fileName = cursor.getString(nameIndex);
+                    }
+                    int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+                    if (sizeIndex >= 0 && !cursor.isNull(sizeIndex)) {
+                        size = cursor.getLong(sizeIndex);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        return new PickedDocument(fileName, uri, size);
+    }
+
+    /**
+     * List every file inside a picked folder, recursively
+     */
+    public static List<PickedDocument> listTree(ContentResolver resolver, Uri treeUri) {
+        List<PickedDocument> documents = new ArrayList<>();
+        listChildren(resolver, treeUri, DocumentsContract.getTreeDocumentId(treeUri), "", documents);
+        return documents;
+    }
+
+    private static void listChildren(ContentResolver resolver, Uri treeUri, String parentId,
+                                     String prefix, List<PickedDocument> out) {
+        Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, parentId);
+        String[] projection = {
+                DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+                DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+                DocumentsContract.Document.COLUMN_MIME_TYPE,
+                DocumentsContract.Document.COLUMN_SIZE
+        };
+        Cursor cursor = resolver.query(childrenUri, projection, null, null, null);
+        if (cursor == null) {
+            return;
+        }
+
+        try {
+            while (cursor.moveToNext()) {
+                String id = cursor.getString(0);
+                String name = cursor.getString(1);
+                String mimeType = cursor.getString(2);
+                String path = prefix + name;
+
+                if (DocumentsContract.Document.MIME_TYPE_DIR.equals(mimeType)) {
+                    listChildren(resolver, treeUri, id, path + "/", out);
+                } else {
+                    long size = cursor.isNull(3) ? -1 : cursor.getLong(3);
+                    out.add(new PickedDocument(path,
+                            DocumentsContract.buildDocumentUriUsingTree(treeUri, id), size));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.glbmodelmanager.importer;
+
+import com.example.glbmodelmanager.glb.GlbFormatException;
+import com.example.glbmodelmanager.glb.GlbStreamValidator;
+import com.example.glbmodelmanager.utils.HashUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.SocketTimeoutException;
+import java.security.MessageDigest;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies a GLB from a slow or flaky source with checkpoints and retries
+ * After a failure the copy resumes from the last written byte, reusing the
+ * partial hash, instead of starting over. Cancellation (an interrupted thread or
+ * InterruptedIOException) ends the copy at once instead of being retried
+ */
+public class ResumableCopier {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    // Retry policy: bounded exponential backoff
+    private static final int MAX_ATTEMPTS = 6;
+    private static final long INITIAL_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    // A read that makes no progress for this long is treated as a dropped connection
+    private static final long STALL_TIMEOUT_MS = 20_000;
+
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "import-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Something that can be opened at a byte offset
+     */
+    public interface Source {
+        /**
+         * Open the source positioned at offset (seeking or skipping as supported)
+         */
+        InputStream open(long offset) throws IOException;
+
+        /**
+         * Total size in bytes, or -1 if unknown
+         */
+        long length();
+    }
+
+    /**
+     * Progress of a copy: bytes safely written, and hash/validation state for them
+     */
+    public static class Checkpoint {
+        long offset;
+        long hashNanos;
+        long backoffNanos;
+        final MessageDigest digest;
+        final GlbStreamValidator validator;
+
+        public Checkpoint() {
+            this.offset = 0;
+            this.digest = HashUtils.newSha256();
+            this.validator = new GlbStreamValidator();
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Time spent hashing, so it can be reported apart from the copy
+         */
+        public long getHashNanos() {
+            return hashNanos;
+        }
+
+        /**
+         * Time spent waiting between retries, so it is not counted as copying
+         */
+        public long getBackoffNanos() {
+            return backoffNanos;
+        }
+
+        void advance(byte[] buffer, int length) throws IOException {
+            validator.update(buffer, 0, length);
+            long hashStart = System.nanoTime();
+            digest.update(buffer, 0, length);
+            hashNanos += System.nanoTime() - hashStart;
+            offset += length;
+        }
+    }
+
+    /**
+     * Copy source into dest, retrying with backoff until complete
+     * Returns the SHA-256 of the full file
+     */
+    public String copy(Source source, File dest, Checkpoint checkpoint) throws IOException {
+        IOException lastError = null;
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            if (attempt > 0) {
+                long sleepStart = System.nanoTime();
+                sleepBackoff(attempt);
+                checkpoint.backoffNanos += System.nanoTime() - sleepStart;
+            }
+            try {
+                copyFrom(source, dest, checkpoint);
+                verify(source, dest, checkpoint);
+                return HashUtils.toHex(checkpoint.digest.digest());
+            } catch (GlbFormatException e) {
+                throw e; // Bad data will not get better on retry
+            } catch (InterruptedIOException e) {
+                if (!(e instanceof SocketTimeoutException)) {
+                    throw e; // Cancelled, not a transient failure
+                }
+                lastError = e;
+            } catch (IOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // e.g. ClosedByInterruptException from a cancelled worker
+                    throw new InterruptedIOException("Import cancelled");
+                }
+                lastError = e;
+            }
+        }
+        throw new IOException("Import failed after " + MAX_ATTEMPTS + " attempts: "
+                + lastError.getMessage(), lastError);
+    }
+
+    /**
+     * One attempt: resume at the checkpoint and copy until end of stream
+     */
+    private void copyFrom(Source source, File dest, Checkpoint checkpoint) throws IOException {
+        try (RandomAccessFile output = new RandomAccessFile(dest, "rw")) {
+            // Drop anything written after the last checkpoint
+            output.setLength(checkpoint.offset);
+            output.seek(checkpoint.offset);
+
+            try (InputStream input = source.open(checkpoint.offset)) {
+                AtomicLong lastProgress = new AtomicLong(System.nanoTime());
+                ScheduledFuture<?> stallCheck = watchdog.scheduleWithFixedDelay(() -> {
+                    long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastProgress.get());
+                    if (idle > STALL_TIMEOUT_MS) {
+                        closeQuietly(input); // Unblocks the pending read
+                    }
+                }, STALL_TIMEOUT_MS, STALL_TIMEOUT_MS / 4, TimeUnit.MILLISECONDS);
+
+                try {
+                    byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                    int length;
+                    while ((length = input.read(buffer)) != -1) {
+                        output.write(buffer, 0, length);
+                        checkpoint.advance(buffer, length);
+                        lastProgress.set(System.nanoTime());
+                    }
+                } finally {
+                    stallCheck.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check the finished file against the reported size and the GLB header
+     */
+    private void verify(Source source, File dest, Checkpoint checkpoint) throws IOException {
+        long expected = source.length();
+        if (expected < 0) {
+            expected = checkpoint.validator.getDeclaredLength();
+        }
+        if (expected >= 0 && checkpoint.offset < expected) {
+            // Dropped connections often look like a clean end of stream
+            throw new IOException("Copy ended early at " + checkpoint.offset + " of " + expected + " bytes");
+        }
+        if (dest.length() != checkpoint.offset) {
+            throw new IOException("Written file does not match copied length");
+        }
+        checkpoint.validator.finish();
+    }
+
+    private static void sleepBackoff(int attempt) throws IOException {
+        long delay = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << (attempt - 1));
+        // Up to 25% jitter so parallel imports do not retry in lockstep
+        delay += (long) (Math.random() * delay / 4);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import cancelled");
+        }
+    }
+
+    private static void closeQuietly(InputStream input) {
+        try {
+            input.close();
+        } catch (IOException ignored) {
+            // Already failing, nothing more to do
+        }
+    }
+}
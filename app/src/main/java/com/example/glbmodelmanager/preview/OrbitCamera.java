@@ -0,0 +1,114 @@
+package com.example.glbmodelmanager.preview;
+
+/**
+ * Camera that orbits the center of a model's bounds
+ * Yaw and pitch turn around the target, zoom moves along the view direction
+ */
+public class OrbitCamera {
+
+    private static final float FIELD_OF_VIEW = (float) Math.toRadians(45);
+    private static final float MAX_PITCH = (float) Math.toRadians(89);
+    private static final float MIN_ZOOM = 0.3f;   // Closest distance, in bounding radii
+    private static final float MAX_ZOOM = 20f;    // Furthest distance, in bounding radii
+
+    private final float[] target = new float[3];
+    private float radius = 1f;
+    private float distance = 3f;
+    private float yaw = (float) Math.toRadians(30);
+    private float pitch = (float) Math.toRadians(20);
+
+    /**
+     * Aim at the center of the bounds (minX, minY, minZ, maxX, maxY, maxZ)
+     * and back off until the whole model fits the view
+     */
+    public void frame(float[] bounds) {
+        float dx = bounds[3] - bounds[0];
+        float dy = bounds[4] - bounds[1];
+        float dz = bounds[5] - bounds[2];
+        target[0] = (bounds[0] + bounds[3]) / 2f;
+        target[1] = (bounds[1] + bounds[4]) / 2f;
+        target[2] = (bounds[2] + bounds[5]) / 2f;
+        radius = Math.max((float) Math.sqrt(dx * dx + dy * dy + dz * dz) / 2f, 1e-4f);
+        distance = radius / (float) Math.sin(FIELD_OF_VIEW / 2f);
+    }
+
+    /**
+     * Turn around the target, angles in radians
+     */
+    public void orbit(float deltaYaw, float deltaPitch) {
+        yaw += deltaYaw;
+        pitch = Math.max(-MAX_PITCH, Math.min(MAX_PITCH, pitch + deltaPitch));
+    }
+
+    /**
+     * Move closer (factor above 1) or further away (factor below 1)
+     */
+    public void zoom(float factor) {
+        if (factor > 0) {
+            distance = Math.max(radius * MIN_ZOOM, Math.min(radius * MAX_ZOOM, distance / factor));
+        }
+    }
+
+    /**
+     * World position of the camera
+     */
+    public float[] getEye() {
+        float cosPitch = (float) Math.cos(pitch);
+        return new float[]{
+                target[0] + distance * cosPitch * (float) Math.sin(yaw),
+                target[1] + distance * (float) Math.sin(pitch),
+                target[2] + distance * cosPitch * (float) Math.cos(yaw)};
+    }
+
+    /**
+     * Row-major projection x view matrix for a viewport of the given aspect ratio
+     * Near and far planes hug the bounding sphere so the depth buffer keeps its precision
+     */
+    public float[] viewProjection(float aspect) {
+        float[] eye = getEye();
+
+        // View basis: forward, side and up vectors
+        float fx = target[0] - eye[0];
+        float fy = target[1] - eye[1];
+        float fz = target[2] - eye[2];
+        float length = (float) Math.sqrt(fx * fx + fy * fy + fz * fz);
+        fx /= length;
+        fy /= length;
+        fz /= length;
+        float sx = -fz;  // forward x (0, 1, 0)
+        float sz = fx;
+        float sideLength = (float) Math.sqrt(sx * sx + sz * sz);
+        sx /= sideLength;
+        sz /= sideLength;
+        float ux = -sz * fy;  // side x forward
+        float uy = sz * fx - sx * fz;
+        float uz = sx * fy;
+
+        float[] view = {
+                sx, 0, sz, -(sx * eye[0] + sz * eye[2]),
+                ux, uy, uz, -(ux * eye[0] + uy * eye[1] + uz * eye[2]),
+                -fx, -fy, -fz, fx * eye[0] + fy * eye[1] + fz * eye[2],
+                0, 0, 0, 1};
+
+        float near = Math.max(distance - radius, distance * 0.01f);
+        float far = distance + radius * 1.5f;
+        float f = 1f / (float) Math.tan(FIELD_OF_VIEW / 2f);
+        float[] projection = {
+                f / aspect, 0, 0, 0,
+                0, f, 0, 0,
+                0, 0, (far + near) / (near - far), 2 * far * near / (near - far),
+                0, 0, -1, 0};
+
+        float[] result = new float[16];
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < 4; col++) {
+                float sum = 0;
+                for (int k = 0; k < 4; k++) {
+                    sum += projection[row * 4 + k] * view[k * 4 + col];
+                }
+                result[row * 4 + col] = sum;
+            }
+        }
+        return result;
+    }
+}
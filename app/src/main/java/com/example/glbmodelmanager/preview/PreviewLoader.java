@@ -0,0 +1,462 @@
+package com.example.glbmodelmanager.preview;
+
+import com.example.glbmodelmanager.glb.Accessor;
+import com.example.glbmodelmanager.glb.DracoDecoder;
+import com.example.glbmodelmanager.glb.DracoMesh;
+import com.example.glbmodelmanager.glb.GlbFile;
+import com.example.glbmodelmanager.glb.GlbFormatException;
+import com.example.glbmodelmanager.glb.MeshDraw;
+import com.example.glbmodelmanager.glb.NodeTransforms;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Loads a GLB for the preview in stages, so something is on screen quickly:
+ * 1. STAGE_BOUNDS  - a box from the accessor min/max in the JSON, no geometry read
+ * 2. STAGE_COARSE  - every n-th triangle, about coarseTriangles in total
+ *    (skipped when the model is already that small)
+ * 3. STAGE_PARTIAL - while the full mesh is read: the part read so far, with the
+ *    coarse mesh standing in for the rest (only after a coarse stage)
+ * 4. STAGE_FULL    - every triangle, or every n-th one when the model has more than
+ *    maxTriangles (see maxTriangles(long) for a cap that fits the heap)
+ * Geometry is read straight from the memory-mapped BIN chunk, Draco compressed
+ * primitives are decoded from it. Node transforms of the default scene are
+ * applied; primitives without readable positions, or compressed with a Draco feature
+ * the decoder does not support, are left out (see getSkippedReason())
+ */
+public class PreviewLoader {
+
+    public static final int STAGE_BOUNDS = 0;
+    public static final int STAGE_COARSE = 1;
+    public static final int STAGE_PARTIAL = 2;
+    public static final int STAGE_FULL = 3;
+
+    public static final int DEFAULT_COLOR = 0xFFB0B0B0;
+
+    // Partial meshes reported while the full stage is read
+    private static final int PARTIAL_UPDATES = 3;
+
+    // Heap per kept triangle while the full stage is built: its share of the vertices,
+    // its indices and color, times the growth slack of the lists and a partial copy on screen
+    private static final int BYTES_PER_TRIANGLE = 192;
+
+    // glTF primitive modes
+    private static final int MODE_TRIANGLES = 4;
+    private static final int MODE_TRIANGLE_STRIP = 5;
+    private static final int MODE_TRIANGLE_FAN = 6;
+
+    /**
+     * Receives each stage as it becomes ready, on the loading thread
+     */
+    public interface Listener {
+        void onStage(int stage, PreviewMesh mesh);
+    }
+
+    private final int coarseTriangles;
+    private final int maxTriangles;
+    private final DracoDecoder draco = new DracoDecoder();
+    private final DracoMesh dracoMesh = new DracoMesh();
+    private volatile boolean cancelled;
+    private volatile long sourceTriangles;
+    private volatile boolean reduced;
+    private volatile String skippedReason;
+
+    public PreviewLoader(int coarseTriangles) {
+        this(coarseTriangles, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxTriangles most triangles the full stage keeps
+     */
+    public PreviewLoader(int coarseTriangles, int maxTriangles) {
+        this.coarseTriangles = coarseTriangles;
+        this.maxTriangles = Math.max(coarseTriangles, maxTriangles);
+    }
+
+    /**
+     * Triangle cap for the full stage that leaves three quarters of a heap of heapBytes
+     * to the rest of the app
+     */
+    public static int maxTriangles(long heapBytes) {
+        return (int) Math.min(Integer.MAX_VALUE, heapBytes / 4 / BYTES_PER_TRIANGLE);
+    }
+
+    /**
+     * Triangles the model draws, known once the first geometry stage is reported
+     */
+    public long getSourceTriangles() {
+        return sourceTriangles;
+    }
+
+    /**
+     * Whether the full stage keeps only every n-th triangle, the model being over maxTriangles
+     */
+    public boolean isReduced() {
+        return reduced;
+    }
+
+    /**
+     * Why some primitives could not be decoded and are missing from the preview, or null
+     */
+    public String getSkippedReason() {
+        return skippedReason;
+    }
+
+    /**
+     * Stop loading after the current step; no further stages are reported
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Load the file, reporting each stage to the listener
+     * Throws IOException if the file cannot be read or has no drawable triangles
+     */
+    public void load(File file, Listener listener) throws IOException {
+        try (GlbFile glb = GlbFile.open(file)) {
+            List<MeshDraw> draws = MeshDraw.collect(glb);
+
+            float[] bounds = declaredBounds(glb.getJson(), draws);
+            if (bounds != null && !cancelled) {
+                listener.onStage(STAGE_BOUNDS, PreviewMesh.box(bounds, DEFAULT_COLOR));
+            }
+
+            long triangles = 0;
+            for (MeshDraw draw : draws) {
+                triangles += triangleCount(glb.getJson(), draw.primitive);
+            }
+            sourceTriangles = triangles;
+            Built coarse = null;
+            if (triangles > coarseTriangles && !cancelled) {
+                coarse = build(glb, draws, step(triangles, coarseTriangles), null, null);
+                if (coarse != null && !cancelled) {
+                    listener.onStage(STAGE_COARSE, coarse.mesh);
+                }
+            }
+
+            int step = step(triangles, maxTriangles);
+            reduced = step > 1;
+            Built full = build(glb, draws, step, coarse, listener);
+            if (full == null && !cancelled) {
+                throw new GlbFormatException(skippedReason != null
+                        ? "Model cannot be previewed: " + skippedReason
+                        : "Model has no triangles that can be previewed");
+            }
+            if (!cancelled) {
+                listener.onStage(STAGE_FULL, full.mesh);
+            }
+        }
+    }
+
+    /**
+     * Keep every step-th triangle to end up with at most limit of them
+     */
+    private static int step(long triangles, int limit) {
+        return (int) Math.max(1, (triangles + limit - 1) / limit);
+    }
+
+    /**
+     * Union of the transformed POSITION min/max boxes, or null if any is missing
+     */
+    private static float[] declaredBounds(JSONObject json, List<MeshDraw> draws) {
+        JSONArray accessors = json.optJSONArray("accessors");
+        float[] bounds = emptyBounds();
+        for (MeshDraw draw : draws) {
+            JSONObject position = accessors != null
+                    ? accessors.optJSONObject(draw.primitive.optJSONObject("attributes").optInt("POSITION", -1))
+                    : null;
+            JSONArray min = position != null ? position.optJSONArray("min") : null;
+            JSONArray max = position != null ? position.optJSONArray("max") : null;
+            if (min == null || max == null || min.length() < 3 || max.length() < 3) {
+                return null;
+            }
+            float[] point = new float[3];
+            for (int corner = 0; corner < 8; corner++) {
+                float x = (float) ((corner & 1) == 0 ? min : max).optDouble(0, 0);
+                float y = (float) ((corner & 2) == 0 ? min : max).optDouble(1, 0);
+                float z = (float) ((corner & 4) == 0 ? min : max).optDouble(2, 0);
+                NodeTransforms.transform(draw.matrix, x, y, z, point, 0);
+                include(bounds, point, 0);
+            }
+        }
+        return bounds[0] <= bounds[3] ? bounds : null;
+    }
+
+    private static long triangleCount(JSONObject json, JSONObject primitive) {
+        JSONArray accessors = json.optJSONArray("accessors");
+        int accessor = primitive.has("indices")
+                ? primitive.optInt("indices", -1)
+                : primitive.optJSONObject("attributes").optInt("POSITION", -1);
+        JSONObject element = accessors != null ? accessors.optJSONObject(accessor) : null;
+        int count = element != null ? element.optInt("count", 0) : 0;
+        switch (primitive.optInt("mode", MODE_TRIANGLES)) {
+            case MODE_TRIANGLES:
+                return count / 3;
+            case MODE_TRIANGLE_STRIP:
+            case MODE_TRIANGLE_FAN:
+                return Math.max(0, count - 2);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Flatten every step-th triangle of every primitive into one mesh
+     * Only vertices used by a kept triangle are copied. With a coarse mesh, partial meshes
+     * are reported to the listener as the build goes. Returns null if nothing was drawable
+     * or loading was cancelled
+     */
+    private Built build(GlbFile glb, List<MeshDraw> draws, int step, Built coarse, Listener listener)
+            throws IOException {
+        FloatList positions = new FloatList();
+        IntList indices = new IntList();
+        IntList colors = new IntList();
+        float[] bounds = emptyBounds();
+        int[] triangleStarts = new int[draws.size() + 1];
+        int[] vertexStarts = new int[draws.size() + 1];
+
+        long expected = sourceTriangles / step;
+        int partials = 0;
+        long nextPartial = coarse != null && listener != null ? expected / (PARTIAL_UPDATES + 1) : Long.MAX_VALUE;
+
+        for (int d = 0; d < draws.size(); d++) {
+            triangleStarts[d] = colors.size();
+            vertexStarts[d] = positions.size() / 3;
+            if (cancelled) {
+                return null;
+            }
+            MeshDraw draw = draws.get(d);
+            JSONObject primitive = draw.primitive;
+            int mode = primitive.optInt("mode", MODE_TRIANGLES);
+            if (mode != MODE_TRIANGLES && mode != MODE_TRIANGLE_STRIP && mode != MODE_TRIANGLE_FAN) {
+                continue;
+            }
+            Accessor position;
+            Accessor index = null;
+            if (DracoDecoder.extension(primitive) != null) {
+                try {
+                    if (!draco.decodePrimitive(glb, primitive, dracoMesh)) {
+                        continue;
+                    }
+                } catch (GlbFormatException e) {
+                    // Unsupported Draco feature (edgebreaker connectivity), show the rest of the model
+                    skippedReason = e.getMessage();
+                    continue;
+                }
+                position = dracoMesh.getAttribute("POSITION");
+                index = dracoMesh.getIndices();
+            } else {
+                position = Accessor.open(glb, primitive.optJSONObject("attributes").optInt("POSITION"));
+                if (primitive.has("indices")) {
+                    index = Accessor.open(glb, primitive.optInt("indices"));
+                    if (index == null) {
+                        continue;
+                    }
+                }
+            }
+            if (position == null || position.getComponents() != 3) {
+                continue;
+            }
+            int elements = index != null ? index.getCount() : position.getCount();
+            int triangles = (int) triangleCount(glb.getJson(), primitive);
+            int color = materialColor(glb.getJson(), primitive.optInt("material", -1));
+
+            // Source vertex -> output vertex, filled in as triangles use them
+            int[] remap = new int[position.getCount()];
+            Arrays.fill(remap, -1);
+            for (int t = 0; t < triangles; t += step) {
+                int e0, e1, e2;
+                if (mode == MODE_TRIANGLES) {
+                    e0 = t * 3;
+                    e1 = t * 3 + 1;
+                    e2 = t * 3 + 2;
+                } else if (mode == MODE_TRIANGLE_STRIP) {
+                    e0 = t;
+                    e1 = t + 1;
+                    e2 = t + 2;
+                } else {
+                    e0 = 0;
+                    e1 = t + 1;
+                    e2 = t + 2;
+                }
+                if (e2 >= elements) {
+                    break;
+                }
+                long v0 = index != null ? index.getInt(e0, 0) : e0;
+                long v1 = index != null ? index.getInt(e1, 0) : e1;
+                long v2 = index != null ? index.getInt(e2, 0) : e2;
+                if (v0 >= remap.length || v1 >= remap.length || v2 >= remap.length) {
+                    continue;
+                }
+                indices.add(vertex(position, (int) v0, remap, draw.matrix, positions, bounds));
+                indices.add(vertex(position, (int) v1, remap, draw.matrix, positions, bounds));
+                indices.add(vertex(position, (int) v2, remap, draw.matrix, positions, bounds));
+                colors.add(color);
+
+                if (colors.size() >= nextPartial && !cancelled) {
+                    partials++;
+                    nextPartial = partials < PARTIAL_UPDATES
+                            ? expected * (partials + 1) / (PARTIAL_UPDATES + 1) : Long.MAX_VALUE;
+                    listener.onStage(STAGE_PARTIAL, partial(positions, indices, colors, bounds, coarse, d, t + step));
+                }
+            }
+        }
+        triangleStarts[draws.size()] = colors.size();
+        vertexStarts[draws.size()] = positions.size() / 3;
+
+        if (colors.size() == 0 || cancelled) {
+            return null;
+        }
+        PreviewMesh mesh = new PreviewMesh(positions.toArray(0), indices.toArray(0), colors.toArray(0), bounds);
+        return new Built(mesh, step, triangleStarts, vertexStarts);
+    }
+
+    /**
+     * Copy of the mesh built so far, followed by the coarse triangles from source triangle
+     * next of draw on, so the parts not read yet stay on screen
+     */
+    private static PreviewMesh partial(FloatList positions, IntList indices, IntList colors, float[] bounds,
+                                       Built coarse, int draw, int next) {
+        int from = Math.min(coarse.triangleStarts[draw] + (next + coarse.step - 1) / coarse.step,
+                coarse.triangleStarts[draw + 1]);
+        int firstVertex = coarse.vertexStarts[draw];
+        int tailTriangles = coarse.mesh.getTriangleCount() - from;
+        int tailVertices = coarse.mesh.getVertexCount() - firstVertex;
+        int vertexCount = positions.size() / 3;
+
+        float[] mergedPositions = positions.toArray(tailVertices * 3);
+        System.arraycopy(coarse.mesh.getPositions(), firstVertex * 3, mergedPositions, positions.size(),
+                tailVertices * 3);
+        int[] mergedIndices = indices.toArray(tailTriangles * 3);
+        int[] coarseIndices = coarse.mesh.getIndices();
+        for (int i = 0; i < tailTriangles * 3; i++) {
+            mergedIndices[indices.size() + i] = coarseIndices[from * 3 + i] - firstVertex + vertexCount;
+        }
+        int[] mergedColors = colors.toArray(tailTriangles);
+        System.arraycopy(coarse.mesh.getColors(), from, mergedColors, colors.size(), tailTriangles);
+
+        float[] mergedBounds = bounds.clone();
+        include(mergedBounds, coarse.mesh.getBounds(), 0);
+        include(mergedBounds, coarse.mesh.getBounds(), 3);
+        return new PreviewMesh(mergedPositions, mergedIndices, mergedColors, mergedBounds);
+    }
+
+    /**
+     * A built mesh and where each draw's triangles and vertices start in it
+     */
+    private static final class Built {
+        final PreviewMesh mesh;
+        final int step;
+        final int[] triangleStarts;
+        final int[] vertexStarts;
+
+        Built(PreviewMesh mesh, int step, int[] triangleStarts, int[] vertexStarts) {
+            this.mesh = mesh;
+            this.step = step;
+            this.triangleStarts = triangleStarts;
+            this.vertexStarts = vertexStarts;
+        }
+    }
+
+    private static int vertex(Accessor position, int source, int[] remap, float[] matrix,
+                              FloatList positions, float[] bounds) {
+        if (remap[source] < 0) {
+            remap[source] = positions.size() / 3;
+            float[] point = new float[3];
+            NodeTransforms.transform(matrix, position.get(source, 0), position.get(source, 1), position.get(source, 2), point, 0);
+            positions.add(point[0]);
+            positions.add(point[1]);
+            positions.add(point[2]);
+            include(bounds, point, 0);
+        }
+        return remap[source];
+    }
+
+    /**
+     * Base color factor of a material as opaque ARGB
+     */
+    private static int materialColor(JSONObject json, int material) {
+        JSONArray materials = json.optJSONArray("materials");
+        JSONObject entry = materials != null ? materials.optJSONObject(material) : null;
+        JSONObject pbr = entry != null ? entry.optJSONObject("pbrMetallicRoughness") : null;
+        JSONArray factor = pbr != null ? pbr.optJSONArray("baseColorFactor") : null;
+        if (factor == null || factor.length() < 3) {
+            return DEFAULT_COLOR;
+        }
+        int color = 0xFF000000;
+        for (int c = 0; c < 3; c++) {
+            // Factors are linear; approximate the sRGB curve with a 1/2.2 gamma
+            double linear = Math.max(0, Math.min(1, factor.optDouble(c, 1)));
+            color |= (int) Math.round(Math.pow(linear, 1 / 2.2) * 255) << (16 - c * 8);
+        }
+        return color;
+    }
+
+    private static float[] emptyBounds() {
+        return new float[]{Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+                -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+    }
+
+    private static void include(float[] bounds, float[] point, int offset) {
+        for (int axis = 0; axis < 3; axis++) {
+            bounds[axis] = Math.min(bounds[axis], point[offset + axis]);
+            bounds[axis + 3] = Math.max(bounds[axis + 3], point[offset + axis]);
+        }
+    }
+
+    /**
+     * Growable float array, avoids boxing millions of coordinates
+     */
+    private static class FloatList {
+        private float[] values = new float[1024];
+        private int size;
+
+        void add(float value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * The values followed by extra zeros
+         */
+        float[] toArray(int extra) {
+            return Arrays.copyOf(values, size + extra);
+        }
+    }
+
+    private static class IntList {
+        private int[] values = new int[1024];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * The values followed by extra zeros
+         */
+        int[] toArray(int extra) {
+            return Arrays.copyOf(values, size + extra);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.glbmodelmanager.preview;
+
+import java.util.Arrays;
+
+/**
+ * Flattened triangle soup for the software rasterizer
+ * Positions are in world space (node transforms already applied) and every
+ * triangle carries one flat color
+ */
+public class PreviewMesh {
+
+    private final float[] positions;  // x, y, z per vertex
+    private final int[] indices;      // 3 per triangle
+    private final int[] colors;       // ARGB per triangle
+    private final float[] bounds;     // minX, minY, minZ, maxX, maxY, maxZ
+
+    public PreviewMesh(float[] positions, int[] indices, int[] colors, float[] bounds) {
+        this.positions = positions;
+        this.indices = indices;
+        this.colors = colors;
+        this.bounds = bounds;
+    }
+
+    /**
+     * The 12 triangles of an axis-aligned box, shown while the geometry loads
+     */
+    public static PreviewMesh box(float[] bounds, int color) {
+        float[] positions = new float[8 * 3];
+        for (int corner = 0; corner < 8; corner++) {
+            positions[corner * 3] = (corner & 1) == 0 ? bounds[0] : bounds[3];
+            positions[corner * 3 + 1] = (corner & 2) == 0 ? bounds[1] : bounds[4];
+            positions[corner * 3 + 2] = (corner & 4) == 0 ? bounds[2] : bounds[5];
+        }
+        int[] indices = {
+                0, 2, 1, 1, 2, 3,  // -z
+                4, 5, 6, 5, 7, 6,  // +z
+                0, 1, 4, 1, 5, 4,  // -y
+                2, 6, 3, 3, 6, 7,  // +y
+                0, 4, 2, 2, 4, 6,  // -x
+                1, 3, 5, 3, 7, 5}; // +x
+        int[] colors = new int[12];
+        Arrays.fill(colors, color);
+        return new PreviewMesh(positions, indices, colors, bounds.clone());
+    }
+
+    public float[] getPositions() {
+        return positions;
+    }
+
+    public int[] getIndices() {
+        return indices;
+    }
+
+    public int[] getColors() {
+        return colors;
+    }
+
+    public float[] getBounds() {
+        return bounds;
+    }
+
+    public int getVertexCount() {
+        return positions.length / 3;
+    }
+
+    public int getTriangleCount() {
+        return indices.length / 3;
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.glbmodelmanager.preview;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multithreaded tile-based software rasterizer for the model preview
+ * Needs no GPU, so it runs the same on a phone and on a CI machine.
+ *
+ * A frame runs in three parallel passes:
+ * 1. vertices are projected to screen space,
+ * 2. each worker shades a slice of the triangles and bins them into the
+ *    TILE_SIZE tiles they touch,
+ * 3. workers claim whole tiles and rasterize every triangle binned to them
+ *    against a per-tile depth buffer.
+ * Bins are read back in triangle order, so the image does not depend on the
+ * thread count
+ */
+public class SoftwareRasterizer implements Closeable {
+
+    public static final int TILE_SIZE = 32;
+    public static final int BACKGROUND = 0xFFF2F2F2;
+
+    private static final float AMBIENT = 0.3f;
+    private static final int MIN_VERTICES_PER_TASK = 4096;
+
+    private final int threads;
+    private final ExecutorService executor;
+
+    private int width;
+    private int height;
+    private int tilesX;
+    private int tilesY;
+    private int[] pixels = new int[0];
+    private float[] depth = new float[0];
+
+    // Per-frame scratch, grown as needed and reused between frames
+    private float[] screen = new float[0];  // x, y, z per vertex; NaN x if clipped
+    private int[] shades = new int[0];      // shaded ARGB per triangle
+    private int[][][] bins;                 // [worker][tile] -> triangle indices
+    private int[][] binCounts;              // [worker][tile]
+
+    public SoftwareRasterizer(int threads) {
+        this.threads = Math.max(1, threads);
+        this.executor = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "preview-raster");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Change the frame size; takes effect from the next render
+     */
+    public void setSize(int width, int height) {
+        if (width == this.width && height == this.height) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+        pixels = new int[width * height];
+        depth = new float[width * height];
+        bins = new int[threads][tilesX * tilesY][16];
+        binCounts = new int[threads][tilesX * tilesY];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Draw the mesh and return the frame as ARGB pixels, row by row
+     * The returned array is reused by the next call
+     *
+     * @param viewProjection row-major matrix from world to clip space
+     * @param eye            camera position; the light shines from it towards the model
+     */
+    public int[] render(PreviewMesh mesh, float[] viewProjection, float[] eye) throws InterruptedException {
+        if (width == 0 || height == 0) {
+            return pixels;
+        }
+        int vertexCount = mesh.getVertexCount();
+        int triangleCount = mesh.getTriangleCount();
+        if (screen.length < vertexCount * 3) {
+            screen = new float[vertexCount * 3];
+        }
+        if (shades.length < triangleCount) {
+            shades = new int[triangleCount];
+        }
+
+        // Pass 1: project vertices
+        int vertexTasks = Math.max(1, Math.min(threads, vertexCount / MIN_VERTICES_PER_TASK));
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < vertexTasks; t++) {
+            int from = (int) ((long) vertexCount * t / vertexTasks);
+            int to = (int) ((long) vertexCount * (t + 1) / vertexTasks);
+            tasks.add(() -> {
+                project(mesh.getPositions(), viewProjection, from, to);
+                return null;
+            });
+        }
+        runAll(tasks);
+
+        // Headlight: one direction for the whole frame, so flat faces shade evenly
+        float[] bounds = mesh.getBounds();
+        float[] light = {
+                eye[0] - (bounds[0] + bounds[3]) / 2f,
+                eye[1] - (bounds[1] + bounds[4]) / 2f,
+                eye[2] - (bounds[2] + bounds[5]) / 2f};
+
+        // Pass 2: shade and bin, one contiguous slice of triangles per worker
+        tasks.clear();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            int from = (int) ((long) triangleCount * t / threads);
+            int to = (int) ((long) triangleCount * (t + 1) / threads);
+            tasks.add(() -> {
+                bin(mesh, light, worker, from, to);
+                return null;
+            });
+        }
+        runAll(tasks);
+
+        // Pass 3: rasterize tiles, handed out one at a time
+        AtomicInteger nextTile = new AtomicInteger();
+        tasks.clear();
+        for (int t = 0; t < threads; t++) {
+            tasks.add(() -> {
+                int tile;
+                while ((tile = nextTile.getAndIncrement()) < tilesX * tilesY) {
+                    rasterizeTile(mesh.getIndices(), tile);
+                }
+                return null;
+            });
+        }
+        runAll(tasks);
+        return pixels;
+    }
+
+    private void runAll(List<Callable<Void>> tasks) throws InterruptedException {
+        if (tasks.size() == 1) {
+            try {
+                tasks.get(0).call();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return;
+        }
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    private void project(float[] positions, float[] m, int from, int to) {
+        for (int v = from; v < to; v++) {
+            float x = positions[v * 3];
+            float y = positions[v * 3 + 1];
+            float z = positions[v * 3 + 2];
+            float cx = m[0] * x + m[1] * y + m[2] * z + m[3];
+            float cy = m[4] * x + m[5] * y + m[6] * z + m[7];
+            float cz = m[8] * x + m[9] * y + m[10] * z + m[11];
+            float cw = m[12] * x + m[13] * y + m[14] * z + m[15];
+            // Triangles crossing the near or far plane are dropped rather than
+            // clipped; the orbit camera keeps the model between the planes
+            if (cw <= 1e-6f || cz < -cw || cz > cw) {
+                screen[v * 3] = Float.NaN;
+                continue;
+            }
+            screen[v * 3] = (cx / cw * 0.5f + 0.5f) * width;
+            screen[v * 3 + 1] = (0.5f - cy / cw * 0.5f) * height;
+            screen[v * 3 + 2] = cz / cw;
+        }
+    }
+
+    private void bin(PreviewMesh mesh, float[] light, int worker, int from, int to) {
+        int[] indices = mesh.getIndices();
+        float[] positions = mesh.getPositions();
+        int[] colors = mesh.getColors();
+        int[][] workerBins = bins[worker];
+        int[] counts = binCounts[worker];
+        Arrays.fill(counts, 0);
+
+        for (int t = from; t < to; t++) {
+            int a = indices[t * 3];
+            int b = indices[t * 3 + 1];
+            int c = indices[t * 3 + 2];
+            float ax = screen[a * 3], ay = screen[a * 3 + 1];
+            float bx = screen[b * 3], by = screen[b * 3 + 1];
+            float cx = screen[c * 3], cy = screen[c * 3 + 1];
+            if (Float.isNaN(ax) || Float.isNaN(bx) || Float.isNaN(cx)) {
+                continue;
+            }
+            float area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+            if (area == 0) {
+                continue;
+            }
+
+            // Bounding box of the triangle, clamped to the frame
+            int minX = Math.max(0, (int) Math.floor(Math.min(ax, Math.min(bx, cx))));
+            int maxX = Math.min(width - 1, (int) Math.ceil(Math.max(ax, Math.max(bx, cx))));
+            int minY = Math.max(0, (int) Math.floor(Math.min(ay, Math.min(by, cy))));
+            int maxY = Math.min(height - 1, (int) Math.ceil(Math.max(ay, Math.max(by, cy))));
+            if (minX > maxX || minY > maxY) {
+                continue;
+            }
+
+            shades[t] = shade(positions, a, b, c, light, colors[t]);
+            for (int ty = minY / TILE_SIZE; ty <= maxY / TILE_SIZE; ty++) {
+                for (int tx = minX / TILE_SIZE; tx <= maxX / TILE_SIZE; tx++) {
+                    int tile = ty * tilesX + tx;
+                    int count = counts[tile];
+                    if (count == workerBins[tile].length) {
+                        workerBins[tile] = Arrays.copyOf(workerBins[tile], count * 2);
+                    }
+                    workerBins[tile][count] = t;
+                    counts[tile] = count + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Flat shading: ambient plus diffuse from a directional light
+     * Both faces are lit the same, since many models are single-sided
+     */
+    private static int shade(float[] p, int a, int b, int c, float[] light, int color) {
+        float ux = p[b * 3] - p[a * 3], uy = p[b * 3 + 1] - p[a * 3 + 1], uz = p[b * 3 + 2] - p[a * 3 + 2];
+        float vx = p[c * 3] - p[a * 3], vy = p[c * 3 + 1] - p[a * 3 + 1], vz = p[c * 3 + 2] - p[a * 3 + 2];
+        float nx = uy * vz - uz * vy;
+        float ny = uz * vx - ux * vz;
+        float nz = ux * vy - uy * vx;
+        float dot = nx * light[0] + ny * light[1] + nz * light[2];
+        float lengths = (float) Math.sqrt((nx * nx + ny * ny + nz * nz)
+                * (light[0] * light[0] + light[1] * light[1] + light[2] * light[2]));
+        float intensity = AMBIENT + (1 - AMBIENT) * (lengths > 0 ? Math.abs(dot) / lengths : 0);
+
+        int r = (int) (((color >> 16) & 0xFF) * intensity);
+        int g = (int) (((color >> 8) & 0xFF) * intensity);
+        int bl = (int) ((color & 0xFF) * intensity);
+        return 0xFF000000 | (r << 16) | (g << 8) | bl;
+    }
+
+    private void rasterizeTile(int[] indices, int tile) {
+        int x0 = (tile % tilesX) * TILE_SIZE;
+        int y0 = (tile / tilesX) * TILE_SIZE;
+        int x1 = Math.min(x0 + TILE_SIZE, width) - 1;
+        int y1 = Math.min(y0 + TILE_SIZE, height) - 1;
+        for (int y = y0; y <= y1; y++) {
+            Arrays.fill(pixels, y * width + x0, y * width + x1 + 1, BACKGROUND);
+            Arrays.fill(depth, y * width + x0, y * width + x1 + 1, Float.POSITIVE_INFINITY);
+        }
+
+        for (int worker = 0; worker < threads; worker++) {
+            int[] list = bins[worker][tile];
+            int count = binCounts[worker][tile];
+            for (int i = 0; i < count; i++) {
+                int t = list[i];
+                drawTriangle(indices[t * 3], indices[t * 3 + 1], indices[t * 3 + 2], shades[t], x0, y0, x1, y1);
+            }
+        }
+    }
+
+    /**
+     * Fill the part of one triangle inside the tile, sampling pixel centers
+     * with incrementally stepped edge functions
+     */
+    private void drawTriangle(int a, int b, int c, int color, int x0, int y0, int x1, int y1) {
+        float ax = screen[a * 3], ay = screen[a * 3 + 1], az = screen[a * 3 + 2];
+        float bx = screen[b * 3], by = screen[b * 3 + 1], bz = screen[b * 3 + 2];
+        float cx = screen[c * 3], cy = screen[c * 3 + 1], cz = screen[c * 3 + 2];
+        float area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+        if (area < 0) {
+            // Make the winding positive by swapping b and c
+            float sx = bx, sy = by, sz = bz;
+            bx = cx;
+            by = cy;
+            bz = cz;
+            cx = sx;
+            cy = sy;
+            cz = sz;
+            area = -area;
+        }
+
+        int minX = Math.max(x0, (int) Math.floor(Math.min(ax, Math.min(bx, cx))));
+        int maxX = Math.min(x1, (int) Math.ceil(Math.max(ax, Math.max(bx, cx))));
+        int minY = Math.max(y0, (int) Math.floor(Math.min(ay, Math.min(by, cy))));
+        int maxY = Math.min(y1, (int) Math.ceil(Math.max(ay, Math.max(by, cy))));
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+
+        // Edge function of edge (p, q) at pixel center (x, y):
+        // (qx - px) * (y - py) - (qy - py) * (x - px), stepping by -(qy - py) along x
+        float stepX0 = -(cy - by), stepY0 = cx - bx;  // opposite a
+        float stepX1 = -(ay - cy), stepY1 = ax - cx;  // opposite b
+        float stepX2 = -(by - ay), stepY2 = bx - ax;  // opposite c
+        float px = minX + 0.5f;
+        float py = minY + 0.5f;
+        float row0 = (cx - bx) * (py - by) - (cy - by) * (px - bx);
+        float row1 = (ax - cx) * (py - cy) - (ay - cy) * (px - cx);
+        float row2 = (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+        float inverseArea = 1f / area;
+        float dz1 = (bz - az) * inverseArea;
+        float dz2 = (cz - az) * inverseArea;
+
+        for (int y = minY; y <= maxY; y++) {
+            float w0 = row0, w1 = row1, w2 = row2;
+            int offset = y * width;
+            for (int x = minX; x <= maxX; x++) {
+                if (w0 >= 0 && w1 >= 0 && w2 >= 0) {
+                    float z = az + w1 * dz1 + w2 * dz2;
+                    if (z < depth[offset + x]) {
+                        depth[offset + x] = z;
+                        pixels[offset + x] = color;
+                    }
+                }
+                w0 += stepX0;
+                w1 += stepX1;
+                w2 += stepX2;
+            }
+            row0 += stepY0;
+            row1 += stepY1;
+            row2 += stepY2;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
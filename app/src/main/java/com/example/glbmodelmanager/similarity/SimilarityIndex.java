@@ -0,0 +1,202 @@
+package com.example.glbmodelmanager.similarity;
+
+import android.content.Context;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.example.glbmodelmanager.data.AppDatabase;
+import com.example.glbmodelmanager.data.FingerprintBucket;
+import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.data.GlbModelDao;
+import com.example.glbmodelmanager.data.ModelFingerprint;
+import com.example.glbmodelmanager.glb.GeometryFingerprint;
+import com.example.glbmodelmanager.glb.GeometryStats;
+import com.example.glbmodelmanager.glb.GlbFile;
+import com.example.glbmodelmanager.glb.RuntimeCost;
+import com.example.glbmodelmanager.storage.ModelStorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds models with the same geometry as another, e.g. re-exports of one asset
+ * Fingerprints are split into LSH bands stored in an indexed table, so a lookup
+ * only compares the handful of models that share a band, never the whole library
+ */
+public class SimilarityIndex {
+
+    // With 16 bands of 4 slots, pairs at this similarity are found about 2 times in 3,
+    // and pairs at 0.8 almost always
+    public static final float MIN_SIMILARITY = 0.5f;
+
+    // Bounds proportions may differ this much (a re-export can add or drop a few vertices)
+    private static final float MAX_SHAPE_DIFFERENCE = 0.1f;
+
+    // Stay under SQLite's 999 bound parameters
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    private final AppDatabase database;
+    private final GlbModelDao dao;
+
+    /**
+     * A model similar to the one that was looked up
+     */
+    public static class Match {
+        public final GlbModel model;
+        public final float similarity;  // Estimated share of common geometry, 0 to 1
+
+        Match(GlbModel model, float similarity) {
+            this.model = model;
+            this.similarity = similarity;
+        }
+    }
+
+    /**
+     * Constructor
+     */
+    public SimilarityIndex(Context context) {
+        this(AppDatabase.getDatabase(context));
+    }
+
+    @VisibleForTesting
+    SimilarityIndex(AppDatabase database) {
+        this.database = database;
+        this.dao = database.glbModelDao();
+    }
+
+    /**
+     * Fingerprint a model's file and add it to the index
+     * Its vertex and triangle counts are recorded on the way, for sorting and filtering,
+     * and its runtime cost, for device budgets
+     * Returns false if the model is compressed or has no geometry to fingerprint
+     */
+    public boolean index(GlbModel model) throws IOException {
+        if (ModelStorage.isCompressed(model)) {
+            return false;
+        }
+        GeometryFingerprint fingerprint;
+        GeometryStats stats;
+        RuntimeCost cost;
+        try (GlbFile glb = GlbFile.open(new File(model.getFilePath()))) {
+            stats = GeometryStats.read(glb);
+            cost = RuntimeCost.read(glb);
+            fingerprint = GeometryFingerprint.compute(glb);
+        }
+
+        // Models without geometry get an empty row and no buckets, so they are not read again
+        int id = model.getId();
+        ModelFingerprint row = fingerprint == null
+                ? new ModelFingerprint(id, new byte[0], 0, 0, 0)
+                : new ModelFingerprint(id, GeometryFingerprint.toBytes(fingerprint.getSignature()),
+                        fingerprint.getShapeMid(), fingerprint.getShapeMin(), fingerprint.getVertexCount());
+        List<FingerprintBucket> buckets = new ArrayList<>(GeometryFingerprint.BANDS);
+        for (int band = 0; fingerprint != null && band < GeometryFingerprint.BANDS; band++) {
+            buckets.add(new FingerprintBucket(band, fingerprint.bandHash(band), id));
+        }
+        database.runInTransaction(() -> {
+            dao.deleteFingerprintBuckets(id);
+            dao.insertFingerprint(row);
+            dao.insertFingerprintBuckets(buckets);
+            dao.updateGeometryStats(id, stats.getVertexCount(), stats.getTriangleCount());
+            dao.updateRuntimeCost(id, cost.getGeometryBytes(), cost.getTextureBytes(), cost.getDrawCalls(),
+                    cost.getMaterialCount());
+        });
+        model.setVertexCount(stats.getVertexCount());
+        model.setTriangleCount(stats.getTriangleCount());
+        model.setGeometryBytes(cost.getGeometryBytes());
+        model.setTextureBytes(cost.getTextureBytes());
+        model.setDrawCalls(cost.getDrawCalls());
+        model.setMaterialCount(cost.getMaterialCount());
+        return fingerprint != null;
+    }
+
+    /**
+     * Index several models, skipping any that cannot be read
+     * Used right after import, where a missing fingerprint must not fail the import
+     */
+    public void indexQuietly(List<GlbModel> models) {
+        for (GlbModel model : models) {
+            try {
+                index(model);
+            } catch (IOException | RuntimeException e) {
+                // Left unindexed; FingerprintWorker tries again later
+            }
+        }
+    }
+
+    /**
+     * Models similar to the given one, most similar first
+     * A model that was not fingerprinted yet is indexed first. Returns null if it
+     * cannot be (compressed, or no geometry)
+     */
+    public List<Match> findSimilar(GlbModel model) throws IOException {
+        ModelFingerprint own = dao.getFingerprint(model.getId());
+        if (own == null) {
+            if (!index(model)) {
+                return null;
+            }
+            own = dao.getFingerprint(model.getId());
+        } else if (own.getVertexCount() == 0) {
+            return null;
+        }
+        int[] signature = GeometryFingerprint.fromBytes(own.getSignature());
+
+        // Candidates share an LSH bucket; check each against the full signature
+        List<Integer> candidates = dao.getSimilarCandidates(model.getId());
+        Map<Integer, Float> scores = new HashMap<>();
+        for (int start = 0; start < candidates.size(); start += MAX_IDS_PER_QUERY) {
+            List<Integer> batch = candidates.subList(start,
+                    Math.min(candidates.size(), start + MAX_IDS_PER_QUERY));
+            for (ModelFingerprint other : dao.getFingerprints(batch)) {
+                if (Math.abs(other.getShapeMid() - own.getShapeMid()) > MAX_SHAPE_DIFFERENCE
+                        || Math.abs(other.getShapeMin() - own.getShapeMin()) > MAX_SHAPE_DIFFERENCE) {
+                    continue;
+                }
+                float similarity = GeometryFingerprint.similarity(signature,
+                        GeometryFingerprint.fromBytes(other.getSignature()));
+                if (similarity >= MIN_SIMILARITY) {
+                    scores.put(other.getModelId(), similarity);
+                }
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>(scores.keySet());
+        for (int start = 0; start < ids.size(); start += MAX_IDS_PER_QUERY) {
+            for (GlbModel other : dao.getModelsByIds(
+                    ids.subList(start, Math.min(ids.size(), start + MAX_IDS_PER_QUERY)))) {
+                matches.add(new Match(other, scores.get(other.getId())));
+            }
+        }
+        Collections.sort(matches, (a, b) -> Float.compare(b.similarity, a.similarity));
+        return matches;
+    }
+
+    /**
+     * Fingerprint every uncompressed model that is not in the index yet, or has no geometry
+     * stats or runtime cost
+     * Looks again after each pass, for models added while it was running
+     */
+    public void indexMissing() {
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (int id : dao.getUnindexedModelIds()) {
+                GlbModel model = dao.getModelById(id);
+                try {
+                    if (model != null) {
+                        index(model);
+                        progress = true;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Unreadable file; skipped until the next run
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.glbmodelmanager.storage;
+
+import android.content.Context;
+
+import com.example.glbmodelmanager.data.AppDatabase;
+import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.data.GlbModelDao;
+import com.example.glbmodelmanager.data.ModelPart;
+import com.example.glbmodelmanager.glb.GlbSplitter;
+import com.example.glbmodelmanager.utils.StorageSettings;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves models between storage tiers
+ * Models are stored as plain .glb files and opened directly. When the library
+ * grows past its quota, the least recently opened ones are gzip-compressed, and
+ * a compressed model is decompressed again the next time it is opened
+ */
+public class ModelStorage {
+
+    public static final String COMPRESSED_SUFFIX = ".gz";
+    public static final String PARTS_SUFFIX = ".parts";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Access times only need to be precise enough to order models for compression
+    private static final long ACCESS_RESOLUTION_MS = 60 * 60 * 1000L;
+
+    // Models opened more recently than this stay uncompressed, even over quota
+    private static final long MIN_IDLE_MS = 24 * 60 * 60 * 1000L;
+
+    // Tier changes are rare; one lock keeps a compression and an open of the same model apart
+    private static final Object tierLock = new Object();
+
+    private final AppDatabase database;
+    private final GlbModelDao dao;
+    private final StorageSettings settings;
+
+    /**
+     * Constructor
+     */
+    public ModelStorage(Context context) {
+        this.database = AppDatabase.getDatabase(context);
+        this.dao = database.glbModelDao();
+        this.settings = new StorageSettings(context);
+    }
+
+    public static boolean isCompressed(GlbModel model) {
+        return model.getStorageTier() == GlbModel.TIER_COMPRESSED;
+    }
+
+    /**
+     * File holding a compressed model
+     */
+    public static File getCompressedFile(GlbModel model) {
+        return new File(model.getFilePath() + COMPRESSED_SUFFIX);
+    }
+
+    /**
+     * Directory holding the parts of a split model
+     */
+    public static File getPartsDir(GlbModel model) {
+        return new File(model.getFilePath() + PARTS_SUFFIX);
+    }
+
+    /**
+     * Delete a model's file, whichever tier it is in, and its parts
+     */
+    public static void deleteFiles(GlbModel model) {
+        new File(model.getFilePath()).delete();
+        getCompressedFile(model).delete();
+        deleteDir(getPartsDir(model));
+    }
+
+    /**
+     * Split a model into parts that can be opened on their own and record them
+     * Replaces an earlier split. Parts stay plain .glb files in every tier, so
+     * opening one never needs the whole model. Call off the main thread
+     */
+    public List<ModelPart> split(GlbModel model, GlbSplitter splitter,
+                                 GlbSplitter.ProgressListener listener) throws IOException {
+        File file = open(model);
+        File dir = getPartsDir(model);
+        File temp = new File(dir.getPath() + ".tmp");
+        deleteDir(temp);
+        List<GlbSplitter.Part> split;
+        try {
+            split = splitter.split(file, temp, listener);
+            deleteDir(dir);
+            if (!temp.renameTo(dir)) {
+                throw new IOException("Could not store model parts");
+            }
+        } finally {
+            deleteDir(temp);
+        }
+
+        List<ModelPart> parts = new ArrayList<>();
+        for (int i = 0; i < split.size(); i++) {
+            GlbSplitter.Part part = split.get(i);
+            parts.add(new ModelPart(model.getId(), i, part.getName(),
+                    new File(dir, part.getFileName()).getPath(), part.getFileSize(), part.getTriangleCount()));
+        }
+        database.runInTransaction(() -> {
+            dao.deleteParts(model.getId());
+            dao.insertParts(parts);
+        });
+        return parts;
+    }
+
+    /**
+     * Plain .glb file for a model the user is opening
+     * An uncompressed model is returned straight away and its access recorded
+     * in the background; a compressed one is decompressed first, so call this
+     * off the main thread when isCompressed() is true
+     */
+    public File open(GlbModel model) throws IOException {
+        if (isCompressed(model)) {
+            decompress(model);
+        } else {
+            recordAccess(model);
+        }
+        return new File(model.getFilePath());
+    }
+
+    /**
+     * Read a model's bytes without changing its tier or access time
+     * Compressed models are inflated while they are read
+     */
+    public static InputStream openStream(GlbModel model) throws IOException {
+        if (isCompressed(model)) {
+            return new GZIPInputStream(new FileInputStream(getCompressedFile(model)), BUFFER_SIZE);
+        }
+        return new FileInputStream(model.getFilePath());
+    }
+
+    /**
+     * Compress the least recently opened models until the library fits its quota
+     * Returns the number of models compressed
+     */
+    public int enforceQuota() throws IOException {
+        long quota = settings.getQuotaBytes();
+        if (quota <= 0) {
+            return 0;
+        }
+        long used = dao.getStoredBytes();
+        if (used <= quota) {
+            return 0;
+        }
+
+        long idleBefore = System.currentTimeMillis() - MIN_IDLE_MS;
+        int compressed = 0;
+        for (GlbModel model : dao.getHotModelsByLastAccess()) {
+            if (used <= quota || model.getLastAccessed() > idleBefore) {
+                break; // Sorted by last access, so the rest were opened even more recently
+            }
+            long saved = compress(model);
+            if (saved > 0) {
+                used -= saved;
+                compressed++;
+            }
+        }
+        return compressed;
+    }
+
+    /**
+     * Move a model to the compressed tier
+     * Returns the bytes saved, or 0 if the model was left as it was
+     */
+    long compress(GlbModel model) throws IOException {
+        synchronized (tierLock) {
+            // Skip models deleted, compressed or opened since the candidate list was read
+            GlbModel current = dao.getModelById(model.getId());
+            if (current == null || isCompressed(current)
+                    || current.getLastAccessed() != model.getLastAccessed()) {
+                return 0;
+            }
+            File raw = new File(current.getFilePath());
+            if (!raw.exists()) {
+                return 0;
+            }
+
+            File compressed = getCompressedFile(current);
+            File temp = new File(compressed.getPath() + ".tmp");
+            try {
+                try (InputStream input = new FileInputStream(raw);
+                     OutputStream output = new GZIPOutputStream(new FileOutputStream(temp), BUFFER_SIZE)) {
+                    copy(input, output);
+                }
+                if (temp.length() >= raw.length()) {
+                    return 0; // Nothing to gain (e.g. already Draco and KTX2 compressed)
+                }
+                if (!temp.renameTo(compressed)) {
+                    throw new IOException("Could not store compressed model");
+                }
+            } finally {
+                if (temp.exists()) {
+                    temp.delete();
+                }
+            }
+
+            long saved = raw.length() - compressed.length();
+            current.setStorageTier(GlbModel.TIER_COMPRESSED);
+            current.setStoredSize(compressed.length());
+            dao.update(current);
+            // Only drop the original once the row points at the compressed copy
+            raw.delete();
+            return saved;
+        }
+    }
+
+    /**
+     * Move a model back to the uncompressed tier and record the access
+     */
+    private void decompress(GlbModel model) throws IOException {
+        synchronized (tierLock) {
+            GlbModel current = dao.getModelById(model.getId());
+            if (current == null) {
+                throw new FileNotFoundException("Model was deleted");
+            }
+
+            File raw = new File(current.getFilePath());
+            if (isCompressed(current)) {
+                File compressed = getCompressedFile(current);
+                File temp = new File(raw.getPath() + ".tmp");
+                try {
+                    try (InputStream input = new GZIPInputStream(new FileInputStream(compressed), BUFFER_SIZE);
+                         OutputStream output = new FileOutputStream(temp)) {
+                        copy(input, output);
+                    }
+                    if (!temp.renameTo(raw)) {
+                        throw new IOException("Could not restore model file");
+                    }
+                } finally {
+                    if (temp.exists()) {
+                        temp.delete();
+                    }
+                }
+
+                current.setStorageTier(GlbModel.TIER_HOT);
+                current.setStoredSize(raw.length());
+                current.setLastAccessed(System.currentTimeMillis());
+                dao.update(current);
+                compressed.delete();
+            }
+
+            model.setStorageTier(current.getStorageTier());
+            model.setStoredSize(current.getStoredSize());
+            model.setLastAccessed(current.getLastAccessed());
+        }
+    }
+
+    /**
+     * Update the access time if it is out of date, without blocking the caller
+     */
+    private void recordAccess(GlbModel model) {
+        long now = System.currentTimeMillis();
+        if (now - model.getLastAccessed() < ACCESS_RESOLUTION_MS) {
+            return;
+        }
+        model.setLastAccessed(now);
+        int id = model.getId();
+        AppDatabase.databaseWriteExecutor.execute(() -> dao.updateLastAccessed(id, now));
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static void copy(InputStream input, OutputStream output) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length;
+        while ((length = input.read(buffer)) != -1) {
+            output.write(buffer, 0, length);
+        }
+    }
+}
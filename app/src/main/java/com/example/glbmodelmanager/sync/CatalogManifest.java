@@ -0,0 +1,76 @@
+package com.example.glbmodelmanager.sync;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Model catalog published by a sync server
+ *
+ *   {"models": [{"name": "Chair", "url": "models/chair.glb",
+ *                "size": 123456, "sha256": "9f86d0…"}]}
+ *
+ * Relative URLs are resolved against the manifest's own URL
+ */
+public class CatalogManifest {
+
+    /**
+     * One model offered by the server
+     */
+    public static class Item {
+        public final String name;
+        public final URL url;
+        public final long size;      // Bytes, or -1 if not given
+        public final String sha256;  // Lower-case hex, matches GlbModel.contentHash
+
+        Item(String name, URL url, long size, String sha256) {
+            this.name = name;
+            this.url = url;
+            this.size = size;
+            this.sha256 = sha256;
+        }
+    }
+
+    private final List<Item> items;
+
+    private CatalogManifest(List<Item> items) {
+        this.items = items;
+    }
+
+    /**
+     * Parse a manifest downloaded from base
+     */
+    public static CatalogManifest parse(String json, URL base) throws IOException {
+        try {
+            JSONArray models = new JSONObject(json).getJSONArray("models");
+            List<Item> items = new ArrayList<>(models.length());
+            for (int i = 0; i < models.length(); i++) {
+                JSONObject model = models.getJSONObject(i);
+                String sha256 = model.getString("sha256").toLowerCase(Locale.ROOT);
+                if (!sha256.matches("[0-9a-f]{64}")) {
+                    throw new IOException("Manifest entry " + i + " has an invalid sha256");
+                }
+                items.add(new Item(
+                        model.getString("name"),
+                        new URL(base, model.getString("url")),
+                        model.optLong("size", -1),
+                        sha256));
+            }
+            return new CatalogManifest(items);
+        } catch (JSONException | MalformedURLException e) {
+            throw new IOException("Invalid catalog manifest: " + e.getMessage(), e);
+        }
+    }
+
+    public List<Item> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.glbmodelmanager.sync;
+
+import android.content.Context;
+
+import com.example.glbmodelmanager.data.AppDatabase;
+import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.data.GlbModelDao;
+import com.example.glbmodelmanager.glb.GlbStreamValidator;
+import com.example.glbmodelmanager.importer.ModelImporter;
+import com.example.glbmodelmanager.utils.HashUtils;
+import com.example.glbmodelmanager.utils.SyncSettings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Brings the library up to date with a remote catalog manifest
+ * Models are matched by content hash, so only models missing on this device
+ * are downloaded. Runs on a background thread (see work.SyncWorker)
+ */
+public class CatalogSync {
+
+    // Downloads in progress live here, named by hash, so a retry can resume them
+    public static final String SYNC_DIR = "sync";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_MANIFEST_LENGTH = 16 * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 20_000;
+
+    /**
+     * Outcome of a sync
+     */
+    public static class Result {
+        public boolean notModified;  // Manifest unchanged since the last complete sync
+        public int downloaded;       // Models added to the library
+        public int present;          // Models that were already on this device
+        public int failed;           // Models that could not be downloaded this time
+        public String lastError;
+        public final List<Integer> modelIds = new ArrayList<>();
+    }
+
+    /**
+     * Receives progress while models are downloaded
+     */
+    public interface ProgressListener {
+        void onProgress(int done, int total, String name);
+    }
+
+    private final Context context;
+    private final GlbModelDao dao;
+    private final SyncSettings settings;
+    private final RangeDownloader downloader = new RangeDownloader();
+
+    /**
+     * Constructor
+     */
+    public CatalogSync(Context context) {
+        this.context = context.getApplicationContext();
+        this.dao = AppDatabase.getDatabase(context).glbModelDao();
+        this.settings = new SyncSettings(context);
+    }
+
+    /**
+     * Fetch the configured manifest and download every model not in the library
+     */
+    public Result sync(ProgressListener listener) throws IOException {
+        String manifestUrl = settings.getManifestUrl();
+        if (manifestUrl == null) {
+            throw new IOException("No catalog URL configured");
+        }
+        Result result = new Result();
+
+        // Conditional request: nothing to do if the manifest is unchanged since the last full sync
+        URL url = new URL(manifestUrl);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        String cachedEtag = settings.getManifestEtag();
+        if (cachedEtag != null) {
+            connection.setRequestProperty("If-None-Match", cachedEtag);
+        }
+        CatalogManifest manifest;
+        String etag;
+        try {
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                result.notModified = true;
+                return result;
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new RangeDownloader.HttpStatusException(code, url);
+            }
+            etag = connection.getHeaderField("ETag");
+            manifest = CatalogManifest.parse(readText(connection), url);
+        } finally {
+            connection.disconnect();
+        }
+
+        // Diff by content hash against the library
+        Set<String> knownHashes = new HashSet<>(dao.getContentHashes());
+        List<CatalogManifest.Item> missing = new ArrayList<>();
+        for (CatalogManifest.Item item : manifest.getItems()) {
+            if (knownHashes.add(item.sha256)) {
+                missing.add(item);
+            } else {
+                result.present++;
+            }
+        }
+
+        File syncDir = new File(context.getFilesDir(), SYNC_DIR);
+        syncDir.mkdirs();
+        for (int i = 0; i < missing.size(); i++) {
+            CatalogManifest.Item item = missing.get(i);
+            if (listener != null) {
+                listener.onProgress(i, missing.size(), item.name);
+            }
+            try {
+                result.modelIds.add(downloadModel(item, syncDir));
+                result.downloaded++;
+            } catch (IOException e) {
+                // Keep going; the partial download is kept for the next sync
+                result.failed++;
+                result.lastError = item.name + ": " + e.getMessage();
+            }
+        }
+        if (listener != null) {
+            listener.onProgress(missing.size(), missing.size(), null);
+        }
+
+        // Only a complete sync may skip the next one with If-None-Match
+        if (result.failed == 0 && etag != null) {
+            settings.setManifestEtag(etag);
+        }
+        return result;
+    }
+
+    /**
+     * Download one model, check it and add it to the library
+     * Returns the new model ID
+     */
+    private int downloadModel(CatalogManifest.Item item, File syncDir) throws IOException {
+        File download = new File(syncDir, item.sha256 + ".glb");
+        downloader.download(item.url, download, null);
+
+        try {
+            String hash = hashValidated(download);
+            if (!hash.equals(item.sha256)) {
+                throw new IOException("Checksum mismatch");
+            }
+
+            long timestamp = System.currentTimeMillis();
+            String fileName = timestamp + "_" + safeFileName(item.name) + ".glb";
+            File dest = new File(ModelImporter.getModelsDir(context), fileName);
+            if (!download.renameTo(dest)) {
+                throw new IOException("Could not move model into the library");
+            }
+            GlbModel model = new GlbModel(item.name, fileName, dest.getAbsolutePath(), dest.length(), timestamp);
+            model.setContentHash(hash);
+            try {
+                return (int) dao.insert(model);
+            } catch (RuntimeException e) {
+                dest.delete();
+                throw e;
+            }
+        } finally {
+            // A bad file will not get better, and a good one has been moved
+            download.delete();
+        }
+    }
+
+    /**
+     * SHA-256 of a downloaded file, checking it is a complete GLB on the way
+     */
+    private static String hashValidated(File file) throws IOException {
+        GlbStreamValidator validator = new GlbStreamValidator();
+        MessageDigest digest = HashUtils.newSha256();
+        try (InputStream input = new FileInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                validator.update(buffer, 0, length);
+                digest.update(buffer, 0, length);
+            }
+        }
+        validator.finish();
+        return HashUtils.toHex(digest.digest());
+    }
+
+    private static String readText(HttpURLConnection connection) throws IOException {
+        try (InputStream input = connection.getInputStream()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                output.write(buffer, 0, length);
+                if (output.size() > MAX_MANIFEST_LENGTH) {
+                    throw new IOException("Catalog manifest is too large");
+                }
+            }
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Model names come from the server; keep them out of paths
+     */
+    private static String safeFileName(String name) {
+        String safe = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        return safe.isEmpty() ? "model" : safe;
+    }
+}
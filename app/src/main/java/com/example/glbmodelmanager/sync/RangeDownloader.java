@@ -0,0 +1,537 @@
+package com.example.glbmodelmanager.sync;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads a file over HTTP in parallel byte-range segments
+ * Progress is checkpointed next to the destination, so an interrupted download
+ * resumes where each segment stopped. Resumed requests carry If-Range with the
+ * ETag, so a file that changed on the server is fetched again from scratch
+ * instead of being stitched together from two versions
+ */
+public class RangeDownloader {
+
+    static final String PART_SUFFIX = ".part";
+    static final String STATE_SUFFIX = ".part.state";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Files are split into at most this many segments of at least this size
+    private static final int MAX_SEGMENTS = 4;
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    // Per-segment retry policy: bounded exponential backoff
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long INITIAL_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 15_000;
+
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 20_000;
+
+    // Resume state is saved whenever a segment has fetched this much more
+    private static final long CHECKPOINT_BYTES = 1024 * 1024;
+
+    /**
+     * Receives byte progress; called from the download threads
+     */
+    public interface ProgressListener {
+        void onProgress(long done, long total);
+    }
+
+    /**
+     * Non-success HTTP status
+     */
+    public static class HttpStatusException extends IOException {
+        public final int code;
+
+        HttpStatusException(int code, URL url) {
+            super("HTTP " + code + " for " + url);
+            this.code = code;
+        }
+
+        /**
+         * Server errors and throttling may clear up; other client errors will not
+         */
+        boolean isRetryable() {
+            return code >= 500 || code == 408 || code == 429;
+        }
+    }
+
+    /**
+     * The server no longer serves the version the partial download came from
+     */
+    private static class RemoteChangedException extends IOException {
+        RemoteChangedException() {
+            super("File changed on the server");
+        }
+    }
+
+    private final int maxSegments;
+    private final long minSegmentSize;
+
+    /**
+     * Constructor
+     */
+    public RangeDownloader() {
+        this(MAX_SEGMENTS, MIN_SEGMENT_SIZE);
+    }
+
+    RangeDownloader(int maxSegments, long minSegmentSize) {
+        this.maxSegments = maxSegments;
+        this.minSegmentSize = minSegmentSize;
+    }
+
+    /**
+     * Download url into dest, resuming an earlier partial download if possible
+     * dest only appears once every byte has arrived
+     */
+    public void download(URL url, File dest, ProgressListener listener) throws IOException {
+        try {
+            downloadOnce(url, dest, listener);
+        } catch (RemoteChangedException e) {
+            // Drop the stale partial file and start over, once
+            discardPartial(dest);
+            downloadOnce(url, dest, listener);
+        }
+    }
+
+    /**
+     * Remove the partial file and resume state of a download
+     */
+    public static void discardPartial(File dest) {
+        new File(dest.getPath() + PART_SUFFIX).delete();
+        new File(dest.getPath() + STATE_SUFFIX).delete();
+    }
+
+    private void downloadOnce(URL url, File dest, ProgressListener listener) throws IOException {
+        File part = new File(dest.getPath() + PART_SUFFIX);
+        File stateFile = new File(dest.getPath() + STATE_SUFFIX);
+
+        // A one-byte range request tells us the size, the ETag and whether ranges work
+        long length;
+        String etag;
+        HttpURLConnection probe = open(url);
+        probe.setRequestProperty("Range", "bytes=0-0");
+        try {
+            int code = probe.getResponseCode();
+            if (code == HttpURLConnection.HTTP_OK) {
+                // No range support: take the full response we already have, without resume
+                discardPartial(dest);
+                streamAll(probe, part, listener);
+                moveIntoPlace(part, stateFile, dest, -1);
+                return;
+            }
+            if (code != HttpURLConnection.HTTP_PARTIAL) {
+                throw new HttpStatusException(code, url);
+            }
+            length = parseTotalLength(probe.getHeaderField("Content-Range"));
+            etag = strongEtag(probe.getHeaderField("ETag"));
+        } finally {
+            probe.disconnect();
+        }
+        if (length < 0) {
+            throw new IOException("Server did not report the size of " + url);
+        }
+
+        // Resume only if the partial file is known to come from the same version
+        State state = State.load(stateFile);
+        if (state == null || etag == null || !etag.equals(state.etag) || state.length != length
+                || part.length() != length) {
+            discardPartial(dest);
+            state = State.plan(etag, length, maxSegments, minSegmentSize);
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+            file.setLength(length);
+            state.save(stateFile);
+            new Transfer(url, state, stateFile, file.getChannel(), listener).run();
+        }
+        moveIntoPlace(part, stateFile, dest, length);
+    }
+
+    /**
+     * One download in progress: the shared pieces every segment thread needs
+     */
+    private class Transfer {
+        private final URL url;
+        private final State state;
+        private final File stateFile;
+        private final FileChannel channel;
+        private final ProgressListener listener;
+        private final AtomicLong received;
+        private final AtomicBoolean failed = new AtomicBoolean(false);
+
+        Transfer(URL url, State state, File stateFile, FileChannel channel, ProgressListener listener) {
+            this.url = url;
+            this.state = state;
+            this.stateFile = stateFile;
+            this.channel = channel;
+            this.listener = listener;
+            this.received = new AtomicLong(state.doneBytes());
+        }
+
+        /**
+         * Fetch every unfinished segment, one thread each
+         */
+        void run() throws IOException {
+            List<Segment> pending = new ArrayList<>();
+            for (Segment segment : state.segments) {
+                if (!segment.isComplete()) {
+                    pending.add(segment);
+                }
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(pending.size());
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (Segment segment : pending) {
+                    futures.add(pool.submit(() -> {
+                        try {
+                            fetchSegment(segment);
+                        } catch (IOException | RuntimeException e) {
+                            failed.set(true); // Stop the other segments early
+                            throw e;
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                failed.set(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Download cancelled");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            } finally {
+                pool.shutdown();
+                awaitQuietly(pool);
+                // Keep whatever arrived for the next attempt
+                state.save(stateFile);
+            }
+        }
+
+        private void fetchSegment(Segment segment) throws IOException {
+            IOException lastError = null;
+            for (int attempt = 0; attempt < MAX_ATTEMPTS && !segment.isComplete(); attempt++) {
+                if (attempt > 0) {
+                    sleepBackoff(attempt);
+                }
+                if (failed.get()) {
+                    return;
+                }
+                try {
+                    fetchRange(segment);
+                } catch (RemoteChangedException e) {
+                    throw e;
+                } catch (HttpStatusException e) {
+                    if (!e.isRetryable()) {
+                        throw e;
+                    }
+                    lastError = e;
+                } catch (IOException e) {
+                    lastError = e;
+                }
+            }
+            if (!segment.isComplete() && !failed.get()) {
+                throw lastError != null ? lastError : new IOException("Download did not complete");
+            }
+        }
+
+        /**
+         * One request for the rest of a segment
+         */
+        private void fetchRange(Segment segment) throws IOException {
+            long from = segment.position();
+            HttpURLConnection connection = open(url);
+            connection.setRequestProperty("Range", "bytes=" + from + "-" + segment.end);
+            if (state.etag != null) {
+                connection.setRequestProperty("If-Range", state.etag);
+            }
+            try {
+                int code = connection.getResponseCode();
+                if (code == HttpURLConnection.HTTP_OK) {
+                    throw new RemoteChangedException(); // If-Range did not match
+                }
+                if (code != HttpURLConnection.HTTP_PARTIAL) {
+                    throw new HttpStatusException(code, url);
+                }
+                if (parseRangeStart(connection.getHeaderField("Content-Range")) != from) {
+                    throw new IOException("Server sent the wrong range");
+                }
+
+                try (InputStream input = connection.getInputStream()) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    long sinceCheckpoint = 0;
+                    while (!segment.isComplete() && !failed.get()) {
+                        int length = input.read(buffer, 0, (int) Math.min(buffer.length, segment.remaining()));
+                        if (length == -1) {
+                            throw new IOException("Connection closed early");
+                        }
+                        ByteBuffer data = ByteBuffer.wrap(buffer, 0, length);
+                        long position = segment.position();
+                        while (data.hasRemaining()) {
+                            position += channel.write(data, position);
+                        }
+                        // Only count bytes once they are written
+                        segment.done += length;
+                        sinceCheckpoint += length;
+
+                        long total = received.addAndGet(length);
+                        if (sinceCheckpoint >= CHECKPOINT_BYTES) {
+                            sinceCheckpoint = 0;
+                            state.save(stateFile);
+                            if (listener != null) {
+                                listener.onProgress(total, state.length);
+                            }
+                        }
+                    }
+                }
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Byte range of the file fetched by one thread
+     */
+    static class Segment {
+        final long start;
+        final long end;      // Inclusive
+        volatile long done;  // Bytes written so far (only the owning thread writes this)
+
+        Segment(long start, long end, long done) {
+            this.start = start;
+            this.end = end;
+            this.done = done;
+        }
+
+        long position() {
+            return start + done;
+        }
+
+        long remaining() {
+            return end - start + 1 - done;
+        }
+
+        boolean isComplete() {
+            return remaining() <= 0;
+        }
+    }
+
+    /**
+     * Segment plan and progress, saved next to the partial file
+     */
+    static class State {
+        final String etag;
+        final long length;
+        final List<Segment> segments;
+
+        State(String etag, long length, List<Segment> segments) {
+            this.etag = etag;
+            this.length = length;
+            this.segments = segments;
+        }
+
+        static State plan(String etag, long length, int maxSegments, long minSegmentSize) {
+            int count = (int) Math.max(1, Math.min(maxSegments, length / minSegmentSize));
+            long size = (length + count - 1) / count;
+            List<Segment> segments = new ArrayList<>();
+            for (long start = 0; start < length; start += size) {
+                segments.add(new Segment(start, Math.min(length, start + size) - 1, 0));
+            }
+            return new State(etag, length, segments);
+        }
+
+        /**
+         * Read saved state, or null if there is none or it cannot be used
+         */
+        static State load(File file) {
+            if (!file.exists()) {
+                return null;
+            }
+            Properties properties = new Properties();
+            try (InputStream input = new FileInputStream(file)) {
+                properties.load(input);
+                int count = Integer.parseInt(properties.getProperty("segments"));
+                List<Segment> segments = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    segments.add(new Segment(
+                            Long.parseLong(properties.getProperty("segment." + i + ".start")),
+                            Long.parseLong(properties.getProperty("segment." + i + ".end")),
+                            Long.parseLong(properties.getProperty("segment." + i + ".done"))));
+                }
+                return new State(properties.getProperty("etag"),
+                        Long.parseLong(properties.getProperty("length")), segments);
+            } catch (IOException | RuntimeException e) {
+                return null; // Damaged state: start over
+            }
+        }
+
+        synchronized void save(File file) throws IOException {
+            Properties properties = new Properties();
+            if (etag != null) {
+                properties.setProperty("etag", etag);
+            }
+            properties.setProperty("length", String.valueOf(length));
+            properties.setProperty("segments", String.valueOf(segments.size()));
+            for (int i = 0; i < segments.size(); i++) {
+                Segment segment = segments.get(i);
+                properties.setProperty("segment." + i + ".start", String.valueOf(segment.start));
+                properties.setProperty("segment." + i + ".end", String.valueOf(segment.end));
+                properties.setProperty("segment." + i + ".done", String.valueOf(segment.done));
+            }
+            // Write then rename, so a crash never leaves half a state file
+            File temp = new File(file.getPath() + ".tmp");
+            try (OutputStream output = new FileOutputStream(temp)) {
+                properties.store(output, null);
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not save download state");
+            }
+        }
+
+        long doneBytes() {
+            long done = 0;
+            for (Segment segment : segments) {
+                done += segment.done;
+            }
+            return done;
+        }
+    }
+
+    /**
+     * Copy a whole response body (servers without range support)
+     */
+    private static void streamAll(HttpURLConnection connection, File part, ProgressListener listener)
+            throws IOException {
+        long total = connection.getContentLengthLong();
+        try (InputStream input = connection.getInputStream();
+             OutputStream output = new FileOutputStream(part)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long done = 0;
+            long sinceReport = 0;
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                output.write(buffer, 0, length);
+                done += length;
+                sinceReport += length;
+                if (listener != null && sinceReport >= CHECKPOINT_BYTES) {
+                    sinceReport = 0;
+                    listener.onProgress(done, total);
+                }
+            }
+            if (total >= 0 && done != total) {
+                throw new IOException("Connection closed early");
+            }
+        }
+    }
+
+    private static void moveIntoPlace(File part, File stateFile, File dest, long length) throws IOException {
+        if (length >= 0 && part.length() != length) {
+            throw new IOException("Downloaded file has the wrong size");
+        }
+        if (dest.exists()) {
+            dest.delete();
+        }
+        if (!part.renameTo(dest)) {
+            throw new IOException("Could not move download into place");
+        }
+        stateFile.delete();
+    }
+
+    private static HttpURLConnection open(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        // Ranges count raw bytes; a transparently gzipped body would not line up with them
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        return connection;
+    }
+
+    /**
+     * Total size from "bytes 0-0/12345", or -1 if the server does not say
+     */
+    static long parseTotalLength(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        try {
+            return slash < 0 ? -1 : Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * First byte from "bytes 100-199/12345", or -1 if it cannot be read
+     */
+    static long parseRangeStart(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+        int dash = contentRange.indexOf('-');
+        try {
+            return dash < 0 ? -1 : Long.parseLong(contentRange.substring(6, dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * If-Range only works with strong validators, so weak ETags are ignored
+     */
+    private static String strongEtag(String etag) {
+        return etag == null || etag.startsWith("W/") ? null : etag;
+    }
+
+    private static void awaitQuietly(ExecutorService pool) {
+        try {
+            pool.awaitTermination(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepBackoff(int attempt) throws IOException {
+        long delay = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << (attempt - 1));
+        // Up to 25% jitter so segments do not retry in lockstep
+        delay += (long) (Math.random() * delay / 4);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download cancelled");
+        }
+    }
+}
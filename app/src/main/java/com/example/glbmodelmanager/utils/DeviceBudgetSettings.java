@@ -0,0 +1,70 @@
+package com.example.glbmodelmanager.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.glbmodelmanager.glb.RuntimeCost;
+
+/**
+ * Runtime budgets per class of field device, and the class models are checked
+ * against, stored in SharedPreferences
+ */
+public class DeviceBudgetSettings {
+
+    private static final String PREF_NAME = "DeviceBudgetSettings";
+    private static final String KEY_DEVICE_CLASS = "device_class";
+    private static final String KEY_MEMORY_MB = "memory_mb_";
+    private static final String KEY_DRAW_CALLS = "draw_calls_";
+    private static final String KEY_MATERIALS = "materials_";
+
+    public static final int CLASS_LOW = 0;
+    public static final int CLASS_MID = 1;
+    public static final int CLASS_HIGH = 2;
+
+    public static final String[] CLASS_NAMES = {"Low-end", "Mid-range", "High-end"};
+
+    // Defaults per class: GPU memory for one model (MB), draw calls, materials
+    private static final int[] DEFAULT_MEMORY_MB = {128, 256, 512};
+    private static final int[] DEFAULT_DRAW_CALLS = {100, 300, 1000};
+    private static final int[] DEFAULT_MATERIALS = {16, 32, 64};
+
+    private final SharedPreferences prefs;
+
+    public DeviceBudgetSettings(Context context) {
+        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Device class models are checked against
+     */
+    public int getDeviceClass() {
+        int deviceClass = prefs.getInt(KEY_DEVICE_CLASS, CLASS_MID);
+        return deviceClass >= 0 && deviceClass < CLASS_NAMES.length ? deviceClass : CLASS_MID;
+    }
+
+    public void setDeviceClass(int deviceClass) {
+        prefs.edit().putInt(KEY_DEVICE_CLASS, deviceClass).apply();
+    }
+
+    /**
+     * Budget of the selected device class
+     */
+    public RuntimeCost.Budget getBudget() {
+        return getBudget(getDeviceClass());
+    }
+
+    public RuntimeCost.Budget getBudget(int deviceClass) {
+        return new RuntimeCost.Budget(CLASS_NAMES[deviceClass],
+                prefs.getInt(KEY_MEMORY_MB + deviceClass, DEFAULT_MEMORY_MB[deviceClass]),
+                prefs.getInt(KEY_DRAW_CALLS + deviceClass, DEFAULT_DRAW_CALLS[deviceClass]),
+                prefs.getInt(KEY_MATERIALS + deviceClass, DEFAULT_MATERIALS[deviceClass]));
+    }
+
+    public void setBudget(int deviceClass, int memoryMb, int drawCalls, int materials) {
+        prefs.edit()
+                .putInt(KEY_MEMORY_MB + deviceClass, memoryMb)
+                .putInt(KEY_DRAW_CALLS + deviceClass, drawCalls)
+                .putInt(KEY_MATERIALS + deviceClass, materials)
+                .apply();
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.glbmodelmanager.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.glbmodelmanager.diagnostics.QueryStats;
+
+/**
+ * Admin settings for diagnostics
+ */
+public class DiagnosticsSettings {
+
+    private static final String PREF_NAME = "DiagnosticsSettings";
+    private static final String KEY_SLOW_QUERY_MS = "slow_query_ms";
+
+    private final SharedPreferences prefs;
+
+    public DiagnosticsSettings(Context context) {
+        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Queries slower than this are logged with their (redacted) SQL
+     */
+    public long getSlowQueryThresholdMs() {
+        return prefs.getLong(KEY_SLOW_QUERY_MS, QueryStats.DEFAULT_SLOW_QUERY_MS);
+    }
+
+    public void setSlowQueryThresholdMs(long thresholdMs) {
+        prefs.edit().putLong(KEY_SLOW_QUERY_MS, thresholdMs).apply();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.glbmodelmanager.utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helpers for content hashes of model files
+ */
+public class HashUtils {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * New SHA-256 digest (always available on Android)
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Lowercase hex string of a digest
+     */
+    public static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[i * 2] = HEX[(bytes[i] >> 4) & 0x0F];
+            out[i * 2 + 1] = HEX[bytes[i] & 0x0F];
+        }
+        return new String(out);
+    }
+}
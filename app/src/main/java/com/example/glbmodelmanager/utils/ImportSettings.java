@@ -0,0 +1,187 @@
+package com.example.glbmodelmanager.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.glbmodelmanager.glb.MeshInstancer;
+
+/**
+ * Import pipeline settings stored in SharedPreferences
+ * Read from the background import thread, never from the UI thread
+ */
+public class ImportSettings {
+
+    private static final String PREF_NAME = "ImportSettings";
+    private static final String KEY_OPTIMIZE_TEXTURES = "optimize_textures";
+    private static final String KEY_MAX_TEXTURE_SIZE = "max_texture_size";
+    private static final String KEY_TEXTURE_FORMAT = "texture_format";
+    private static final String KEY_TEXTURE_QUALITY = "texture_quality";
+    private static final String KEY_MIN_TEXTURE_QUALITY = "min_texture_quality";
+    private static final String KEY_TEXTURE_BITS_PER_PIXEL = "texture_bits_per_pixel";
+    private static final String KEY_OPTIMIZE_WHILE_CHARGING = "optimize_while_charging";
+    private static final String KEY_INSTANCE_MESHES = "instance_meshes";
+    private static final String KEY_INSTANCE_TOLERANCE = "instance_tolerance";
+    private static final String KEY_COMPRESS_ANIMATIONS = "compress_animations";
+    private static final String KEY_ANIMATION_SAMPLE_RATE = "animation_sample_rate";
+    private static final String KEY_ANIMATION_TRANSLATION_TOLERANCE = "animation_translation_tolerance";
+    private static final String KEY_ANIMATION_ROTATION_TOLERANCE = "animation_rotation_tolerance";
+    private static final String KEY_ANIMATION_SCALE_TOLERANCE = "animation_scale_tolerance";
+    private static final String KEY_ANIMATION_WEIGHT_TOLERANCE = "animation_weight_tolerance";
+    private static final String KEY_QUANTIZE_ROTATIONS = "quantize_rotations";
+
+    // Texture output formats
+    public static final String FORMAT_JPEG = "jpeg";
+    public static final String FORMAT_WEBP = "webp";
+
+    private SharedPreferences prefs;
+
+    /**
+     * Constructor
+     */
+    public ImportSettings(Context context) {
+        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Whether embedded textures are downscaled and re-encoded at import
+     */
+    public boolean isTextureOptimizationEnabled() {
+        return prefs.getBoolean(KEY_OPTIMIZE_TEXTURES, true);
+    }
+
+    /**
+     * Largest allowed texture width or height in pixels
+     */
+    public int getMaxTextureSize() {
+        return prefs.getInt(KEY_MAX_TEXTURE_SIZE, 2048);
+    }
+
+    /**
+     * Output format for re-encoded textures (jpeg or webp)
+     */
+    public String getTextureFormat() {
+        return prefs.getString(KEY_TEXTURE_FORMAT, FORMAT_JPEG);
+    }
+
+    /**
+     * Starting encoder quality (0-100)
+     */
+    public int getTextureQuality() {
+        return prefs.getInt(KEY_TEXTURE_QUALITY, 85);
+    }
+
+    /**
+     * Lowest encoder quality the size budget may push us down to
+     */
+    public int getMinTextureQuality() {
+        return prefs.getInt(KEY_MIN_TEXTURE_QUALITY, 60);
+    }
+
+    /**
+     * Size budget for an encoded texture, in bits per pixel
+     */
+    public float getTextureBitsPerPixel() {
+        return prefs.getFloat(KEY_TEXTURE_BITS_PER_PIXEL, 2.0f);
+    }
+
+    /**
+     * Whether repeated meshes are drawn with GPU instancing (EXT_mesh_gpu_instancing) at import
+     * Off by default: viewers without the extension cannot open the result
+     */
+    public boolean isMeshInstancingEnabled() {
+        return prefs.getBoolean(KEY_INSTANCE_MESHES, false);
+    }
+
+    /**
+     * How far two copies of a mesh may differ, as a fraction of the mesh's size
+     */
+    public float getInstanceTolerance() {
+        return prefs.getFloat(KEY_INSTANCE_TOLERANCE, MeshInstancer.DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Whether animation keyframes are resampled and reduced at import
+     * Off by default: every original key is replayed within the tolerances below
+     * (quantized rotations included), but the result is not identical
+     */
+    public boolean isAnimationCompressionEnabled() {
+        return prefs.getBoolean(KEY_COMPRESS_ANIMATIONS, false);
+    }
+
+    /**
+     * Key rate animations are resampled down to, in keys per second (0 keeps the original rate)
+     */
+    public int getAnimationSampleRate() {
+        return prefs.getInt(KEY_ANIMATION_SAMPLE_RATE, 30);
+    }
+
+    /**
+     * Largest allowed translation error, in model units
+     */
+    public float getAnimationTranslationTolerance() {
+        return prefs.getFloat(KEY_ANIMATION_TRANSLATION_TOLERANCE, 1e-4f);
+    }
+
+    /**
+     * Largest allowed rotation error, in degrees
+     */
+    public float getAnimationRotationTolerance() {
+        return prefs.getFloat(KEY_ANIMATION_ROTATION_TOLERANCE, 0.1f);
+    }
+
+    /**
+     * Largest allowed error of a scale factor
+     */
+    public float getAnimationScaleTolerance() {
+        return prefs.getFloat(KEY_ANIMATION_SCALE_TOLERANCE, 1e-3f);
+    }
+
+    /**
+     * Largest allowed error of a morph target weight
+     */
+    public float getAnimationWeightTolerance() {
+        return prefs.getFloat(KEY_ANIMATION_WEIGHT_TOLERANCE, 1e-3f);
+    }
+
+    /**
+     * Whether compressed rotation keys are stored as 16-bit normalized integers
+     */
+    public boolean isAnimationRotationQuantized() {
+        return prefs.getBoolean(KEY_QUANTIZE_ROTATIONS, true);
+    }
+
+    /**
+     * Whether the optimization stage waits until the device is charging
+     */
+    public boolean isOptimizeOnlyWhileCharging() {
+        return prefs.getBoolean(KEY_OPTIMIZE_WHILE_CHARGING, true);
+    }
+
+    public void setOptimizeOnlyWhileCharging(boolean chargingOnly) {
+        prefs.edit().putBoolean(KEY_OPTIMIZE_WHILE_CHARGING, chargingOnly).apply();
+    }
+
+    public void setTextureOptimizationEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_OPTIMIZE_TEXTURES, enabled).apply();
+    }
+
+    public void setMeshInstancingEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_INSTANCE_MESHES, enabled).apply();
+    }
+
+    public void setAnimationCompressionEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_COMPRESS_ANIMATIONS, enabled).apply();
+    }
+
+    public void setAnimationSampleRate(int keysPerSecond) {
+        prefs.edit().putInt(KEY_ANIMATION_SAMPLE_RATE, keysPerSecond).apply();
+    }
+
+    public void setMaxTextureSize(int size) {
+        prefs.edit().putInt(KEY_MAX_TEXTURE_SIZE, size).apply();
+    }
+
+    public void setTextureFormat(String format) {
+        prefs.edit().putString(KEY_TEXTURE_FORMAT, format).apply();
+    }
+}
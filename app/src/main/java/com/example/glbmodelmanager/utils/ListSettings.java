@@ -0,0 +1,46 @@
+package com.example.glbmodelmanager.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.glbmodelmanager.data.ModelQuery;
+
+/**
+ * Sort order and layout of the dashboard model lists, stored in SharedPreferences
+ * Filters are not stored; every visit starts with the full list
+ */
+public class ListSettings {
+
+    private static final String PREF_NAME = "ListSettings";
+    private static final String KEY_SORT = "sort";
+    private static final String KEY_GRID = "grid";
+
+    private final SharedPreferences prefs;
+
+    public ListSettings(Context context) {
+        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * One of the ModelQuery.SORT_* values
+     */
+    public int getSort() {
+        int sort = prefs.getInt(KEY_SORT, ModelQuery.SORT_NEWEST);
+        return sort >= 0 && sort < ModelQuery.SORT_LABELS.length ? sort : ModelQuery.SORT_NEWEST;
+    }
+
+    public void setSort(int sort) {
+        prefs.edit().putInt(KEY_SORT, sort).apply();
+    }
+
+    /**
+     * Whether models are shown as a grid of previews instead of text rows
+     */
+    public boolean isGrid() {
+        return prefs.getBoolean(KEY_GRID, false);
+    }
+
+    public void setGrid(boolean grid) {
+        prefs.edit().putBoolean(KEY_GRID, grid).apply();
+    }
+}
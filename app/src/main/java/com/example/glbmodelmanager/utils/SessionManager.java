@@ -2,10 +2,21 @@ package com.example.glbmodelmanager.utils;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Manages user session using SharedPreferences
  * Stores logged-in user information
+ * The stored session is read once per process on a background thread and kept
+ * in memory, so getters never touch disk or wait on the main thread. Until the
+ * read finishes they report a logged-out session; use whenLoaded to wait for it
  */
 public class SessionManager {
 
@@ -15,61 +26,190 @@ public class SessionManager {
     private static final String KEY_ROLE = "role";
     private static final String KEY_IS_LOGGED_IN = "is_logged_in";
 
-    private SharedPreferences prefs;
-    private SharedPreferences.Editor editor;
+    // In-memory session shared by the whole process
+    private static final Object lock = new Object();
+    private static Session session;
+    private static boolean loading;
+    private static final List<Runnable> pendingCallbacks = new ArrayList<>();
+
+    private final Context context;
+
+    /**
+     * Immutable snapshot of the stored session
+     */
+    private static class Session {
+        static final Session LOGGED_OUT = new Session(false, -1, null, null);
+
+        final boolean loggedIn;
+        final int userId;
+        final String username;
+        final String role;
+
+        Session(boolean loggedIn, int userId, String username, String role) {
+            this.loggedIn = loggedIn;
+            this.userId = userId;
+            this.username = username;
+            this.role = role;
+        }
+
+        static Session read(SharedPreferences prefs) {
+            return new Session(
+                    prefs.getBoolean(KEY_IS_LOGGED_IN, false),
+                    prefs.getInt(KEY_USER_ID, -1),
+                    prefs.getString(KEY_USERNAME, null),
+                    prefs.getString(KEY_ROLE, null));
+        }
+    }
 
     /**
      * Constructor
      */
     public SessionManager(Context context) {
-        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
-        editor = prefs.edit();
+        this.context = context.getApplicationContext();
+        preload(this.context);
+    }
+
+    /**
+     * Start reading the stored session in the background
+     * Called at process start; later calls do nothing
+     */
+    public static void preload(Context context) {
+        Context appContext = context.getApplicationContext();
+        synchronized (lock) {
+            if (session != null || loading) {
+                return;
+            }
+            loading = true;
+        }
+
+        new Thread(() -> {
+            Trace.beginSection("SessionManager.load");
+            try {
+                publish(Session.read(getPrefs(appContext)), false);
+            } finally {
+                Trace.endSection();
+            }
+        }, "session-load").start();
+    }
+
+    /**
+     * Whether the stored session has been read into memory
+     */
+    public boolean isLoaded() {
+        synchronized (lock) {
+            return session != null;
+        }
+    }
+
+    /**
+     * Run callback once the session is in memory
+     * Runs immediately if it already is, otherwise later on the main thread
+     */
+    public void whenLoaded(Runnable callback) {
+        synchronized (lock) {
+            if (session == null) {
+                pendingCallbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
     }
 
     /**
      * Save user session after successful login
      */
     public void saveSession(int userId, String username, String role) {
-        editor.putInt(KEY_USER_ID, userId);
-        editor.putString(KEY_USERNAME, username);
-        editor.putString(KEY_ROLE, role);
-        editor.putBoolean(KEY_IS_LOGGED_IN, true);
-        editor.apply();
+        publish(new Session(true, userId, username, role), true);
+        getPrefs(context).edit()
+                .putInt(KEY_USER_ID, userId)
+                .putString(KEY_USERNAME, username)
+                .putString(KEY_ROLE, role)
+                .putBoolean(KEY_IS_LOGGED_IN, true)
+                .apply();
     }
 
     /**
      * Check if user is logged in
      */
     public boolean isLoggedIn() {
-        return prefs.getBoolean(KEY_IS_LOGGED_IN, false);
+        return current().loggedIn;
     }
 
     /**
      * Get current user's role
      */
     public String getUserRole() {
-        return prefs.getString(KEY_ROLE, null);
+        return current().role;
     }
 
     /**
      * Get current username
      */
     public String getUsername() {
-        return prefs.getString(KEY_USERNAME, null);
+        return current().username;
     }
 
     /**
      * Get user ID
      */
     public int getUserId() {
-        return prefs.getInt(KEY_USER_ID, -1);
+        return current().userId;
     }
 
     /**
      * Clear session (logout)
      */
     public void clearSession() {
-        editor.clear();
-        editor.apply();
+        publish(Session.LOGGED_OUT, true);
+        getPrefs(context).edit().clear().apply();
+    }
+
+    /**
+     * Forget the in-memory session so the next use reads it from disk again
+     */
+    @VisibleForTesting
+    public static void resetForTesting() {
+        synchronized (lock) {
+            session = null;
+            loading = false;
+            pendingCallbacks.clear();
+        }
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Current session, logged out if the background read has not finished yet
+     * Never blocks, so it is safe on the main thread at startup
+     */
+    private static Session current() {
+        synchronized (lock) {
+            return session != null ? session : Session.LOGGED_OUT;
+        }
+    }
+
+    /**
+     * Make a session current and run anything waiting for it
+     * The background read never overwrites a session saved in the meantime
+     */
+    private static void publish(Session value, boolean replace) {
+        List<Runnable> ready;
+        synchronized (lock) {
+            if (session == null || replace) {
+                session = value;
+            }
+            loading = false;
+            ready = new ArrayList<>(pendingCallbacks);
+            pendingCallbacks.clear();
+        }
+
+        if (!ready.isEmpty()) {
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            for (Runnable callback : ready) {
+                mainHandler.post(callback);
+            }
+        }
     }
 }
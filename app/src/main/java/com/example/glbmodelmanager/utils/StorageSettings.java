@@ -0,0 +1,36 @@
+package com.example.glbmodelmanager.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Disk quota for the model library, stored in SharedPreferences
+ */
+public class StorageSettings {
+
+    private static final String PREF_NAME = "StorageSettings";
+    private static final String KEY_QUOTA_MB = "quota_mb";
+
+    public static final int DEFAULT_QUOTA_MB = 1024;
+
+    private final SharedPreferences prefs;
+
+    public StorageSettings(Context context) {
+        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Library size above which unused models are compressed (0 = no quota)
+     */
+    public int getQuotaMb() {
+        return prefs.getInt(KEY_QUOTA_MB, DEFAULT_QUOTA_MB);
+    }
+
+    public long getQuotaBytes() {
+        return getQuotaMb() * 1024L * 1024L;
+    }
+
+    public void setQuotaMb(int quotaMb) {
+        prefs.edit().putInt(KEY_QUOTA_MB, quotaMb).apply();
+    }
+}
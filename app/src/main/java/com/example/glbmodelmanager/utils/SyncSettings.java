@@ -0,0 +1,48 @@
+package com.example.glbmodelmanager.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Remote catalog sync settings stored in SharedPreferences
+ */
+public class SyncSettings {
+
+    private static final String PREF_NAME = "SyncSettings";
+    private static final String KEY_MANIFEST_URL = "manifest_url";
+    private static final String KEY_MANIFEST_ETAG = "manifest_etag";
+
+    private final SharedPreferences prefs;
+
+    public SyncSettings(Context context) {
+        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * URL of the catalog manifest, or null if sync is not set up
+     */
+    public String getManifestUrl() {
+        return prefs.getString(KEY_MANIFEST_URL, null);
+    }
+
+    /**
+     * Change the manifest URL (the cached ETag belonged to the old one)
+     */
+    public void setManifestUrl(String url) {
+        prefs.edit()
+                .putString(KEY_MANIFEST_URL, url)
+                .remove(KEY_MANIFEST_ETAG)
+                .apply();
+    }
+
+    /**
+     * ETag of the last manifest that was fully synced, or null
+     */
+    public String getManifestEtag() {
+        return prefs.getString(KEY_MANIFEST_ETAG, null);
+    }
+
+    public void setManifestEtag(String etag) {
+        prefs.edit().putString(KEY_MANIFEST_ETAG, etag).apply();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.glbmodelmanager.validation;
+
+import android.content.Context;
+
+import com.example.glbmodelmanager.data.AppDatabase;
+import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.data.GlbModelDao;
+import com.example.glbmodelmanager.data.ModelValidation;
+import com.example.glbmodelmanager.glb.GlbFile;
+import com.example.glbmodelmanager.glb.GlbFormatException;
+import com.example.glbmodelmanager.glb.GltfValidator;
+import com.example.glbmodelmanager.glb.ValidationReport;
+import com.example.glbmodelmanager.storage.ModelStorage;
+
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Validates model files and keeps each model's report in the database
+ */
+public class ModelValidator {
+
+    private final GlbModelDao dao;
+    private final GltfValidator validator = new GltfValidator();
+
+    /**
+     * Constructor
+     */
+    public ModelValidator(Context context) {
+        this.dao = AppDatabase.getDatabase(context).glbModelDao();
+    }
+
+    /**
+     * Validate a model's file and store the report
+     * A file that is not even a readable GLB gets a report with that one error.
+     * Returns null if the model is compressed
+     */
+    public ValidationReport validate(GlbModel model) throws IOException {
+        if (ModelStorage.isCompressed(model)) {
+            return null;
+        }
+        ValidationReport report;
+        try (GlbFile glb = GlbFile.open(new File(model.getFilePath()))) {
+            report = validator.validate(glb);
+        } catch (GlbFormatException e) {
+            report = new ValidationReport();
+            report.error("", e.getMessage());
+        }
+        dao.insertValidation(new ModelValidation(model.getId(), report.getErrorCount(),
+                report.getWarningCount(), report.toJson(), System.currentTimeMillis()));
+        return report;
+    }
+
+    /**
+     * Validate several models, skipping any that cannot be read
+     * Used right after import, where a missing report must not fail the import
+     */
+    public void validateQuietly(List<GlbModel> models) {
+        for (GlbModel model : models) {
+            try {
+                validate(model);
+            } catch (IOException | RuntimeException e) {
+                // Left without a report; FingerprintWorker tries again later
+            }
+        }
+    }
+
+    /**
+     * Stored report of a model, or null if it has none (or it cannot be read)
+     */
+    public ValidationReport getStored(int modelId) {
+        ModelValidation validation = dao.getValidation(modelId);
+        if (validation == null) {
+            return null;
+        }
+        try {
+            return ValidationReport.fromJson(validation.getReport());
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Validate every uncompressed model that has no report yet
+     * Looks again after each pass, for models added while it was running
+     */
+    public void validateMissing() {
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (int id : dao.getUnvalidatedModelIds()) {
+                GlbModel model = dao.getModelById(id);
+                try {
+                    if (model != null) {
+                        validate(model);
+                        progress = true;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Unreadable file; skipped until the next run
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.glbmodelmanager.work;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.glbmodelmanager.backup.LibraryBackup;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+
+/**
+ * Background job that writes the whole library to a document picked by the admin
+ */
+public class BackupWorker extends Worker {
+
+    // Input
+    static final String KEY_TARGET_URI = "target_uri";
+
+    // Output
+    static final String KEY_BACKED_UP = "backed_up";
+
+    private static final int NOTIFICATION_ID = 1003;
+
+    public BackupWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        ContentResolver resolver = context.getContentResolver();
+        Uri target = Uri.parse(getInputData().getString(KEY_TARGET_URI));
+
+        try {
+            showProgress(0, 0);
+            // "rwt" truncates, and gives a seekable descriptor for local documents
+            ParcelFileDescriptor descriptor = resolver.openFileDescriptor(target, "rwt");
+            if (descriptor == null) {
+                throw new FileNotFoundException("Cannot open backup file");
+            }
+            int count;
+            try (ParcelFileDescriptor closeDescriptor = descriptor;
+                 FileOutputStream output = new FileOutputStream(descriptor.getFileDescriptor())) {
+                count = new LibraryBackup(context).write(output.getChannel(), this::showProgress);
+            }
+            return Result.success(new Data.Builder()
+                    .putInt(KEY_BACKED_UP, count)
+                    .build());
+
+        } catch (Exception e) {
+            WorkNotifications.notifyFailure(context, "Library backup failed", e.getMessage());
+            return Result.failure(new Data.Builder()
+                    .putString(ImportWorker.KEY_ERROR, e.getMessage())
+                    .build());
+        } finally {
+            try {
+                resolver.releasePersistableUriPermission(target,
+                        Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+            } catch (SecurityException ignored) {
+                // Grant was never persisted
+            }
+        }
+    }
+
+    private void showProgress(int done, int total) {
+        setProgressAsync(new Data.Builder()
+                .putInt(ImportWorker.KEY_PROGRESS_DONE, done)
+                .putInt(ImportWorker.KEY_PROGRESS_TOTAL, total)
+                .build());
+        try {
+            setForegroundAsync(WorkNotifications.createForegroundInfo(getApplicationContext(),
+                    NOTIFICATION_ID, "Backing up library",
+                    total > 0 ? done + " of " + total + " models" : "Preparing…", done, total));
+        } catch (IllegalStateException e) {
+            // Foreground not allowed right now, keep going
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.glbmodelmanager.work;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.glbmodelmanager.similarity.SimilarityIndex;
+import com.example.glbmodelmanager.validation.ModelValidator;
+
+/**
+ * Background stage that adds models missing from the similarity index, records
+ * their geometry stats and runtime cost, and validates them
+ * Covers models that were synced, restored or imported before fingerprints or
+ * validation existed
+ */
+public class FingerprintWorker extends Worker {
+
+    public FingerprintWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        new SimilarityIndex(getApplicationContext()).indexMissing();
+        new ModelValidator(getApplicationContext()).validateMissing();
+        return Result.success();
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.glbmodelmanager.work;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.glbmodelmanager.diagnostics.Telemetry;
+import com.example.glbmodelmanager.importer.ModelImporter;
+import com.example.glbmodelmanager.importer.PickedDocument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Background stage that copies picked files into the library
+ * Runs as a foreground worker so long imports are not killed with the app
+ */
+public class ImportWorker extends Worker {
+
+    // Input
+    static final String KEY_URIS = "uris";
+    static final String KEY_TREE_URI = "tree_uri";
+
+    // Progress and output
+    static final String KEY_PROGRESS_DONE = "progress_done";
+    static final String KEY_PROGRESS_TOTAL = "progress_total";
+    static final String KEY_PROGRESS_NAME = "progress_name";
+    static final String KEY_IMPORTED = "imported";
+    static final String KEY_SKIPPED = "skipped";
+    static final String KEY_ERROR = "error";
+
+    private static final int NOTIFICATION_ID = 1001;
+
+    // Started when the work runs, not when WorkManager creates the worker
+    private Telemetry.Operation operation = Telemetry.disabled();
+
+    public ImportWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        ContentResolver resolver = context.getContentResolver();
+        List<Uri> grants = new ArrayList<>();
+        operation = Telemetry.get().begin(Telemetry.KIND_IMPORT);
+
+        try {
+            // Resolve the picked documents (list the folder for tree imports)
+            long lookupStart = System.nanoTime();
+            List<PickedDocument> documents = new ArrayList<>();
+            String treeUri = getInputData().getString(KEY_TREE_URI);
+            String[] uris = getInputData().getStringArray(KEY_URIS);
+            if (treeUri != null) {
+                Uri tree = Uri.parse(treeUri);
+                grants.add(tree);
+                documents.addAll(PickedDocument.listTree(resolver, tree));
+            } else if (uris != null) {
+                for (String value : uris) {
+                    Uri uri = Uri.parse(value);
+                    grants.add(uri);
+                    documents.add(PickedDocument.fromUri(resolver, uri));
+                }
+            }
+            operation.add(Telemetry.STAGE_LOOKUP, lookupStart);
+            operation.setName(describe(documents));
+
+            showProgress(0, documents.size(), null);
+            ModelImporter.Result result = new ModelImporter(context, operation).importAll(documents,
+                    this::showProgress);
+
+            int[] ids = new int[result.modelIds.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = result.modelIds.get(i);
+            }
+            if (ids.length > 0) {
+                ModelWorkQueue.enqueueOptimize(context, ids);
+                ModelWorkQueue.enqueueStorageCheck(context);
+            }
+            operation.finish(null);
+
+            return Result.success(new Data.Builder()
+                    .putIntArray(ModelWorkQueue.KEY_MODEL_IDS, ids)
+                    .putInt(KEY_IMPORTED, result.imported)
+                    .putInt(KEY_SKIPPED, result.skipped)
+                    .build());
+
+        } catch (Exception e) {
+            operation.finish(e.getMessage());
+            WorkNotifications.notifyFailure(context, e.getMessage());
+            return Result.failure(new Data.Builder()
+                    .putString(KEY_ERROR, e.getMessage())
+                    .build());
+        } finally {
+            // The queue held these grants only for the duration of the import
+            for (Uri uri : grants) {
+                try {
+                    resolver.releasePersistableUriPermission(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                } catch (SecurityException ignored) {
+                    // Grant was never persisted
+                }
+            }
+        }
+    }
+
+    /**
+     * Publish progress to observers and the foreground notification
+     */
+    private void showProgress(int done, int total, String name) {
+        long notifyStart = System.nanoTime();
+        Data.Builder progress = new Data.Builder()
+                .putInt(KEY_PROGRESS_DONE, done)
+                .putInt(KEY_PROGRESS_TOTAL, total);
+        if (name != null) {
+            progress.putString(KEY_PROGRESS_NAME, name);
+        }
+        setProgressAsync(progress.build());
+
+        String text = total > 0 ? Math.min(done + 1, total) + " of " + total : "Preparing…";
+        if (name != null) {
+            text += ": " + name;
+        }
+        try {
+            setForegroundAsync(WorkNotifications.createForegroundInfo(getApplicationContext(),
+                    NOTIFICATION_ID, "Importing models", text, done, total));
+        } catch (IllegalStateException e) {
+            // Foreground not allowed right now (app in background on Android 12+), keep going
+        }
+        operation.add(Telemetry.STAGE_NOTIFY, notifyStart);
+    }
+
+    /**
+     * Short label for telemetry, e.g. "chair.glb (+2 more)"
+     */
+    private static String describe(List<PickedDocument> documents) {
+        if (documents.isEmpty()) {
+            return "(nothing)";
+        }
+        String name = documents.get(0).getName();
+        return documents.size() == 1 ? name : name + " (+" + (documents.size() - 1) + " more)";
+    }
+}
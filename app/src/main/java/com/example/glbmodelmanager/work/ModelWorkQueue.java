@@ -0,0 +1,334 @@
+package com.example.glbmodelmanager.work;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.lifecycle.LiveData;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import com.example.glbmodelmanager.utils.ImportSettings;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Persisted background queue for importing and processing models
+ * Work survives rotation, leaving the app and process death. Imports run one
+ * after another; optimization runs in its own queue once constraints allow
+ */
+public class ModelWorkQueue {
+
+    // Tag shared by every request so both dashboards can observe the queue
+    public static final String TAG_PROCESSING = "model-processing";
+
+    static final String TAG_IMPORT = "model-import";
+    static final String TAG_OPTIMIZE = "model-optimize";
+    static final String TAG_THUMBNAIL = "model-thumbnail";
+    static final String TAG_STORAGE = "model-storage";
+    static final String TAG_BACKUP = "library-backup";
+    static final String TAG_RESTORE = "library-restore";
+    static final String TAG_SYNC = "catalog-sync";
+    static final String TAG_FINGERPRINT = "model-fingerprint";
+    static final String TAG_SPLIT = "model-split";
+
+    // Data key shared by all stages: IDs of the models produced or to process
+    static final String KEY_MODEL_IDS = "model_ids";
+
+    private static final String IMPORT_QUEUE = "model-import-queue";
+    private static final String OPTIMIZE_QUEUE = "model-optimize-queue";
+    private static final String STORAGE_CHECK = "model-storage-check";
+    private static final String BACKUP_QUEUE = "library-backup-queue";
+    private static final String SYNC_QUEUE = "catalog-sync-queue";
+    private static final String FINGERPRINT_QUEUE = "model-fingerprint-queue";
+    private static final String SPLIT_QUEUE = "model-split-queue";
+
+    // WorkManager input Data is limited to 10 KB, so large picks are split
+    private static final int MAX_URIS_PER_REQUEST = 25;
+
+    /**
+     * Queue an import of picked files, followed by thumbnail generation
+     */
+    public static void enqueueImport(Context context, List<Uri> uris) {
+        for (int start = 0; start < uris.size(); start += MAX_URIS_PER_REQUEST) {
+            List<Uri> batch = uris.subList(start, Math.min(uris.size(), start + MAX_URIS_PER_REQUEST));
+            String[] values = new String[batch.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = batch.get(i).toString();
+            }
+            enqueueImportChain(context, new Data.Builder()
+                    .putStringArray(ImportWorker.KEY_URIS, values)
+                    .build());
+        }
+    }
+
+    /**
+     * Queue an import of every model inside a picked folder
+     */
+    public static void enqueueFolderImport(Context context, Uri treeUri) {
+        enqueueImportChain(context, new Data.Builder()
+                .putString(ImportWorker.KEY_TREE_URI, treeUri.toString())
+                .build());
+    }
+
+    private static void enqueueImportChain(Context context, Data input) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresStorageNotLow(true)
+                .build();
+
+        OneTimeWorkRequest importRequest = new OneTimeWorkRequest.Builder(ImportWorker.class)
+                .setInputData(input)
+                .setConstraints(constraints)
+                .addTag(TAG_PROCESSING)
+                .addTag(TAG_IMPORT)
+                .build();
+
+        // Import output (new model IDs) becomes the thumbnail stage input
+        WorkManager.getInstance(context)
+                .beginUniqueWork(IMPORT_QUEUE, ExistingWorkPolicy.APPEND_OR_REPLACE, importRequest)
+                .then(newThumbnailRequest(constraints))
+                .enqueue();
+    }
+
+    /**
+     * Queue the optimization stages for freshly imported models
+     */
+    static void enqueueOptimize(Context context, int[] modelIds) {
+        ImportSettings settings = new ImportSettings(context);
+        if (!settings.isTextureOptimizationEnabled() && !settings.isMeshInstancingEnabled() && !settings.isAnimationCompressionEnabled()) {
+            return;
+        }
+
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresStorageNotLow(true)
+                .setRequiresBatteryNotLow(true)
+                .setRequiresCharging(settings.isOptimizeOnlyWhileCharging())
+                .build();
+
+        OneTimeWorkRequest optimizeRequest = new OneTimeWorkRequest.Builder(OptimizeWorker.class)
+                .setInputData(new Data.Builder().putIntArray(KEY_MODEL_IDS, modelIds).build())
+                .setConstraints(constraints)
+                .addTag(TAG_PROCESSING)
+                .addTag(TAG_OPTIMIZE)
+                .build();
+
+        WorkManager.getInstance(context)
+                .beginUniqueWork(OPTIMIZE_QUEUE, ExistingWorkPolicy.APPEND_OR_REPLACE, optimizeRequest)
+                .enqueue();
+    }
+
+    /**
+     * Queue a check of the library against its disk quota
+     * A newer check replaces one that is still waiting or running
+     */
+    public static void enqueueStorageCheck(Context context) {
+        OneTimeWorkRequest storageRequest = new OneTimeWorkRequest.Builder(StorageWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiresBatteryNotLow(true)
+                        .build())
+                .addTag(TAG_PROCESSING)
+                .addTag(TAG_STORAGE)
+                .build();
+
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(STORAGE_CHECK, ExistingWorkPolicy.REPLACE, storageRequest);
+    }
+
+    /**
+     * Queue preview generation for models that were added without an import
+     */
+    static void enqueueThumbnails(Context context, int[] modelIds) {
+        OneTimeWorkRequest thumbnailRequest = new OneTimeWorkRequest.Builder(ThumbnailWorker.class)
+                .setInputData(new Data.Builder().putIntArray(KEY_MODEL_IDS, modelIds).build())
+                .setConstraints(new Constraints.Builder()
+                        .setRequiresStorageNotLow(true)
+                        .build())
+                .addTag(TAG_PROCESSING)
+                .addTag(TAG_THUMBNAIL)
+                .build();
+        WorkManager.getInstance(context).enqueue(thumbnailRequest);
+    }
+
+    /**
+     * Queue a backup of the whole library into a picked document
+     * Backups and restores run one after another
+     */
+    public static void enqueueBackup(Context context, Uri target) {
+        enqueueLibraryJob(context, new OneTimeWorkRequest.Builder(BackupWorker.class)
+                .setInputData(new Data.Builder()
+                        .putString(BackupWorker.KEY_TARGET_URI, target.toString())
+                        .build())
+                .addTag(TAG_BACKUP));
+    }
+
+    /**
+     * Queue a restore of the models in a picked library backup
+     */
+    public static void enqueueRestore(Context context, Uri source) {
+        enqueueLibraryJob(context, new OneTimeWorkRequest.Builder(RestoreWorker.class)
+                .setInputData(new Data.Builder()
+                        .putString(RestoreWorker.KEY_SOURCE_URI, source.toString())
+                        .build())
+                .setConstraints(new Constraints.Builder()
+                        .setRequiresStorageNotLow(true)
+                        .build())
+                .addTag(TAG_RESTORE));
+    }
+
+    private static void enqueueLibraryJob(Context context, OneTimeWorkRequest.Builder builder) {
+        WorkManager.getInstance(context)
+                .beginUniqueWork(BACKUP_QUEUE, ExistingWorkPolicy.APPEND_OR_REPLACE,
+                        builder.addTag(TAG_PROCESSING).build())
+                .enqueue();
+    }
+
+    /**
+     * Queue a sync with the remote catalog once the device is online
+     * A sync that is already waiting or running is kept
+     */
+    public static void enqueueSync(Context context) {
+        OneTimeWorkRequest syncRequest = new OneTimeWorkRequest.Builder(SyncWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .setRequiresStorageNotLow(true)
+                        .build())
+                .addTag(TAG_PROCESSING)
+                .addTag(TAG_SYNC)
+                .build();
+
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(SYNC_QUEUE, ExistingWorkPolicy.KEEP, syncRequest);
+    }
+
+    /**
+     * Queue fingerprinting and validation of every model missing from the similarity
+     * index or without a validation report
+     * The worker picks up all such models, so a request that is still waiting is kept
+     */
+    public static void enqueueFingerprints(Context context) {
+        OneTimeWorkRequest fingerprintRequest = new OneTimeWorkRequest.Builder(FingerprintWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiresBatteryNotLow(true)
+                        .build())
+                .addTag(TAG_PROCESSING)
+                .addTag(TAG_FINGERPRINT)
+                .build();
+
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(FINGERPRINT_QUEUE, ExistingWorkPolicy.KEEP, fingerprintRequest);
+    }
+
+    /**
+     * Queue a split of a model into parts (GlbSplitter.MODE_*)
+     * Splits run one after another; the running one can be cancelled from its notification
+     */
+    public static void enqueueSplit(Context context, int modelId, int mode) {
+        OneTimeWorkRequest splitRequest = new OneTimeWorkRequest.Builder(SplitWorker.class)
+                .setInputData(new Data.Builder()
+                        .putInt(SplitWorker.KEY_MODEL_ID, modelId)
+                        .putInt(SplitWorker.KEY_MODE, mode)
+                        .build())
+                .setConstraints(new Constraints.Builder()
+                        .setRequiresStorageNotLow(true)
+                        .build())
+                .addTag(TAG_PROCESSING)
+                .addTag(TAG_SPLIT)
+                .build();
+
+        WorkManager.getInstance(context)
+                .beginUniqueWork(SPLIT_QUEUE, ExistingWorkPolicy.APPEND_OR_REPLACE, splitRequest)
+                .enqueue();
+    }
+
+    private static OneTimeWorkRequest newThumbnailRequest(Constraints constraints) {
+        return new OneTimeWorkRequest.Builder(ThumbnailWorker.class)
+                .setConstraints(constraints)
+                .addTag(TAG_PROCESSING)
+                .addTag(TAG_THUMBNAIL)
+                .build();
+    }
+
+    /**
+     * Live state of every queued, running and finished processing request
+     */
+    public static LiveData<List<WorkInfo>> observe(Context context) {
+        return WorkManager.getInstance(context).getWorkInfosByTagLiveData(TAG_PROCESSING);
+    }
+
+    /**
+     * One-line summary of the queue for the dashboards
+     * Returns null when nothing is queued or running
+     */
+    public static String describe(List<WorkInfo> infos) {
+        if (infos == null) {
+            return null;
+        }
+
+        WorkInfo running = null;
+        int waiting = 0;
+        boolean optimizeWaiting = false;
+        for (WorkInfo info : infos) {
+            if (info.getState() == WorkInfo.State.RUNNING && running == null) {
+                running = info;
+            } else if (info.getState() == WorkInfo.State.ENQUEUED || info.getState() == WorkInfo.State.BLOCKED) {
+                waiting++;
+                optimizeWaiting |= info.getTags().contains(TAG_OPTIMIZE);
+            }
+        }
+
+        if (running == null) {
+            if (waiting == 0) {
+                return null;
+            }
+            return waiting + (waiting == 1 ? " job" : " jobs") + " waiting"
+                    + (optimizeWaiting ? " (optimization runs while charging)" : "");
+        }
+
+        String status;
+        Data progress = running.getProgress();
+        int total = progress.getInt(ImportWorker.KEY_PROGRESS_TOTAL, 0);
+        if ((running.getTags().contains(TAG_IMPORT) || running.getTags().contains(TAG_SYNC)) && total > 0) {
+            String action = running.getTags().contains(TAG_SYNC) ? "Downloading" : "Importing";
+            int done = progress.getInt(ImportWorker.KEY_PROGRESS_DONE, 0);
+            String name = progress.getString(ImportWorker.KEY_PROGRESS_NAME);
+            status = String.format(Locale.getDefault(), "%s %d of %d", action, Math.min(done + 1, total), total);
+            if (name != null) {
+                status += ": " + name;
+            }
+        } else if (running.getTags().contains(TAG_OPTIMIZE)) {
+            status = "Optimizing textures…";
+        } else if (running.getTags().contains(TAG_THUMBNAIL)) {
+            status = "Generating previews…";
+        } else if (running.getTags().contains(TAG_BACKUP) || running.getTags().contains(TAG_RESTORE)) {
+            String action = running.getTags().contains(TAG_BACKUP) ? "Backing up" : "Restoring";
+            int done = progress.getInt(ImportWorker.KEY_PROGRESS_DONE, 0);
+            status = total > 0
+                    ? String.format(Locale.getDefault(), "%s library: %d of %d", action, done, total)
+                    : action + " library…";
+        } else if (running.getTags().contains(TAG_SPLIT)) {
+            int done = progress.getInt(ImportWorker.KEY_PROGRESS_DONE, 0);
+            String name = progress.getString(ImportWorker.KEY_PROGRESS_NAME);
+            status = total > 0
+                    ? String.format(Locale.getDefault(), "Splitting %s: part %d of %d", name,
+                    Math.min(done + 1, total), total)
+                    : "Splitting model…";
+        } else if (running.getTags().contains(TAG_SYNC)) {
+            status = "Checking catalog…";
+        } else if (running.getTags().contains(TAG_FINGERPRINT)) {
+            status = "Analyzing models…";
+        } else if (running.getTags().contains(TAG_STORAGE)) {
+            status = "Compressing unused models…";
+        } else {
+            status = "Importing…";
+        }
+        if (waiting > 0) {
+            status += " (" + waiting + " more waiting)";
+        }
+        return status;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.glbmodelmanager.work;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.glbmodelmanager.data.AppDatabase;
+import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.importer.ModelImporter;
+
+/**
+ * Background stage that optimizes textures of imported models
+ * Each model is handled independently so one bad file does not block the rest
+ */
+public class OptimizeWorker extends Worker {
+
+    private static final int NOTIFICATION_ID = 1002;
+
+    public OptimizeWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        int[] ids = getInputData().getIntArray(ModelWorkQueue.KEY_MODEL_IDS);
+        if (ids == null) {
+            return Result.success();
+        }
+
+        AppDatabase database = AppDatabase.getDatabase(context);
+        ModelImporter importer = new ModelImporter(context);
+        for (int i = 0; i < ids.length; i++) {
+            if (isStopped()) {
+                return Result.retry();
+            }
+            GlbModel model = database.glbModelDao().getModelById(ids[i]);
+            if (model == null) {
+                continue; // Deleted while waiting in the queue
+            }
+
+            try {
+                setForegroundAsync(WorkNotifications.createForegroundInfo(context, NOTIFICATION_ID,
+                        "Optimizing models", model.getName(), i, ids.length));
+            } catch (IllegalStateException e) {
+                // Foreground not allowed right now, keep going
+            }
+            setProgressAsync(new Data.Builder()
+                    .putInt(ImportWorker.KEY_PROGRESS_DONE, i)
+                    .putInt(ImportWorker.KEY_PROGRESS_TOTAL, ids.length)
+                    .build());
+
+            try {
+                importer.optimizeModel(model);
+            } catch (Exception e) {
+                // Keep the original file; the model is still usable unoptimized
+            }
+        }
+        return Result.success(new Data.Builder()
+                .putIntArray(ModelWorkQueue.KEY_MODEL_IDS, ids)
+                .build());
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.glbmodelmanager.work;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.glbmodelmanager.backup.LibraryArchive;
+import com.example.glbmodelmanager.backup.LibraryRestore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * Background job that adds the models from a picked library backup
+ */
+public class RestoreWorker extends Worker {
+
+    // Input
+    static final String KEY_SOURCE_URI = "source_uri";
+
+    // Output
+    static final String KEY_RESTORED = "restored";
+
+    private static final int NOTIFICATION_ID = 1004;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    public RestoreWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        ContentResolver resolver = context.getContentResolver();
+        Uri source = Uri.parse(getInputData().getString(KEY_SOURCE_URI));
+        File localCopy = new File(context.getCacheDir(), "restore" + LibraryArchive.EXTENSION);
+
+        try {
+            showProgress(0, 0);
+            ParcelFileDescriptor descriptor = resolver.openFileDescriptor(source, "r");
+            if (descriptor == null) {
+                throw new FileNotFoundException("Cannot open backup file");
+            }
+            LibraryRestore.Result result;
+            try (ParcelFileDescriptor closeDescriptor = descriptor;
+                 FileInputStream input = new FileInputStream(descriptor.getFileDescriptor())) {
+                FileChannel channel = input.getChannel();
+                if (isSeekable(channel)) {
+                    result = new LibraryRestore(context).restore(LibraryArchive.open(channel), this::showProgress);
+                } else {
+                    // Streamed from a cloud provider: the index is at the end, so keep a local copy
+                    copy(input, localCopy);
+                    try (FileInputStream copyInput = new FileInputStream(localCopy)) {
+                        result = new LibraryRestore(context).restore(
+                                LibraryArchive.open(copyInput.getChannel()), this::showProgress);
+                    }
+                }
+            }
+
+            int[] ids = new int[result.modelIds.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = result.modelIds.get(i);
+            }
+            if (ids.length > 0) {
+                ModelWorkQueue.enqueueThumbnails(context, ids);
+                ModelWorkQueue.enqueueFingerprints(context);
+                ModelWorkQueue.enqueueStorageCheck(context);
+            }
+            return Result.success(new Data.Builder()
+                    .putIntArray(ModelWorkQueue.KEY_MODEL_IDS, ids)
+                    .putInt(KEY_RESTORED, result.restored)
+                    .putInt(ImportWorker.KEY_SKIPPED, result.skipped)
+                    .build());
+
+        } catch (Exception e) {
+            WorkNotifications.notifyFailure(context, "Library restore failed", e.getMessage());
+            return Result.failure(new Data.Builder()
+                    .putString(ImportWorker.KEY_ERROR, e.getMessage())
+                    .build());
+        } finally {
+            localCopy.delete();
+            try {
+                resolver.releasePersistableUriPermission(source, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            } catch (SecurityException ignored) {
+                // Grant was never persisted
+            }
+        }
+    }
+
+    private void showProgress(int done, int total) {
+        setProgressAsync(new Data.Builder()
+                .putInt(ImportWorker.KEY_PROGRESS_DONE, done)
+                .putInt(ImportWorker.KEY_PROGRESS_TOTAL, total)
+                .build());
+        try {
+            setForegroundAsync(WorkNotifications.createForegroundInfo(getApplicationContext(),
+                    NOTIFICATION_ID, "Restoring library",
+                    total > 0 ? done + " of " + total + " models" : "Reading backup…", done, total));
+        } catch (IllegalStateException e) {
+            // Foreground not allowed right now, keep going
+        }
+    }
+
+    private static boolean isSeekable(FileChannel channel) {
+        try {
+            channel.position(channel.position());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void copy(InputStream input, File dest) throws IOException {
+        try (FileOutputStream output = new FileOutputStream(dest)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                output.write(buffer, 0, length);
+            }
+        }
+    }
+}
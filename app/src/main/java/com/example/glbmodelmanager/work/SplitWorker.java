@@ -0,0 +1,92 @@
+package com.example.glbmodelmanager.work;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.glbmodelmanager.data.AppDatabase;
+import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.glb.GlbSplitter;
+import com.example.glbmodelmanager.storage.ModelStorage;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Background job that splits one model into parts that can be opened on their own
+ * Stopping the job (from the notification's Cancel action) ends the split before
+ * the next part and leaves any earlier split of the model in place
+ */
+public class SplitWorker extends Worker {
+
+    // Input
+    static final String KEY_MODEL_ID = "model_id";
+    static final String KEY_MODE = "mode";
+
+    // Output
+    static final String KEY_PARTS = "parts";
+
+    private static final int NOTIFICATION_ID = 1006;
+
+    private final GlbSplitter splitter;
+
+    public SplitWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+        splitter = new GlbSplitter(getInputData().getInt(KEY_MODE, GlbSplitter.MODE_NODES),
+                GlbSplitter.DEFAULT_PART_BYTES, GlbSplitter.DEFAULT_GRID_CELLS);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        GlbModel model = AppDatabase.getDatabase(context).glbModelDao()
+                .getModelById(getInputData().getInt(KEY_MODEL_ID, -1));
+        if (model == null) {
+            return Result.success(); // Deleted while waiting in the queue
+        }
+
+        try {
+            showProgress(model, 0, 0);
+            int parts = new ModelStorage(context).split(model, splitter,
+                    (done, total) -> showProgress(model, done, total)).size();
+            return Result.success(new Data.Builder()
+                    .putInt(KEY_PARTS, parts)
+                    .build());
+
+        } catch (InterruptedIOException e) {
+            return Result.failure(new Data.Builder()
+                    .putString(ImportWorker.KEY_ERROR, e.getMessage())
+                    .build());
+        } catch (Exception e) {
+            WorkNotifications.notifyFailure(context, "Model split failed", e.getMessage());
+            return Result.failure(new Data.Builder()
+                    .putString(ImportWorker.KEY_ERROR, e.getMessage())
+                    .build());
+        }
+    }
+
+    @Override
+    public void onStopped() {
+        splitter.cancel();
+    }
+
+    private void showProgress(GlbModel model, int done, int total) {
+        setProgressAsync(new Data.Builder()
+                .putInt(ImportWorker.KEY_PROGRESS_DONE, done)
+                .putInt(ImportWorker.KEY_PROGRESS_TOTAL, total)
+                .putString(ImportWorker.KEY_PROGRESS_NAME, model.getName())
+                .build());
+        try {
+            setForegroundAsync(WorkNotifications.createForegroundInfo(getApplicationContext(),
+                    NOTIFICATION_ID, "Splitting " + model.getName(),
+                    total > 0 ? "Part " + (done + 1) + " of " + total : "Preparing…", done, total,
+                    WorkManager.getInstance(getApplicationContext()).createCancelPendingIntent(getId())));
+        } catch (IllegalStateException e) {
+            // Foreground not allowed right now, keep going
+        }
+    }
+}
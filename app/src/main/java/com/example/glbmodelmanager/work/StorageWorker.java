@@ -0,0 +1,31 @@
+package com.example.glbmodelmanager.work;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.glbmodelmanager.storage.ModelStorage;
+
+/**
+ * Background stage that compresses unused models when the library is over its quota
+ */
+public class StorageWorker extends Worker {
+
+    public StorageWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            new ModelStorage(getApplicationContext()).enforceQuota();
+            return Result.success();
+        } catch (Exception e) {
+            // Out of space for the temporary copy or similar; try again later
+            return Result.retry();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.glbmodelmanager.work;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.glbmodelmanager.sync.CatalogSync;
+
+/**
+ * Background job that downloads models missing from the remote catalog
+ */
+public class SyncWorker extends Worker {
+
+    // Output
+    static final String KEY_DOWNLOADED = "downloaded";
+
+    private static final int NOTIFICATION_ID = 1005;
+
+    // Partial downloads are kept, so retries are cheap; give up after this many
+    private static final int MAX_RUN_ATTEMPTS = 5;
+
+    public SyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        try {
+            CatalogSync.Result result = new CatalogSync(context).sync(this::showProgress);
+
+            int[] ids = new int[result.modelIds.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = result.modelIds.get(i);
+            }
+            if (ids.length > 0) {
+                ModelWorkQueue.enqueueThumbnails(context, ids);
+                ModelWorkQueue.enqueueFingerprints(context);
+                ModelWorkQueue.enqueueStorageCheck(context);
+            }
+
+            if (result.failed > 0) {
+                return retryOrFail(context, result.lastError);
+            }
+            return Result.success(new Data.Builder()
+                    .putIntArray(ModelWorkQueue.KEY_MODEL_IDS, ids)
+                    .putInt(KEY_DOWNLOADED, result.downloaded)
+                    .build());
+
+        } catch (Exception e) {
+            return retryOrFail(context, e.getMessage());
+        }
+    }
+
+    private Result retryOrFail(Context context, String error) {
+        if (getRunAttemptCount() + 1 < MAX_RUN_ATTEMPTS) {
+            return Result.retry();
+        }
+        WorkNotifications.notifyFailure(context, "Catalog sync failed", error);
+        return Result.failure(new Data.Builder()
+                .putString(ImportWorker.KEY_ERROR, error)
+                .build());
+    }
+
+    private void showProgress(int done, int total, String name) {
+        Data.Builder progress = new Data.Builder()
+                .putInt(ImportWorker.KEY_PROGRESS_DONE, done)
+                .putInt(ImportWorker.KEY_PROGRESS_TOTAL, total);
+        if (name != null) {
+            progress.putString(ImportWorker.KEY_PROGRESS_NAME, name);
+        }
+        setProgressAsync(progress.build());
+
+        String text = total > 0 ? Math.min(done + 1, total) + " of " + total : "Checking catalog…";
+        if (name != null) {
+            text += ": " + name;
+        }
+        try {
+            setForegroundAsync(WorkNotifications.createForegroundInfo(getApplicationContext(),
+                    NOTIFICATION_ID, "Syncing catalog", text, done, total));
+        } catch (IllegalStateException e) {
+            // Foreground not allowed right now, keep going
+        }
+    }
+}
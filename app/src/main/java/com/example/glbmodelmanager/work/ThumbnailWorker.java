@@ -0,0 +1,55 @@
+package com.example.glbmodelmanager.work;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.glbmodelmanager.data.AppDatabase;
+import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.glb.ThumbnailExtractor;
+import com.example.glbmodelmanager.storage.ModelStorage;
+
+import java.io.File;
+
+/**
+ * Background stage that writes preview images for imported models
+ */
+public class ThumbnailWorker extends Worker {
+
+    private static final int THUMBNAIL_SIZE = 256;
+
+    public ThumbnailWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        int[] ids = getInputData().getIntArray(ModelWorkQueue.KEY_MODEL_IDS);
+        if (ids == null) {
+            return Result.success();
+        }
+
+        AppDatabase database = AppDatabase.getDatabase(context);
+        ThumbnailExtractor extractor = new ThumbnailExtractor(THUMBNAIL_SIZE);
+        for (int id : ids) {
+            if (isStopped()) {
+                return Result.retry();
+            }
+            GlbModel model = database.glbModelDao().getModelById(id);
+            if (model == null || ModelStorage.isCompressed(model)) {
+                continue;
+            }
+            try {
+                extractor.writeThumbnail(new File(model.getFilePath()),
+                        ThumbnailExtractor.getThumbnailFile(context.getFilesDir(), id));
+            } catch (Exception e) {
+                // No preview for this model; the list falls back to the default icon
+            }
+        }
+        return Result.success();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.glbmodelmanager.work;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.work.ForegroundInfo;
+
+/**
+ * Notifications shown while the model queue is working
+ */
+class WorkNotifications {
+
+    private static final String CHANNEL_ID = "model_processing";
+    private static final int FAILURE_NOTIFICATION_ID = 2001;
+
+    /**
+     * Foreground info for a running stage, with determinate progress when total > 0
+     */
+    static ForegroundInfo createForegroundInfo(Context context, int notificationId, String title,
+                                               String text, int done, int total) {
+        return createForegroundInfo(context, notificationId, title, text, done, total, null);
+    }
+
+    /**
+     * Foreground info with a Cancel action firing the given intent (none if null)
+     */
+    static ForegroundInfo createForegroundInfo(Context context, int notificationId, String title,
+                                               String text, int done, int total, PendingIntent cancel) {
+        createChannel(context);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_download)
+                .setContentTitle(title)
+                .setContentText(text)
+                .setProgress(total, done, total <= 0)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true);
+        if (cancel != null) {
+            builder.addAction(android.R.drawable.ic_menu_close_clear_cancel, "Cancel", cancel);
+        }
+        Notification notification = builder.build();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return new ForegroundInfo(notificationId, notification,
+                    ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        }
+        return new ForegroundInfo(notificationId, notification);
+    }
+
+    /**
+     * Tell the admin an import failed, even if the app is no longer open
+     */
+    static void notifyFailure(Context context, String message) {
+        notifyFailure(context, "Model import failed", message);
+    }
+
+    /**
+     * Tell the admin a background job failed, even if the app is no longer open
+     */
+    static void notifyFailure(Context context, String title, String message) {
+        createChannel(context);
+        Notification notification = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_notify_error)
+                .setContentTitle(title)
+                .setContentText(message)
+                .setAutoCancel(true)
+                .build();
+        try {
+            NotificationManagerCompat.from(context).notify(FAILURE_NOTIFICATION_ID, notification);
+        } catch (SecurityException e) {
+            // Notification permission not granted, the dashboard still shows the queue state
+        }
+    }
+
+    private static void createChannel(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(
+                    CHANNEL_ID, "Model processing", NotificationManager.IMPORTANCE_LOW);
+            NotificationManager manager = context.getSystemService(NotificationManager.class);
+            if (manager != null) {
+                manager.createNotificationChannel(channel);
+            }
+        }
+    }
+}
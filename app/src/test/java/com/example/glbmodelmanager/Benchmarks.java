@@ -0,0 +1,33 @@
+package com.example.glbmodelmanager;
+
+import org.junit.Assume;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Wall-clock and memory budgets vary with the machine, so they are only enforced by
+ * the opt-in benchmark task (./gradlew benchmark); the default test run checks results
+ */
+public final class Benchmarks {
+
+    public static final boolean ENABLED = Boolean.getBoolean("benchmarks");
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Skip a test that only measures speed outside the benchmark task
+     */
+    public static void assumeEnabled() {
+        Assume.assumeTrue("timing only, run with ./gradlew benchmark", ENABLED);
+    }
+
+    /**
+     * Fail if value is over budget, when running as a benchmark
+     */
+    public static void assertWithinBudget(String measurement, long value, long budget) {
+        if (ENABLED) {
+            assertTrue(measurement + " was " + value + ", budget is " + budget, value <= budget);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.glbmodelmanager;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.DatabaseErrorHandler;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.glbmodelmanager.utils.SessionManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Checks that a logged-in user is redirected without disk access on the main thread
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = LoginActivityStartupTest.RecordingApp.class)
+public class LoginActivityStartupTest {
+
+    /**
+     * Application that records SharedPreferences and database access made on the main thread
+     */
+    public static class RecordingApp extends GlbModelManagerApp {
+        final List<String> mainThreadDiskAccess = Collections.synchronizedList(new ArrayList<>());
+
+        private void record(String what) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                mainThreadDiskAccess.add(what);
+            }
+        }
+
+        @Override
+        public SharedPreferences getSharedPreferences(String name, int mode) {
+            record("SharedPreferences " + name);
+            return super.getSharedPreferences(name, mode);
+        }
+
+        @Override
+        public File getDatabasePath(String name) {
+            record("Database " + name);
+            return super.getDatabasePath(name);
+        }
+
+        @Override
+        public SQLiteDatabase openOrCreateDatabase(String name, int mode, SQLiteDatabase.CursorFactory factory) {
+            record("Database " + name);
+            return super.openOrCreateDatabase(name, mode, factory);
+        }
+
+        @Override
+        public SQLiteDatabase openOrCreateDatabase(String name, int mode, SQLiteDatabase.CursorFactory factory,
+                                                   DatabaseErrorHandler errorHandler) {
+            record("Database " + name);
+            return super.openOrCreateDatabase(name, mode, factory, errorHandler);
+        }
+    }
+
+    private RecordingApp app;
+
+    @Before
+    public void setUp() throws Exception {
+        app = ApplicationProvider.getApplicationContext();
+
+        // Wait for the read started by the app's onCreate, then simulate a session
+        // stored by an earlier run of the app
+        SessionManager sessionManager = new SessionManager(app);
+        while (!sessionManager.isLoaded()) {
+            Thread.sleep(5);
+        }
+        SessionManager.resetForTesting();
+        app.getSharedPreferences("UserSession", Context.MODE_PRIVATE).edit()
+                .putInt("user_id", 1)
+                .putString("username", "admin")
+                .putString("role", "Admin")
+                .putBoolean("is_logged_in", true)
+                .commit();
+        app.mainThreadDiskAccess.clear();
+    }
+
+    @Test
+    public void loggedInUser_isRedirectedWithoutMainThreadDiskAccess() throws Exception {
+        // Process start: the session is read in the background
+        SessionManager.preload(app);
+
+        ActivityController<LoginActivity> controller = Robolectric.buildActivity(LoginActivity.class).create();
+        LoginActivity activity = controller.get();
+
+        // Let the background read finish and deliver its callback
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!activity.isFinishing() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+
+        assertTrue("LoginActivity should finish after redirecting", activity.isFinishing());
+        Intent next = shadowOf(activity).getNextStartedActivity();
+        assertNotNull(next);
+        assertEquals(AdminActivity.class.getName(), next.getComponent().getClassName());
+        assertEquals("Main thread touched disk: " + app.mainThreadDiskAccess,
+                0, app.mainThreadDiskAccess.size());
+    }
+}
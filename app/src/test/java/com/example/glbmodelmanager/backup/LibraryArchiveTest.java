@@ -0,0 +1,142 @@
+package com.example.glbmodelmanager.backup;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.glbmodelmanager.data.AppDatabase;
+import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.data.GlbModelDao;
+import com.example.glbmodelmanager.importer.ModelImporter;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Backup and restore of the library through a .glbk archive, and rejection of
+ * damaged archives
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LibraryArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void backupThenRestore_bringsBackRemovedModels() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        GlbModelDao dao = AppDatabase.getDatabase(context).glbModelDao();
+        List<GlbModel> models = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            byte[] content = new byte[10_000 + i * 3_000];
+            Arrays.fill(content, (byte) (i + 1));
+            File file = new File(ModelImporter.getModelsDir(context), "model" + i + ".glb");
+            Files.write(file.toPath(), content);
+            GlbModel model = new GlbModel("Model " + i, file.getName(), file.getAbsolutePath(), content.length, i);
+            model.setContentHash("hash" + i);
+            model.setId((int) dao.insert(model));
+            models.add(model);
+            contents.add(content);
+        }
+
+        File backup = folder.newFile();
+        try (RandomAccessFile output = new RandomAccessFile(backup, "rw")) {
+            assertEquals(3, new LibraryBackup(context).write(output.getChannel(), null));
+        }
+
+        // Lose two models; the third is still in the library and must not be duplicated
+        for (int i = 0; i < 2; i++) {
+            dao.delete(models.get(i));
+            new File(models.get(i).getFilePath()).delete();
+        }
+
+        LibraryRestore.Result result;
+        try (RandomAccessFile input = new RandomAccessFile(backup, "r")) {
+            LibraryArchive archive = LibraryArchive.open(input.getChannel());
+            assertEquals(3, archive.getEntries().size());
+            result = new LibraryRestore(context).restore(archive, null);
+        }
+
+        assertEquals(2, result.restored);
+        assertEquals(1, result.skipped);
+        for (int id : result.modelIds) {
+            GlbModel restored = dao.getModelById(id);
+            int index = Integer.parseInt(restored.getName().substring("Model ".length()));
+            assertArrayEquals(contents.get(index), Files.readAllBytes(new File(restored.getFilePath()).toPath()));
+        }
+        assertEquals(3, dao.getAllModelsList().size());
+    }
+
+    @Test
+    public void negativeIndexLength_isRejected() throws Exception {
+        assertDamaged(archive(new byte[0], -1));
+    }
+
+    @Test
+    public void negativeEntryLength_isRejected() throws Exception {
+        JSONObject row = new JSONObject()
+                .put("name", "Broken").put("fileName", "broken.glb").put("fileSize", 10).put("addedDate", 0)
+                .put("offset", LibraryArchive.HEADER_LENGTH).put("length", -10).put("crc32", 0);
+        JSONObject index = new JSONObject().put("created", 0).put("models", new JSONArray().put(row));
+        byte[] gzipped = gzip(index.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertDamaged(archive(gzipped, gzipped.length));
+    }
+
+    private static void assertDamaged(File archive) throws Exception {
+        try (RandomAccessFile input = new RandomAccessFile(archive, "r")) {
+            LibraryArchive.open(input.getChannel());
+            fail("damaged archive should not open");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("damaged"));
+        }
+    }
+
+    /**
+     * Archive with no blobs, the given index and a trailer declaring indexLength
+     */
+    private File archive(byte[] index, long indexLength) throws Exception {
+        ByteBuffer data = ByteBuffer.allocate(LibraryArchive.HEADER_LENGTH + index.length
+                + LibraryArchive.TRAILER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(LibraryArchive.MAGIC).putInt(LibraryArchive.VERSION);
+        data.put(index);
+        data.putLong(LibraryArchive.HEADER_LENGTH).putLong(indexLength)
+                .putInt(LibraryArchive.MAGIC).putInt(LibraryArchive.VERSION);
+        File file = folder.newFile();
+        Files.write(file.toPath(), data.array());
+        return file;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream output = new GZIPOutputStream(bytes)) {
+            output.write(data);
+        }
+        return bytes.toByteArray();
+    }
+}
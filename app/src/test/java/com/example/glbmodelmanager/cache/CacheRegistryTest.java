@@ -0,0 +1,99 @@
+package com.example.glbmodelmanager.cache;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CacheRegistry trimming: which caches give memory back at each pressure level
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CacheRegistryTest {
+
+    private static final int ENTRY_BYTES = 100;
+    private static final int MAX_BYTES = 10_000;
+
+    private final List<ManagedCache<?, ?>> registered = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (ManagedCache<?, ?> cache : registered) {
+            CacheRegistry.get().unregister(cache);
+        }
+    }
+
+    @Test
+    public void trimToFraction_isRelativeToTheCurrentSize() {
+        // Well under its maximum, as caches usually are when pressure arrives
+        ManagedCache<Integer, String> cache = register("partly full", ManagedCache.PRIORITY_NORMAL, 8);
+
+        cache.trimToFraction(0.5f);
+
+        assertEquals(4 * ENTRY_BYTES, cache.size());
+        // Least recently used entries go first
+        assertNull(cache.get(0));
+        assertNotNull(cache.get(7));
+    }
+
+    @Test
+    public void uiHidden_clearsLowAndHalvesNormal() {
+        ManagedCache<Integer, String> low = register("low", ManagedCache.PRIORITY_LOW, 6);
+        ManagedCache<Integer, String> normal = register("normal", ManagedCache.PRIORITY_NORMAL, 6);
+        ManagedCache<Integer, String> high = register("high", ManagedCache.PRIORITY_HIGH, 6);
+        List<Integer> removed = new ArrayList<>();
+        low.setRemovalListener((key, value) -> removed.add(key));
+
+        CacheRegistry.get().onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+
+        assertEquals(0, low.size());
+        assertEquals(6, removed.size());
+        assertEquals(3 * ENTRY_BYTES, normal.size());
+        assertEquals(6 * ENTRY_BYTES, high.size());
+    }
+
+    @Test
+    public void complete_clearsEverything() {
+        ManagedCache<Integer, String> normal = register("normal", ManagedCache.PRIORITY_NORMAL, 6);
+        ManagedCache<Integer, String> high = register("high", ManagedCache.PRIORITY_HIGH, 6);
+
+        CacheRegistry.get().onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+
+        assertEquals(0, normal.size());
+        assertEquals(0, high.size());
+    }
+
+    @Test
+    public void getCaches_listsLowestPriorityFirst() {
+        register("high", ManagedCache.PRIORITY_HIGH, 0);
+        register("low", ManagedCache.PRIORITY_LOW, 0);
+
+        List<ManagedCache<?, ?>> caches = CacheRegistry.get().getCaches();
+        for (int i = 1; i < caches.size(); i++) {
+            assertTrue(caches.get(i - 1).getPriority() <= caches.get(i).getPriority());
+        }
+    }
+
+    /**
+     * Register a cache holding entries 0..count-1, each weighing ENTRY_BYTES
+     */
+    private ManagedCache<Integer, String> register(String name, int priority, int count) {
+        ManagedCache<Integer, String> cache = CacheRegistry.get().register(name, MAX_BYTES, priority,
+                (key, value) -> ENTRY_BYTES);
+        registered.add(cache);
+        for (int i = 0; i < count; i++) {
+            cache.put(i, "entry " + i);
+        }
+        return cache;
+    }
+}
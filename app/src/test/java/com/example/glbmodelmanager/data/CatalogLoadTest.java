@@ -0,0 +1,461 @@
+package com.example.glbmodelmanager.data;
+
+import android.app.Application;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.os.Looper;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteProgram;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.glbmodelmanager.Benchmarks;
+import com.example.glbmodelmanager.R;
+import com.example.glbmodelmanager.adapter.GlbModelAdapter;
+import com.example.glbmodelmanager.cache.AppCaches;
+import com.example.glbmodelmanager.cache.BitmapPool;
+import com.example.glbmodelmanager.cache.ManagedCache;
+import com.example.glbmodelmanager.diagnostics.LatencyHistogram;
+import com.example.glbmodelmanager.glb.ThumbnailExtractor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Load test against a synthetic catalog of tens of thousands of models
+ * Results are always checked; every measurement also has an explicit budget, enforced
+ * by ./gradlew benchmark. Library size can be changed with -Ploadtest.models=N
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+public class CatalogLoadTest {
+
+    private static final int MODEL_COUNT = Integer.getInteger("loadtest.models", 50_000);
+
+    // Budgets
+    private static final long LIST_QUERY_BUDGET_MS = 2_000;
+    private static final long LIST_MEMORY_BUDGET_BYTES_PER_ROW = 1_024;
+    private static final long FIRST_BIND_BUDGET_MS = 150;
+    private static final long SCROLL_BIND_P99_BUDGET_US = 2_000;
+    private static final long SEARCH_BUDGET_MS = 500;
+    private static final long SORTED_QUERY_BUDGET_MS = 2_000;
+    private static final long FILTERED_QUERY_BUDGET_MS = 500;
+    private static final long BULK_DELETE_BUDGET_MS = 3_000;
+
+    private static final int SCREEN_ROWS = 10;
+    private static final int GRID_PREVIEW_SIZE = 256;
+    private static final int GRID_COLUMNS = 3;
+    // Models at the top of the list that have a thumbnail JPEG, as ThumbnailWorker writes them
+    private static final int THUMBNAIL_COUNT = 300;
+    private static final int THUMBNAIL_SOURCE_SIZE = 512;
+    // Heap the grid may use beyond its thumbnail cache and bitmap pool (views, tasks, JPEG buffers)
+    private static final long GRID_HEAP_SLACK_BYTES = 16L * 1024 * 1024;
+    private static final long DECODE_TIMEOUT_MS = 10_000;
+    private static final int BULK_DELETE_COUNT = 5_000;
+
+    // The files are written once per class; only the in-memory database is rebuilt per test
+    @ClassRule
+    public static TemporaryFolder libraryFolder = new TemporaryFolder();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<GlbModel> library;
+
+    private Context context;
+    private AppDatabase database;
+    private GlbModelDao dao;
+
+    @BeforeClass
+    public static void generateLibrary() throws Exception {
+        library = new SyntheticLibrary(42).generate(libraryFolder.newFolder("glb_models"), MODEL_COUNT);
+    }
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .setQueryExecutor(Runnable::run)
+                .build();
+        dao = database.glbModelDao();
+
+        List<Long> ids = dao.insertAll(library);
+        for (int i = 0; i < ids.size(); i++) {
+            library.get(i).setId(ids.get(i).intValue());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void listQuery_isWithinTimeAndMemoryBudget() {
+        long usedBefore = usedHeap();
+        long start = System.nanoTime();
+        List<GlbModel> models = loadAllModels();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long bytesPerRow = (usedHeap() - usedBefore) / models.size();
+
+        assertEquals(MODEL_COUNT, models.size());
+        assertBudget("list query (ms)", elapsedMs, LIST_QUERY_BUDGET_MS);
+        assertBudget("list memory (bytes/row)", bytesPerRow, LIST_MEMORY_BUDGET_BYTES_PER_ROW);
+    }
+
+    @Test
+    public void binding_isWithinBudget() {
+        GlbModelAdapter adapter = new GlbModelAdapter(true, null);
+        measureBinding(adapter, loadAllModels(), GlbModelAdapter.VIEW_TYPE_LIST, "");
+    }
+
+    @Test
+    public void gridBinding_isWithinBudget() throws Exception {
+        List<GlbModel> models = loadAllModels();
+        writeThumbnails(models);
+        ManagedCache<Integer, Bitmap> cache = AppCaches.thumbnails();
+        BitmapPool pool = AppCaches.bitmapPool();
+        long usedBefore = usedHeap();
+
+        GlbModelAdapter adapter = new GlbModelAdapter(true, null);
+        adapter.setGridMode(true, GRID_PREVIEW_SIZE);
+        try {
+            // Binding only queues decodes; it must stay as cheap as a text row
+            List<GlbModelAdapter.ModelViewHolder> holders =
+                    measureBinding(adapter, models, GlbModelAdapter.VIEW_TYPE_GRID, "grid ");
+
+            // Scroll back to the top and let the screen's previews arrive
+            for (int position = 0; position < SCREEN_ROWS; position++) {
+                adapter.onViewRecycled(holders.get(position));
+                adapter.onBindViewHolder(holders.get(position), position);
+            }
+            await(() -> {
+                for (int position = 0; position < SCREEN_ROWS; position++) {
+                    if (cache.get(models.get(position).getId()) == null) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+
+            // Scrolling decoded previews: whatever was kept is inside the cache and pool
+            // budgets, and the heap grew by no more than those budgets allow
+            assertTrue(cache.size() > 0);
+            assertTrue(cache.size() <= cache.maxSize());
+            assertTrue(pool.getSize() <= pool.getMaxSize());
+            long grown = usedHeap() - usedBefore;
+            assertTrue("grid grew the heap by " + grown + " bytes",
+                    grown <= cache.maxSize() + pool.getMaxSize() + GRID_HEAP_SLACK_BYTES);
+        } finally {
+            adapter.release();
+        }
+    }
+
+    @Test
+    public void gridScroll_preloadsTheNextRows() throws Exception {
+        List<GlbModel> models = loadAllModels();
+        writeThumbnails(models);
+        ManagedCache<Integer, Bitmap> cache = AppCaches.thumbnails();
+        cache.evictAll();
+
+        Context themed = new ContextThemeWrapper(context, R.style.Theme_GLBModelManager);
+        RecyclerView list = new RecyclerView(themed);
+        GridLayoutManager layout = new GridLayoutManager(themed, GRID_COLUMNS);
+        list.setLayoutManager(layout);
+        GlbModelAdapter adapter = new GlbModelAdapter(true, null);
+        adapter.setGridMode(true, GRID_PREVIEW_SIZE);
+        list.setAdapter(adapter);
+        adapter.submitList(models);
+        try {
+            list.measure(View.MeasureSpec.makeMeasureSpec(GRID_COLUMNS * GRID_PREVIEW_SIZE, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(4 * GRID_PREVIEW_SIZE, View.MeasureSpec.EXACTLY));
+            list.layout(0, 0, GRID_COLUMNS * GRID_PREVIEW_SIZE, 4 * GRID_PREVIEW_SIZE);
+            list.scrollBy(0, GRID_PREVIEW_SIZE);
+
+            // The row below the last visible one was never bound, only preloaded
+            int next = layout.findLastVisibleItemPosition() + 1;
+            assertTrue(next > 0 && next + GRID_COLUMNS <= THUMBNAIL_COUNT);
+            await(() -> {
+                for (int position = next; position < next + GRID_COLUMNS; position++) {
+                    if (cache.get(models.get(position).getId()) == null) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+            assertTrue(cache.size() <= cache.maxSize());
+        } finally {
+            list.setAdapter(null);
+            adapter.release();
+        }
+    }
+
+    @Test
+    public void search_isWithinBudget() {
+        long start = System.nanoTime();
+        List<GlbModel> results = dao.searchModels("robot");
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertFalse(results.isEmpty());
+        assertBudget("search (ms)", elapsedMs, SEARCH_BUDGET_MS);
+    }
+
+    @Test
+    public void sortedQueries_useAnIndexAndAreWithinBudget() {
+        for (int sort = 0; sort < ModelQuery.SORT_LABELS.length; sort++) {
+            ModelQuery query = new ModelQuery(sort);
+            String label = ModelQuery.SORT_LABELS[sort];
+
+            // Every sort order must come straight off an index, never from a temporary sort
+            assertFalse(label + " sorts in a temporary b-tree", queryPlan(query.toSql()).contains("TEMP B-TREE"));
+
+            long start = System.nanoTime();
+            List<GlbModel> models = dao.getModels(query.toSql());
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(MODEL_COUNT, models.size());
+            assertSorted(label, models, query);
+            assertBudget("sort " + label + " (ms)", elapsedMs, SORTED_QUERY_BUDGET_MS);
+        }
+    }
+
+    @Test
+    public void filteredQuery_matchesInMemoryRulesAndIsWithinBudget() {
+        ModelQuery query = new ModelQuery(ModelQuery.SORT_NAME);
+        query.setNamePrefix("Robot");
+        query.setSizeRange(1024 * 1024, 10L * 1024 * 1024);
+
+        long start = System.nanoTime();
+        List<GlbModel> models = dao.getModels(query.toSql());
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // The SQL and the rules used for change feed deltas must agree
+        int expected = 0;
+        for (GlbModel model : library) {
+            if (query.matches(model)) {
+                expected++;
+            }
+        }
+        assertFalse(models.isEmpty());
+        assertEquals(expected, models.size());
+        assertSorted("filtered by name", models, query);
+        assertTrue(queryPlan(query.toSql()).contains("index_glb_models_sortName"));
+        assertBudget("filtered query (ms)", elapsedMs, FILTERED_QUERY_BUDGET_MS);
+    }
+
+    @Test
+    public void everyFilterAndSortCombination_usesAnIndex() {
+        for (int sort = 0; sort < ModelQuery.SORT_LABELS.length; sort++) {
+            for (int filter = 0; filter < 5; filter++) {
+                ModelQuery query = new ModelQuery(sort);
+                switch (filter) {
+                    case 0:
+                        query.setSizeRange(1024 * 1024, 10L * 1024 * 1024);
+                        break;
+                    case 1:
+                        query.setDateRange(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(7), ModelQuery.ANY);
+                        break;
+                    case 2:
+                        query.setVertexRange(ModelQuery.ANY, 10_000);
+                        break;
+                    case 3:
+                        query.setNamePrefix("Robot");
+                        break;
+                    default:
+                        query.setSizeRange(1024 * 1024, ModelQuery.ANY);
+                        query.setVertexRange(ModelQuery.ANY, 10_000);
+                        break;
+                }
+                String plan = queryPlan(query.toSql());
+                assertTrue(ModelQuery.SORT_LABELS[sort] + " with filter " + filter + " scans the table:\n" + plan,
+                        plan.contains("USING INDEX"));
+            }
+        }
+    }
+
+    @Test
+    public void bulkDelete_isWithinBudget() throws Exception {
+        // A batch of its own, so the shared library files stay in place for the other tests
+        List<GlbModel> batch = new SyntheticLibrary(7).generate(folder.newFolder("batch"), BULK_DELETE_COUNT);
+        List<Long> ids = dao.insertAll(batch);
+        for (int i = 0; i < ids.size(); i++) {
+            batch.get(i).setId(ids.get(i).intValue());
+        }
+
+        // Same work as deleting from the admin dashboard: rows and files
+        long start = System.nanoTime();
+        dao.deleteAll(batch);
+        for (GlbModel model : batch) {
+            new File(model.getFilePath()).delete();
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertNull(dao.getModelById(batch.get(0).getId()));
+        assertFalse(new File(batch.get(0).getFilePath()).exists());
+        assertNotNull(dao.getModelById(library.get(0).getId()));
+        assertBudget("bulk delete of " + batch.size() + " (ms)", elapsedMs, BULK_DELETE_BUDGET_MS);
+    }
+
+    /**
+     * Fill one screen, then scroll through the whole library rebinding recycled holders
+     * Returns the screen's holders, bound to the last rows
+     */
+    private List<GlbModelAdapter.ModelViewHolder> measureBinding(GlbModelAdapter adapter, List<GlbModel> models, int viewType, String label) {
+        Context themed = new ContextThemeWrapper(context, R.style.Theme_GLBModelManager);
+        RecyclerView parent = new RecyclerView(themed);
+        parent.setLayoutManager(new LinearLayoutManager(themed));
+
+        // First bind: hand the list over and fill one screen
+        long start = System.nanoTime();
+        adapter.submitList(models);
+        List<GlbModelAdapter.ModelViewHolder> holders = new ArrayList<>();
+        for (int position = 0; position < SCREEN_ROWS; position++) {
+            GlbModelAdapter.ModelViewHolder holder = adapter.onCreateViewHolder(parent, viewType);
+            adapter.onBindViewHolder(holder, position);
+            holders.add(holder);
+        }
+        long firstBindMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        LatencyHistogram binds = new LatencyHistogram();
+        for (int position = 0; position < models.size(); position++) {
+            GlbModelAdapter.ModelViewHolder holder = holders.get(position % SCREEN_ROWS);
+            long bindStart = System.nanoTime();
+            adapter.onViewRecycled(holder);
+            adapter.onBindViewHolder(holder, position);
+            binds.record(System.nanoTime() - bindStart);
+        }
+
+        assertBudget(label + "first bind (ms)", firstBindMs, FIRST_BIND_BUDGET_MS);
+        assertBudget(label + "scroll bind p99 (us)", binds.percentile(0.99), SCROLL_BIND_P99_BUDGET_US);
+        return holders;
+    }
+
+    /**
+     * Write a thumbnail JPEG for the first THUMBNAIL_COUNT models of the list
+     */
+    private void writeThumbnails(List<GlbModel> models) throws Exception {
+        BufferedImage image = new BufferedImage(THUMBNAIL_SOURCE_SIZE, THUMBNAIL_SOURCE_SIZE, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < THUMBNAIL_COUNT; i++) {
+            File file = ThumbnailExtractor.getThumbnailFile(context.getFilesDir(), models.get(i).getId());
+            file.getParentFile().mkdirs();
+            assertTrue(ImageIO.write(image, "jpg", file));
+        }
+    }
+
+    /**
+     * Run the main looper, where decoded previews are handed over, until condition holds
+     */
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + DECODE_TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("timed out waiting for previews");
+            }
+            shadowOf(Looper.getMainLooper()).idle();
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /**
+     * Load the dashboard list the way the activities do, through LiveData
+     */
+    private List<GlbModel> loadAllModels() {
+        LiveData<List<GlbModel>> liveData = dao.getAllModels();
+        List<List<GlbModel>> received = new ArrayList<>();
+        Observer<List<GlbModel>> observer = received::add;
+        liveData.observeForever(observer);
+        shadowOf(Looper.getMainLooper()).idle();
+        liveData.removeObserver(observer);
+
+        assertFalse("LiveData did not deliver the list", received.isEmpty());
+        return received.get(received.size() - 1);
+    }
+
+    /**
+     * SQLite's plan for a list query, bound to the same arguments
+     */
+    private String queryPlan(SupportSQLiteQuery query) {
+        SupportSQLiteQuery explain = new SupportSQLiteQuery() {
+            @Override
+            public String getSql() {
+                return "EXPLAIN QUERY PLAN " + query.getSql();
+            }
+
+            @Override
+            public void bindTo(SupportSQLiteProgram statement) {
+                query.bindTo(statement);
+            }
+
+            @Override
+            public int getArgCount() {
+                return query.getArgCount();
+            }
+        };
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = database.query(explain)) {
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnIndexOrThrow("detail"))).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    private static void assertSorted(String label, List<GlbModel> models, ModelQuery query) {
+        for (int i = 1; i < models.size(); i++) {
+            assertTrue(label + " is out of order at " + i,
+                    query.comparator().compare(models.get(i - 1), models.get(i)) < 0);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void assertBudget(String measurement, long value, long budget) {
+        Benchmarks.assertWithinBudget(measurement + " with " + MODEL_COUNT + " models", value, budget);
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.glbmodelmanager.data;
+
+import android.app.Application;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.glbmodelmanager.diagnostics.LatencyHistogram;
+import com.example.glbmodelmanager.diagnostics.QueryStats;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * ModelChangeFeed against an in-memory database with the change log triggers
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+public class ModelChangeFeedTest {
+
+    private static final long TIMEOUT_MS = 5_000;
+
+    private AppDatabase database;
+    private GlbModelDao dao;
+    private ModelChangeFeed feed;
+    private final Recorder recorder = new Recorder();
+
+    /**
+     * Keeps everything the feed delivers
+     */
+    private static class Recorder implements ModelChangeFeed.Listener {
+        List<GlbModel> snapshot;
+        final List<ModelChangeFeed.Delta> deltas = new ArrayList<>();
+
+        @Override
+        public void onSnapshot(List<GlbModel> models) {
+            snapshot = models;
+        }
+
+        @Override
+        public void onChanges(List<ModelChangeFeed.Delta> changes) {
+            deltas.addAll(changes);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        database = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), AppDatabase.class)
+                .allowMainThreadQueries()
+                .setQueryExecutor(Runnable::run)
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        AppDatabase.createChangeTriggers(db);
+                    }
+                })
+                .build();
+        dao = database.glbModelDao();
+        feed = new ModelChangeFeed(database);
+        feed.addListener(recorder, new ModelQuery(ModelQuery.SORT_NEWEST));
+        await(() -> recorder.snapshot != null);
+    }
+
+    @After
+    public void tearDown() {
+        feed.removeListener(recorder);
+        database.close();
+    }
+
+    @Test
+    public void writes_areDeliveredAsDeltas() {
+        GlbModel model = new GlbModel("Chair", "chair.glb", "/models/chair.glb", 1_000, 1);
+        model.setId((int) dao.insert(model));
+        awaitDeltas(1);
+        assertDelta(recorder.deltas.get(0), GlbModelChange.OP_INSERT, model.getId());
+        assertEquals("Chair", recorder.deltas.get(0).model.getName());
+
+        model.setName("Armchair");
+        dao.update(model);
+        awaitDeltas(2);
+        assertDelta(recorder.deltas.get(1), GlbModelChange.OP_UPDATE, model.getId());
+        assertEquals("Armchair", recorder.deltas.get(1).model.getName());
+
+        dao.delete(model);
+        awaitDeltas(3);
+        assertDelta(recorder.deltas.get(2), GlbModelChange.OP_DELETE, model.getId());
+        assertNull(recorder.deltas.get(2).model);
+    }
+
+    @Test
+    public void burst_isCollapsedPerModel() {
+        GlbModel model = new GlbModel("Lamp", "lamp.glb", "/models/lamp.glb", 500, 1);
+        database.runInTransaction(() -> {
+            model.setId((int) dao.insert(model));
+            model.setName("Desk lamp");
+            dao.update(model);
+        });
+
+        awaitDeltas(1);
+        settle();
+        assertEquals(1, recorder.deltas.size());
+        assertDelta(recorder.deltas.get(0), GlbModelChange.OP_INSERT, model.getId());
+        assertEquals("Desk lamp", recorder.deltas.get(0).model.getName());
+    }
+
+    @Test
+    public void poll_doesNotWakeItselfUp() {
+        QueryStats.get().reset();
+
+        dao.insert(new GlbModel("Table", "table.glb", "/models/table.glb", 2_000, 1));
+        awaitDeltas(1);
+        settle();
+
+        // One write, one read of the log: consuming it must not look like another change
+        LatencyHistogram.Snapshot polls = QueryStats.get().snapshot().get("GlbModelDao.getChangesAfter");
+        assertEquals(1, polls.count);
+        assertEquals(1, recorder.deltas.size());
+    }
+
+    @Test
+    public void lastListenerLeaving_prunesTheLog() {
+        dao.insert(new GlbModel("Stool", "stool.glb", "/models/stool.glb", 300, 1));
+        awaitDeltas(1);
+        assertFalse(dao.getChangesAfter(0).isEmpty());
+
+        feed.removeListener(recorder);
+
+        await(() -> dao.getChangesAfter(0).isEmpty());
+    }
+
+    private static void assertDelta(ModelChangeFeed.Delta delta, int op, int modelId) {
+        assertEquals(op, delta.op);
+        assertEquals(modelId, delta.modelId);
+    }
+
+    private void awaitDeltas(int count) {
+        await(() -> recorder.deltas.size() >= count);
+    }
+
+    /**
+     * Let the reader thread and the main looper run, so a stray extra poll would show up
+     */
+    private static void settle() {
+        long deadline = System.currentTimeMillis() + 200;
+        while (System.currentTimeMillis() < deadline) {
+            step();
+        }
+    }
+
+    /**
+     * Run the main looper (and its frame callbacks) until condition holds
+     */
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("timed out waiting for the change feed");
+            }
+            step();
+        }
+    }
+
+    private static void step() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(16));
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.glbmodelmanager.data;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ModelQuery's name rules agree with SQLite, which compares text as UTF-8 bytes
+ */
+public class ModelQueryTest {
+
+    private static final String EMOJI = new String(Character.toChars(0x1F600));
+
+    @Test
+    public void prefixEnd_incrementsTheLastCodePoint() {
+        assertEquals("roc", ModelQuery.prefixEnd("rob"));
+        assertEquals("a" + new String(Character.toChars(0x10000)), ModelQuery.prefixEnd("a\uFFFF"));
+        assertEquals("a\uE000", ModelQuery.prefixEnd("a\uD7FF"));
+        assertEquals("a" + new String(Character.toChars(0x1F601)), ModelQuery.prefixEnd("a" + EMOJI));
+        assertEquals("b", ModelQuery.prefixEnd("a" + new String(Character.toChars(Character.MAX_CODE_POINT))));
+        assertNull(ModelQuery.prefixEnd(new String(Character.toChars(Character.MAX_CODE_POINT))));
+    }
+
+    @Test
+    public void namesStartingWithThePrefix_fallInsideTheRange() {
+        String prefix = "robot";
+        String end = ModelQuery.prefixEnd(prefix);
+        for (String name : Arrays.asList("robot", "robot arm", "robot\uFFFD", "robot" + EMOJI, "robot" + EMOJI + "2")) {
+            assertTrue(name, utf8Compare(name, prefix) >= 0 && utf8Compare(name, end) < 0);
+        }
+        for (String name : Arrays.asList("robos", "robou", "rob", "s")) {
+            assertTrue(name, utf8Compare(name, prefix) < 0 || utf8Compare(name, end) >= 0);
+        }
+    }
+
+    @Test
+    public void matches_agreesWithTheSqlRange() {
+        ModelQuery query = new ModelQuery(ModelQuery.SORT_NAME);
+        query.setNamePrefix("Robot");
+
+        assertTrue(query.matches(new GlbModel("Robot" + EMOJI, "a.glb", "/a.glb", 1, 0)));
+        assertFalse(query.matches(new GlbModel("Robo", "b.glb", "/b.glb", 1, 0)));
+    }
+
+    @Test
+    public void compareNames_followsUtf8ByteOrder() {
+        List<String> names = Arrays.asList("a", "a\uFFFD", "a" + EMOJI, "ab", "\uE000", EMOJI, "z", "");
+        for (String a : names) {
+            for (String b : names) {
+                assertEquals(a + " vs " + b, Integer.signum(utf8Compare(a, b)),
+                        Integer.signum(ModelQuery.compareNames(a, b)));
+            }
+        }
+    }
+
+    /**
+     * SQLite's BINARY collation: unsigned byte comparison of the UTF-8 encoding
+     */
+    private static int utf8Compare(String a, String b) {
+        byte[] x = a.getBytes(StandardCharsets.UTF_8);
+        byte[] y = b.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < Math.min(x.length, y.length); i++) {
+            if (x[i] != y[i]) {
+                return Integer.compare(x[i] & 0xFF, y[i] & 0xFF);
+            }
+        }
+        return Integer.compare(x.length, y.length);
+    }
+}
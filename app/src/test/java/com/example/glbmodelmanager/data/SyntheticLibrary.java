@@ -0,0 +1,93 @@
+package com.example.glbmodelmanager.data;
+
+import com.example.glbmodelmanager.glb.GlbFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates a large library of GLB files and matching GlbModel rows for load tests
+ * Files are valid GLBs whose BIN chunk is left sparse, so tens of thousands of
+ * realistically sized models fit on a CI disk
+ */
+class SyntheticLibrary {
+
+    // Log-normal sizes around a 1.5 MB median, clamped to 20 KB .. 200 MB
+    private static final double MEDIAN_BYTES = 1.5 * 1024 * 1024;
+    private static final double SIGMA = 1.2;
+    private static final long MIN_BYTES = 20 * 1024;
+    private static final long MAX_BYTES = 200L * 1024 * 1024;
+
+    private static final String[] WORDS = {"chair", "table", "lamp", "robot", "tree", "car", "house",
+            "sword", "helmet", "drone", "statue", "engine", "shoe", "plant", "bottle", "tower"};
+
+    private final Random random;
+
+    SyntheticLibrary(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Write count GLB files into dir and return unsaved rows describing them
+     */
+    List<GlbModel> generate(File dir, int count) throws IOException {
+        List<GlbModel> models = new ArrayList<>(count);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + "_" + WORDS[random.nextInt(WORDS.length)] + "_" + i;
+            long timestamp = now - (long) i * 60_000;
+            File file = new File(dir, timestamp + "_" + name + ".glb");
+            writeGlb(file, nextSize());
+
+            GlbModel model = new GlbModel(name, file.getName(), file.getAbsolutePath(), file.length(), timestamp);
+            model.setContentHash(String.format(Locale.ROOT, "%064x", i));
+            models.add(model);
+        }
+        return models;
+    }
+
+    private long nextSize() {
+        double size = MEDIAN_BYTES * Math.exp(SIGMA * random.nextGaussian());
+        return Math.max(MIN_BYTES, Math.min(MAX_BYTES, (long) size));
+    }
+
+    /**
+     * Minimal GLB of about targetSize bytes; the BIN data is a sparse run of zeros
+     */
+    static void writeGlb(File file, long targetSize) throws IOException {
+        long binLength = Math.max(0, targetSize - 128) & ~3L;
+        byte[] json = padded("{\"asset\":{\"version\":\"2.0\"},\"buffers\":[{\"byteLength\":" + binLength + "}]}");
+        int headLength = GlbFile.HEADER_LENGTH + GlbFile.CHUNK_HEADER_LENGTH * 2 + json.length;
+        long length = headLength + binLength;
+
+        ByteBuffer head = ByteBuffer.allocate(headLength).order(ByteOrder.LITTLE_ENDIAN);
+        head.putInt(GlbFile.MAGIC).putInt(GlbFile.VERSION).putInt((int) length);
+        head.putInt(json.length).putInt(GlbFile.CHUNK_JSON).put(json);
+        head.putInt((int) binLength).putInt(GlbFile.CHUNK_BIN);
+
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.write(head.array());
+            output.setLength(length);
+        }
+    }
+
+    /**
+     * JSON chunk content padded with spaces to a multiple of 4 bytes
+     */
+    private static byte[] padded(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        byte[] result = new byte[(bytes.length + 3) & ~3];
+        Arrays.fill(result, (byte) ' ');
+        System.arraycopy(bytes, 0, result, 0, bytes.length);
+        return result;
+    }
+}
@@ -0,0 +1,356 @@
+package com.example.glbmodelmanager.glb;
+
+import com.example.glbmodelmanager.Benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AnimationCompressor on a synthetic baked rig: every joint has a 120 fps
+ * translation (held, ramped, then oscillating), a steady spin and a STEP scale,
+ * all sharing one key time accessor
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AnimationCompressorTest {
+
+    private static final float TRANSLATION_TOLERANCE = 1e-4f;
+    private static final float ROTATION_TOLERANCE_DEGREES = 0.1f;
+    private static final float SCALE_TOLERANCE = 1e-3f;
+    private static final int KEYS_PER_SECOND = 120;
+
+    // Long clips on many joints for the timing run
+    private static final int LARGE_JOINTS = 200;
+    private static final float LARGE_SECONDS = 10;
+    private static final long LARGE_BUDGET_MS = 10_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void redundantKeys_removedWithinTolerance() throws Exception {
+        File source = new Rig(4, 2).write(folder.newFile());
+        File dest = folder.newFile();
+
+        AnimationCompressor.Report report = new AnimationCompressor(TRANSLATION_TOLERANCE,
+                ROTATION_TOLERANCE_DEGREES, SCALE_TOLERANCE, 1e-3f, 0, true).compress(source, dest);
+
+        assertNotNull(report);
+        assertEquals(12, report.getChannels());
+        assertEquals(12 * 241, report.getKeysBefore());
+        assertTrue(report.getKeysAfter() < report.getKeysBefore() / 2);
+        assertTrue(report.getCompressionRatio() > 2);
+        assertWithinTolerance(source, dest);
+    }
+
+    @Test
+    public void resampledClips_stayWithinToleranceOfTheOriginalKeys() throws Exception {
+        // 30 keys per second cannot follow the oscillation within 1e-4, so those tracks keep
+        // their original rate; the error of resampling, reduction and quantization together counts
+        File source = new Rig(4, 2).write(folder.newFile());
+        File dest = folder.newFile();
+
+        AnimationCompressor.Report report = new AnimationCompressor(TRANSLATION_TOLERANCE,
+                ROTATION_TOLERANCE_DEGREES, SCALE_TOLERANCE, 1e-3f, 30, true).compress(source, dest);
+
+        assertNotNull(report);
+        assertWithinTolerance(source, dest);
+    }
+
+    @Test
+    public void keysSharedWithSkippedSamplers_areNotCountedAsSaved() throws Exception {
+        Rig rig = new Rig(1, 2);
+        rig.addCubicSpline();  // Shares the key times, which therefore stay in the file
+        File dest = folder.newFile();
+
+        AnimationCompressor.Report report = new AnimationCompressor(TRANSLATION_TOLERANCE,
+                ROTATION_TOLERANCE_DEGREES, SCALE_TOLERANCE, 1e-3f, 0, false).compress(rig.write(folder.newFile()), dest);
+
+        assertNotNull(report);
+        assertEquals(3, report.getChannels());
+        assertEquals(241 * (12 + 16 + 12), report.getBytesBefore());
+    }
+
+    /**
+     * Replay every original key from the compressed keys and compare
+     */
+    private static void assertWithinTolerance(File source, File dest) throws Exception {
+        try (GlbFile original = GlbFile.open(source); GlbFile compressed = GlbFile.open(dest)) {
+            ValidationReport validation = new GltfValidator().validate(compressed);
+            assertTrue(validation.getIssues().toString(), validation.isValid());
+            JSONObject json = compressed.getJson();
+            JSONArray samplers = json.getJSONArray("animations").getJSONObject(0).getJSONArray("samplers");
+            for (int s = 0; s < samplers.length(); s++) {
+                JSONObject sampler = samplers.getJSONObject(s);
+                String path = Rig.PATHS[s % 3];
+                JSONObject output = json.getJSONArray("accessors").getJSONObject(sampler.getInt("output"));
+                if (path.equals("rotation")) {
+                    assertEquals(Accessor.SHORT, output.getInt("componentType"));
+                    assertTrue(output.getBoolean("normalized"));
+                }
+
+                // Every original key, replayed from the compressed keys
+                AnimationCompressor.Track before = track(original, s);
+                AnimationCompressor.Track after = track(compressed, s);
+                boolean step = "STEP".equals(sampler.optString("interpolation"));
+                for (int k = 0; k < before.size(); k++) {
+                    float[] value = sample(after, before.times[k], path.equals("rotation"), step);
+                    float error = difference(value, before.values, k * before.width, path.equals("rotation"));
+                    // 16-bit rounding is part of the rotation tolerance
+                    float tolerance = path.equals("rotation")
+                            ? (float) Math.toRadians(ROTATION_TOLERANCE_DEGREES)
+                            : path.equals("scale") ? SCALE_TOLERANCE : TRANSLATION_TOLERANCE;
+                    assertTrue(path + " key " + k + " is off by " + error, error <= tolerance * 1.001f);
+                }
+                assertEquals(before.times[before.size() - 1], after.times[after.size() - 1], 0);
+            }
+        }
+    }
+
+    @Test
+    public void resample_downsamplesToTheTargetRate() {
+        float[] times = new float[241];
+        float[] values = new float[241 * 3];
+        for (int k = 0; k < times.length; k++) {
+            times[k] = k / 120f;
+            values[k * 3] = times[k] * 2;
+        }
+        AnimationCompressor.Track track = new AnimationCompressor.Track(times, values, 3);
+
+        AnimationCompressor.Track resampled = AnimationCompressor.resample(track, 30, false);
+
+        assertEquals(61, resampled.size());
+        assertEquals(2f, resampled.times[60], 0);
+        assertEquals(4f, resampled.values[60 * 3], 1e-5);
+        assertEquals(1f, resampled.values[15 * 3], 1e-5);
+        // Never upsampled
+        assertTrue(AnimationCompressor.resample(track, 240, false) == track);
+    }
+
+    @Test
+    public void noAnimations_leaveTheFileAlone() throws Exception {
+        File dest = new File(folder.getRoot(), "unchanged.glb");
+
+        assertNull(new AnimationCompressor(TRANSLATION_TOLERANCE, ROTATION_TOLERANCE_DEGREES, SCALE_TOLERANCE,
+                1e-3f, 30, true).compress(new Rig(3, 0).write(folder.newFile()), dest));
+        assertTrue(!dest.exists());
+    }
+
+    @Test
+    public void compressionThroughput_longClips() throws Exception {
+        Benchmarks.assumeEnabled();
+        File source = new Rig(LARGE_JOINTS, LARGE_SECONDS).write(folder.newFile());
+        File dest = folder.newFile();
+
+        long start = System.nanoTime();
+        AnimationCompressor.Report report = new AnimationCompressor(TRANSLATION_TOLERANCE,
+                ROTATION_TOLERANCE_DEGREES, SCALE_TOLERANCE, 1e-3f, 30, true).compress(source, dest);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertNotNull(report);
+        assertEquals(LARGE_JOINTS * 3, report.getChannels());
+        assertTrue(report.getCompressionRatio() > 4);
+        assertTrue(dest.length() < source.length());
+        Benchmarks.assertWithinBudget("compression of " + LARGE_JOINTS + " joints (ms)", elapsedMs,
+                LARGE_BUDGET_MS);
+    }
+
+    private static AnimationCompressor.Track track(GlbFile glb, int sampler) throws Exception {
+        JSONObject json = glb.getJson().getJSONArray("animations").getJSONObject(0)
+                .getJSONArray("samplers").getJSONObject(sampler);
+        Accessor times = Accessor.open(glb, json.getInt("input"));
+        Accessor values = Accessor.open(glb, json.getInt("output"));
+        float[] keyTimes = new float[times.getCount()];
+        for (int k = 0; k < keyTimes.length; k++) {
+            keyTimes[k] = times.get(k, 0);
+        }
+        int width = values.getComponents();
+        float[] keyValues = new float[values.getCount() * width];
+        for (int k = 0; k < values.getCount(); k++) {
+            for (int c = 0; c < width; c++) {
+                keyValues[k * width + c] = values.get(k, c);
+            }
+        }
+        return new AnimationCompressor.Track(keyTimes, keyValues, width);
+    }
+
+    /**
+     * Value of a track at time, the way a viewer plays it back
+     */
+    private static float[] sample(AnimationCompressor.Track track, float time, boolean rotation, boolean step) {
+        int width = track.width;
+        int k = 0;
+        while (k < track.size() - 2 && track.times[k + 1] <= time) {
+            k++;
+        }
+        float[] out = new float[width];
+        float s = Math.max(0, Math.min(1, (time - track.times[k]) / (track.times[k + 1] - track.times[k])));
+        if (step) {
+            int key = s >= 1 ? k + 1 : k;
+            System.arraycopy(track.values, key * width, out, 0, width);
+            return out;
+        }
+        double wa = 1 - s;
+        double wb = s;
+        if (rotation) {
+            double dot = 0;
+            for (int c = 0; c < 4; c++) {
+                dot += track.values[k * 4 + c] * track.values[(k + 1) * 4 + c];
+            }
+            double theta = Math.acos(Math.min(1, Math.abs(dot)));
+            if (theta > 1e-4) {
+                wa = Math.sin((1 - s) * theta) / Math.sin(theta);
+                wb = Math.sin(s * theta) / Math.sin(theta);
+            }
+            wb = dot < 0 ? -wb : wb;
+        }
+        for (int c = 0; c < width; c++) {
+            out[c] = (float) (track.values[k * width + c] * wa + track.values[(k + 1) * width + c] * wb);
+        }
+        return out;
+    }
+
+    private static float difference(float[] value, float[] values, int offset, boolean rotation) {
+        if (rotation) {
+            double dot = 0;
+            double lengthA = 0;
+            double lengthB = 0;
+            for (int c = 0; c < 4; c++) {
+                dot += (double) value[c] * values[offset + c];
+                lengthA += (double) value[c] * value[c];
+                lengthB += (double) values[offset + c] * values[offset + c];
+            }
+            return (float) (2 * Math.acos(Math.min(1, Math.abs(dot) / Math.sqrt(lengthA * lengthB))));
+        }
+        float worst = 0;
+        for (int c = 0; c < value.length; c++) {
+            worst = Math.max(worst, Math.abs(value[c] - values[offset + c]));
+        }
+        return worst;
+    }
+
+    private static class Rig {
+        static final String[] PATHS = {"translation", "rotation", "scale"};
+
+        private final GlbWriter writer = new GlbWriter();
+        private final JSONArray views = new JSONArray();
+        private final JSONArray accessors = new JSONArray();
+        private final JSONArray nodes = new JSONArray();
+        private final JSONArray samplers = new JSONArray();
+        private final JSONArray channels = new JSONArray();
+
+        /**
+         * A chain of joints; no animation when seconds is 0
+         */
+        Rig(int joints, float seconds) throws Exception {
+            for (int j = 0; j < joints; j++) {
+                JSONObject node = new JSONObject().put("name", "Joint " + j);
+                if (j + 1 < joints) {
+                    node.put("children", new JSONArray().put(j + 1));
+                }
+                nodes.put(node);
+            }
+            if (seconds <= 0) {
+                return;
+            }
+
+            int keys = Math.round(seconds * KEYS_PER_SECOND) + 1;
+            ByteBuffer times = buffer(keys);
+            for (int k = 0; k < keys; k++) {
+                times.putFloat(k / (float) KEYS_PER_SECOND);
+            }
+            int input = addAccessor(times, keys, "SCALAR");
+            accessors.getJSONObject(input).put("min", new JSONArray().put(0))
+                    .put("max", new JSONArray().put((double) ((keys - 1) / (float) KEYS_PER_SECOND)));
+
+            for (int j = 0; j < joints; j++) {
+                ByteBuffer translation = buffer(keys * 3);
+                ByteBuffer rotation = buffer(keys * 4);
+                ByteBuffer scale = buffer(keys * 3);
+                for (int k = 0; k < keys; k++) {
+                    float t = k / (float) KEYS_PER_SECOND;
+                    float phase = t / seconds;
+                    // Held for a quarter, ramped for a quarter, then oscillating
+                    float x = phase < 0.25f ? 0 : phase < 0.5f ? (phase - 0.25f) * 4
+                            : 1 + 0.2f * (float) Math.sin((phase - 0.5f) * 8 * Math.PI);
+                    translation.putFloat(x).putFloat(j).putFloat(0);
+                    double angle = t * (1 + j * 0.1);
+                    rotation.putFloat(0).putFloat((float) Math.sin(angle / 2)).putFloat(0)
+                            .putFloat((float) Math.cos(angle / 2));
+                    float size = 1 + (int) (phase * 4) * 0.25f;
+                    scale.putFloat(size).putFloat(size).putFloat(size);
+                }
+                addChannel(j, "translation", input, addAccessor(translation, keys, "VEC3"), "LINEAR");
+                addChannel(j, "rotation", input, addAccessor(rotation, keys, "VEC4"), "LINEAR");
+                addChannel(j, "scale", input, addAccessor(scale, keys, "VEC3"), "STEP");
+            }
+        }
+
+        /**
+         * A CUBICSPLINE translation on a new node, sharing the key times (which the
+         * compressor leaves alone)
+         */
+        void addCubicSpline() throws Exception {
+            int keys = accessors.getJSONObject(0).getInt("count");
+            ByteBuffer values = buffer(keys * 9);
+            for (int i = 0; i < keys * 9; i++) {
+                values.putFloat(0);
+            }
+            nodes.put(new JSONObject().put("name", "Prop"));
+            nodes.getJSONObject(0).put("children", new JSONArray().put(nodes.length() - 1));
+            addChannel(nodes.length() - 1, "translation", 0, addAccessor(values, keys * 3, "VEC3"), "CUBICSPLINE");
+        }
+
+        private static ByteBuffer buffer(int floats) {
+            return ByteBuffer.allocate(floats * 4).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void addChannel(int node, String path, int input, int output, String interpolation)
+                throws Exception {
+            samplers.put(new JSONObject().put("input", input).put("output", output)
+                    .put("interpolation", interpolation));
+            channels.put(new JSONObject().put("sampler", samplers.length() - 1)
+                    .put("target", new JSONObject().put("node", node).put("path", path)));
+        }
+
+        private int addAccessor(ByteBuffer data, int count, String type) throws Exception {
+            data.flip();
+            writer.align(4, 0);
+            views.put(new JSONObject().put("buffer", 0).put("byteOffset", writer.addBuffer(data))
+                    .put("byteLength", data.remaining()));
+            accessors.put(new JSONObject().put("bufferView", views.length() - 1)
+                    .put("componentType", Accessor.FLOAT).put("count", count).put("type", type));
+            return accessors.length() - 1;
+        }
+
+        File write(File file) throws Exception {
+            JSONObject json = new JSONObject()
+                    .put("asset", new JSONObject().put("version", "2.0"))
+                    .put("scene", 0)
+                    .put("scenes", new JSONArray().put(new JSONObject().put("nodes", new JSONArray().put(0))))
+                    .put("nodes", nodes);
+            if (samplers.length() > 0) {
+                json.put("accessors", accessors)
+                        .put("bufferViews", views)
+                        .put("buffers", new JSONArray().put(new JSONObject().put("byteLength", writer.getBinLength())))
+                        .put("animations", new JSONArray().put(new JSONObject()
+                                .put("samplers", samplers).put("channels", channels)));
+            }
+            writer.write(file, json);
+            return file;
+        }
+    }
+}
@@ -0,0 +1,597 @@
+package com.example.glbmodelmanager.glb;
+
+import com.example.glbmodelmanager.Benchmarks;
+import com.example.glbmodelmanager.preview.PreviewLoader;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * DracoDecoder against streams written by a small encoder that follows the
+ * Draco 2.2 sequential layout, the readers on an Edgebreaker stream, and decode
+ * throughput compared with reading the same mesh from plain accessors
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DracoDecoderTest {
+
+    // A 1M-vertex, 2M-triangle grid for the throughput comparison
+    private static final int LARGE_GRID = 1_000;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+    private static final long LARGE_DECODE_BUDGET_MS = 1_500;
+
+    // Start of a Draco 2.2 stream as the reference encoder writes it at its default
+    // settings: mesh, Edgebreaker method, no flags, then the Edgebreaker connectivity header
+    // (standard traversal, 3 encoded vertices, 1 face, no attribute data, 1 symbol, no split
+    // symbols). Built by hand from the bitstream spec; the decoder stops at the method byte,
+    // so the symbol data is left out
+    private static final byte[] EDGEBREAKER_STREAM = {
+            'D', 'R', 'A', 'C', 'O', 2, 2, 1, 1, 0, 0,
+            0, 3, 1, 0, 1, 0};
+
+    private static final int POSITION_ID = 0;
+    private static final int QUANTIZATION_BITS = 14;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rawIndicesAndFloatPositions_roundTrip() throws Exception {
+        Grid grid = new Grid(7);
+        DracoMesh mesh = new DracoMesh();
+        new DracoDecoder().decode(new Stream(grid).rawIndices().floatPositions().build(), mesh);
+        mesh.name("POSITION", POSITION_ID);
+
+        assertMatches(grid, mesh, 0f);
+    }
+
+    @Test
+    public void entropyCodedIndicesAndQuantizedPositions_roundTrip() throws Exception {
+        Grid grid = new Grid(40);
+        float tolerance = grid.extent() / ((1 << QUANTIZATION_BITS) - 1);
+        for (boolean tagged : new boolean[]{false, true}) {
+            DracoMesh mesh = new DracoMesh();
+            new DracoDecoder().decode(new Stream(grid).codedIndices(tagged).quantizedPositions().build(), mesh);
+            mesh.name("POSITION", POSITION_ID);
+
+            assertMatches(grid, mesh, tolerance);
+        }
+    }
+
+    @Test
+    public void decoder_reusesOutputBetweenPrimitives() throws Exception {
+        DracoDecoder decoder = new DracoDecoder();
+        DracoMesh mesh = new DracoMesh();
+        decoder.decode(new Stream(new Grid(30)).codedIndices(false).quantizedPositions().build(), mesh);
+        Grid small = new Grid(3);
+        decoder.decode(new Stream(small).codedIndices(false).quantizedPositions().build(), mesh);
+        mesh.name("POSITION", POSITION_ID);
+
+        assertMatches(small, mesh, small.extent() / ((1 << QUANTIZATION_BITS) - 1));
+        assertNull(mesh.getAttribute("NORMAL"));
+    }
+
+    @Test
+    public void unsupportedAndBrokenStreams_areRejected() throws Exception {
+        ByteBuffer edgebreaker = new Stream(new Grid(2)).rawIndices().floatPositions().build();
+        edgebreaker.put(8, (byte) 1);
+        assertRejected(edgebreaker, "edgebreaker");
+
+        ByteBuffer full = new Stream(new Grid(5)).codedIndices(false).quantizedPositions().build();
+        ByteBuffer truncated = GlbFile.slice(full, 0, full.remaining() / 2);
+        assertRejected(truncated, "");
+    }
+
+    @Test
+    public void edgebreakerPrimitive_isLeftOutByEveryReader() throws Exception {
+        Grid grid = new Grid(10);
+        ByteBuffer edgebreaker = ByteBuffer.wrap(EDGEBREAKER_STREAM).order(ByteOrder.LITTLE_ENDIAN);
+        assertRejected(edgebreaker.duplicate(), "edgebreaker");
+        File file = writeGlb(grid, new Stream(grid).codedIndices(false).quantizedPositions().build(),
+                edgebreaker.duplicate());
+
+        try (GlbFile glb = GlbFile.open(file)) {
+            ValidationReport report = new GltfValidator().validate(glb);
+            assertTrue(report.getIssues().toString(), report.isValid());
+            assertEquals(1, report.getWarningCount());
+            assertTrue(report.getIssues().toString().contains("edgebreaker"));
+
+            // Half the model would match the wrong models
+            assertNull(GeometryFingerprint.compute(glb));
+        }
+
+        PreviewLoader loader = new PreviewLoader(Integer.MAX_VALUE);
+        AtomicInteger previewed = new AtomicInteger(-1);
+        loader.load(file, (stage, mesh) -> {
+            if (stage == PreviewLoader.STAGE_FULL) {
+                previewed.set(mesh.getTriangleCount());
+            }
+        });
+        assertEquals(grid.triangles(), previewed.get());
+        assertNotNull(loader.getSkippedReason());
+        assertTrue(loader.getSkippedReason().contains("edgebreaker"));
+
+        try {
+            new PreviewLoader(Integer.MAX_VALUE).load(writeGlb(grid, edgebreaker.duplicate()), (stage, mesh) -> { });
+            fail("Model without decodable triangles was previewed");
+        } catch (GlbFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("edgebreaker"));
+        }
+    }
+
+    @Test
+    public void compressedPrimitive_isReadAndValidatedThroughTheGlb() throws Exception {
+        Grid grid = new Grid(20);
+        File file = writeGlb(grid, new Stream(grid).codedIndices(false).quantizedPositions().build());
+
+        try (GlbFile glb = GlbFile.open(file)) {
+            JSONObject primitive = glb.getJson().getJSONArray("meshes").getJSONObject(0)
+                    .getJSONArray("primitives").getJSONObject(0);
+            DracoMesh mesh = new DracoMesh();
+            assertTrue(new DracoDecoder().decodePrimitive(glb, primitive, mesh));
+            assertMatches(grid, mesh, grid.extent() / ((1 << QUANTIZATION_BITS) - 1));
+
+            ValidationReport report = new GltfValidator().validate(glb);
+            assertTrue(report.getIssues().toString(), report.isValid());
+            assertEquals(0, report.getWarningCount());
+
+            GeometryFingerprint fingerprint = GeometryFingerprint.compute(glb);
+            assertEquals(grid.vertices(), fingerprint.getVertexCount());
+        }
+    }
+
+    @Test
+    public void decodeThroughput_comparedWithPlainAccessors() throws Exception {
+        Benchmarks.assumeEnabled();
+        Grid grid = new Grid(LARGE_GRID);
+        ByteBuffer stream = new Stream(grid).codedIndices(false).quantizedPositions().build();
+        File plain = writePlainGlb(grid);
+
+        DracoDecoder decoder = new DracoDecoder();
+        DracoMesh mesh = new DracoMesh();
+        long dracoNanos = Long.MAX_VALUE;
+        long plainNanos = Long.MAX_VALUE;
+        double checksum = 0;
+        try (GlbFile glb = GlbFile.open(plain)) {
+            for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+                long start = System.nanoTime();
+                decoder.decode(stream, mesh);
+                mesh.name("POSITION", POSITION_ID);
+                checksum += sum(mesh.getAttribute("POSITION"), mesh.getIndices());
+                long draco = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                checksum += sum(Accessor.open(glb, 0), Accessor.open(glb, 1));
+                long accessors = System.nanoTime() - start;
+
+                if (run >= WARMUP_RUNS) {
+                    dracoNanos = Math.min(dracoNanos, draco);
+                    plainNanos = Math.min(plainNanos, accessors);
+                }
+            }
+        }
+
+        assertTrue(checksum > 0);
+        assertTrue(stream.remaining() < (long) grid.vertices() * 12 + (long) grid.triangles() * 12);
+        assertTrue(plainNanos > 0);
+        Benchmarks.assertWithinBudget("draco decode of " + grid.vertices() + " vertices (ms)",
+                dracoNanos / 1_000_000, LARGE_DECODE_BUDGET_MS);
+    }
+
+    private static double sum(Accessor positions, Accessor indices) {
+        double sum = 0;
+        for (int i = 0; i < positions.getCount(); i++) {
+            sum += positions.get(i, 0) + positions.get(i, 1) + positions.get(i, 2);
+        }
+        for (int i = 0; i < indices.getCount(); i++) {
+            sum += indices.getInt(i, 0);
+        }
+        return sum;
+    }
+
+    private static void assertMatches(Grid grid, DracoMesh mesh, float tolerance) {
+        assertEquals(grid.triangles(), mesh.getFaceCount());
+        assertEquals(grid.vertices(), mesh.getPointCount());
+        Accessor indices = mesh.getIndices();
+        for (int i = 0; i < grid.indices.length; i++) {
+            assertEquals(grid.indices[i], indices.getInt(i, 0));
+        }
+        Accessor positions = mesh.getAttribute("POSITION");
+        for (int v = 0; v < grid.vertices(); v++) {
+            for (int c = 0; c < 3; c++) {
+                float error = Math.abs(positions.get(v, c) - grid.positions[v * 3 + c]);
+                assertTrue("vertex " + v + " is off by " + error, error <= tolerance);
+            }
+        }
+    }
+
+    private static void assertRejected(ByteBuffer stream, String message) {
+        try {
+            new DracoDecoder().decode(stream, new DracoMesh());
+            fail("Stream was accepted");
+        } catch (GlbFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    /**
+     * GLB with one mesh, one primitive per stream; the streams share the grid's accessors
+     */
+    private File writeGlb(Grid grid, ByteBuffer... streams) throws Exception {
+        GlbWriter writer = new GlbWriter();
+        JSONArray primitives = new JSONArray();
+        JSONArray bufferViews = new JSONArray();
+        for (int s = 0; s < streams.length; s++) {
+            int length = streams[s].remaining();
+            long offset = writer.addBuffer(streams[s]);
+            bufferViews.put(new JSONObject().put("buffer", 0).put("byteOffset", offset).put("byteLength", length));
+            primitives.put(new JSONObject()
+                    .put("attributes", new JSONObject().put("POSITION", 0))
+                    .put("indices", 1)
+                    .put("extensions", new JSONObject().put(DracoDecoder.EXTENSION, new JSONObject()
+                            .put("bufferView", s)
+                            .put("attributes", new JSONObject().put("POSITION", POSITION_ID)))));
+        }
+        JSONObject json = new JSONObject()
+                .put("asset", new JSONObject().put("version", "2.0"))
+                .put("extensionsUsed", new JSONArray().put(DracoDecoder.EXTENSION))
+                .put("extensionsRequired", new JSONArray().put(DracoDecoder.EXTENSION))
+                .put("meshes", new JSONArray().put(new JSONObject().put("primitives", primitives)))
+                .put("accessors", new JSONArray()
+                        .put(new JSONObject().put("componentType", Accessor.FLOAT)
+                                .put("count", grid.vertices()).put("type", "VEC3")
+                                .put("min", new JSONArray().put(0).put(0).put(0))
+                                .put("max", new JSONArray().put(grid.extent()).put(grid.extent()).put(1)))
+                        .put(new JSONObject().put("componentType", Accessor.UNSIGNED_INT)
+                                .put("count", grid.indices.length).put("type", "SCALAR")))
+                .put("bufferViews", bufferViews)
+                .put("buffers", new JSONArray().put(new JSONObject().put("byteLength", writer.getBinLength())));
+        File file = folder.newFile();
+        writer.write(file, json);
+        return file;
+    }
+
+    private File writePlainGlb(Grid grid) throws Exception {
+        ByteBuffer positions = ByteBuffer.allocate(grid.positions.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        positions.asFloatBuffer().put(grid.positions);
+        ByteBuffer indices = ByteBuffer.allocate(grid.indices.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        indices.asIntBuffer().put(grid.indices);
+
+        GlbWriter writer = new GlbWriter();
+        long positionOffset = writer.addBuffer(positions);
+        long indexOffset = writer.addBuffer(indices);
+        JSONObject json = new JSONObject()
+                .put("asset", new JSONObject().put("version", "2.0"))
+                .put("accessors", new JSONArray()
+                        .put(new JSONObject().put("bufferView", 0).put("componentType", Accessor.FLOAT)
+                                .put("count", grid.vertices()).put("type", "VEC3"))
+                        .put(new JSONObject().put("bufferView", 1).put("componentType", Accessor.UNSIGNED_INT)
+                                .put("count", grid.indices.length).put("type", "SCALAR")))
+                .put("bufferViews", new JSONArray()
+                        .put(new JSONObject().put("buffer", 0).put("byteOffset", positionOffset)
+                                .put("byteLength", positions.capacity()))
+                        .put(new JSONObject().put("buffer", 0).put("byteOffset", indexOffset)
+                                .put("byteLength", indices.capacity())))
+                .put("buffers", new JSONArray().put(new JSONObject().put("byteLength", writer.getBinLength())));
+        File file = folder.newFile();
+        writer.write(file, json);
+        return file;
+    }
+
+    /**
+     * Gently curved grid of cells x cells quads, two triangles each
+     */
+    private static class Grid {
+        final int cells;
+        final float[] positions;
+        final int[] indices;
+
+        Grid(int cells) {
+            this.cells = cells;
+            int side = cells + 1;
+            positions = new float[side * side * 3];
+            for (int y = 0; y < side; y++) {
+                for (int x = 0; x < side; x++) {
+                    int v = (y * side + x) * 3;
+                    positions[v] = x;
+                    positions[v + 1] = y;
+                    positions[v + 2] = (float) (0.5 + 0.5 * Math.sin(x * 0.1) * Math.cos(y * 0.1));
+                }
+            }
+            indices = new int[cells * cells * 6];
+            int i = 0;
+            for (int y = 0; y < cells; y++) {
+                for (int x = 0; x < cells; x++) {
+                    int a = y * side + x;
+                    indices[i++] = a;
+                    indices[i++] = a + 1;
+                    indices[i++] = a + side;
+                    indices[i++] = a + 1;
+                    indices[i++] = a + side + 1;
+                    indices[i++] = a + side;
+                }
+            }
+        }
+
+        int vertices() {
+            return positions.length / 3;
+        }
+
+        int triangles() {
+            return indices.length / 3;
+        }
+
+        float extent() {
+            return cells;
+        }
+    }
+
+    /**
+     * Writes a Draco 2.2 sequential mesh stream with one POSITION attribute
+     */
+    private static class Stream {
+        private final Grid grid;
+        private final Bytes out = new Bytes();
+        private final Bytes transforms = new Bytes();
+
+        Stream(Grid grid) {
+            this.grid = grid;
+            out.bytes('D', 'R', 'A', 'C', 'O', 2, 2, 1, 0).u16(0);
+            out.varint(grid.triangles()).varint(grid.vertices());
+        }
+
+        Stream rawIndices() {
+            out.u8(1);
+            for (int index : grid.indices) {
+                if (grid.vertices() < 256) {
+                    out.u8(index);
+                } else if (grid.vertices() < 1 << 16) {
+                    out.u16(index);
+                } else {
+                    out.varint(index);
+                }
+            }
+            return this;
+        }
+
+        Stream codedIndices(boolean tagged) {
+            out.u8(0);
+            int[] symbols = new int[grid.indices.length];
+            int last = 0;
+            for (int i = 0; i < symbols.length; i++) {
+                int delta = grid.indices[i] - last;
+                last = grid.indices[i];
+                symbols[i] = delta < 0 ? (-delta << 1) | 1 : delta << 1;
+            }
+            symbols(symbols, 1, tagged);
+            return this;
+        }
+
+        Stream floatPositions() {
+            attributeHeader(9, 0);
+            for (float value : grid.positions) {
+                out.f32(value);
+            }
+            return this;
+        }
+
+        /**
+         * Quantized positions, difference predicted with the wrap transform
+         */
+        Stream quantizedPositions() {
+            attributeHeader(9, 2);
+            float range = grid.extent();
+            int max = (1 << QUANTIZATION_BITS) - 1;
+            int[] quantized = new int[grid.positions.length];
+            for (int i = 0; i < quantized.length; i++) {
+                quantized[i] = Math.round(grid.positions[i] / range * max);
+            }
+            int[] symbols = new int[quantized.length];
+            int min = Integer.MAX_VALUE;
+            int maxValue = Integer.MIN_VALUE;
+            for (int i = 0; i < quantized.length; i++) {
+                int correction = quantized[i] - (i < 3 ? 0 : quantized[i - 3]);
+                symbols[i] = (correction << 1) ^ (correction >> 31);
+                min = Math.min(min, quantized[i]);
+                maxValue = Math.max(maxValue, quantized[i]);
+            }
+            out.u8(0).u8(1).u8(1);  // Difference prediction, wrap transform, entropy coded
+            symbols(symbols, 3, false);
+            out.i32(min).i32(maxValue);
+            transforms.f32(0).f32(0).f32(0).f32(range).u8(QUANTIZATION_BITS);
+            return this;
+        }
+
+        ByteBuffer build() {
+            byte[] transformBytes = transforms.toByteArray();
+            out.raw(transformBytes);
+            byte[] bytes = out.toByteArray();
+            return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void attributeHeader(int dataType, int decoderType) {
+            out.u8(1).varint(1);  // One decoder with one attribute
+            out.u8(0).u8(dataType).u8(3).u8(0).varint(POSITION_ID);
+            out.u8(decoderType);
+        }
+
+        private void symbols(int[] values, int components, boolean tagged) {
+            if (!tagged) {
+                int bits = 1;
+                for (int value : values) {
+                    bits = Math.max(bits, 32 - Integer.numberOfLeadingZeros(value));
+                }
+                out.u8(1).u8(bits);
+                rans(values, Math.max(12, Math.min(20, 3 * bits / 2)));
+                return;
+            }
+            int[] tags = new int[values.length / components];
+            Bits raw = new Bits();
+            for (int t = 0; t < tags.length; t++) {
+                int bits = 1;
+                for (int c = 0; c < components; c++) {
+                    bits = Math.max(bits, 32 - Integer.numberOfLeadingZeros(values[t * components + c]));
+                }
+                tags[t] = bits;
+                for (int c = 0; c < components; c++) {
+                    raw.write(values[t * components + c], bits);
+                }
+            }
+            out.u8(0);
+            rans(tags, 12);
+            out.raw(raw.toByteArray());
+        }
+
+        /**
+         * Probability table and rANS block, symbols pushed in reverse so they decode in order
+         */
+        private void rans(int[] values, int precisionBits) {
+            int precision = 1 << precisionBits;
+            int symbols = 0;
+            for (int value : values) {
+                symbols = Math.max(symbols, value + 1);
+            }
+            long[] counts = new long[symbols];
+            for (int value : values) {
+                counts[value]++;
+            }
+            int[] probability = new int[symbols];
+            int total = 0;
+            int largest = 0;
+            for (int s = 0; s < symbols; s++) {
+                if (counts[s] > 0) {
+                    probability[s] = (int) Math.max(1, counts[s] * precision / values.length);
+                    total += probability[s];
+                    largest = counts[s] > counts[largest] ? s : largest;
+                }
+            }
+            probability[largest] += precision - total;
+            int[] cumulative = new int[symbols];
+            for (int s = 1; s < symbols; s++) {
+                cumulative[s] = cumulative[s - 1] + probability[s - 1];
+            }
+
+            out.varint(symbols);
+            for (int p : probability) {
+                if (p < 1 << 6) {
+                    out.u8(p << 2);
+                } else if (p < 1 << 14) {
+                    out.u8(((p & 0x3F) << 2) | 1).u8(p >>> 6);
+                } else {
+                    out.u8(((p & 0x3F) << 2) | 2).u8((p >>> 6) & 0xFF).u8(p >>> 14);
+                }
+            }
+
+            long lowerBound = precision * 4L;
+            long state = lowerBound;
+            Bytes block = new Bytes();
+            for (int i = values.length - 1; i >= 0; i--) {
+                int p = probability[values[i]];
+                while (state >= lowerBound / precision * 256 * p) {
+                    block.u8((int) (state % 256));
+                    state /= 256;
+                }
+                state = (state / p) * precision + state % p + cumulative[values[i]];
+            }
+            state -= lowerBound;
+            if (state < 1 << 6) {
+                block.u8((int) state);
+            } else if (state < 1 << 14) {
+                block.u16((int) (state + (1 << 14)));
+            } else if (state < 1 << 22) {
+                long value = state + (2L << 22);
+                block.u16((int) (value & 0xFFFF)).u8((int) (value >>> 16));
+            } else {
+                block.i32((int) (state + (3L << 30)));
+            }
+            byte[] bytes = block.toByteArray();
+            out.varint(bytes.length).raw(bytes);
+        }
+    }
+
+    private static class Bytes extends ByteArrayOutputStream {
+        Bytes u8(int value) {
+            write(value);
+            return this;
+        }
+
+        Bytes bytes(int... values) {
+            for (int value : values) {
+                write(value);
+            }
+            return this;
+        }
+
+        Bytes u16(int value) {
+            return u8(value & 0xFF).u8((value >>> 8) & 0xFF);
+        }
+
+        Bytes i32(int value) {
+            return u16(value & 0xFFFF).u16(value >>> 16);
+        }
+
+        Bytes f32(float value) {
+            return i32(Float.floatToIntBits(value));
+        }
+
+        Bytes varint(long value) {
+            while (value >= 0x80) {
+                write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+            return this;
+        }
+
+        Bytes raw(byte[] data) {
+            write(data, 0, data.length);
+            return this;
+        }
+    }
+
+    /**
+     * Least significant bit first, as the decoder reads tagged values
+     */
+    private static class Bits {
+        private final Bytes bytes = new Bytes();
+        private int current;
+        private int used;
+
+        void write(int value, int bits) {
+            for (int b = 0; b < bits; b++) {
+                current |= ((value >>> b) & 1) << used;
+                if (++used == 8) {
+                    bytes.u8(current);
+                    current = 0;
+                    used = 0;
+                }
+            }
+        }
+
+        byte[] toByteArray() {
+            if (used > 0) {
+                bytes.u8(current);
+                current = 0;
+                used = 0;
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * GeometryFingerprint of one shape exported in different ways, and of different shapes
+ */
+@RunWith(RobolectricTestRunner.class)
+public class GeometryFingerprintTest {
+
+    // Similarity a re-export must reach; voxels on a cell boundary may land either side
+    private static final float SAME_SHAPE = 0.9f;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reExport_withBakedTransformsAndQuantizedPositions_matches() throws Exception {
+        float[] blob = blob(48, 32);
+        // Original: float positions placed by a parent translation and a child turned 30 degrees
+        // and scaled
+        JSONArray hierarchy = new JSONArray()
+                .put(new JSONObject().put("translation", vector(5, 0, -3)).put("children", new JSONArray().put(1)))
+                .put(new JSONObject().put("mesh", 0)
+                        .put("rotation", new JSONArray().put(0).put(Math.sin(Math.PI / 12)).put(0).put(Math.cos(Math.PI / 12)))
+                        .put("scale", vector(2, 2, 2)));
+        GeometryFingerprint original = fingerprint(write(floats(blob), Accessor.FLOAT, false, blob.length / 3, hierarchy));
+
+        // Re-export: the same transforms baked into the vertices, vertex order reversed,
+        // positions quantized to normalized shorts and scaled back up by the node
+        float[] baked = new float[blob.length];
+        float[] m = NodeTransforms.multiply(NodeTransforms.local(hierarchy.getJSONObject(0)),
+                NodeTransforms.local(hierarchy.getJSONObject(1)));
+        float extent = 0;
+        for (int v = 0; v < blob.length / 3; v++) {
+            int target = (blob.length / 3 - 1 - v) * 3;
+            NodeTransforms.transform(m, blob[v * 3], blob[v * 3 + 1], blob[v * 3 + 2], baked, target);
+            for (int c = 0; c < 3; c++) {
+                extent = Math.max(extent, Math.abs(baked[target + c]));
+            }
+        }
+        ByteBuffer quantized = ByteBuffer.allocate(baked.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (float value : baked) {
+            quantized.putShort((short) Math.round(value / extent * 32767));
+        }
+        quantized.flip();
+        JSONArray flat = new JSONArray().put(new JSONObject().put("mesh", 0)
+                .put("scale", vector(extent, extent, extent)));
+        GeometryFingerprint reExport = fingerprint(write(quantized, Accessor.SHORT, true, baked.length / 3, flat));
+
+        assertTrue(GeometryFingerprint.similarity(original.getSignature(), reExport.getSignature()) >= SAME_SHAPE);
+        assertEquals(original.getShapeMid(), reExport.getShapeMid(), 0.01f);
+        assertEquals(original.getShapeMin(), reExport.getShapeMin(), 0.01f);
+        assertEquals(original.getVertexCount(), reExport.getVertexCount());
+    }
+
+    @Test
+    public void nodeTransforms_arePartOfTheShape() throws Exception {
+        // Two copies of a blob side by side are a different shape from one blob,
+        // even though the file stores the same vertices
+        float[] blob = blob(48, 32);
+        ByteBuffer positions = floats(blob);
+        JSONArray single = new JSONArray().put(new JSONObject().put("mesh", 0));
+        JSONArray pair = new JSONArray()
+                .put(new JSONObject().put("children", new JSONArray().put(1).put(2)))
+                .put(new JSONObject().put("mesh", 0))
+                .put(new JSONObject().put("mesh", 0).put("translation", vector(6, 0, 0)));
+
+        GeometryFingerprint one = fingerprint(write(positions, Accessor.FLOAT, false, blob.length / 3, single));
+        GeometryFingerprint two = fingerprint(write(positions.duplicate(), Accessor.FLOAT, false, blob.length / 3, pair));
+
+        assertEquals(2 * one.getVertexCount(), two.getVertexCount());
+        assertTrue(two.getShapeMid() < 0.6f);
+        assertTrue(GeometryFingerprint.similarity(one.getSignature(), two.getSignature()) < 0.5f);
+    }
+
+    @Test
+    public void differentShapes_areNotSimilar() throws Exception {
+        float[] blob = blob(48, 32);
+        float[] torus = torus(48, 32);
+        JSONArray node = new JSONArray().put(new JSONObject().put("mesh", 0));
+
+        GeometryFingerprint a = fingerprint(write(floats(blob), Accessor.FLOAT, false, blob.length / 3, node));
+        GeometryFingerprint b = fingerprint(write(floats(torus), Accessor.FLOAT, false, torus.length / 3, node));
+
+        assertTrue(GeometryFingerprint.similarity(a.getSignature(), b.getSignature()) < 0.5f);
+    }
+
+    @Test
+    public void signature_roundTripsThroughBytes() {
+        int[] signature = new int[GeometryFingerprint.SIGNATURE_SIZE];
+        for (int i = 0; i < signature.length; i++) {
+            signature[i] = i * 0x9E3779B9;
+        }
+        assertArrayEquals(signature, GeometryFingerprint.fromBytes(GeometryFingerprint.toBytes(signature)));
+    }
+
+    private static GeometryFingerprint fingerprint(File file) throws Exception {
+        try (GlbFile glb = GlbFile.open(file)) {
+            GeometryFingerprint fingerprint = GeometryFingerprint.compute(glb);
+            assertNotNull(fingerprint);
+            return fingerprint;
+        }
+    }
+
+    /**
+     * Lumpy sphere of radius about 1, so no two axes have the same extent
+     */
+    private static float[] blob(int rings, int segments) {
+        float[] positions = new float[rings * segments * 3];
+        int i = 0;
+        for (int r = 0; r < rings; r++) {
+            double theta = Math.PI * (r + 0.5) / rings;
+            for (int s = 0; s < segments; s++) {
+                double phi = 2 * Math.PI * s / segments;
+                double radius = 1 + 0.2 * Math.sin(3 * phi) * Math.sin(2 * theta);
+                positions[i++] = (float) (radius * Math.sin(theta) * Math.cos(phi) * 1.6);
+                positions[i++] = (float) (radius * Math.cos(theta));
+                positions[i++] = (float) (radius * Math.sin(theta) * Math.sin(phi) * 0.7);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Torus with the same proportions as the blob
+     */
+    private static float[] torus(int rings, int segments) {
+        float[] positions = new float[rings * segments * 3];
+        int i = 0;
+        for (int r = 0; r < rings; r++) {
+            double theta = 2 * Math.PI * r / rings;
+            for (int s = 0; s < segments; s++) {
+                double phi = 2 * Math.PI * s / segments;
+                double ring = 0.7 + 0.3 * Math.cos(phi);
+                positions[i++] = (float) (ring * Math.cos(theta) * 1.6);
+                positions[i++] = (float) Math.sin(phi);
+                positions[i++] = (float) (ring * Math.sin(theta) * 0.7);
+            }
+        }
+        return positions;
+    }
+
+    private static ByteBuffer floats(float[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (float value : values) {
+            buffer.putFloat(value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static JSONArray vector(float x, float y, float z) throws JSONException {
+        return new JSONArray().put(x).put(y).put(z);
+    }
+
+    /**
+     * GLB with one mesh of one point primitive, drawn by the given nodes (node 0 is the root)
+     */
+    private File write(ByteBuffer positions, int componentType, boolean normalized, int count,
+                       JSONArray nodes) throws Exception {
+        GlbWriter writer = new GlbWriter();
+        int length = positions.remaining();
+        writer.addBuffer(positions);
+        JSONObject accessor = new JSONObject().put("bufferView", 0).put("componentType", componentType)
+                .put("count", count).put("type", "VEC3");
+        if (normalized) {
+            accessor.put("normalized", true);
+        }
+        JSONObject json = new JSONObject()
+                .put("asset", new JSONObject().put("version", "2.0"))
+                .put("scene", 0)
+                .put("scenes", new JSONArray().put(new JSONObject().put("nodes", new JSONArray().put(0))))
+                .put("nodes", nodes)
+                .put("meshes", new JSONArray().put(new JSONObject().put("primitives", new JSONArray()
+                        .put(new JSONObject().put("attributes", new JSONObject().put("POSITION", 0)).put("mode", 0)))))
+                .put("accessors", new JSONArray().put(accessor))
+                .put("bufferViews", new JSONArray().put(new JSONObject().put("buffer", 0).put("byteOffset", 0)
+                        .put("byteLength", length)))
+                .put("buffers", new JSONArray().put(new JSONObject().put("byteLength", writer.getBinLength())));
+        File file = folder.newFile();
+        writer.write(file, json);
+        return file;
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.glbmodelmanager.glb;
+
+import com.example.glbmodelmanager.Benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * GlbSplitter on a synthetic plant layout: a root node with one machine per
+ * child, laid out on a square grid. Every part must validate on its own
+ */
+@RunWith(RobolectricTestRunner.class)
+public class GlbSplitterTest {
+
+    private static final float ROOT_OFFSET = 100;
+    private static final float SPACING = 10;
+
+    // About 130 MB of geometry for the streaming run
+    private static final int LARGE_MACHINES = 64;
+    private static final int LARGE_VERTICES = 85_000;
+    private static final long LARGE_SPLIT_BUDGET_MS = 5_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void splitByNodes_packsSubtreesIntoValidParts() throws Exception {
+        Plant plant = new Plant(4, 300);
+        File source = plant.write(folder.newFile());
+        File dir = new File(folder.getRoot(), "parts");
+
+        // Room for about three machines per part, so the root must be split at its children
+        long target = 3 * plant.machineBytes() + 64;
+        List<GlbSplitter.Part> parts = new GlbSplitter(GlbSplitter.MODE_NODES, target, 1).split(source, dir);
+
+        assertEquals(6, parts.size());
+        Set<String> seen = new HashSet<>();
+        for (GlbSplitter.Part part : parts) {
+            File file = new File(dir, part.getFileName());
+            assertTrue(part.getFileSize() < source.length());
+            try (GlbFile glb = GlbFile.open(file)) {
+                ValidationReport report = new GltfValidator().validate(glb);
+                assertTrue(report.getIssues().toString(), report.isValid());
+
+                JSONObject json = glb.getJson();
+                JSONArray roots = json.getJSONArray("scenes").getJSONObject(0).getJSONArray("nodes");
+                assertEquals(part.getNodeCount(), roots.length());
+                assertEquals(roots.length(), json.getJSONArray("meshes").length());
+                assertEquals(1, json.getJSONArray("images").length());  // Shared texture comes along
+                for (int r = 0; r < roots.length(); r++) {
+                    JSONObject node = json.getJSONArray("nodes").getJSONObject(roots.getInt(r));
+                    String name = node.getString("name");
+                    assertTrue(name + " is in two parts", seen.add(name));
+
+                    // The root's translation is baked into each machine
+                    int machine = Integer.parseInt(name.substring("Machine ".length()));
+                    JSONArray matrix = node.getJSONArray("matrix");
+                    assertEquals(ROOT_OFFSET + (machine % plant.side) * SPACING, matrix.getDouble(12), 1e-4);
+                    assertEquals((machine / plant.side) * SPACING, matrix.getDouble(14), 1e-4);
+                }
+                assertEquals(GeometryStats.read(glb).getTriangleCount(), part.getTriangleCount());
+            }
+        }
+        assertEquals(plant.side * plant.side, seen.size());
+
+        JSONObject index = new JSONObject(new String(
+                Files.readAllBytes(new File(dir, GlbSplitter.INDEX_FILE).toPath()), StandardCharsets.UTF_8));
+        assertEquals("nodes", index.getString("mode"));
+        assertEquals(parts.size(), index.getJSONArray("parts").length());
+        assertEquals("Machine 0 + 2 more", index.getJSONArray("parts").getJSONObject(0).getString("name"));
+    }
+
+    @Test
+    public void splitByGrid_groupsMachinesByArea() throws Exception {
+        Plant plant = new Plant(6, 100);
+        File dir = new File(folder.getRoot(), "grid");
+        List<GlbSplitter.Part> parts = new GlbSplitter(GlbSplitter.MODE_GRID, Long.MAX_VALUE, 2)
+                .split(plant.write(folder.newFile()), dir);
+
+        assertEquals(4, parts.size());
+        float middleX = ROOT_OFFSET + (plant.side * SPACING - SPACING + 1) / 2;
+        float middleZ = (plant.side * SPACING - SPACING + 1) / 2;
+        for (GlbSplitter.Part part : parts) {
+            assertEquals(9, part.getNodeCount());
+            float[] bounds = part.getBounds();
+            assertNotNull(bounds);
+            // Each quadrant stays on one side of the middle in both directions
+            assertTrue((bounds[3] < middleX) || (bounds[0] > middleX));
+            assertTrue((bounds[5] < middleZ) || (bounds[2] > middleZ));
+            try (GlbFile glb = GlbFile.open(new File(dir, part.getFileName()))) {
+                assertTrue(new GltfValidator().validate(glb).isValid());
+            }
+        }
+    }
+
+    @Test
+    public void sharedBufferViews_areSlicedToTheBytesEachPartUses() throws Exception {
+        // Every machine's geometry sits in the same two bufferViews
+        Plant plant = new Plant(4, 300);
+        plant.sharedViews = true;
+        File source = plant.write(folder.newFile());
+        File dir = new File(folder.getRoot(), "shared");
+
+        List<GlbSplitter.Part> parts = new GlbSplitter(GlbSplitter.MODE_NODES, plant.machineBytes() + 64, 1)
+                .split(source, dir);
+
+        assertEquals(plant.side * plant.side, parts.size());
+        for (GlbSplitter.Part part : parts) {
+            try (GlbFile glb = GlbFile.open(new File(dir, part.getFileName()))) {
+                ValidationReport report = new GltfValidator().validate(glb);
+                assertTrue(report.getIssues().toString(), report.isValid());
+                JSONArray views = glb.getJson().getJSONArray("bufferViews");
+                long bytes = 0;
+                for (int v = 0; v < views.length(); v++) {
+                    bytes += views.getJSONObject(v).getLong("byteLength");
+                }
+                // One machine and the texture, not the whole shared geometry
+                assertTrue(bytes + " bytes", bytes <= plant.machineBytes() + 16);
+                assertEquals(GeometryStats.read(glb).getTriangleCount(), part.getTriangleCount());
+                assertEquals(plant.vertices - 2, part.getTriangleCount());
+            }
+        }
+    }
+
+    @Test
+    public void rootExtensions_lightsAreRemappedAndOthersDropped() throws Exception {
+        Plant plant = new Plant(2, 100);
+        plant.lights = true;
+        File dir = new File(folder.getRoot(), "lights");
+        List<GlbSplitter.Part> parts = new GlbSplitter(GlbSplitter.MODE_NODES, plant.machineBytes() + 64, 1)
+                .split(plant.write(folder.newFile()), dir);
+
+        assertEquals(4, parts.size());
+        for (GlbSplitter.Part part : parts) {
+            try (GlbFile glb = GlbFile.open(new File(dir, part.getFileName()))) {
+                assertTrue(new GltfValidator().validate(glb).isValid());
+                JSONObject json = glb.getJson();
+                JSONArray lights = json.getJSONObject("extensions").getJSONObject("KHR_lights_punctual")
+                        .getJSONArray("lights");
+                assertEquals(1, lights.length());
+                assertFalse(json.getJSONObject("extensions").has("EXT_site_origin"));
+                assertEquals("[\"KHR_lights_punctual\"]", json.getJSONArray("extensionsUsed").toString());
+
+                JSONObject node = json.getJSONArray("nodes").getJSONObject(0);
+                int machine = Integer.parseInt(node.getString("name").substring("Machine ".length()));
+                assertEquals(0, node.getJSONObject("extensions").getJSONObject("KHR_lights_punctual")
+                        .getInt("light"));
+                assertFalse(node.getJSONObject("extensions").has("EXT_site_origin"));
+                assertEquals("Lamp " + machine, lights.getJSONObject(0).getString("name"));
+            }
+        }
+    }
+
+    @Test
+    public void splitThroughput_largeModel() throws Exception {
+        Benchmarks.assumeEnabled();
+        Plant plant = new Plant((int) Math.sqrt(LARGE_MACHINES), LARGE_VERTICES);
+        File source = plant.write(folder.newFile());
+        File dir = new File(folder.getRoot(), "large");
+
+        long start = System.nanoTime();
+        List<GlbSplitter.Part> parts = new GlbSplitter(GlbSplitter.MODE_NODES, 16L * 1024 * 1024, 1)
+                .split(source, dir);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        long written = 0;
+        for (GlbSplitter.Part part : parts) {
+            written += part.getFileSize();
+        }
+        assertTrue(written >= source.length() * 9 / 10);
+        Benchmarks.assertWithinBudget("split of " + (source.length() >> 20) + " MB (ms)", elapsedMs,
+                LARGE_SPLIT_BUDGET_MS);
+    }
+
+    /**
+     * side x side machines under a translated root, each with its own mesh and a shared textured material
+     * With sharedViews all machines' geometry is in one positions and one indices bufferView; with
+     * lights each machine has its own KHR_lights_punctual light and an extension the splitter
+     * cannot carry over
+     */
+    private static class Plant {
+        final int side;
+        final int vertices;
+        boolean sharedViews;
+        boolean lights;
+
+        Plant(int side, int vertices) {
+            this.side = side;
+            this.vertices = vertices;
+        }
+
+        long machineBytes() {
+            return vertices * 12L + (vertices - 2) * 12L;
+        }
+
+        File write(File file) throws Exception {
+            // One copy of the geometry, referenced by every machine's own bufferViews
+            ByteBuffer positions = ByteBuffer.allocate(vertices * 12).order(ByteOrder.LITTLE_ENDIAN);
+            for (int v = 0; v < vertices; v++) {
+                positions.putFloat((v % 7) / 6f).putFloat((v % 5) / 4f).putFloat((v % 3) / 2f);
+            }
+            positions.flip();
+            ByteBuffer indices = ByteBuffer.allocate((vertices - 2) * 12).order(ByteOrder.LITTLE_ENDIAN);
+            for (int t = 0; t < vertices - 2; t++) {
+                indices.putInt(t).putInt(t + 1).putInt(t + 2);
+            }
+            indices.flip();
+
+            GlbWriter writer = new GlbWriter();
+            JSONArray views = new JSONArray();
+            JSONArray accessors = new JSONArray();
+            JSONArray meshes = new JSONArray();
+            JSONArray nodes = new JSONArray();
+            JSONArray children = new JSONArray();
+            nodes.put(new JSONObject().put("name", "Plant")
+                    .put("translation", new JSONArray().put(ROOT_OFFSET).put(0).put(0))
+                    .put("children", children));
+
+            long image = writer.addBytes(new byte[]{(byte) 0x89, 'P', 'N', 'G'});
+            views.put(new JSONObject().put("buffer", 0).put("byteOffset", image).put("byteLength", 4));
+
+            int machines = side * side;
+            if (sharedViews) {
+                writer.align(4, 0);
+                long start = writer.getBinLength();
+                for (int m = 0; m < machines; m++) {
+                    writer.addBuffer(positions.duplicate());
+                }
+                views.put(new JSONObject().put("buffer", 0).put("byteOffset", start)
+                        .put("byteLength", writer.getBinLength() - start));
+                start = writer.getBinLength();
+                for (int m = 0; m < machines; m++) {
+                    writer.addBuffer(indices.duplicate());
+                }
+                views.put(new JSONObject().put("buffer", 0).put("byteOffset", start)
+                        .put("byteLength", writer.getBinLength() - start));
+            }
+            JSONArray lamps = new JSONArray();
+
+            for (int m = 0; m < machines; m++) {
+                if (sharedViews) {
+                    accessors.put(new JSONObject().put("bufferView", 1).put("byteOffset", m * vertices * 12L)
+                            .put("componentType", Accessor.FLOAT).put("count", vertices).put("type", "VEC3")
+                            .put("min", new JSONArray().put(0).put(0).put(0))
+                            .put("max", new JSONArray().put(1).put(1).put(1)));
+                    accessors.put(new JSONObject().put("bufferView", 2)
+                            .put("byteOffset", m * (vertices - 2) * 12L)
+                            .put("componentType", Accessor.UNSIGNED_INT).put("count", (vertices - 2) * 3)
+                            .put("type", "SCALAR"));
+                    addMachine(m, accessors, meshes, nodes, children, lamps);
+                    continue;
+                }
+                writer.align(4, 0);
+                views.put(new JSONObject().put("buffer", 0).put("byteOffset", writer.addBuffer(positions))
+                        .put("byteLength", positions.remaining()));
+                views.put(new JSONObject().put("buffer", 0).put("byteOffset", writer.addBuffer(indices))
+                        .put("byteLength", indices.remaining()));
+                accessors.put(new JSONObject().put("bufferView", views.length() - 2)
+                        .put("componentType", Accessor.FLOAT).put("count", vertices).put("type", "VEC3")
+                        .put("min", new JSONArray().put(0).put(0).put(0))
+                        .put("max", new JSONArray().put(1).put(1).put(1)));
+                accessors.put(new JSONObject().put("bufferView", views.length() - 1)
+                        .put("componentType", Accessor.UNSIGNED_INT).put("count", (vertices - 2) * 3)
+                        .put("type", "SCALAR"));
+                addMachine(m, accessors, meshes, nodes, children, lamps);
+            }
+
+            JSONObject json = new JSONObject()
+                    .put("asset", new JSONObject().put("version", "2.0"))
+                    .put("scene", 0)
+                    .put("scenes", new JSONArray().put(new JSONObject().put("nodes", new JSONArray().put(0))))
+                    .put("nodes", nodes)
+                    .put("meshes", meshes)
+                    .put("materials", new JSONArray().put(new JSONObject().put("pbrMetallicRoughness",
+                            new JSONObject().put("baseColorTexture", new JSONObject().put("index", 0)))))
+                    .put("textures", new JSONArray().put(new JSONObject().put("source", 0).put("sampler", 0)))
+                    .put("samplers", new JSONArray().put(new JSONObject().put("magFilter", 9729)))
+                    .put("images", new JSONArray().put(new JSONObject().put("bufferView", 0)
+                            .put("mimeType", "image/png")))
+                    .put("accessors", accessors)
+                    .put("bufferViews", views)
+                    .put("buffers", new JSONArray().put(new JSONObject().put("byteLength", writer.getBinLength())));
+            if (lights) {
+                json.put("extensionsUsed", new JSONArray().put("KHR_lights_punctual").put("EXT_site_origin"))
+                        .put("extensions", new JSONObject()
+                                .put("KHR_lights_punctual", new JSONObject().put("lights", lamps))
+                                .put("EXT_site_origin", new JSONObject().put("node", 0)));
+            }
+            writer.write(file, json);
+            return file;
+        }
+
+        /**
+         * Mesh and node of machine m, using the last two accessors
+         */
+        private void addMachine(int m, JSONArray accessors, JSONArray meshes, JSONArray nodes,
+                                JSONArray children, JSONArray lamps) throws Exception {
+            meshes.put(new JSONObject().put("primitives", new JSONArray().put(new JSONObject()
+                    .put("attributes", new JSONObject().put("POSITION", accessors.length() - 2))
+                    .put("indices", accessors.length() - 1)
+                    .put("material", 0))));
+            children.put(nodes.length());
+            JSONObject node = new JSONObject().put("name", "Machine " + m).put("mesh", m)
+                    .put("translation", new JSONArray().put((m % side) * SPACING).put(0)
+                            .put((m / side) * SPACING));
+            if (lights) {
+                lamps.put(new JSONObject().put("name", "Lamp " + m).put("type", "point"));
+                node.put("extensions", new JSONObject()
+                        .put("KHR_lights_punctual", new JSONObject().put("light", m))
+                        .put("EXT_site_origin", new JSONObject().put("marker", true)));
+            }
+            nodes.put(node);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.glbmodelmanager.glb;
+
+import com.example.glbmodelmanager.Benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * GltfValidator against small hand-built GLBs with one defect each, and a large
+ * mesh that must validate fast enough to run on every import (./gradlew benchmark)
+ */
+@RunWith(RobolectricTestRunner.class)
+public class GltfValidatorTest {
+
+    // A 1M-vertex, 2M-triangle mesh; about 36 MB of accessor data
+    private static final int LARGE_VERTICES = 1_000_000;
+    private static final long LARGE_MODEL_BUDGET_MS = 1_500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void validMesh_hasNoProblems() throws Exception {
+        ValidationReport report = validate(new Mesh(300));
+
+        assertTrue(report.getIssues().toString(), report.isValid());
+        assertEquals(0, report.getWarningCount());
+    }
+
+    @Test
+    public void indexPastVertexCount_isReported() throws Exception {
+        Mesh mesh = new Mesh(100_000);
+        mesh.indices[mesh.indices.length - 1] = mesh.vertices;
+
+        assertOnlyError(validate(mesh), "/accessors/1", "out of range");
+    }
+
+    @Test
+    public void nonFinitePosition_isReported() throws Exception {
+        Mesh mesh = new Mesh(300);
+        mesh.positions[7] = Float.NaN;
+
+        assertOnlyError(validate(mesh), "/accessors/0", "NaN");
+    }
+
+    @Test
+    public void positionOutsideDeclaredBounds_isReported() throws Exception {
+        Mesh mesh = new Mesh(300);
+        mesh.positions[mesh.positions.length - 1] = 10;
+
+        assertOnlyError(validate(mesh), "/accessors/0", "above the declared max");
+    }
+
+    @Test
+    public void accessorPastBufferView_isReported() throws Exception {
+        Mesh mesh = new Mesh(300);
+        JSONObject json = mesh.json();
+        json.getJSONArray("accessors").getJSONObject(0).put("count", mesh.vertices + 1);
+        json.getJSONArray("accessors").getJSONObject(0).remove("min");
+        json.getJSONArray("accessors").getJSONObject(0).remove("max");
+
+        ValidationReport report = validate(mesh, json);
+        assertFalse(report.isValid());
+        assertTrue(report.getIssues().toString(), contains(report, "/accessors/0", "Runs past bufferView"));
+    }
+
+    @Test
+    public void nodeCycle_isReported() throws Exception {
+        Mesh mesh = new Mesh(300);
+        JSONObject json = mesh.json();
+        JSONArray nodes = json.getJSONArray("nodes");
+        nodes.getJSONObject(0).put("children", new JSONArray().put(1));
+        nodes.put(new JSONObject().put("children", new JSONArray().put(2)));
+        nodes.put(new JSONObject().put("children", new JSONArray().put(1)));
+
+        ValidationReport report = validate(mesh, json);
+        assertTrue(report.getIssues().toString(), contains(report, "", "cycle"));
+    }
+
+    @Test
+    public void sparseSubstitution_isAppliedBeforeBoundsCheck() throws Exception {
+        // The dense data is out of bounds at one vertex, but the sparse values replace it
+        Mesh mesh = new Mesh(300);
+        mesh.positions[3 * 10 + 1] = 50;
+        mesh.positions[3 * 20] = -50;
+        JSONObject json = sparsePositions(mesh, new int[]{10, 20}, new float[]{0, 0.5f, 0, 0.25f, 0, 1});
+
+        ValidationReport report = validate(mesh, json);
+        assertTrue(report.getIssues().toString(), report.isValid());
+    }
+
+    @Test
+    public void sparseValueOutsideDeclaredBounds_isReported() throws Exception {
+        Mesh mesh = new Mesh(300);
+        JSONObject json = sparsePositions(mesh, new int[]{10, 20}, new float[]{0, 0.5f, 0, 0.25f, 7, 1});
+
+        assertOnlyError(validate(mesh, json), "/accessors/0", "above the declared max");
+    }
+
+    @Test
+    public void sparseOnlyAccessor_countsUnsubstitutedElementsAsZero() throws Exception {
+        Mesh mesh = new Mesh(300);
+        JSONObject json = sparsePositions(mesh, new int[]{10, 20}, new float[]{0.5f, 0.5f, 0.5f, 1, 1, 1});
+        JSONObject positions = json.getJSONArray("accessors").getJSONObject(0);
+        positions.remove("bufferView");
+        positions.put("min", new JSONArray().put(0.5).put(0.5).put(0.5));
+
+        assertOnlyError(validate(mesh, json), "/accessors/0", "below the declared min");
+    }
+
+    @Test
+    public void unorderedSparseIndices_areReported() throws Exception {
+        Mesh mesh = new Mesh(300);
+        JSONObject json = sparsePositions(mesh, new int[]{20, 10}, new float[]{0, 0, 0, 1, 1, 1});
+
+        assertOnlyError(validate(mesh, json), "/accessors/0/sparse/indices", "strictly increasing");
+    }
+
+    @Test
+    public void largeMesh_isWithinImportBudget() throws Exception {
+        Benchmarks.assumeEnabled();
+        Mesh mesh = new Mesh(LARGE_VERTICES);
+        File file = mesh.write(mesh.json());
+        try (GlbFile glb = GlbFile.open(file)) {
+            new GltfValidator().validate(glb); // Warm up the JIT and the fork/join pool
+
+            long start = System.nanoTime();
+            ValidationReport report = new GltfValidator().validate(glb);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            assertTrue(report.getIssues().toString(), report.isValid());
+            Benchmarks.assertWithinBudget("large mesh validation (ms)", elapsedMs, LARGE_MODEL_BUDGET_MS);
+        }
+    }
+
+    /**
+     * Mesh JSON whose POSITION accessor has sparse substitutions, stored after the mesh's
+     * own data as unsigned int indices followed by float values
+     */
+    private static JSONObject sparsePositions(Mesh mesh, int[] elements, float[] values) throws JSONException {
+        ByteBuffer sparse = ByteBuffer.allocate(elements.length * 4 + values.length * 4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int element : elements) {
+            sparse.putInt(element);
+        }
+        for (float value : values) {
+            sparse.putFloat(value);
+        }
+        sparse.flip();
+        mesh.extra = sparse;
+
+        JSONObject json = mesh.json();
+        int offset = (mesh.positions.length + mesh.indices.length) * 4;
+        json.getJSONArray("bufferViews")
+                .put(new JSONObject().put("buffer", 0).put("byteOffset", offset).put("byteLength", elements.length * 4))
+                .put(new JSONObject().put("buffer", 0).put("byteOffset", offset + elements.length * 4)
+                        .put("byteLength", values.length * 4));
+        json.getJSONArray("buffers").getJSONObject(0).put("byteLength", offset + sparse.remaining());
+        json.getJSONArray("accessors").getJSONObject(0).put("sparse", new JSONObject()
+                .put("count", elements.length)
+                .put("indices", new JSONObject().put("bufferView", 2).put("componentType", Accessor.UNSIGNED_INT))
+                .put("values", new JSONObject().put("bufferView", 3)));
+        return json;
+    }
+
+    private ValidationReport validate(Mesh mesh) throws Exception {
+        return validate(mesh, mesh.json());
+    }
+
+    private ValidationReport validate(Mesh mesh, JSONObject json) throws IOException {
+        try (GlbFile glb = GlbFile.open(mesh.write(json))) {
+            return new GltfValidator().validate(glb);
+        }
+    }
+
+    private static void assertOnlyError(ValidationReport report, String pointer, String text) {
+        assertEquals(report.getIssues().toString(), 1, report.getErrorCount());
+        assertTrue(report.getIssues().toString(), contains(report, pointer, text));
+    }
+
+    private static boolean contains(ValidationReport report, String pointer, String text) {
+        for (ValidationReport.Issue issue : report.getIssues()) {
+            if (issue.pointer.startsWith(pointer) && issue.message.contains(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A strip of triangles in the unit cube: float positions, then unsigned int indices
+     */
+    private class Mesh {
+        final int vertices;
+        final float[] positions;
+        final int[] indices;
+        // Written after the indices, if set
+        ByteBuffer extra;
+
+        Mesh(int vertices) {
+            this.vertices = vertices;
+            positions = new float[vertices * 3];
+            for (int i = 0; i < vertices; i++) {
+                positions[i * 3] = (i % 1000) / 1000f;
+                positions[i * 3 + 1] = (i / 1000 % 1000) / 1000f;
+                positions[i * 3 + 2] = i % 2;
+            }
+            indices = new int[(vertices - 2) * 3];
+            for (int t = 0; t < vertices - 2; t++) {
+                indices[t * 3] = t;
+                indices[t * 3 + 1] = t + 1;
+                indices[t * 3 + 2] = t + 2;
+            }
+        }
+
+        JSONObject json() throws JSONException {
+            int positionBytes = positions.length * 4;
+            int indexBytes = indices.length * 4;
+            return new JSONObject()
+                    .put("asset", new JSONObject().put("version", "2.0"))
+                    .put("scene", 0)
+                    .put("scenes", new JSONArray().put(new JSONObject().put("nodes", new JSONArray().put(0))))
+                    .put("nodes", new JSONArray().put(new JSONObject().put("mesh", 0)))
+                    .put("meshes", new JSONArray().put(new JSONObject().put("primitives", new JSONArray()
+                            .put(new JSONObject()
+                                    .put("attributes", new JSONObject().put("POSITION", 0))
+                                    .put("indices", 1)))))
+                    .put("accessors", new JSONArray()
+                            .put(new JSONObject().put("bufferView", 0).put("componentType", Accessor.FLOAT)
+                                    .put("count", vertices).put("type", "VEC3")
+                                    .put("min", new JSONArray().put(0).put(0).put(0))
+                                    .put("max", new JSONArray().put(1).put(1).put(1)))
+                            .put(new JSONObject().put("bufferView", 1).put("componentType", Accessor.UNSIGNED_INT)
+                                    .put("count", indices.length).put("type", "SCALAR")))
+                    .put("bufferViews", new JSONArray()
+                            .put(new JSONObject().put("buffer", 0).put("byteLength", positionBytes))
+                            .put(new JSONObject().put("buffer", 0).put("byteOffset", positionBytes)
+                                    .put("byteLength", indexBytes)))
+                    .put("buffers", new JSONArray()
+                            .put(new JSONObject().put("byteLength", positionBytes + indexBytes)));
+        }
+
+        File write(JSONObject json) throws IOException {
+            int meshBytes = (positions.length + indices.length) * 4;
+            ByteBuffer bin = ByteBuffer.allocate(meshBytes + (extra != null ? extra.remaining() : 0))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            bin.asFloatBuffer().put(positions);
+            bin.position(positions.length * 4);
+            bin.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(indices);
+            if (extra != null) {
+                bin.position(meshBytes);
+                bin.put(extra.duplicate());
+            }
+            bin.position(0);
+
+            GlbWriter writer = new GlbWriter();
+            writer.addBuffer(bin);
+            File file = folder.newFile();
+            writer.write(file, json);
+            return file;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.example.glbmodelmanager.glb;
+
+import com.example.glbmodelmanager.Benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MeshInstancer on a synthetic CAD export: bolts copied per node, nuts with their
+ * placement baked into the vertices, one unique frame and one animated bolt
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MeshInstancerTest {
+
+    private static final int THREADS = 4;
+
+    // Thousands of small copies for the parallel hashing run
+    private static final int LARGE_COPIES = 4000;
+    private static final int LARGE_VERTICES = 300;
+    private static final long LARGE_BUDGET_MS = 10_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void repeatedMeshes_becomeInstancesInTheSamePlaces() throws Exception {
+        Scene scene = new Scene();
+        for (int i = 0; i < 12; i++) {
+            scene.copy("Bolt " + i, scene.bolt, new float[]{i * 10, 0, 5}, i * 0.3f, false);
+        }
+        for (int i = 0; i < 6; i++) {
+            // Baked placement with noise well under the tolerance
+            scene.copy("Nut " + i, scene.nut, new float[]{0, i * 10, -5}, 0, true);
+        }
+        scene.copy("Frame", scene.frame, new float[]{0, 0, 0}, 0, false);
+        int animated = scene.copy("Moving bolt", scene.bolt, new float[]{50, 50, 50}, 0, false);
+        scene.animate(animated);
+        File source = scene.write(folder.newFile());
+        File dest = folder.newFile();
+
+        MeshInstancer.Report report = new MeshInstancer(THREADS, MeshInstancer.DEFAULT_TOLERANCE)
+                .instance(source, dest);
+
+        assertNotNull(report);
+        assertEquals(2, report.getSharedMeshes());
+        assertEquals(18, report.getInstances());
+        assertEquals(20, report.getDrawCallsBefore());
+        assertEquals(4, report.getDrawCallsAfter());  // Bolts, nuts, frame, moving bolt
+        assertTrue(report.getBytesAfter() < report.getBytesBefore() / 2);
+        assertEquals(dest.length(), report.getBytesAfter());
+
+        try (GlbFile glb = GlbFile.open(dest)) {
+            ValidationReport validation = new GltfValidator().validate(glb);
+            assertTrue(validation.getIssues().toString(), validation.isValid());
+            JSONObject json = glb.getJson();
+            assertEquals(4, json.getJSONArray("meshes").length());
+            assertEquals(NodeTransforms.EXT_MESH_GPU_INSTANCING, json.getJSONArray("extensionsRequired").getString(0));
+            JSONArray nodes = json.getJSONArray("nodes");
+            assertTrue(nodes.getJSONObject(animated).has("mesh"));
+            assertEquals(1, json.getJSONArray("animations").length());
+        }
+        assertSamePlacement(copies(source), copies(dest));
+    }
+
+    @Test
+    public void uniqueMeshes_leaveTheFileAlone() throws Exception {
+        Scene scene = new Scene();
+        scene.copy("Bolt", scene.bolt, new float[]{0, 0, 0}, 0, false);
+        scene.copy("Nut", scene.nut, new float[]{10, 0, 0}, 0, false);
+        File dest = new File(folder.getRoot(), "unchanged.glb");
+
+        assertNull(new MeshInstancer(THREADS, MeshInstancer.DEFAULT_TOLERANCE)
+                .instance(scene.write(folder.newFile()), dest));
+        assertTrue(!dest.exists());
+    }
+
+    @Test
+    public void instancedModel_keepsItsCountsAndFingerprint() throws Exception {
+        Scene scene = new Scene();
+        for (int i = 0; i < 8; i++) {
+            scene.copy("Bolt " + i, scene.bolt, new float[]{i * 10, 0, 5}, i * 0.3f, false);
+        }
+        for (int i = 0; i < 4; i++) {
+            scene.copy("Nut " + i, scene.nut, new float[]{0, i * 10, -5}, 0, true);
+        }
+        scene.copy("Frame", scene.frame, new float[]{0, 0, 0}, 0, false);
+        File source = scene.write(folder.newFile());
+        File dest = folder.newFile();
+        assertNotNull(new MeshInstancer(THREADS, MeshInstancer.DEFAULT_TOLERANCE).instance(source, dest));
+
+        GeometryStats before;
+        GeometryStats after;
+        GeometryFingerprint original;
+        GeometryFingerprint instanced;
+        try (GlbFile glb = GlbFile.open(source)) {
+            before = GeometryStats.read(glb);
+            original = GeometryFingerprint.compute(glb);
+        }
+        try (GlbFile glb = GlbFile.open(dest)) {
+            after = GeometryStats.read(glb);
+            instanced = GeometryFingerprint.compute(glb);
+        }
+
+        // Every instance counts, as every copy did
+        assertEquals(before.getVertexCount(), after.getVertexCount());
+        assertEquals(before.getTriangleCount(), after.getTriangleCount());
+        assertNotNull(original);
+        assertNotNull(instanced);
+        assertEquals(original.getVertexCount(), instanced.getVertexCount());
+        assertTrue(GeometryFingerprint.similarity(original.getSignature(), instanced.getSignature()) >= 0.9f);
+    }
+
+    @Test
+    public void instancingThroughput_thousandsOfCopies() throws Exception {
+        Benchmarks.assumeEnabled();
+        Scene scene = new Scene(LARGE_VERTICES);
+        for (int i = 0; i < LARGE_COPIES; i++) {
+            scene.copy("Bolt " + i, scene.bolt, new float[]{i % 64, 0, i / 64f}, 0, (i & 1) == 0);
+        }
+        File source = scene.write(folder.newFile());
+        File dest = folder.newFile();
+
+        long start = System.nanoTime();
+        MeshInstancer.Report report = new MeshInstancer(THREADS, MeshInstancer.DEFAULT_TOLERANCE)
+                .instance(source, dest);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(1, report.getSharedMeshes());
+        assertEquals(LARGE_COPIES, report.getInstances());
+        Benchmarks.assertWithinBudget("instancing " + LARGE_COPIES + " copies (ms)", elapsedMs, LARGE_BUDGET_MS);
+    }
+
+    /**
+     * Every drawn copy must keep its world-space bounding box
+     */
+    private static void assertSamePlacement(List<float[]> expected, List<float[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            for (int c = 0; c < 6; c++) {
+                assertEquals("copy " + i + " bound " + c, expected.get(i)[c], actual.get(i)[c], 1e-3);
+            }
+        }
+    }
+
+    /**
+     * World bounds (min x, y, z, max x, y, z) of every drawn mesh copy, sorted by position
+     */
+    private static List<float[]> copies(File file) throws Exception {
+        List<float[]> result = new ArrayList<>();
+        try (GlbFile glb = GlbFile.open(file)) {
+            JSONObject json = glb.getJson();
+            JSONArray nodes = json.getJSONArray("nodes");
+            List<Integer> stack = new ArrayList<>();
+            List<float[]> parents = new ArrayList<>();
+            JSONArray roots = json.getJSONArray("scenes").getJSONObject(0).getJSONArray("nodes");
+            for (int r = 0; r < roots.length(); r++) {
+                stack.add(roots.getInt(r));
+                parents.add(NodeTransforms.identity());
+            }
+            while (!stack.isEmpty()) {
+                JSONObject node = nodes.getJSONObject(stack.remove(stack.size() - 1));
+                float[] world = NodeTransforms.multiply(parents.remove(parents.size() - 1), NodeTransforms.local(node));
+                JSONArray children = node.optJSONArray("children");
+                for (int c = 0; children != null && c < children.length(); c++) {
+                    stack.add(children.getInt(c));
+                    parents.add(world);
+                }
+                if (!node.has("mesh")) {
+                    continue;
+                }
+                List<float[]> instances = NodeTransforms.instances(glb, node);
+                if (instances == null) {
+                    instances = Collections.singletonList(NodeTransforms.identity());
+                }
+                JSONObject primitive = json.getJSONArray("meshes").getJSONObject(node.getInt("mesh"))
+                        .getJSONArray("primitives").getJSONObject(0);
+                Accessor position = Accessor.open(glb, primitive.getJSONObject("attributes").getInt("POSITION"));
+                for (float[] instance : instances) {
+                    float[] matrix = NodeTransforms.multiply(world, instance);
+                    float[] bounds = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+                            -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+                    float[] point = new float[3];
+                    for (int v = 0; v < position.getCount(); v++) {
+                        NodeTransforms.transform(matrix, position.get(v, 0), position.get(v, 1), position.get(v, 2),
+                                point, 0);
+                        for (int c = 0; c < 3; c++) {
+                            bounds[c] = Math.min(bounds[c], point[c]);
+                            bounds[c + 3] = Math.max(bounds[c + 3], point[c]);
+                        }
+                    }
+                    result.add(bounds);
+                }
+            }
+        }
+        result.sort((a, b) -> {
+            for (int c = 0; c < 3; c++) {
+                int order = Float.compare(Math.round(a[c] * 100), Math.round(b[c] * 100));
+                if (order != 0) {
+                    return order;
+                }
+            }
+            return 0;
+        });
+        return result;
+    }
+
+    /**
+     * GLB builder where every copy gets its own mesh, accessors and bufferViews
+     */
+    private static class Scene {
+        final float[] bolt;
+        final float[] nut;
+        final float[] frame;
+        private final GlbWriter writer = new GlbWriter();
+        private final JSONArray views = new JSONArray();
+        private final JSONArray accessors = new JSONArray();
+        private final JSONArray meshes = new JSONArray();
+        private final JSONArray nodes = new JSONArray();
+        private final JSONArray children = new JSONArray();
+        private final JSONArray animations = new JSONArray();
+
+        Scene() throws Exception {
+            this(24);
+        }
+
+        Scene(int vertices) throws Exception {
+            bolt = shape(vertices, 1, 3);
+            nut = shape(vertices + 6, 2, 1);
+            frame = shape(vertices * 2, 8, 2);
+            // A translated root, so world transforms are more than the node's own
+            nodes.put(new JSONObject().put("name", "Plant")
+                    .put("translation", new JSONArray().put(3).put(0).put(-2))
+                    .put("children", children));
+        }
+
+        private static float[] shape(int vertices, float width, float height) {
+            float[] positions = new float[vertices * 3];
+            for (int v = 0; v < vertices; v++) {
+                double angle = v * 2 * Math.PI / vertices;
+                positions[v * 3] = (float) Math.cos(angle) * width * (1 + (v % 3) * 0.1f);
+                positions[v * 3 + 1] = height * (v % 2);
+                positions[v * 3 + 2] = (float) Math.sin(angle) * width;
+            }
+            return positions;
+        }
+
+        /**
+         * Add a node drawing its own copy of shape; a baked copy has the translation
+         * applied to its vertices (plus a little noise) instead of the node
+         */
+        int copy(String name, float[] shape, float[] translation, float angle, boolean baked) throws Exception {
+            int vertices = shape.length / 3;
+            ByteBuffer positions = ByteBuffer.allocate(shape.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+            float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+            float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+            for (int i = 0; i < shape.length; i++) {
+                float value = baked ? shape[i] + translation[i % 3] + ((i * 7919) % 5 - 2) * 1e-5f : shape[i];
+                positions.putFloat(value);
+                min[i % 3] = Math.min(min[i % 3], value);
+                max[i % 3] = Math.max(max[i % 3], value);
+            }
+            positions.flip();
+            ByteBuffer indices = ByteBuffer.allocate((vertices - 2) * 6).order(ByteOrder.LITTLE_ENDIAN);
+            for (int t = 0; t < vertices - 2; t++) {
+                indices.putShort((short) 0).putShort((short) (t + 1)).putShort((short) (t + 2));
+            }
+            indices.flip();
+
+            int positionAccessor = addAccessor(positions, Accessor.FLOAT, vertices, "VEC3");
+            accessors.getJSONObject(positionAccessor)
+                    .put("min", new JSONArray().put(min[0]).put(min[1]).put(min[2]))
+                    .put("max", new JSONArray().put(max[0]).put(max[1]).put(max[2]));
+            int indexAccessor = addAccessor(indices, Accessor.UNSIGNED_SHORT, (vertices - 2) * 3, "SCALAR");
+            meshes.put(new JSONObject().put("primitives", new JSONArray().put(new JSONObject()
+                    .put("attributes", new JSONObject().put("POSITION", positionAccessor))
+                    .put("indices", indexAccessor)
+                    .put("material", 0))));
+
+            JSONObject node = new JSONObject().put("name", name).put("mesh", meshes.length() - 1);
+            if (!baked) {
+                node.put("translation", new JSONArray().put(translation[0]).put(translation[1]).put(translation[2]));
+                node.put("rotation", new JSONArray().put(0).put(Math.sin(angle / 2)).put(0).put(Math.cos(angle / 2)));
+            }
+            nodes.put(node);
+            children.put(nodes.length() - 1);
+            return nodes.length() - 1;
+        }
+
+        /**
+         * Animate a node's translation with a two-key linear sampler
+         */
+        void animate(int node) throws Exception {
+            ByteBuffer times = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putFloat(0).putFloat(1);
+            times.flip();
+            ByteBuffer values = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+            values.putFloat(50).putFloat(50).putFloat(50).putFloat(60).putFloat(50).putFloat(50);
+            values.flip();
+            int input = addAccessor(times, Accessor.FLOAT, 2, "SCALAR");
+            accessors.getJSONObject(input).put("min", new JSONArray().put(0)).put("max", new JSONArray().put(1));
+            int output = addAccessor(values, Accessor.FLOAT, 2, "VEC3");
+            animations.put(new JSONObject()
+                    .put("samplers", new JSONArray().put(new JSONObject().put("input", input).put("output", output)))
+                    .put("channels", new JSONArray().put(new JSONObject().put("sampler", 0)
+                            .put("target", new JSONObject().put("node", node).put("path", "translation")))));
+        }
+
+        private int addAccessor(ByteBuffer data, int componentType, int count, String type) throws Exception {
+            writer.align(4, 0);
+            views.put(new JSONObject().put("buffer", 0).put("byteOffset", writer.addBuffer(data))
+                    .put("byteLength", data.remaining()));
+            accessors.put(new JSONObject().put("bufferView", views.length() - 1)
+                    .put("componentType", componentType).put("count", count).put("type", type));
+            return accessors.length() - 1;
+        }
+
+        File write(File file) throws Exception {
+            JSONObject json = new JSONObject()
+                    .put("asset", new JSONObject().put("version", "2.0"))
+                    .put("scene", 0)
+                    .put("scenes", new JSONArray().put(new JSONObject().put("nodes", new JSONArray().put(0))))
+                    .put("nodes", nodes)
+                    .put("meshes", meshes)
+                    .put("materials", new JSONArray().put(new JSONObject().put("name", "Steel")))
+                    .put("accessors", accessors)
+                    .put("bufferViews", views)
+                    .put("buffers", new JSONArray().put(new JSONObject().put("byteLength", writer.getBinLength())));
+            if (animations.length() > 0) {
+                json.put("animations", animations);
+            }
+            writer.write(file, json);
+            return file;
+        }
+    }
+}
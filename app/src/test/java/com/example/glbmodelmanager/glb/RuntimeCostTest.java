@@ -0,0 +1,159 @@
+package com.example.glbmodelmanager.glb;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RuntimeCost on a hand-built GLB whose costs can be worked out by hand
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RuntimeCostTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void costOfSharedMeshWithTexture() throws Exception {
+        GlbWriter writer = new GlbWriter();
+        long positions = writer.addBuffer(ByteBuffer.allocate(4 * 12));
+        long indices = writer.addBuffer(ByteBuffer.allocate(8));
+        long image = writer.addBuffer(pngHeader(64, 32));
+
+        // One mesh with two primitives (one without a material), drawn by two nodes
+        JSONObject primitive = new JSONObject()
+                .put("attributes", new JSONObject().put("POSITION", 0))
+                .put("indices", 1);
+        JSONObject json = new JSONObject()
+                .put("asset", new JSONObject().put("version", "2.0"))
+                .put("scenes", new JSONArray().put(new JSONObject().put("nodes", new JSONArray().put(0))))
+                .put("nodes", new JSONArray()
+                        .put(new JSONObject().put("mesh", 0).put("children", new JSONArray().put(1)))
+                        .put(new JSONObject().put("mesh", 0)))
+                .put("meshes", new JSONArray().put(new JSONObject().put("primitives", new JSONArray()
+                        .put(new JSONObject(primitive.toString()).put("material", 0))
+                        .put(primitive))))
+                .put("materials", new JSONArray().put(new JSONObject()))
+                .put("textures", new JSONArray().put(new JSONObject().put("source", 0)))
+                .put("images", new JSONArray().put(new JSONObject().put("bufferView", 2).put("mimeType", "image/png")))
+                .put("accessors", new JSONArray()
+                        .put(new JSONObject().put("bufferView", 0).put("componentType", Accessor.FLOAT)
+                                .put("count", 4).put("type", "VEC3"))
+                        .put(new JSONObject().put("bufferView", 1).put("componentType", Accessor.UNSIGNED_BYTE)
+                                .put("count", 6).put("type", "SCALAR")))
+                .put("bufferViews", new JSONArray()
+                        .put(view(positions, 48))
+                        .put(view(indices, 8))
+                        .put(view(image, 24)))
+                .put("buffers", new JSONArray().put(new JSONObject().put("byteLength", writer.getBinLength())));
+        File file = folder.newFile();
+        writer.write(file, json);
+
+        RuntimeCost cost;
+        try (GlbFile glb = GlbFile.open(file)) {
+            cost = RuntimeCost.read(glb);
+        }
+        // 4 float3 positions, 6 byte indices widened to 16 bits; shared buffers count once
+        assertEquals(48 + 12, cost.getGeometryBytes());
+        // 64x32 RGBA with its mip chain: 2048 + 512 + 128 + 32 + 8 + 2 + 1 pixels
+        assertEquals(2731 * 4, cost.getTextureBytes());
+        assertEquals(4, cost.getDrawCalls());
+        assertEquals(2, cost.getMaterialCount());
+    }
+
+    @Test
+    public void textureExtensions_onlyThoseViewersHonourReplaceTheSource() throws Exception {
+        // A 64x32 PNG source with a 16x16 KTX2 alternative behind each extension
+        assertEquals(2731 * 4, textureCost("GLBMANAGER_texture_etc2", ktx2Header(43, 16, 16)));
+        assertEquals(2731 * 4, textureCost("KHR_texture_basisu", ktx2Header(43, 16, 16)));  // Not Basis data
+        // Basis Universal: 16x16 at one byte per pixel, one level
+        assertEquals(256, textureCost("KHR_texture_basisu", ktx2Header(0, 16, 16)));
+        // WebP (VP8L) 16x16 decoded to RGBA with its mip chain: 256 + 64 + 16 + 4 + 1 pixels
+        assertEquals(341 * 4, textureCost("EXT_texture_webp", webpHeader(16, 16)));
+    }
+
+    @Test
+    public void budgetListsEveryOverrun() {
+        RuntimeCost.Budget budget = new RuntimeCost.Budget("Test", 1, 10, 2);
+
+        assertTrue(budget.overruns(1024 * 1024, 10, 2).isEmpty());
+        assertTrue(budget.overruns(-1, -1, -1).isEmpty());
+        assertEquals(3, budget.overruns(1024 * 1024 + 1, 11, 3).size());
+    }
+
+    /**
+     * Texture bytes of a model whose only texture has a PNG source and the given image behind an extension
+     */
+    private long textureCost(String extension, ByteBuffer alternative) throws Exception {
+        GlbWriter writer = new GlbWriter();
+        long png = writer.addBuffer(pngHeader(64, 32));
+        int alternativeLength = alternative.remaining();
+        writer.align(4, 0);
+        long other = writer.addBuffer(alternative);
+        JSONObject json = new JSONObject()
+                .put("asset", new JSONObject().put("version", "2.0"))
+                .put("textures", new JSONArray().put(new JSONObject().put("source", 0)
+                        .put("extensions", new JSONObject().put(extension, new JSONObject().put("source", 1)))))
+                .put("images", new JSONArray()
+                        .put(new JSONObject().put("bufferView", 0).put("mimeType", "image/png"))
+                        .put(new JSONObject().put("bufferView", 1)))
+                .put("bufferViews", new JSONArray().put(view(png, 24)).put(view(other, alternativeLength)))
+                .put("buffers", new JSONArray().put(new JSONObject().put("byteLength", writer.getBinLength())));
+        File file = folder.newFile();
+        writer.write(file, json);
+        try (GlbFile glb = GlbFile.open(file)) {
+            return RuntimeCost.read(glb).getTextureBytes();
+        }
+    }
+
+    private static JSONObject view(long offset, int length) throws Exception {
+        return new JSONObject().put("buffer", 0).put("byteOffset", offset).put("byteLength", length);
+    }
+
+    /**
+     * Signature and IHDR chunk of a PNG, all RuntimeCost reads
+     */
+    private static ByteBuffer pngHeader(int width, int height) {
+        ByteBuffer png = ByteBuffer.allocate(24).order(ByteOrder.BIG_ENDIAN);
+        png.putInt(0x89504E47).putInt(0x0D0A1A0A).putInt(13).putInt(0x49484452).putInt(width).putInt(height);
+        png.flip();
+        return png;
+    }
+
+    /**
+     * KTX2 identifier and header with one level, whose index entry says it is 256 bytes
+     */
+    private static ByteBuffer ktx2Header(int vkFormat, int width, int height) {
+        ByteBuffer ktx = ByteBuffer.allocate(104).order(ByteOrder.BIG_ENDIAN);
+        ktx.putInt(0xAB4B5458).putInt(0x203230BB).putInt(0x0D0A1A0A);
+        ktx.order(ByteOrder.LITTLE_ENDIAN).putInt(vkFormat).putInt(1).putInt(width).putInt(height)
+                .putInt(0).putInt(0).putInt(1).putInt(1).putInt(0);
+        ktx.position(80);
+        ktx.putLong(104).putLong(256).putLong(256);
+        ktx.flip();
+        return ktx;
+    }
+
+    /**
+     * RIFF header and VP8L chunk header of a lossless WebP
+     */
+    private static ByteBuffer webpHeader(int width, int height) {
+        ByteBuffer webp = ByteBuffer.allocate(30).order(ByteOrder.BIG_ENDIAN);
+        webp.putInt(0x52494646).putInt(0).putInt(0x57454250).putInt(0x5650384C);
+        webp.order(ByteOrder.LITTLE_ENDIAN).putInt(0).put((byte) 0x2F)
+                .putInt((width - 1) | (height - 1) << 14);
+        webp.clear();  // Padded to the 30 bytes RuntimeCost expects
+        return webp;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.glbmodelmanager.importer;
+
+import android.content.ContentProvider;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.glbmodelmanager.glb.GlbFormatException;
+import com.example.glbmodelmanager.glb.GlbWriter;
+import com.example.glbmodelmanager.utils.HashUtils;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * ResumableCopier through ContentUriSource against a fake provider that drops
+ * the first transfer part way through, as cloud-backed providers do
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ResumableCopierTest {
+
+    private static final String AUTHORITY = "com.example.glbmodelmanager.test.flaky";
+    private static final Uri MODEL_URI = Uri.parse("content://" + AUTHORITY + "/model.glb");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FlakyProvider provider;
+    private ContentResolver resolver;
+
+    /**
+     * Serves one prepared file per open, the last one for every open after that
+     */
+    public static class FlakyProvider extends ContentProvider {
+        final List<File> transfers = new ArrayList<>();
+        int opens;
+
+        @Override
+        public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+            File transfer = transfers.get(Math.min(opens++, transfers.size() - 1));
+            return ParcelFileDescriptor.open(transfer, ParcelFileDescriptor.MODE_READ_ONLY);
+        }
+
+        @Override
+        public boolean onCreate() {
+            return true;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                            String sortOrder) {
+            return null;
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            return "model/gltf-binary";
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            return null;
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            return 0;
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+            return 0;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        provider = Robolectric.setupContentProvider(FlakyProvider.class, AUTHORITY);
+        resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+    }
+
+    @Test
+    public void droppedTransfer_resumesAtTheCheckpoint() throws Exception {
+        byte[] model = glb(folder.newFile(), 256 * 1024);
+        int dropAt = model.length / 2;
+        // First transfer ends early; the second has a corrupt prefix, so only a
+        // copy that resumes at the checkpoint (rather than restarting) gets it right
+        byte[] corruptPrefix = model.clone();
+        Arrays.fill(corruptPrefix, 0, dropAt, (byte) 0x5A);
+        provider.transfers.add(write(Arrays.copyOf(model, dropAt)));
+        provider.transfers.add(write(corruptPrefix));
+        File dest = folder.newFile();
+
+        ResumableCopier.Checkpoint checkpoint = new ResumableCopier.Checkpoint();
+        String hash = new ResumableCopier().copy(new ContentUriSource(resolver, MODEL_URI, model.length),
+                dest, checkpoint);
+
+        assertEquals(2, provider.opens);
+        assertEquals(model.length, checkpoint.getOffset());
+        assertArrayEquals(model, Files.readAllBytes(dest.toPath()));
+        assertEquals(sha256(model), hash);
+    }
+
+    @Test
+    public void cancellation_isNotRetried() throws Exception {
+        int[] opens = {0};
+        ResumableCopier.Source cancelled = new ResumableCopier.Source() {
+            @Override
+            public InputStream open(long offset) throws IOException {
+                opens[0]++;
+                throw new InterruptedIOException("cancelled");
+            }
+
+            @Override
+            public long length() {
+                return -1;
+            }
+        };
+
+        try {
+            new ResumableCopier().copy(cancelled, folder.newFile(), new ResumableCopier.Checkpoint());
+            fail("cancelled copy should not complete");
+        } catch (InterruptedIOException expected) {
+            assertEquals(1, opens[0]);
+        }
+    }
+
+    @Test
+    public void invalidData_isNotRetried() throws Exception {
+        byte[] notGlb = new byte[4096];
+        Arrays.fill(notGlb, (byte) 1);
+        provider.transfers.add(write(notGlb));
+
+        try {
+            new ResumableCopier().copy(new ContentUriSource(resolver, MODEL_URI, notGlb.length),
+                    folder.newFile(), new ResumableCopier.Checkpoint());
+            fail("invalid GLB should not import");
+        } catch (GlbFormatException expected) {
+            assertEquals(1, provider.opens);
+        }
+    }
+
+    private File write(byte[] bytes) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    /**
+     * Write a minimal GLB with a BIN chunk of about binBytes and return its bytes
+     */
+    private static byte[] glb(File file, int binBytes) throws Exception {
+        byte[] bin = new byte[binBytes];
+        for (int i = 0; i < bin.length; i++) {
+            bin[i] = (byte) (i * 31);
+        }
+        GlbWriter writer = new GlbWriter();
+        writer.addBuffer(ByteBuffer.wrap(bin));
+        JSONObject json = new JSONObject()
+                .put("asset", new JSONObject().put("version", "2.0"))
+                .put("buffers", new JSONArray().put(new JSONObject().put("byteLength", writer.getBinLength())));
+        writer.write(file, json);
+        return Files.readAllBytes(file.toPath());
+    }
+
+    private static String sha256(byte[] bytes) {
+        MessageDigest digest = HashUtils.newSha256();
+        return HashUtils.toHex(digest.digest(bytes));
+    }
+}
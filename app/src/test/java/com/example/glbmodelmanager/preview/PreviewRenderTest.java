@@ -0,0 +1,253 @@
+package com.example.glbmodelmanager.preview;
+
+import com.example.glbmodelmanager.Benchmarks;
+import com.example.glbmodelmanager.glb.Accessor;
+import com.example.glbmodelmanager.glb.GlbWriter;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Software rasterizer output and frame time, and the staged loading of a GLB
+ * The frame time is only measured by ./gradlew benchmark
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PreviewRenderTest {
+
+    // A 200k-triangle sphere rendered at 640x480
+    private static final int SPHERE_RINGS = 250;
+    private static final int SPHERE_SEGMENTS = 400;
+    private static final int FRAME_WIDTH = 640;
+    private static final int FRAME_HEIGHT = 480;
+    private static final int WARMUP_FRAMES = 10;
+    private static final int MEASURED_FRAMES = 60;
+
+    private static final long FRAME_BUDGET_US = 100_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void box_coversCenterAndLeavesCornersClear() throws Exception {
+        PreviewMesh box = PreviewMesh.box(new float[]{-1, -1, -1, 1, 1, 1}, 0xFFFF0000);
+        int[] pixels = render(box, 4, 200, 100);
+
+        int center = pixels[50 * 200 + 100];
+        assertNotEquals(SoftwareRasterizer.BACKGROUND, center);
+        assertEquals("shaded red", 0, center & 0xFFFF);
+        assertEquals(SoftwareRasterizer.BACKGROUND, pixels[0]);
+        assertEquals(SoftwareRasterizer.BACKGROUND, pixels[pixels.length - 1]);
+    }
+
+    @Test
+    public void output_doesNotDependOnThreadCount() throws Exception {
+        PreviewMesh sphere = sphere(40, 60);
+        int[] single = render(sphere, 1, 301, 203);
+        int[] multi = render(sphere, 6, 301, 203);
+
+        assertArrayEquals(single, multi);
+    }
+
+    @Test
+    public void frameTime_isWithinBudget() throws Exception {
+        Benchmarks.assumeEnabled();
+        PreviewMesh sphere = sphere(SPHERE_RINGS, SPHERE_SEGMENTS);
+        OrbitCamera camera = new OrbitCamera();
+        camera.frame(sphere.getBounds());
+
+        long elapsed = 0;
+        try (SoftwareRasterizer rasterizer = new SoftwareRasterizer(Runtime.getRuntime().availableProcessors())) {
+            rasterizer.setSize(FRAME_WIDTH, FRAME_HEIGHT);
+            for (int frame = 0; frame < WARMUP_FRAMES + MEASURED_FRAMES; frame++) {
+                camera.orbit(0.05f, 0);
+                float[] viewProjection = camera.viewProjection(FRAME_WIDTH / (float) FRAME_HEIGHT);
+                long start = System.nanoTime();
+                rasterizer.render(sphere, viewProjection, camera.getEye());
+                if (frame >= WARMUP_FRAMES) {
+                    elapsed += System.nanoTime() - start;
+                }
+            }
+        }
+
+        String label = String.format(Locale.US, "%,d triangles at %dx%d",
+                sphere.getTriangleCount(), FRAME_WIDTH, FRAME_HEIGHT);
+        Benchmarks.assertWithinBudget(label + " mean frame (us)", elapsed / MEASURED_FRAMES / 1_000, FRAME_BUDGET_US);
+    }
+
+    @Test
+    public void loader_reportsBoundsThenCoarseThenFull() throws Exception {
+        // A 100x100 quad grid (20k triangles), moved by its node
+        int cells = 100;
+        File file = writeGrid(cells, new float[]{10, 0, 0});
+
+        List<Integer> stages = new ArrayList<>();
+        List<PreviewMesh> meshes = new ArrayList<>();
+        new PreviewLoader(5_000).load(file, (stage, mesh) -> {
+            stages.add(stage);
+            meshes.add(mesh);
+        });
+
+        assertEquals(Arrays.asList(PreviewLoader.STAGE_BOUNDS, PreviewLoader.STAGE_COARSE,
+                PreviewLoader.STAGE_PARTIAL, PreviewLoader.STAGE_PARTIAL, PreviewLoader.STAGE_PARTIAL,
+                PreviewLoader.STAGE_FULL), stages);
+        assertEquals(12, meshes.get(0).getTriangleCount());
+        assertArrayEquals(new float[]{10, 0, 0, 11, 1, 0}, meshes.get(0).getBounds(), 1e-6f);
+        assertTrue(meshes.get(1).getTriangleCount() <= 5_000);
+        assertEquals(cells * cells * 2, meshes.get(5).getTriangleCount());
+        assertArrayEquals(new float[]{10, 0, 0, 11, 1, 0}, meshes.get(5).getBounds(), 1e-6f);
+
+        // The full mesh fills in: each partial has more triangles than the one before, and the
+        // coarse mesh still covers what was not read yet
+        for (int i = 2; i < 5; i++) {
+            assertTrue(meshes.get(i).getTriangleCount() > meshes.get(i - 1).getTriangleCount());
+            assertTrue(meshes.get(i).getTriangleCount() < meshes.get(5).getTriangleCount());
+            assertArrayEquals(new float[]{10, 0, 0, 11, 1, 0}, meshes.get(i).getBounds(), 1e-6f);
+            assertEquals(meshes.get(i).getTriangleCount(), meshes.get(i).getColors().length);
+            for (int index : meshes.get(i).getIndices()) {
+                assertTrue(index < meshes.get(i).getVertexCount());
+            }
+        }
+    }
+
+    @Test
+    public void loader_capsTheFullStage() throws Exception {
+        File file = writeGrid(100, new float[]{0, 0, 0});
+
+        List<PreviewMesh> meshes = new ArrayList<>();
+        PreviewLoader loader = new PreviewLoader(1_000, 4_000);
+        loader.load(file, (stage, mesh) -> meshes.add(mesh));
+
+        PreviewMesh full = meshes.get(meshes.size() - 1);
+        assertTrue(loader.isReduced());
+        assertEquals(20_000, loader.getSourceTriangles());
+        assertTrue(full.getTriangleCount() <= 4_000);
+        assertTrue(full.getTriangleCount() > 1_000);
+        assertArrayEquals(new float[]{0, 0, 0, 1, 1, 0}, full.getBounds(), 0.02f);
+    }
+
+    @Test
+    public void loader_smallModel_isNotReduced() throws Exception {
+        File file = writeGrid(10, new float[]{0, 0, 0});
+
+        List<Integer> stages = new ArrayList<>();
+        PreviewLoader loader = new PreviewLoader(1_000, PreviewLoader.maxTriangles(64L * 1024 * 1024));
+        loader.load(file, (stage, mesh) -> stages.add(stage));
+
+        assertEquals(Arrays.asList(PreviewLoader.STAGE_BOUNDS, PreviewLoader.STAGE_FULL), stages);
+        assertFalse(loader.isReduced());
+    }
+
+    private static int[] render(PreviewMesh mesh, int threads, int width, int height) throws Exception {
+        OrbitCamera camera = new OrbitCamera();
+        camera.frame(mesh.getBounds());
+        try (SoftwareRasterizer rasterizer = new SoftwareRasterizer(threads)) {
+            rasterizer.setSize(width, height);
+            return rasterizer.render(mesh, camera.viewProjection(width / (float) height), camera.getEye()).clone();
+        }
+    }
+
+    /**
+     * Unit sphere as a latitude/longitude grid, about 2 * rings * segments triangles
+     */
+    private static PreviewMesh sphere(int rings, int segments) {
+        float[] positions = new float[(rings + 1) * (segments + 1) * 3];
+        for (int r = 0; r <= rings; r++) {
+            double theta = Math.PI * r / rings;
+            for (int s = 0; s <= segments; s++) {
+                double phi = 2 * Math.PI * s / segments;
+                int v = (r * (segments + 1) + s) * 3;
+                positions[v] = (float) (Math.sin(theta) * Math.cos(phi));
+                positions[v + 1] = (float) Math.cos(theta);
+                positions[v + 2] = (float) (Math.sin(theta) * Math.sin(phi));
+            }
+        }
+        int[] indices = new int[rings * segments * 6];
+        int i = 0;
+        for (int r = 0; r < rings; r++) {
+            for (int s = 0; s < segments; s++) {
+                int a = r * (segments + 1) + s;
+                int b = a + segments + 1;
+                indices[i++] = a;
+                indices[i++] = b;
+                indices[i++] = a + 1;
+                indices[i++] = a + 1;
+                indices[i++] = b;
+                indices[i++] = b + 1;
+            }
+        }
+        int[] colors = new int[indices.length / 3];
+        Arrays.fill(colors, PreviewLoader.DEFAULT_COLOR);
+        return new PreviewMesh(positions, indices, colors, new float[]{-1, -1, -1, 1, 1, 1});
+    }
+
+    /**
+     * GLB with one flat grid of cells x cells quads in the unit square, drawn by a translated node
+     */
+    private File writeGrid(int cells, float[] translation) throws Exception {
+        int side = cells + 1;
+        ByteBuffer positions = ByteBuffer.allocate(side * side * 12).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                positions.putFloat(x / (float) cells).putFloat(y / (float) cells).putFloat(0);
+            }
+        }
+        positions.flip();
+        ByteBuffer indices = ByteBuffer.allocate(cells * cells * 6 * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = 0; y < cells; y++) {
+            for (int x = 0; x < cells; x++) {
+                int a = y * side + x;
+                indices.putInt(a).putInt(a + 1).putInt(a + side);
+                indices.putInt(a + 1).putInt(a + side + 1).putInt(a + side);
+            }
+        }
+        indices.flip();
+
+        GlbWriter writer = new GlbWriter();
+        long positionOffset = writer.addBuffer(positions);
+        long indexOffset = writer.addBuffer(indices);
+        JSONObject json = new JSONObject()
+                .put("asset", new JSONObject().put("version", "2.0"))
+                .put("scenes", new JSONArray().put(new JSONObject().put("nodes", new JSONArray().put(0))))
+                .put("nodes", new JSONArray().put(new JSONObject().put("mesh", 0)
+                        .put("translation", new JSONArray().put(translation[0]).put(translation[1]).put(translation[2]))))
+                .put("meshes", new JSONArray().put(new JSONObject().put("primitives", new JSONArray()
+                        .put(new JSONObject()
+                                .put("attributes", new JSONObject().put("POSITION", 0))
+                                .put("indices", 1)))))
+                .put("accessors", new JSONArray()
+                        .put(new JSONObject().put("bufferView", 0).put("componentType", Accessor.FLOAT)
+                                .put("count", side * side).put("type", "VEC3")
+                                .put("min", new JSONArray().put(0).put(0).put(0))
+                                .put("max", new JSONArray().put(1).put(1).put(0)))
+                        .put(new JSONObject().put("bufferView", 1).put("componentType", Accessor.UNSIGNED_INT)
+                                .put("count", cells * cells * 6).put("type", "SCALAR")))
+                .put("bufferViews", new JSONArray()
+                        .put(new JSONObject().put("buffer", 0).put("byteOffset", positionOffset)
+                                .put("byteLength", side * side * 12))
+                        .put(new JSONObject().put("buffer", 0).put("byteOffset", indexOffset)
+                                .put("byteLength", cells * cells * 24)))
+                .put("buffers", new JSONArray().put(new JSONObject().put("byteLength", writer.getBinLength())));
+        File file = folder.newFile();
+        writer.write(file, json);
+        return file;
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.glbmodelmanager.similarity;
+
+import android.app.Application;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.glbmodelmanager.Benchmarks;
+import com.example.glbmodelmanager.data.AppDatabase;
+import com.example.glbmodelmanager.data.FingerprintBucket;
+import com.example.glbmodelmanager.data.GlbModel;
+import com.example.glbmodelmanager.data.GlbModelDao;
+import com.example.glbmodelmanager.data.ModelFingerprint;
+import com.example.glbmodelmanager.glb.Accessor;
+import com.example.glbmodelmanager.glb.GeometryFingerprint;
+import com.example.glbmodelmanager.glb.GlbWriter;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SimilarityIndex lookups: re-exports are found through the LSH buckets, other shapes are not
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+public class SimilarityIndexTest {
+
+    private static final int LIBRARY_SIZE = 20_000;
+    private static final int LOOKUPS = 200;
+    private static final long LOOKUP_BUDGET_MICROS = 1_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AppDatabase database;
+    private GlbModelDao dao;
+    private SimilarityIndex index;
+
+    @Before
+    public void setUp() {
+        database = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        dao = database.glbModelDao();
+        index = new SimilarityIndex(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void findSimilar_returnsReExportsOnly() throws Exception {
+        float[] blob = blob();
+        GlbModel original = add("Original", blob);
+        // Moved, scaled and with its vertices in reverse order, as another exporter might write it
+        float[] moved = new float[blob.length];
+        for (int v = 0; v < blob.length / 3; v++) {
+            int target = (blob.length / 3 - 1 - v) * 3;
+            moved[target] = blob[v * 3] * 100 + 40;
+            moved[target + 1] = blob[v * 3 + 1] * 100;
+            moved[target + 2] = blob[v * 3 + 2] * 100 - 7;
+        }
+        GlbModel reExport = add("Re-export", moved);
+        GlbModel other = add("Torus", torus());
+        index.index(reExport);
+        index.index(other);
+
+        // The original is indexed on first lookup
+        List<SimilarityIndex.Match> matches = index.findSimilar(original);
+
+        assertNotNull(matches);
+        assertEquals(1, matches.size());
+        assertEquals(reExport.getId(), matches.get(0).model.getId());
+        assertTrue(matches.get(0).similarity >= 0.9f);
+        assertNotNull(dao.getFingerprint(original.getId()));
+    }
+
+    @Test
+    public void findSimilar_withoutGeometry_returnsNull() throws Exception {
+        GlbModel empty = add("Empty", new float[0]);
+
+        assertNull(index.findSimilar(empty));
+        assertEquals(0, dao.getFingerprint(empty.getId()).getVertexCount());
+    }
+
+    @Test
+    public void lookup_inALargeLibrary_isWithinBudget() throws Exception {
+        Benchmarks.assumeEnabled();
+        Random random = new Random(40);
+        List<GlbModel> library = new ArrayList<>(LIBRARY_SIZE);
+        for (int i = 0; i < LIBRARY_SIZE; i++) {
+            library.add(new GlbModel("Model " + i, i + ".glb", "/missing/" + i + ".glb", 1_000, i));
+        }
+        List<Long> ids = dao.insertAll(library);
+        database.runInTransaction(() -> {
+            for (long id : ids) {
+                int[] signature = new int[GeometryFingerprint.SIGNATURE_SIZE];
+                for (int s = 0; s < signature.length; s++) {
+                    signature[s] = random.nextInt();
+                }
+                GeometryFingerprint fingerprint = new GeometryFingerprint(signature, 0.5f, 0.3f, 1_000);
+                dao.insertFingerprint(new ModelFingerprint((int) id, GeometryFingerprint.toBytes(signature),
+                        fingerprint.getShapeMid(), fingerprint.getShapeMin(), fingerprint.getVertexCount()));
+                List<FingerprintBucket> buckets = new ArrayList<>();
+                for (int band = 0; band < GeometryFingerprint.BANDS; band++) {
+                    buckets.add(new FingerprintBucket(band, fingerprint.bandHash(band), (int) id));
+                }
+                dao.insertFingerprintBuckets(buckets);
+            }
+        });
+        GlbModel model = add("Original", blob());
+        index.index(model);
+        for (int i = 0; i < LOOKUPS / 10; i++) {
+            index.findSimilar(model); // Warm up
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            assertTrue(index.findSimilar(model).isEmpty());
+        }
+        long micros = (System.nanoTime() - start) / LOOKUPS / 1_000;
+
+        Benchmarks.assertWithinBudget("similar lookup with " + LIBRARY_SIZE + " models (us)", micros,
+                LOOKUP_BUDGET_MICROS);
+    }
+
+    /**
+     * Write positions as a point-cloud GLB and add its row
+     */
+    private GlbModel add(String name, float[] positions) throws Exception {
+        ByteBuffer data = ByteBuffer.allocate(positions.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (float value : positions) {
+            data.putFloat(value);
+        }
+        data.flip();
+        GlbWriter writer = new GlbWriter();
+        JSONObject json = new JSONObject().put("asset", new JSONObject().put("version", "2.0"));
+        if (positions.length > 0) {
+            writer.addBuffer(data);
+            json.put("buffers", new JSONArray().put(new JSONObject().put("byteLength", writer.getBinLength())))
+                    .put("scene", 0)
+                    .put("scenes", new JSONArray().put(new JSONObject().put("nodes", new JSONArray().put(0))))
+                    .put("nodes", new JSONArray().put(new JSONObject().put("mesh", 0)))
+                    .put("meshes", new JSONArray().put(new JSONObject().put("primitives", new JSONArray()
+                            .put(new JSONObject().put("attributes", new JSONObject().put("POSITION", 0))
+                                    .put("mode", 0)))))
+                    .put("accessors", new JSONArray().put(new JSONObject().put("bufferView", 0)
+                            .put("componentType", Accessor.FLOAT).put("count", positions.length / 3)
+                            .put("type", "VEC3")))
+                    .put("bufferViews", new JSONArray().put(new JSONObject().put("buffer", 0)
+                            .put("byteOffset", 0).put("byteLength", positions.length * 4)));
+        }
+        File file = folder.newFile();
+        writer.write(file, json);
+
+        GlbModel model = new GlbModel(name, file.getName(), file.getAbsolutePath(), file.length(), 0);
+        model.setId((int) dao.insert(model));
+        return model;
+    }
+
+    /**
+     * Lumpy, stretched sphere
+     */
+    private static float[] blob() {
+        float[] positions = new float[48 * 32 * 3];
+        int i = 0;
+        for (int r = 0; r < 48; r++) {
+            double theta = Math.PI * (r + 0.5) / 48;
+            for (int s = 0; s < 32; s++) {
+                double phi = 2 * Math.PI * s / 32;
+                double radius = 1 + 0.2 * Math.sin(3 * phi) * Math.sin(2 * theta);
+                positions[i++] = (float) (radius * Math.sin(theta) * Math.cos(phi) * 1.6);
+                positions[i++] = (float) (radius * Math.cos(theta));
+                positions[i++] = (float) (radius * Math.sin(theta) * Math.sin(phi) * 0.7);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Torus of about the blob's size
+     */
+    private static float[] torus() {
+        float[] positions = new float[48 * 32 * 3];
+        int i = 0;
+        for (int r = 0; r < 48; r++) {
+            double theta = 2 * Math.PI * r / 48;
+            for (int s = 0; s < 32; s++) {
+                double phi = 2 * Math.PI * s / 32;
+                double ring = 0.7 + 0.3 * Math.cos(phi);
+                positions[i++] = (float) (ring * Math.cos(theta) * 1.6);
+                positions[i++] = (float) Math.sin(phi);
+                positions[i++] = (float) (ring * Math.sin(theta) * 0.7);
+            }
+        }
+        return positions;
+    }
+}
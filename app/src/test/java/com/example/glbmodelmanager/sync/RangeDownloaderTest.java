@@ -0,0 +1,255 @@
+package com.example.glbmodelmanager.sync;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * RangeDownloader against a local HTTP server that supports byte ranges,
+ * ETags and If-Range, and can drop connections on demand
+ */
+public class RangeDownloaderTest {
+
+    private static final int FILE_SIZE = 3 * 1024 * 1024;
+    private static final long SEGMENT_SIZE = 256 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockServer server;
+    private URL url;
+    private File dest;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockServer(randomBytes(FILE_SIZE, 1), "\"v1\"");
+        url = new URL("http://127.0.0.1:" + server.start() + "/model.glb");
+        dest = new File(folder.getRoot(), "model.glb");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void downloadsInParallelSegments() throws Exception {
+        new RangeDownloader(4, SEGMENT_SIZE).download(url, dest, null);
+
+        assertArrayEquals(server.body, Files.readAllBytes(dest.toPath()));
+        // One probe plus one request per segment
+        assertEquals(5, server.requestedStarts().size());
+        assertFalse(new File(dest.getPath() + RangeDownloader.PART_SUFFIX).exists());
+        assertFalse(new File(dest.getPath() + RangeDownloader.STATE_SUFFIX).exists());
+    }
+
+    @Test
+    public void retriesDroppedSegmentFromLastByte() throws Exception {
+        long secondSegment = FILE_SIZE / 4;
+        server.dropOnce(secondSegment, 100_000);
+
+        new RangeDownloader(4, SEGMENT_SIZE).download(url, dest, null);
+
+        assertArrayEquals(server.body, Files.readAllBytes(dest.toPath()));
+        boolean resumedMidSegment = false;
+        for (long start : server.requestedStarts()) {
+            resumedMidSegment |= start > secondSegment && start < secondSegment + FILE_SIZE / 4;
+        }
+        assertTrue("Retry should continue inside the dropped segment", resumedMidSegment);
+    }
+
+    @Test
+    public void resumesInterruptedDownloadInNextRun() throws Exception {
+        server.failAfter(FILE_SIZE / 2);
+        try {
+            new RangeDownloader(4, SEGMENT_SIZE).download(url, dest, null);
+            fail("Download should have failed");
+        } catch (IOException expected) {
+            // Server went away halfway through
+        }
+        assertFalse(dest.exists());
+
+        server.failAfter(-1);
+        long servedBefore = server.bytesServed.get();
+        new RangeDownloader(4, SEGMENT_SIZE).download(url, dest, null);
+
+        assertArrayEquals(server.body, Files.readAllBytes(dest.toPath()));
+        long servedInSecondRun = server.bytesServed.get() - servedBefore;
+        assertTrue("Second run should only fetch what is missing, fetched " + servedInSecondRun,
+                servedInSecondRun < FILE_SIZE);
+    }
+
+    @Test
+    public void startsOverWhenFileChangesOnServer() throws Exception {
+        server.failAfter(FILE_SIZE / 2);
+        try {
+            new RangeDownloader(4, SEGMENT_SIZE).download(url, dest, null);
+            fail("Download should have failed");
+        } catch (IOException expected) {
+            // Partial download of v1 left behind
+        }
+
+        server.failAfter(-1);
+        server.replace(randomBytes(FILE_SIZE, 2), "\"v2\"");
+        new RangeDownloader(4, SEGMENT_SIZE).download(url, dest, null);
+
+        assertArrayEquals(server.body, Files.readAllBytes(dest.toPath()));
+    }
+
+    @Test
+    public void fallsBackToSingleStreamWithoutRangeSupport() throws Exception {
+        server.rangesSupported = false;
+
+        new RangeDownloader(4, SEGMENT_SIZE).download(url, dest, null);
+
+        assertArrayEquals(server.body, Files.readAllBytes(dest.toPath()));
+        assertEquals(FILE_SIZE, server.bytesServed.get());
+    }
+
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Minimal static file server with range, ETag and If-Range handling
+     */
+    private static class MockServer {
+        volatile byte[] body;
+        volatile String etag;
+        volatile boolean rangesSupported = true;
+        final AtomicLong bytesServed = new AtomicLong();
+
+        private final List<Long> starts = new ArrayList<>();
+        private volatile long dropStart = -1;
+        private volatile long dropAfterBytes;
+        private volatile long failAfterBytes = -1;
+        private HttpServer server;
+
+        MockServer(byte[] body, String etag) {
+            this.body = body;
+            this.etag = etag;
+        }
+
+        int start() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/", this::handle);
+            server.start();
+            return server.getAddress().getPort();
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        void replace(byte[] body, String etag) {
+            this.body = body;
+            this.etag = etag;
+        }
+
+        /**
+         * Cut the first response for a range starting at start after some bytes
+         */
+        void dropOnce(long start, long afterBytes) {
+            dropAfterBytes = afterBytes;
+            dropStart = start;
+        }
+
+        /**
+         * Stop serving data once this many bytes went out in total (-1 = never)
+         */
+        void failAfter(long bytes) {
+            failAfterBytes = bytes < 0 ? -1 : bytesServed.get() + bytes;
+        }
+
+        synchronized List<Long> requestedStarts() {
+            return new ArrayList<>(starts);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            byte[] data = body;
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (isFailing()) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            if (range == null || !rangesSupported || (ifRange != null && !ifRange.equals(etag))) {
+                send(exchange, 200, data, 0, data.length, data.length);
+                return;
+            }
+
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            long start = Long.parseLong(bounds[0]);
+            long end = Math.min(Long.parseLong(bounds[1]), data.length - 1);
+            synchronized (this) {
+                starts.add(start);
+            }
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+            long limit = end - start + 1;
+            if (start == dropStart) {
+                dropStart = -1;
+                limit = dropAfterBytes;
+            }
+            send(exchange, 206, data, start, end - start + 1, limit);
+        }
+
+        /**
+         * Announce length bytes but stop after limit, like a dropped connection
+         */
+        private void send(HttpExchange exchange, int code, byte[] data, long offset, long length, long limit)
+                throws IOException {
+            exchange.sendResponseHeaders(code, length);
+            OutputStream output = exchange.getResponseBody();
+            try {
+                long sent = 0;
+                while (sent < limit) {
+                    if (isFailing()) {
+                        break;
+                    }
+                    int chunk = (int) Math.min(16 * 1024, limit - sent);
+                    output.write(data, (int) (offset + sent), chunk);
+                    sent += chunk;
+                    bytesServed.addAndGet(chunk);
+                }
+            } catch (IOException e) {
+                // Client went away
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private boolean isFailing() {
+            long fail = failAfterBytes;
+            return fail >= 0 && bytesServed.get() >= fail;
+        }
+    }
+}